@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Tests that aggregate queries answered from the per-region result cache see every change
+ * made to the data.
+ */
+public class AggregateResultCacheIT extends BaseUniqueNamesOwnClusterIT {
+
+    @BeforeClass
+    public static void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+        props.put(QueryServices.AGGREGATE_RESULT_CACHE_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static void assertGroupCounts(Connection conn, String query, Object... groupsAndCounts) throws Exception {
+        // run twice, so that the second run is answered from the cache when possible
+        for (int run = 0; run < 2; run++) {
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            for (int i = 0; i < groupsAndCounts.length; i += 2) {
+                assertTrue(rs.next());
+                assertEquals(groupsAndCounts[i], rs.getString(1));
+                assertEquals(((Number)groupsAndCounts[i + 1]).longValue(), rs.getLong(2));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    private static void assertCount(Connection conn, String query, long count) throws Exception {
+        for (int run = 0; run < 2; run++) {
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals(count, rs.getLong(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testInvalidationOnWrites() throws Exception {
+        String tableName = generateUniqueName();
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (K INTEGER PRIMARY KEY, G VARCHAR, V INTEGER) SPLIT ON (5)");
+            for (int i = 0; i < 10; i++) {
+                conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (" + i + ", '"
+                        + (i % 2 == 0 ? "even" : "odd") + "', " + i + ")");
+            }
+            conn.commit();
+            String groupBy = "SELECT G, COUNT(*) FROM " + tableName + " GROUP BY G";
+            String ungrouped = "SELECT COUNT(*) FROM " + tableName;
+            String sum = "SELECT SUM(V) FROM " + tableName;
+            assertGroupCounts(conn, groupBy, "even", 5, "odd", 5);
+            assertCount(conn, ungrouped, 10);
+            assertCount(conn, sum, 45);
+
+            // a new row in one region
+            conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (10, 'even', 10)");
+            conn.commit();
+            assertGroupCounts(conn, groupBy, "even", 6, "odd", 5);
+            assertCount(conn, ungrouped, 11);
+            assertCount(conn, sum, 55);
+
+            // an update of an existing row
+            conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (1, 'even', 100)");
+            conn.commit();
+            assertGroupCounts(conn, groupBy, "even", 7, "odd", 4);
+            assertCount(conn, sum, 154);
+
+            // a delete
+            conn.createStatement().execute("DELETE FROM " + tableName + " WHERE K = 1");
+            conn.commit();
+            assertGroupCounts(conn, groupBy, "even", 6, "odd", 4);
+            assertCount(conn, ungrouped, 10);
+            assertCount(conn, sum, 54);
+
+            // a flush moves the data to store files without changing it
+            try (Admin admin = conn.unwrap(PhoenixConnection.class).getQueryServices().getAdmin()) {
+                admin.flush(TableName.valueOf(tableName));
+            }
+            assertGroupCounts(conn, groupBy, "even", 6, "odd", 4);
+            conn.createStatement().execute("DELETE FROM " + tableName + " WHERE K = 2");
+            conn.commit();
+            assertGroupCounts(conn, groupBy, "even", 5, "odd", 4);
+        }
+    }
+
+    @Test
+    public void testDistinctCacheKeys() throws Exception {
+        String tableName = generateUniqueName();
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            conn.createStatement().execute("CREATE TABLE " + tableName
+                    + " (TENANT_ID VARCHAR NOT NULL, K INTEGER NOT NULL, V INTEGER CONSTRAINT PK PRIMARY KEY (TENANT_ID, K)) MULTI_TENANT=true");
+            for (int i = 0; i < 10; i++) {
+                conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES ('t1', " + i + ", " + i + ")");
+            }
+            for (int i = 0; i < 3; i++) {
+                conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES ('t2', " + i + ", " + i + ")");
+            }
+            conn.commit();
+
+            // scan ranges and filters
+            assertCount(conn, "SELECT COUNT(*) FROM " + tableName, 13);
+            assertCount(conn, "SELECT COUNT(*) FROM " + tableName + " WHERE K < 5", 8);
+            assertCount(conn, "SELECT COUNT(*) FROM " + tableName + " WHERE V >= 5", 5);
+            assertCount(conn, "SELECT COUNT(*) FROM " + tableName + " WHERE V >= 6", 4);
+            // aggregators
+            assertCount(conn, "SELECT MAX(V) FROM " + tableName, 9);
+            assertCount(conn, "SELECT MIN(V) FROM " + tableName, 0);
+        }
+
+        // the same query of different tenants
+        Properties tenantProps = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        tenantProps.setProperty(PhoenixRuntime.TENANT_ID_ATTRIB, "t1");
+        try (Connection conn = DriverManager.getConnection(getUrl(), tenantProps)) {
+            assertCount(conn, "SELECT COUNT(*) FROM " + tableName, 10);
+        }
+        tenantProps.setProperty(PhoenixRuntime.TENANT_ID_ATTRIB, "t2");
+        try (Connection conn = DriverManager.getConnection(getUrl(), tenantProps)) {
+            assertCount(conn, "SELECT COUNT(*) FROM " + tableName, 3);
+            conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (3, 3)");
+            conn.commit();
+            assertCount(conn, "SELECT COUNT(*) FROM " + tableName, 4);
+        }
+        tenantProps.setProperty(PhoenixRuntime.TENANT_ID_ATTRIB, "t1");
+        try (Connection conn = DriverManager.getConnection(getUrl(), tenantProps)) {
+            assertCount(conn, "SELECT COUNT(*) FROM " + tableName, 10);
+        }
+    }
+}
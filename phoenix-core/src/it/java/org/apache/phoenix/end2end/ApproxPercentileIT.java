@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Compares APPROX_PERCENTILE and APPROX_MEDIAN with the exact percentiles of tables spread over
+ * several regions, so that the digests of the regions are merged by the client.
+ */
+public class ApproxPercentileIT extends ParallelStatsDisabledIT {
+    private static final int ROWS = 2000;
+    private static final String[] GROUPS = {"a", "b", "c"};
+    // t-digest error allowed, as a fraction of the range of the values
+    private static final double TOLERANCE = 0.02;
+
+    private static String getGroup(int k) {
+        return GROUPS[k % GROUPS.length];
+    }
+
+    private static Double getValue(int k) {
+        // a permutation of 0 .. ROWS - 1, with a null every 50 rows
+        return k % 50 == 49 ? null : (double)((k * 7919) % ROWS);
+    }
+
+    private static String createTable(Connection conn, String options) throws Exception {
+        String tableName = generateUniqueName();
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (k INTEGER NOT NULL PRIMARY KEY, g VARCHAR, v DOUBLE, i INTEGER) " + options);
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?, ?)");
+        for (int k = 0; k < ROWS; k++) {
+            Double value = getValue(k);
+            stmt.setInt(1, k);
+            stmt.setString(2, getGroup(k));
+            stmt.setObject(3, value);
+            stmt.setObject(4, value == null ? null : (int)(value * 3 - ROWS));
+            stmt.execute();
+        }
+        conn.commit();
+        return tableName;
+    }
+
+    /**
+     * @return the percentile as computed by PERCENTILE_CONT
+     */
+    private static double getExactPercentile(List<Double> values, double percentile) {
+        List<Double> sorted = Lists.newArrayList(values);
+        Collections.sort(sorted);
+        double position = percentile * (sorted.size() - 1);
+        int lower = (int)Math.floor(position);
+        int upper = (int)Math.ceil(position);
+        return sorted.get(lower) + (position - lower) * (sorted.get(upper) - sorted.get(lower));
+    }
+
+    private static void assertPercentile(List<Double> values, double percentile, double actual) {
+        double expected = getExactPercentile(values, percentile);
+        double range = Collections.max(values) - Collections.min(values);
+        assertEquals("percentile " + percentile, expected, actual, range * TOLERANCE);
+    }
+
+    private static List<Double> getValues(String group) {
+        List<Double> values = Lists.newArrayList();
+        for (int k = 0; k < ROWS; k++) {
+            if (getValue(k) != null && (group == null || group.equals(getGroup(k)))) {
+                values.add(getValue(k));
+            }
+        }
+        return values;
+    }
+
+    private static void assertPercentiles(Connection conn, String tableName) throws Exception {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT APPROX_MEDIAN(v), APPROX_PERCENTILE(v, 0.1),"
+                + " APPROX_PERCENTILE(v, 0.99), APPROX_PERCENTILE(i, 0.75), APPROX_PERCENTILE(v, 0), COUNT(v)"
+                + " FROM " + tableName);
+        assertTrue(rs.next());
+        List<Double> values = getValues(null);
+        assertPercentile(values, 0.5, rs.getDouble(1));
+        assertPercentile(values, 0.1, rs.getDouble(2));
+        assertPercentile(values, 0.99, rs.getDouble(3));
+        List<Double> intValues = Lists.newArrayList();
+        for (Double value : values) {
+            intValues.add(value * 3 - ROWS);
+        }
+        assertPercentile(intValues, 0.75, rs.getDouble(4));
+        assertEquals(0, rs.getDouble(5), 0);
+        assertEquals(values.size(), rs.getLong(6));
+        assertFalse(rs.next());
+
+        rs = conn.createStatement().executeQuery("SELECT g, APPROX_MEDIAN(v), APPROX_PERCENTILE(v, 0.9) FROM "
+                + tableName + " GROUP BY g ORDER BY g");
+        Map<String, Double> medians = Maps.newHashMap();
+        for (String group : GROUPS) {
+            assertTrue(rs.next());
+            assertEquals(group, rs.getString(1));
+            assertPercentile(getValues(group), 0.5, rs.getDouble(2));
+            assertPercentile(getValues(group), 0.9, rs.getDouble(3));
+            medians.put(group, rs.getDouble(2));
+        }
+        assertFalse(rs.next());
+
+        // the percentile of the groups filtered by HAVING
+        rs = conn.createStatement().executeQuery("SELECT g FROM " + tableName
+                + " GROUP BY g HAVING APPROX_MEDIAN(v) >= " + medians.get("b") + " ORDER BY g");
+        int count = 0;
+        while (rs.next()) {
+            assertTrue(medians.get(rs.getString(1)) >= medians.get("b"));
+            count++;
+        }
+        assertTrue(count >= 1);
+
+        rs = conn.createStatement().executeQuery("SELECT APPROX_MEDIAN(v), APPROX_PERCENTILE(v, 0.5) FROM "
+                + tableName + " WHERE k < 0");
+        assertTrue(rs.next());
+        assertNull(rs.getObject(1));
+        assertNull(rs.getObject(2));
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testSaltedTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            assertPercentiles(conn, createTable(conn, "SALT_BUCKETS=4"));
+        }
+    }
+
+    @Test
+    public void testSplitTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            assertPercentiles(conn, createTable(conn, "SPLIT ON (500, 1000, 1500)"));
+        }
+    }
+
+    @Test
+    public void testMatchesPercentileCont() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            String tableName = createTable(conn, "SPLIT ON (1000)");
+            ResultSet rs = conn.createStatement().executeQuery("SELECT APPROX_PERCENTILE(v, 0.25),"
+                    + " PERCENTILE_CONT(0.25) WITHIN GROUP (ORDER BY v ASC) FROM " + tableName);
+            assertTrue(rs.next());
+            assertEquals(rs.getDouble(2), rs.getDouble(1), ROWS * TOLERANCE);
+            assertFalse(rs.next());
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Compares the rows of point lookups read through batched multi-gets with the rows read
+ * through the usual skip scan.
+ */
+public class BatchedGetIT extends ParallelStatsDisabledIT {
+
+    private static Connection connect(boolean useBatchedGets, String tenantId, Long scn) throws SQLException {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.BATCHED_GET_ENABLED_ATTRIB, Boolean.toString(useBatchedGets));
+        props.setProperty(QueryServices.BATCHED_GET_MIN_KEYS_ATTRIB, Integer.toString(1));
+        // small batches, so that several batches run at the same time
+        props.setProperty(QueryServices.BATCHED_GET_BATCH_SIZE_ATTRIB, Integer.toString(3));
+        props.setProperty(QueryServices.BATCHED_GET_MAX_CONCURRENT_BATCHES_ATTRIB, Integer.toString(2));
+        if (tenantId != null) {
+            props.setProperty(PhoenixRuntime.TENANT_ID_ATTRIB, tenantId);
+        }
+        if (scn != null) {
+            props.setProperty(PhoenixRuntime.CURRENT_SCN_ATTRIB, Long.toString(scn));
+        }
+        return DriverManager.getConnection(getUrl(), props);
+    }
+
+    private static List<String> getRows(ResultSet rs) throws SQLException {
+        List<String> rows = Lists.newArrayList();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            StringBuilder row = new StringBuilder();
+            for (int i = 1; i <= columnCount; i++) {
+                row.append(rs.getString(i)).append(i < columnCount ? "," : "");
+            }
+            rows.add(row.toString());
+        }
+        rs.close();
+        return rows;
+    }
+
+    private static List<String> query(Connection conn, String query, boolean isBatchedGetExpected)
+            throws SQLException {
+        try {
+            PhoenixStatement statement = conn.createStatement().unwrap(PhoenixStatement.class);
+            List<String> rows = getRows(statement.executeQuery(query));
+            // Batched gets do not run any scan
+            assertEquals(isBatchedGetExpected, statement.getQueryPlan().getScans().isEmpty());
+            return rows;
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * @return the rows read through batched gets, which are the same as the rows scanned
+     */
+    private static List<String> assertBatchedGetsMatchScan(String tenantId, Long scn, String query,
+            int expectedRowCount) throws SQLException {
+        List<String> expected = query(connect(false, tenantId, scn), query, false);
+        List<String> actual = query(connect(true, tenantId, scn), query, true);
+        assertEquals(expectedRowCount, expected.size());
+        // Salted tables are not scanned in row key order
+        List<String> sortedActual = Lists.newArrayList(actual);
+        Collections.sort(expected);
+        Collections.sort(sortedActual);
+        assertEquals(expected, sortedActual);
+        return actual;
+    }
+
+    private static List<String> getRowsByPrimaryKeys(Connection conn, String tableName, List<Object[]> pkValues,
+            boolean inRowKeyOrder) throws SQLException {
+        try {
+            return getRows(PhoenixRuntime.getRowsByPrimaryKeys(conn, tableName, pkValues, inRowKeyOrder));
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static void upsertRows(String tableName, int rowCount) throws SQLException {
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        try {
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?)");
+            for (int i = 0; i < rowCount; i++) {
+                stmt.setInt(1, i);
+                stmt.setString(2, "v" + i);
+                stmt.execute();
+            }
+            conn.commit();
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testSaltedTable() throws Exception {
+        String tableName = generateUniqueName();
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (id INTEGER NOT NULL PRIMARY KEY, v VARCHAR) SALT_BUCKETS=4");
+        conn.close();
+        upsertRows(tableName, 50);
+
+        assertBatchedGetsMatchScan(null, null, "SELECT * FROM " + tableName
+                + " WHERE id IN (0, 3, 7, 11, 19, 23, 31, 40, 42, 49)", 10);
+        assertBatchedGetsMatchScan(null, null, "SELECT v FROM " + tableName
+                + " WHERE id IN (1, 2, 3, 4, 5, 6) AND v != 'v4'", 5);
+
+        List<Object[]> pkValues = Lists.newArrayList(
+                new Object[] {40}, new Object[] {7}, new Object[] {13}, new Object[] {0});
+        assertEquals(Lists.newArrayList("40,v40", "7,v7", "13,v13", "0,v0"),
+                getRowsByPrimaryKeys(connect(true, null, null), tableName, pkValues, false));
+        List<String> rows = getRowsByPrimaryKeys(connect(true, null, null), tableName, pkValues, true);
+        Collections.sort(rows);
+        assertEquals(Lists.newArrayList("0,v0", "13,v13", "40,v40", "7,v7"), rows);
+    }
+
+    @Test
+    public void testMultiTenantTable() throws Exception {
+        String tableName = generateUniqueName();
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (tenant_id VARCHAR NOT NULL, id INTEGER NOT NULL, v VARCHAR"
+                + " CONSTRAINT pk PRIMARY KEY (tenant_id, id)) MULTI_TENANT=true");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+        for (String tenantId : new String[] {"t1", "t2"}) {
+            for (int i = 0; i < 20; i++) {
+                stmt.setString(1, tenantId);
+                stmt.setInt(2, i);
+                stmt.setString(3, tenantId + "v" + i);
+                stmt.execute();
+            }
+        }
+        conn.commit();
+        conn.close();
+
+        List<String> rows = assertBatchedGetsMatchScan("t1", null, "SELECT * FROM " + tableName
+                + " WHERE id IN (1, 5, 9, 13, 17, 25)", 5);
+        for (String row : rows) {
+            assertTrue(row, row.contains("t1v"));
+        }
+        assertBatchedGetsMatchScan(null, null, "SELECT * FROM " + tableName
+                + " WHERE (tenant_id, id) IN (('t1', 1), ('t2', 1), ('t2', 19), ('t3', 1))", 3);
+
+        List<Object[]> pkValues = Lists.newArrayList(new Object[] {9}, new Object[] {2}, new Object[] {30});
+        assertEquals(Lists.newArrayList("9,t2v9", "2,t2v2"),
+                getRowsByPrimaryKeys(connect(true, "t2", null), tableName, pkValues, false));
+        pkValues = Lists.newArrayList(new Object[] {"t2", 9}, new Object[] {"t1", 2});
+        assertEquals(Lists.newArrayList("t1,2,t1v2", "t2,9,t2v9"),
+                getRowsByPrimaryKeys(connect(true, null, null), tableName, pkValues, true));
+    }
+
+    @Test
+    public void testDescPrimaryKey() throws Exception {
+        String tableName = generateUniqueName();
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (k1 VARCHAR NOT NULL, k2 INTEGER NOT NULL, v VARCHAR"
+                + " CONSTRAINT pk PRIMARY KEY (k1 DESC, k2 DESC))");
+        PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + tableName + " VALUES (?, ?, ?)");
+        for (String k1 : new String[] {"a", "ab", "b"}) {
+            for (int k2 = -5; k2 < 5; k2++) {
+                stmt.setString(1, k1);
+                stmt.setInt(2, k2);
+                stmt.setString(3, k1 + k2);
+                stmt.execute();
+            }
+        }
+        conn.commit();
+        conn.close();
+
+        String query = "SELECT * FROM " + tableName
+                + " WHERE (k1, k2) IN (('a', -5), ('ab', 0), ('b', 4), ('ab', -1), ('a', 3), ('c', 1))";
+        List<String> rows = assertBatchedGetsMatchScan(null, null, query, 5);
+        // Both read the rows in row key order
+        assertEquals(query(connect(false, null, null), query, false), rows);
+
+        List<Object[]> pkValues = Lists.newArrayList(
+                new Object[] {"a", -5}, new Object[] {"b", 4}, new Object[] {"ab", 0}, new Object[] {"a", 3});
+        assertEquals(Lists.newArrayList("b,4,b4", "ab,0,ab0", "a,3,a3", "a,-5,a-5"),
+                getRowsByPrimaryKeys(connect(true, null, null), tableName, pkValues, true));
+        assertEquals(Lists.newArrayList("a,-5,a-5", "b,4,b4", "ab,0,ab0", "a,3,a3"),
+                getRowsByPrimaryKeys(connect(true, null, null), tableName, pkValues, false));
+    }
+
+    @Test
+    public void testMissingKeys() throws Exception {
+        String tableName = generateUniqueName();
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        conn.createStatement().execute("CREATE TABLE " + tableName + " (id INTEGER NOT NULL PRIMARY KEY, v VARCHAR)");
+        conn.close();
+        upsertRows(tableName, 10);
+
+        assertBatchedGetsMatchScan(null, null, "SELECT * FROM " + tableName
+                + " WHERE id IN (-1, 2, 4, 10, 11, 12, 100)", 2);
+        assertBatchedGetsMatchScan(null, null, "SELECT * FROM " + tableName
+                + " WHERE id IN (20, 21, 22, 23, 24, 25, 26)", 0);
+        List<Object[]> pkValues = Lists.newArrayList(new Object[] {20}, new Object[] {3}, new Object[] {21});
+        assertEquals(Lists.newArrayList("3,v3"),
+                getRowsByPrimaryKeys(connect(true, null, null), tableName, pkValues, false));
+    }
+
+    @Test
+    public void testScnTimeRange() throws Exception {
+        String tableName = generateUniqueName();
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        conn.createStatement().execute("CREATE TABLE " + tableName + " (id INTEGER NOT NULL PRIMARY KEY, v VARCHAR)");
+        conn.close();
+        upsertRows(tableName, 10);
+        Thread.sleep(10);
+        long scn = System.currentTimeMillis();
+        Thread.sleep(10);
+        conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (1, 'updated')");
+        conn.createStatement().execute("UPSERT INTO " + tableName + " VALUES (20, 'added')");
+        conn.createStatement().execute("DELETE FROM " + tableName + " WHERE id = 2");
+        conn.commit();
+        conn.close();
+
+        String query = "SELECT * FROM " + tableName + " WHERE id IN (1, 2, 3, 20)";
+        List<String> rows = assertBatchedGetsMatchScan(null, scn, query, 3);
+        assertEquals(Lists.newArrayList("1,v1", "2,v2", "3,v3"), rows);
+        rows = assertBatchedGetsMatchScan(null, null, query, 3);
+        assertEquals(Lists.newArrayList("1,updated", "3,v3", "20,added"), rows);
+
+        List<Object[]> pkValues = Lists.newArrayList(new Object[] {1}, new Object[] {2}, new Object[] {20});
+        assertEquals(Lists.newArrayList("1,v1", "2,v2"),
+                getRowsByPrimaryKeys(connect(true, null, scn), tableName, pkValues, false));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        String tableName = generateUniqueName();
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        conn.createStatement().execute("CREATE TABLE " + tableName + " (id INTEGER NOT NULL PRIMARY KEY, v VARCHAR)");
+        conn.close();
+        upsertRows(tableName, 10);
+
+        String query = "SELECT * FROM " + tableName + " WHERE id IN (1, 2, 3)";
+        assertEquals(3, query(connect(false, null, null), query, false).size());
+        // Not a point lookup
+        assertEquals(8, query(connect(true, null, null), "SELECT * FROM " + tableName + " WHERE id > 1", false).size());
+        // Fewer keys than the minimum
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.BATCHED_GET_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        props.setProperty(QueryServices.BATCHED_GET_MIN_KEYS_ATTRIB, Integer.toString(4));
+        assertEquals(3, query(DriverManager.getConnection(getUrl(), props), query, false).size());
+        // Rows must be ordered
+        assertEquals(3, query(connect(true, null, null), query + " ORDER BY v DESC", false).size());
+    }
+
+    @Test
+    public void testWrongNumberOfPrimaryKeyValues() throws Exception {
+        String tableName = generateUniqueName();
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        conn.createStatement().execute("CREATE TABLE " + tableName
+                + " (k1 VARCHAR NOT NULL, k2 INTEGER NOT NULL, v VARCHAR CONSTRAINT pk PRIMARY KEY (k1, k2))");
+        conn.close();
+
+        List<List<Object[]>> invalidPkValues = Lists.newArrayList();
+        invalidPkValues.add(Collections.singletonList(new Object[] {"a"}));
+        invalidPkValues.add(Collections.singletonList(new Object[] {"a", 1, 2}));
+        invalidPkValues.add(Lists.newArrayList(new Object[] {"a", 1}, new Object[] {}));
+        for (List<Object[]> pkValues : invalidPkValues) {
+            try {
+                getRowsByPrimaryKeys(connect(true, null, null), tableName, pkValues, false);
+                fail();
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
+import org.apache.phoenix.schema.PTableKey;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.QueryUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Reads and writes tables using the SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES storage scheme,
+ * comparing them with the same table stored with one cell per column.
+ */
+public class CompressedImmutableStorageSchemeIT extends ParallelStatsDisabledIT {
+    private static final String COLUMNS = "(id INTEGER NOT NULL PRIMARY KEY, i INTEGER, b BIGINT, d DATE,"
+            + " t TIMESTAMP, s VARCHAR, amt DECIMAL(10, 2), dbl DOUBLE, f.v VARCHAR, f.l BIGINT)";
+    private static final String UPSERT_COLUMNS = "(id, i, b, d, t, s, amt, dbl, f.v, f.l)";
+
+    private String compressedTable;
+    private String referenceTable;
+
+    @Before
+    public void createTables() throws Exception {
+        compressedTable = generateUniqueName();
+        referenceTable = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            conn.createStatement().execute("CREATE IMMUTABLE TABLE " + compressedTable + COLUMNS
+                    + " IMMUTABLE_STORAGE_SCHEME=SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES");
+            conn.createStatement().execute("CREATE IMMUTABLE TABLE " + referenceTable + COLUMNS
+                    + " IMMUTABLE_STORAGE_SCHEME=ONE_CELL_PER_COLUMN");
+        }
+    }
+
+    private void upsertRow(Connection conn, Object... values) throws SQLException {
+        for (String tableName : new String[] {compressedTable, referenceTable}) {
+            StringBuilder upsert = new StringBuilder("UPSERT INTO " + tableName + UPSERT_COLUMNS + " VALUES (");
+            for (int i = 0; i < values.length; i++) {
+                upsert.append(i == 0 ? "?" : ", ?");
+            }
+            PreparedStatement stmt = conn.prepareStatement(upsert.append(')').toString());
+            for (int i = 0; i < values.length; i++) {
+                stmt.setObject(i + 1, values[i]);
+            }
+            stmt.execute();
+        }
+    }
+
+    private static List<List<Object>> getRows(Connection conn, String query) throws SQLException {
+        List<List<Object>> rows = Lists.newArrayList();
+        ResultSet rs = conn.createStatement().executeQuery(query);
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            List<Object> row = Lists.newArrayListWithExpectedSize(columnCount);
+            for (int i = 1; i <= columnCount; i++) {
+                row.add(rs.getObject(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * @param query the query, with %s in place of the table name
+     * @return the rows, which are the same for both tables
+     */
+    private List<List<Object>> assertSameRows(Connection conn, String query) throws SQLException {
+        List<List<Object>> expected = getRows(conn, String.format(query, referenceTable));
+        assertEquals(query, expected, getRows(conn, String.format(query, compressedTable)));
+        return expected;
+    }
+
+    private void upsertRows(Connection conn) throws SQLException {
+        long time = System.currentTimeMillis();
+        upsertRow(conn, 1, 1, 1L, new Date(time), new Timestamp(time), "a", new BigDecimal("1.25"), 1.5, "x", 10L);
+        // negative and extreme values
+        upsertRow(conn, 2, Integer.MIN_VALUE, Long.MIN_VALUE, new Date(0), new Timestamp(-1000), "",
+                new BigDecimal("-12345678.99"), -Double.MAX_VALUE, "y", Long.MAX_VALUE);
+        upsertRow(conn, 3, Integer.MAX_VALUE, Long.MAX_VALUE, new Date(time + 1), new Timestamp(time + 1),
+                "a longer value which is not packed", new BigDecimal("0"), Double.NaN, "", -1L);
+        // nulls in the middle of a family
+        upsertRow(conn, 4, null, 4L, null, new Timestamp(time), null, new BigDecimal("4"), null, null, 4L);
+        // trailing nulls, in each family
+        upsertRow(conn, 5, 5, 5L, new Date(time), null, null, null, null, "z", null);
+        // only the primary key
+        upsertRow(conn, 6, null, null, null, null, null, null, null, null, null);
+        conn.commit();
+    }
+
+    @Test
+    public void testCreateTable() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            PTable table = conn.unwrap(PhoenixConnection.class).getTable(new PTableKey(null, compressedTable));
+            assertEquals(ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES,
+                    table.getImmutableStorageScheme());
+            assertTrue(table.isImmutableRows());
+        }
+    }
+
+    @Test
+    public void testUpsertSelect() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            upsertRows(conn);
+            assertEquals(6, assertSameRows(conn, "SELECT * FROM %s").size());
+            assertSameRows(conn, "SELECT id, f.l, b, s FROM %s");
+            assertSameRows(conn, "SELECT id FROM %s WHERE b > 1 AND f.v = 'z'");
+            assertSameRows(conn, "SELECT id, amt FROM %s WHERE amt < 1");
+            assertSameRows(conn, "SELECT COUNT(i), SUM(f.l), MIN(d), MAX(t) FROM %s");
+            assertSameRows(conn, "SELECT s, COUNT(*) FROM %s GROUP BY s");
+            List<List<Object>> rows = assertSameRows(conn, "SELECT * FROM %s ORDER BY id DESC");
+            assertEquals(6, rows.get(0).get(0));
+            assertEquals(Integer.MIN_VALUE, rows.get(4).get(1));
+            assertEquals(Long.MIN_VALUE, rows.get(4).get(2));
+        }
+    }
+
+    @Test
+    public void testNulls() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            upsertRows(conn);
+            List<List<Object>> rows = assertSameRows(conn, "SELECT id FROM %s WHERE i IS NULL");
+            assertEquals(2, rows.size());
+            assertSameRows(conn, "SELECT id FROM %s WHERE t IS NULL AND f.l IS NULL");
+            assertSameRows(conn, "SELECT id FROM %s WHERE f.v IS NULL");
+            assertSameRows(conn, "SELECT id FROM %s WHERE s IS NOT NULL");
+            assertSameRows(conn, "SELECT id, dbl, f.l FROM %s WHERE id IN (4, 5, 6)");
+            rows = assertSameRows(conn, "SELECT * FROM %s WHERE id = 6");
+            assertEquals(1, rows.size());
+            for (Object value : rows.get(0).subList(1, rows.get(0).size())) {
+                assertEquals(null, value);
+            }
+        }
+    }
+
+    @Test
+    public void testAddColumn() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            upsertRows(conn);
+            for (String tableName : new String[] {compressedTable, referenceTable}) {
+                conn.createStatement().execute("ALTER TABLE " + tableName + " ADD n0 INTEGER, f.n1 VARCHAR, g.n2 BIGINT");
+                conn.createStatement().execute("UPSERT INTO " + tableName
+                        + " (id, i, n0, f.n1, g.n2) VALUES (7, 7, 70, 'f7', 700)");
+                conn.createStatement().execute("UPSERT INTO " + tableName + " (id, n0) VALUES (8, 80)");
+                conn.createStatement().execute("UPSERT INTO " + tableName + " (id, f.n1) VALUES (9, 'f9')");
+            }
+            conn.commit();
+            assertEquals(9, assertSameRows(conn, "SELECT * FROM %s").size());
+            List<List<Object>> rows = assertSameRows(conn, "SELECT id, n0, f.n1, g.n2 FROM %s WHERE n0 IS NOT NULL");
+            assertEquals(2, rows.size());
+            assertSameRows(conn, "SELECT id, i, s, f.v FROM %s WHERE f.n1 IS NULL");
+            assertSameRows(conn, "SELECT g.n2 FROM %s WHERE id = 7");
+        }
+    }
+
+    @Test
+    public void testGlobalIndex() throws Exception {
+        String indexName = generateUniqueName();
+        String referenceIndexName = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            upsertRows(conn);
+            conn.createStatement().execute("CREATE INDEX " + indexName + " ON " + compressedTable
+                    + " (s) INCLUDE (b, f.l)");
+            conn.createStatement().execute("CREATE INDEX " + referenceIndexName + " ON " + referenceTable
+                    + " (s) INCLUDE (b, f.l)");
+            PTable index = conn.unwrap(PhoenixConnection.class).getTable(new PTableKey(null, indexName));
+            assertEquals(ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES,
+                    index.getImmutableStorageScheme());
+
+            // rows upserted once the index exists
+            upsertRow(conn, 10, 10, 100L, null, null, "b", null, null, "w", 1000L);
+            upsertRow(conn, 11, null, null, null, null, "b", null, null, null, null);
+            conn.commit();
+
+            String query = "SELECT s, b, f.l FROM %s WHERE s = 'b'";
+            String plan = QueryUtil.getExplainPlan(conn.createStatement().executeQuery(
+                    "EXPLAIN " + String.format(query, compressedTable)));
+            assertTrue(plan, plan.contains(indexName));
+            assertEquals(2, assertSameRows(conn, query).size());
+            assertSameRows(conn, "SELECT s, b, f.l FROM %s WHERE s >= 'a' ORDER BY s");
+            assertSameRows(conn, "SELECT s, COUNT(*), SUM(b) FROM %s GROUP BY s");
+        }
+    }
+}
@@ -92,6 +92,45 @@ public class CsvBulkLoadToolIT extends BaseOwnClusterIT {
         rs.close();
         stmt.close();
     }
+
+    @Test
+    public void testLocalImport() throws Exception {
+
+        Statement stmt = conn.createStatement();
+        stmt.execute("CREATE TABLE S.TABLE_LOCAL (ID INTEGER NOT NULL PRIMARY KEY, NAME VARCHAR) SPLIT ON (10,20)");
+
+        FileSystem fs = FileSystem.get(getUtility().getConfiguration());
+        for (int file = 0; file < 2; file++) {
+            FSDataOutputStream outputStream = fs.create(new Path("/tmp/input_local/input" + file + ".csv"));
+            PrintWriter printWriter = new PrintWriter(outputStream);
+            for (int i = file; i < 30; i += 2) {
+                printWriter.println(i + ",Name " + i);
+            }
+            printWriter.close();
+        }
+
+        CsvBulkLoadTool csvBulkLoadTool = new CsvBulkLoadTool();
+        csvBulkLoadTool.setConf(new Configuration(getUtility().getConfiguration()));
+        int exitCode = csvBulkLoadTool.run(new String[] {
+                "--input", "/tmp/input_local",
+                "--table", "table_local",
+                "--schema", "s",
+                "--local-threads", "2",
+                "--zookeeper", zkQuorum});
+        assertEquals(0, exitCode);
+
+        ResultSet rs = stmt.executeQuery("SELECT id, name FROM s.table_local ORDER BY id");
+        for (int i = 0; i < 30; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals("Name " + i, rs.getString(2));
+        }
+        assertFalse(rs.next());
+
+        rs.close();
+        stmt.close();
+    }
+
     @Test
     public void testImportWithRowTimestamp() throws Exception {
 
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class DistinctCountRewriteIT extends ParallelStatsDisabledIT {
+    private String table;
+    private String otherTable;
+
+    @Before
+    public void createTables() throws Exception {
+        table = generateUniqueName();
+        otherTable = generateUniqueName();
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        try {
+            conn.createStatement().execute("CREATE TABLE " + table
+                    + " (id INTEGER NOT NULL PRIMARY KEY, g VARCHAR, v INTEGER, w INTEGER) SALT_BUCKETS=3");
+            conn.createStatement().execute("CREATE TABLE " + otherTable
+                    + " (id INTEGER NOT NULL PRIMARY KEY, v INTEGER)");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + table + " VALUES (?, ?, ?, ?)");
+            for (int i = 0; i < 500; i++) {
+                stmt.setInt(1, i);
+                // some rows with a null group and some groups with only null values
+                if (i % 31 == 0) {
+                    stmt.setNull(2, Types.VARCHAR);
+                } else {
+                    stmt.setString(2, "g" + (i % 7));
+                }
+                if (i % 5 == 0 || i % 7 == 3) {
+                    stmt.setNull(3, Types.INTEGER);
+                } else {
+                    stmt.setInt(3, i % 23);
+                }
+                stmt.setInt(4, i % 11);
+                stmt.execute();
+            }
+            stmt = conn.prepareStatement("UPSERT INTO " + otherTable + " VALUES (?, ?)");
+            for (int i = 0; i < 500; i += 2) {
+                stmt.setInt(1, i);
+                if (i % 6 == 0) {
+                    stmt.setNull(2, Types.INTEGER);
+                } else {
+                    stmt.setInt(2, i % 17);
+                }
+                stmt.execute();
+            }
+            conn.commit();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static List<String> query(String query, boolean isRewriteEnabled, boolean isOrdered) throws SQLException {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.DISTINCT_COUNT_REWRITE_ENABLED_ATTRIB, Boolean.toString(isRewriteEnabled));
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            ResultSetMetaData metaData = rs.getMetaData();
+            List<String> rows = Lists.newArrayList();
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    row.append(rs.getString(i)).append(',');
+                }
+                rows.add(row.toString());
+            }
+            if (!isOrdered) {
+                Collections.sort(rows);
+            }
+            StringBuilder labels = new StringBuilder();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                labels.append(metaData.getColumnLabel(i)).append(':')
+                        .append(metaData.getColumnTypeName(i)).append(',');
+            }
+            // the labels and types of the columns come first
+            rows.add(0, labels.toString());
+            return rows;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static void assertSameResults(String query) throws SQLException {
+        assertSameResults(query, false);
+    }
+
+    private static void assertSameResults(String query, boolean isOrdered) throws SQLException {
+        List<String> expected = query(query, false, isOrdered);
+        assertEquals(query, expected, query(query, true, isOrdered));
+    }
+
+    @Test
+    public void testDistinctCount() throws Exception {
+        assertSameResults("SELECT COUNT(DISTINCT v) FROM " + table);
+        assertSameResults("SELECT COUNT(DISTINCT v) FROM " + table + " WHERE w > 5");
+        assertSameResults("SELECT COUNT(DISTINCT v + w) FROM " + table);
+        // no rows at all
+        assertSameResults("SELECT COUNT(DISTINCT v) FROM " + table + " WHERE w > 100");
+    }
+
+    @Test
+    public void testGroupBy() throws Exception {
+        assertSameResults("SELECT g, COUNT(DISTINCT v) FROM " + table + " GROUP BY g");
+        assertSameResults("SELECT COUNT(DISTINCT v), g FROM " + table + " GROUP BY g");
+        assertSameResults("SELECT COUNT(DISTINCT v) FROM " + table + " GROUP BY g");
+        assertSameResults("SELECT g, w, COUNT(DISTINCT v) FROM " + table + " GROUP BY g, w");
+        assertSameResults("SELECT SUBSTR(g, 2, 1), COUNT(DISTINCT v) FROM " + table + " GROUP BY SUBSTR(g, 2, 1)");
+        assertSameResults("SELECT g, COUNT(DISTINCT v) FROM " + table + " WHERE w < 0 GROUP BY g");
+    }
+
+    @Test
+    public void testAliases() throws Exception {
+        assertSameResults("SELECT g AS grp, COUNT(DISTINCT v) \"Count\" FROM " + table + " GROUP BY g");
+        assertSameResults("SELECT t.g, COUNT(DISTINCT t.v) c FROM " + table + " t GROUP BY t.g");
+    }
+
+    @Test
+    public void testSeveralDistinctCounts() throws Exception {
+        assertSameResults("SELECT g, COUNT(DISTINCT v), COUNT(DISTINCT v) c FROM " + table + " GROUP BY g");
+        assertSameResults("SELECT g, COUNT(DISTINCT v), COUNT(DISTINCT w) FROM " + table + " GROUP BY g");
+        assertSameResults("SELECT COUNT(DISTINCT v), COUNT(v), COUNT(*) FROM " + table);
+    }
+
+    @Test
+    public void testOrderByAndLimit() throws Exception {
+        assertSameResults("SELECT g, COUNT(DISTINCT v) FROM " + table + " GROUP BY g ORDER BY g", true);
+        assertSameResults("SELECT g, COUNT(DISTINCT v) c FROM " + table + " GROUP BY g ORDER BY c DESC, g", true);
+        assertSameResults("SELECT COUNT(DISTINCT v) FROM " + table + " LIMIT 1");
+        // Groups come out in the order of the group by, with or without the rewrite
+        assertSameResults("SELECT g, COUNT(DISTINCT v) FROM " + table
+                + " WHERE g IS NOT NULL GROUP BY g LIMIT 3", true);
+        assertSameResults("SELECT g, COUNT(DISTINCT v) FROM " + table
+                + " WHERE g IS NOT NULL GROUP BY g LIMIT 3 OFFSET 2", true);
+        assertSameResults("SELECT g, COUNT(DISTINCT v) FROM " + table + " GROUP BY g HAVING COUNT(DISTINCT v) > 10");
+    }
+
+    @Test
+    public void testJoin() throws Exception {
+        assertSameResults("SELECT t.g, COUNT(DISTINCT u.v) FROM " + table + " t JOIN " + otherTable
+                + " u ON t.id = u.id GROUP BY t.g");
+        assertSameResults("SELECT t.g, COUNT(DISTINCT u.v) FROM " + table + " t LEFT JOIN " + otherTable
+                + " u ON t.id = u.id GROUP BY t.g");
+        assertSameResults("SELECT COUNT(DISTINCT t.v) FROM " + table + " t JOIN " + otherTable
+                + " u ON t.v = u.v");
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Stores HLL_SKETCH values into a rollup table with UPSERT SELECT, and estimates the distinct
+ * counts of the rollup rows with HLL_ESTIMATE(HLL_MERGE(sketch)).
+ */
+public class HyperLogLogSketchIT extends ParallelStatsDisabledIT {
+    private static final int EVENTS = 6000;
+    private static final int DAYS = 3;
+    private static final int HOURS = 24;
+
+    private String eventTable;
+    private String rollupTable;
+
+    @Before
+    public void createTables() throws Exception {
+        eventTable = generateUniqueName();
+        rollupTable = generateUniqueName();
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            conn.createStatement().execute("CREATE TABLE " + eventTable
+                    + " (k INTEGER NOT NULL PRIMARY KEY, day VARCHAR, hr INTEGER, user_id VARCHAR) SALT_BUCKETS=4");
+            // the hours of a day are spread over all the buckets
+            conn.createStatement().execute("CREATE TABLE " + rollupTable
+                    + " (day VARCHAR NOT NULL, hr INTEGER NOT NULL, sketch VARBINARY"
+                    + " CONSTRAINT pk PRIMARY KEY (day, hr)) SALT_BUCKETS=3");
+            PreparedStatement stmt = conn.prepareStatement("UPSERT INTO " + eventTable + " VALUES (?, ?, ?, ?)");
+            for (int k = 0; k < EVENTS; k++) {
+                int day = k % DAYS;
+                stmt.setInt(1, k);
+                stmt.setString(2, "d" + day);
+                stmt.setInt(3, (k / DAYS) % HOURS);
+                // null users, and a number of distinct users varying by day
+                stmt.setString(4, k % 7 == 0 ? null : "u" + ((k * 31) % (500 + 200 * day)));
+                stmt.execute();
+            }
+            // a day whose events all have a null user
+            for (int k = EVENTS; k < EVENTS + 10; k++) {
+                stmt.setInt(1, k);
+                stmt.setString(2, "d" + DAYS);
+                stmt.setInt(3, 0);
+                stmt.setString(4, null);
+                stmt.execute();
+            }
+            conn.commit();
+
+            conn.createStatement().execute("UPSERT INTO " + rollupTable
+                    + " (day, hr, sketch) SELECT day, hr, HLL_SKETCH(user_id) FROM " + eventTable
+                    + " GROUP BY day, hr");
+            conn.commit();
+        }
+    }
+
+    private static void assertEstimate(long expected, long actual) {
+        assertEquals(expected, actual, Math.max(2, expected * 0.02));
+    }
+
+    private static Map<String, Long> getExactCounts(Connection conn, String query) throws Exception {
+        Map<String, Long> counts = Maps.newHashMap();
+        ResultSet rs = conn.createStatement().executeQuery(query);
+        while (rs.next()) {
+            counts.put(rs.getString(1), rs.getLong(2));
+        }
+        return counts;
+    }
+
+    @Test
+    public void testEstimateOfMergedSketches() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + rollupTable);
+            assertTrue(rs.next());
+            assertEquals(DAYS * HOURS + 1, rs.getInt(1));
+
+            Map<String, Long> exactCounts = getExactCounts(conn,
+                    "SELECT day, COUNT(DISTINCT user_id) FROM " + eventTable + " GROUP BY day");
+            rs = conn.createStatement().executeQuery("SELECT day, HLL_ESTIMATE(HLL_MERGE(sketch)) FROM "
+                    + rollupTable + " GROUP BY day ORDER BY day");
+            for (int day = 0; day <= DAYS; day++) {
+                assertTrue(rs.next());
+                assertEquals("d" + day, rs.getString(1));
+                assertEstimate(exactCounts.get("d" + day), rs.getLong(2));
+            }
+            assertFalse(rs.next());
+            assertEquals(0L, exactCounts.get("d" + DAYS).longValue());
+
+            rs = conn.createStatement().executeQuery("SELECT COUNT(DISTINCT user_id) FROM " + eventTable);
+            assertTrue(rs.next());
+            long exactCount = rs.getLong(1);
+            rs = conn.createStatement().executeQuery("SELECT HLL_ESTIMATE(HLL_MERGE(sketch)) FROM " + rollupTable);
+            assertTrue(rs.next());
+            assertEstimate(exactCount, rs.getLong(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testEstimateOfStoredSketches() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            Map<String, Long> exactCounts = getExactCounts(conn, "SELECT day || ':' || TO_CHAR(hr),"
+                    + " COUNT(DISTINCT user_id) FROM " + eventTable + " GROUP BY day, hr");
+            ResultSet rs = conn.createStatement().executeQuery("SELECT day || ':' || TO_CHAR(hr),"
+                    + " HLL_ESTIMATE(sketch) FROM " + rollupTable);
+            int rows = 0;
+            while (rs.next()) {
+                assertEstimate(exactCounts.get(rs.getString(1)), rs.getLong(2));
+                rows++;
+            }
+            assertEquals(exactCounts.size(), rows);
+
+            // the same sketch as APPROX_COUNT_DISTINCT
+            rs = conn.createStatement().executeQuery("SELECT HLL_ESTIMATE(HLL_SKETCH(user_id)),"
+                    + " APPROX_COUNT_DISTINCT(user_id) FROM " + eventTable + " WHERE day = 'd1'");
+            assertTrue(rs.next());
+            assertEquals(rs.getLong(2), rs.getLong(1));
+        }
+    }
+
+    @Test
+    public void testNullAndEmptySketches() throws Exception {
+        try (Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES))) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT HLL_ESTIMATE(HLL_MERGE(sketch)) FROM "
+                    + rollupTable + " WHERE day = 'd0'");
+            assertTrue(rs.next());
+            long estimate = rs.getLong(1);
+
+            // null sketches are not merged
+            conn.createStatement().execute("UPSERT INTO " + rollupTable + " (day, hr, sketch) VALUES ('d0', 99, NULL)");
+            conn.commit();
+            rs = conn.createStatement().executeQuery("SELECT HLL_ESTIMATE(sketch) FROM " + rollupTable
+                    + " WHERE day = 'd0' AND hr = 99");
+            assertTrue(rs.next());
+            assertNull(rs.getObject(1));
+            rs = conn.createStatement().executeQuery("SELECT HLL_ESTIMATE(HLL_MERGE(sketch)) FROM "
+                    + rollupTable + " WHERE day = 'd0'");
+            assertTrue(rs.next());
+            assertEquals(estimate, rs.getLong(1));
+
+            // no rows to merge
+            rs = conn.createStatement().executeQuery("SELECT HLL_ESTIMATE(HLL_MERGE(sketch)) FROM "
+                    + rollupTable + " WHERE day = 'none'");
+            assertTrue(rs.next());
+            assertEquals(0, rs.getLong(1));
+            assertFalse(rs.next());
+
+            // the sketch of null values only
+            rs = conn.createStatement().executeQuery("SELECT HLL_ESTIMATE(sketch) FROM " + rollupTable
+                    + " WHERE day = 'd" + DAYS + "'");
+            assertTrue(rs.next());
+            assertEquals(0, rs.getLong(1));
+            assertFalse(rs.next());
+        }
+    }
+}
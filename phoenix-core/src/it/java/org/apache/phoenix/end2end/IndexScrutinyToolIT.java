@@ -47,6 +47,7 @@ import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.phoenix.mapreduce.CsvBulkImportUtil;
+import org.apache.phoenix.mapreduce.index.IndexScrutinyDigest;
 import org.apache.phoenix.mapreduce.index.IndexScrutinyTableOutput;
 import org.apache.phoenix.mapreduce.index.IndexScrutinyTool;
 import org.apache.phoenix.mapreduce.index.IndexScrutinyTool.OutputFormat;
@@ -467,6 +468,48 @@ public class IndexScrutinyToolIT extends BaseTest {
         }
     }
 
+    /**
+     * Tests the digest mode, which only compares the rows of the buckets whose digests differ,
+     * and doesn't compare them again while their digests don't change
+     */
+    @Test
+    public void testDigest() throws Exception {
+        // insert one valid row
+        upsertRow(dataTableUpsertStmt, 1, "name-1", 94010);
+        conn.commit();
+
+        // disable index and insert another data row
+        disableIndex();
+        upsertRow(dataTableUpsertStmt, 2, "name-2", 95123);
+        conn.commit();
+
+        // insert a bad index row for the above data row
+        upsertIndexRow("name-2", 2, 9999);
+        conn.commit();
+
+        // the data row and the index row are both reported
+        IndexScrutinyDigest.Result result = runDigestScrutiny(System.currentTimeMillis());
+        assertEquals(1, result.getInvalidBucketCount());
+        assertEquals(1, result.getComparedBucketCount());
+        assertEquals(2, result.getInvalidRowCount());
+
+        // the bucket is not compared again
+        result = runDigestScrutiny(System.currentTimeMillis());
+        assertEquals(1, result.getInvalidBucketCount());
+        assertEquals(0, result.getComparedBucketCount());
+        assertEquals(2, result.getInvalidRowCount());
+    }
+
+    private IndexScrutinyDigest.Result runDigestScrutiny(long ts) throws Exception {
+        List<String> args = Lists.newArrayList(getArgValues(schemaName, dataTableName,
+            indexTableName, ts, null, null, false, null, null));
+        args.add("-dg");
+        IndexScrutinyTool scrutiny = new IndexScrutinyTool();
+        scrutiny.setConf(new Configuration(getUtility().getConfiguration()));
+        assertEquals(0, scrutiny.run(args.toArray(new String[0])));
+        return scrutiny.getDigestResult();
+    }
+
     private SourceTargetColumnNames getColNames() throws SQLException {
         PTable pdataTable = PhoenixRuntime.getTable(conn, dataTableFullName);
         PTable pindexTable = PhoenixRuntime.getTable(conn, indexTableFullName);
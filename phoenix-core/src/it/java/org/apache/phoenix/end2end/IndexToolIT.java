@@ -21,6 +21,7 @@ import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -209,6 +210,46 @@ public class IndexToolIT extends BaseTest {
         }
     }
 
+    @Test
+    public void testServerBuild() throws Exception {
+        // The server build doesn't depend on the MapReduce options and rejects transactional tables
+        assumeFalse(transactional || directApi || useSnapshot);
+        String schemaName = generateUniqueName();
+        String dataTableName = generateUniqueName();
+        String dataTableFullName = SchemaUtil.getTableName(schemaName, dataTableName);
+        String indexTableName = generateUniqueName();
+        String indexTableFullName = SchemaUtil.getTableName(schemaName, indexTableName);
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            conn.createStatement().execute("CREATE TABLE " + dataTableFullName
+                    + " (ID INTEGER NOT NULL PRIMARY KEY, NAME VARCHAR, ZIP INTEGER) " + tableDDLOptions);
+            PreparedStatement stmt = conn.prepareStatement(
+                String.format("UPSERT INTO %s VALUES(?, ?, ?)", dataTableFullName));
+            for (int i = 0; i < 10; i++) {
+                upsertRow(stmt, i);
+            }
+            conn.commit();
+            conn.createStatement().execute(String.format("CREATE %s INDEX %s ON %s (ZIP) INCLUDE (NAME) ASYNC",
+                (localIndex ? "LOCAL" : ""), indexTableName, dataTableFullName));
+
+            IndexTool indexingTool = new IndexTool();
+            indexingTool.setConf(new Configuration(getUtility().getConfiguration()));
+            int status = indexingTool.run(new String[] { "-s", schemaName, "-dt", dataTableName,
+                    "-it", indexTableName, "-sb" });
+            assertEquals(0, status);
+
+            String selectSql = String.format("SELECT NAME FROM %s WHERE ZIP > 95055 ORDER BY ZIP", dataTableFullName);
+            ResultSet rs = conn.createStatement().executeQuery("EXPLAIN " + selectSql);
+            assertExplainPlan(localIndex, QueryUtil.getExplainPlan(rs), dataTableFullName, indexTableFullName);
+            rs = conn.createStatement().executeQuery(selectSql);
+            for (int i = 6; i < 10; i++) {
+                assertTrue(rs.next());
+                assertEquals("uname" + i, rs.getString(1));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
     public static void assertExplainPlan(boolean localIndex, String actualExplainPlan,
             String dataTableFullName, String indexTableFullName) {
         String expectedExplainPlan;
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PhoenixRuntime;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Tests the resolution of multi-table FROM clauses with phoenix.metadata.prefetch.enabled.
+ */
+public class MetadataPrefetchIT extends BaseUniqueNamesOwnClusterIT {
+
+    @BeforeClass
+    public static void doSetup() throws Exception {
+        Map<String, String> props = Maps.newHashMapWithExpectedSize(1);
+        props.put(QueryServices.METADATA_PREFETCH_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        setUpTestDriver(new ReadOnlyProps(props.entrySet().iterator()));
+    }
+
+    private static void createTables(Connection conn, String t1, String t2, String t3) throws SQLException {
+        conn.createStatement().execute("CREATE TABLE " + t1 + " (K1 VARCHAR PRIMARY KEY, V1 VARCHAR)");
+        conn.createStatement().execute("CREATE TABLE " + t2 + " (K2 VARCHAR PRIMARY KEY, V2 VARCHAR)");
+        conn.createStatement().execute("CREATE TABLE " + t3 + " (K3 VARCHAR PRIMARY KEY, V3 INTEGER)");
+        for (int i = 0; i < 3; i++) {
+            conn.createStatement().execute("UPSERT INTO " + t1 + " VALUES ('k" + i + "', 'a" + i + "')");
+            conn.createStatement().execute("UPSERT INTO " + t2 + " VALUES ('a" + i + "', 'b" + i + "')");
+            conn.createStatement().execute("UPSERT INTO " + t3 + " VALUES ('b" + i + "', " + i + ")");
+        }
+        conn.commit();
+    }
+
+    @Test
+    public void testMultiTableJoin() throws Exception {
+        String t1 = generateUniqueName();
+        String t2 = generateUniqueName();
+        String t3 = generateUniqueName();
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            createTables(conn, t1, t2, t3);
+        }
+        // A new connection has no cached metadata, so every table is prefetched
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT " + t1 + ".K1, " + t3 + ".V3 FROM " + t1
+                    + " JOIN " + t2 + " ON " + t1 + ".V1 = " + t2 + ".K2 LEFT JOIN " + t3 + " ON " + t2 + ".V2 = "
+                    + t3 + ".K3 ORDER BY " + t1 + ".K1");
+            for (int i = 0; i < 3; i++) {
+                assertTrue(rs.next());
+                assertEquals("k" + i, rs.getString(1));
+                assertEquals(i, rs.getInt(2));
+            }
+            assertFalse(rs.next());
+
+            // The prefetched metadata must not hide a column added in between
+            try (Connection ddlConn = DriverManager.getConnection(getUrl(), props)) {
+                ddlConn.createStatement().execute("ALTER TABLE " + t2 + " ADD V4 VARCHAR");
+                ddlConn.createStatement().execute("UPSERT INTO " + t2 + " (K2, V4) VALUES ('a1', 'x')");
+                ddlConn.commit();
+            }
+            rs = conn.createStatement().executeQuery("SELECT " + t1 + ".K1 FROM " + t1 + " JOIN " + t2
+                    + " ON " + t1 + ".V1 = " + t2 + ".K2 JOIN " + t3 + " ON " + t2 + ".V2 = " + t3 + ".K3 WHERE "
+                    + t2 + ".V4 = 'x'");
+            assertTrue(rs.next());
+            assertEquals("k1", rs.getString(1));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testJoinOfViews() throws Exception {
+        String t1 = generateUniqueName();
+        String t2 = generateUniqueName();
+        String t3 = generateUniqueName();
+        String v1 = generateUniqueName();
+        String v2 = generateUniqueName();
+        String multiTenantTable = generateUniqueName();
+        String tenantView = generateUniqueName();
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            createTables(conn, t1, t2, t3);
+            conn.createStatement().execute("CREATE VIEW " + v1 + " AS SELECT * FROM " + t1 + " WHERE K1 >= 'k1'");
+            // a view of a view is resolved through two levels of parents
+            conn.createStatement().execute("CREATE VIEW " + v2 + " AS SELECT * FROM " + v1 + " WHERE K1 <= 'k1'");
+            conn.createStatement().execute("CREATE TABLE " + multiTenantTable + " (TENANT_ID VARCHAR NOT NULL, K VARCHAR NOT NULL, V VARCHAR CONSTRAINT PK PRIMARY KEY (TENANT_ID, K)) MULTI_TENANT=true");
+        }
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT " + v2 + ".K1, " + t3 + ".V3 FROM " + v2
+                    + " JOIN " + t2 + " ON " + v2 + ".V1 = " + t2 + ".K2 JOIN " + t3 + " ON " + t2 + ".V2 = "
+                    + t3 + ".K3");
+            assertTrue(rs.next());
+            assertEquals("k1", rs.getString(1));
+            assertEquals(1, rs.getInt(2));
+            assertFalse(rs.next());
+        }
+
+        // tenant-specific views are looked up with the tenant id, their base table without it
+        Properties tenantProps = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        tenantProps.setProperty(PhoenixRuntime.TENANT_ID_ATTRIB, "tenant1");
+        try (Connection conn = DriverManager.getConnection(getUrl(), tenantProps)) {
+            conn.createStatement().execute("CREATE VIEW " + tenantView + " AS SELECT * FROM " + multiTenantTable);
+            conn.createStatement().execute("UPSERT INTO " + tenantView + " VALUES ('a2', 'v')");
+            conn.commit();
+        }
+        try (Connection conn = DriverManager.getConnection(getUrl(), tenantProps)) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT " + tenantView + ".V, " + t1 + ".K1 FROM "
+                    + tenantView + " JOIN " + t1 + " ON " + tenantView + ".K = " + t1 + ".V1");
+            assertTrue(rs.next());
+            assertEquals("v", rs.getString(1));
+            assertEquals("k2", rs.getString(2));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testJoinWithMissingTable() throws Exception {
+        String t1 = generateUniqueName();
+        String t2 = generateUniqueName();
+        String t3 = generateUniqueName();
+        String missing = generateUniqueName();
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            createTables(conn, t1, t2, t3);
+        }
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            try {
+                conn.createStatement().executeQuery("SELECT * FROM " + t1 + " JOIN " + missing + " ON "
+                        + t1 + ".V1 = " + missing + ".K JOIN " + t2 + " ON " + t1 + ".V1 = " + t2 + ".K2");
+                fail();
+            } catch (SQLException e) {
+                assertEquals(SQLExceptionCode.TABLE_UNDEFINED.getErrorCode(), e.getErrorCode());
+            }
+            // the failed resolution leaves the connection usable
+            ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + t1 + " JOIN " + t2
+                    + " ON " + t1 + ".V1 = " + t2 + ".K2");
+            assertTrue(rs.next());
+            assertEquals(3, rs.getLong(1));
+        }
+    }
+}
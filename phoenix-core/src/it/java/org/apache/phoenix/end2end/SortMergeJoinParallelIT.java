@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.end2end;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SortMergeJoinParallelIT extends ParallelStatsDisabledIT {
+    private static final int LHS_ROWS = 2000;
+    private static final int RHS_ROWS = 500;
+
+    private String lhsTable;
+    private String rhsTable;
+
+    @Before
+    public void createTables() throws Exception {
+        lhsTable = "LHS_" + generateUniqueName();
+        rhsTable = "RHS_" + generateUniqueName();
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        try {
+            conn.createStatement().execute("CREATE TABLE " + lhsTable
+                    + " (id INTEGER NOT NULL PRIMARY KEY, k INTEGER, v VARCHAR)");
+            conn.createStatement().execute("CREATE TABLE " + rhsTable
+                    + " (id INTEGER NOT NULL PRIMARY KEY, k INTEGER, v VARCHAR) SALT_BUCKETS=4");
+            PreparedStatement upsertStmt = conn.prepareStatement(
+                    "UPSERT INTO " + lhsTable + " VALUES (?, ?, ?)");
+            for (int i = 0; i < LHS_ROWS; i++) {
+                upsertStmt.setInt(1, i);
+                // groups of duplicate keys, and some rows without a key
+                if (i % 50 == 0) {
+                    upsertStmt.setNull(2, Types.INTEGER);
+                } else {
+                    upsertStmt.setInt(2, i % 211);
+                }
+                upsertStmt.setString(3, "l" + i);
+                upsertStmt.execute();
+            }
+            conn.commit();
+            upsertStmt = conn.prepareStatement(
+                    "UPSERT INTO " + rhsTable + " VALUES (?, ?, ?)");
+            for (int i = 0; i < RHS_ROWS; i++) {
+                upsertStmt.setInt(1, i);
+                // only part of the keys of the left hand side match, and some keys only exist here
+                upsertStmt.setInt(2, 100 + i % 173);
+                upsertStmt.setString(3, "r" + i);
+                upsertStmt.execute();
+            }
+            conn.commit();
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static List<List<Object>> query(String query, int parallelism, long maxBytes) throws SQLException {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.SORT_MERGE_JOIN_PARALLELISM_ATTRIB, Integer.toString(parallelism));
+        props.setProperty(QueryServices.SORT_MERGE_JOIN_PARALLEL_MAX_BYTES_ATTRIB, Long.toString(maxBytes));
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        try {
+            List<List<Object>> rows = Lists.newArrayList();
+            ResultSet rs = conn.createStatement().executeQuery(query);
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                List<Object> row = Lists.newArrayListWithExpectedSize(columnCount);
+                for (int i = 1; i <= columnCount; i++) {
+                    row.add(rs.getObject(i));
+                }
+                rows.add(row);
+            }
+            return rows;
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static void assertSameAsSerialJoin(String query) throws SQLException {
+        List<List<Object>> expected = query(query, 1, Long.MAX_VALUE);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, query(query, 4, Long.MAX_VALUE));
+        assertEquals(expected, query(query, 2, Long.MAX_VALUE));
+        // The rows do not fit, so the rows already read are joined serially with the rest
+        assertEquals(expected, query(query, 4, 1000));
+        assertEquals(expected, query(query, 4, 0));
+    }
+
+    @Test
+    public void testInnerJoin() throws Exception {
+        assertSameAsSerialJoin("SELECT /*+ USE_SORT_MERGE_JOIN*/ l.id, l.k, l.v, r.id, r.v FROM "
+                + lhsTable + " l JOIN " + rhsTable + " r ON l.k = r.k");
+    }
+
+    @Test
+    public void testLeftJoin() throws Exception {
+        assertSameAsSerialJoin("SELECT /*+ USE_SORT_MERGE_JOIN*/ l.id, l.k, l.v, r.id, r.v FROM "
+                + lhsTable + " l LEFT JOIN " + rhsTable + " r ON l.k = r.k");
+    }
+
+    @Test
+    public void testSemiJoin() throws Exception {
+        assertSameAsSerialJoin("SELECT /*+ USE_SORT_MERGE_JOIN*/ l.id, l.k, l.v FROM "
+                + lhsTable + " l WHERE l.k IN (SELECT k FROM " + rhsTable + ")");
+    }
+
+    @Test
+    public void testJoinWithLimit() throws Exception {
+        // The join is closed before all ranges have been joined
+        String query = "SELECT /*+ USE_SORT_MERGE_JOIN*/ l.id, r.id FROM "
+                + lhsTable + " l JOIN " + rhsTable + " r ON l.k = r.k LIMIT 10";
+        assertEquals(10, query(query, 4, Long.MAX_VALUE).size());
+        assertEquals(10, query(query, 4, 1000).size());
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
+import org.apache.hadoop.hbase.regionserver.Region;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.coprocessor.BaseRegionScanner;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.util.SizedUtil;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+/**
+ *
+ * Memory bounded cache of the rows returned by the aggregating region observers, keyed by
+ * the region and everything in the scan that determines the aggregation (ranges, filter,
+ * group by expressions, aggregators, etc). A cached result is only used while the data of
+ * the region is unchanged since it was computed, as determined by the MVCC read point of
+ * the region scanner together with the set of store files of the region. Thus only the
+ * regions that actually changed are re-aggregated when a query is repeated.
+ *
+ * Caching is only attempted for scans which have the
+ * {@link BaseScannerRegionObserver#AGGREGATE_RESULT_CACHE} attribute set by the client,
+ * which are not transactional, and on tables without a TTL (as rows may expire without
+ * the region being written to).
+ *
+ *
+ * @since 4.13.0
+ */
+public class AggregateResultCache {
+    private final Cache<ImmutableBytesPtr, CachedResult> cache;
+    private final long maxEntrySize;
+
+    AggregateResultCache(Configuration config) {
+        long maxTTL = config.getLong(QueryServices.MAX_AGGREGATE_RESULT_CACHE_TIME_TO_LIVE_MS_ATTRIB,
+                QueryServicesOptions.DEFAULT_MAX_AGGREGATE_RESULT_CACHE_TIME_TO_LIVE_MS);
+        long maxSize = config.getLong(QueryServices.MAX_AGGREGATE_RESULT_CACHE_SIZE_ATTRIB,
+                QueryServicesOptions.DEFAULT_MAX_AGGREGATE_RESULT_CACHE_SIZE);
+        this.maxEntrySize = config.getLong(QueryServices.MAX_AGGREGATE_RESULT_CACHE_ENTRY_SIZE_ATTRIB,
+                QueryServicesOptions.DEFAULT_MAX_AGGREGATE_RESULT_CACHE_ENTRY_SIZE);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSize)
+                .expireAfterWrite(maxTTL, TimeUnit.MILLISECONDS)
+                .weigher(new Weigher<ImmutableBytesPtr, CachedResult>() {
+                    @Override
+                    public int weigh(ImmutableBytesPtr key, CachedResult result) {
+                        return (int)Math.min(Integer.MAX_VALUE, SizedUtil.IMMUTABLE_BYTES_PTR_SIZE + key.getLength() + result.size);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Look up the cached result of an aggregate scan.
+     * @param env the coprocessor environment of the region being scanned
+     * @param scan the aggregate scan
+     * @param s the region scanner opened for the scan
+     * @return a lookup through which the cached result, if any, may be obtained and the
+     * result of the aggregation may be cached, or null if the result of the scan may not be cached.
+     * @throws IOException
+     */
+    public static Lookup lookup(RegionCoprocessorEnvironment env, Scan scan, RegionScanner s) throws IOException {
+        if (scan.getAttribute(BaseScannerRegionObserver.AGGREGATE_RESULT_CACHE) == null
+                || scan.getAttribute(BaseScannerRegionObserver.TX_STATE) != null) {
+            return null;
+        }
+        Region region = env.getRegion();
+        for (HColumnDescriptor family : region.getTableDesc().getColumnFamilies()) {
+            if (family.getTimeToLive() != HConstants.FOREVER) {
+                return null;
+            }
+        }
+        return GlobalCache.getInstance(env).getAggregateResultCache().newLookup(region, scan, s);
+    }
+
+    @VisibleForTesting
+    Lookup newLookup(Region region, Scan scan, RegionScanner s) throws IOException {
+        return new Lookup(getCacheKey(region, scan), getDataVersion(region, s));
+    }
+
+    @VisibleForTesting
+    long getEntryCount() {
+        cache.cleanUp();
+        return cache.size();
+    }
+
+    private static ImmutableBytesPtr getCacheKey(Region region, Scan scan) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        update(digest, region.getRegionInfo().getRegionName());
+        update(digest, scan.getStartRow());
+        update(digest, scan.getStopRow());
+        update(digest, Bytes.toBytes(scan.getTimeRange().getMin()));
+        update(digest, Bytes.toBytes(scan.getTimeRange().getMax()));
+        update(digest, Bytes.toBytes(scan.getMaxVersions()));
+        update(digest, Bytes.toBytes(scan.isReversed()));
+        if (scan.getFilter() != null) {
+            update(digest, Bytes.toBytes(scan.getFilter().getClass().getName()));
+            update(digest, scan.getFilter().toByteArray());
+        }
+        for (Map.Entry<byte[], NavigableSet<byte[]>> entry : scan.getFamilyMap().entrySet()) {
+            update(digest, entry.getKey());
+            if (entry.getValue() != null) {
+                for (byte[] qualifier : entry.getValue()) {
+                    update(digest, qualifier);
+                }
+            }
+        }
+        // Attributes are hashed in name order, leaving out the one that depends only on the
+        // location of the region
+        for (Map.Entry<String, byte[]> entry : new TreeMap<String, byte[]>(scan.getAttributesMap()).entrySet()) {
+            if (BaseScannerRegionObserver.SCAN_REGION_SERVER.equals(entry.getKey())) {
+                continue;
+            }
+            update(digest, Bytes.toBytes(entry.getKey()));
+            update(digest, entry.getValue());
+        }
+        return new ImmutableBytesPtr(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, byte[] bytes) {
+        digest.update(Bytes.toBytes(bytes == null ? -1 : bytes.length));
+        if (bytes != null) {
+            digest.update(bytes);
+        }
+    }
+
+    /**
+     * Any write to the region advances its MVCC read point, while bulk loads, flushes and
+     * compactions change its store files. Changes that do not alter the data (like
+     * compactions) merely cause a cached result to not be used.
+     */
+    private static long[] getDataVersion(Region region, RegionScanner s) {
+        long maxSequenceId = 0;
+        long storeFileCount = 0;
+        long storeFileSize = 0;
+        for (Store store : region.getStores()) {
+            maxSequenceId = Math.max(maxSequenceId, store.getMaxSequenceId());
+            storeFileCount += store.getStorefilesCount();
+            storeFileSize += store.getStorefilesSize();
+        }
+        return new long[] {s.getMvccReadPoint(), maxSequenceId, storeFileCount, storeFileSize};
+    }
+
+    private static final class CachedResult {
+        private final long[] dataVersion;
+        private final List<Cell> cells;
+        private final long size;
+
+        private CachedResult(long[] dataVersion, List<Cell> cells, long size) {
+            this.dataVersion = dataVersion;
+            this.cells = cells;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The cache entry for one aggregate scan over one region.
+     */
+    public class Lookup {
+        private final ImmutableBytesPtr key;
+        private final long[] dataVersion;
+
+        private Lookup(ImmutableBytesPtr key, long[] dataVersion) {
+            this.key = key;
+            this.dataVersion = dataVersion;
+        }
+
+        /**
+         * @param s the region scanner opened for the scan
+         * @return a scanner returning the cached result of the scan, or null if no result was
+         * cached or if the data of the region has changed since it was.
+         */
+        public RegionScanner getCachedResultScanner(RegionScanner s) {
+            CachedResult result = cache.getIfPresent(key);
+            if (result == null) {
+                return null;
+            }
+            if (!Arrays.equals(dataVersion, result.dataVersion)) {
+                cache.invalidate(key);
+                return null;
+            }
+            final List<Cell> cells = result.cells;
+            return new BaseRegionScanner(s) {
+                private int index = 0;
+
+                @Override
+                public boolean next(List<Cell> results) throws IOException {
+                    if (index >= cells.size()) {
+                        return false;
+                    }
+                    results.add(cells.get(index));
+                    index++;
+                    return index < cells.size();
+                }
+            };
+        }
+
+        /**
+         * @param aggregateScanner the scanner returning the result of the aggregation
+         * @return a scanner returning the same rows, which caches them once they have all
+         * been returned, provided they are not larger than the maximum entry size.
+         */
+        public RegionScanner newCachingScanner(RegionScanner aggregateScanner) {
+            return new BaseRegionScanner(aggregateScanner) {
+                private List<Cell> cells = new ArrayList<Cell>();
+                private long size = 0;
+
+                @Override
+                public boolean next(List<Cell> results) throws IOException {
+                    int firstIndex = results.size();
+                    boolean hasMore = delegate.nextRaw(results);
+                    if (cells != null) {
+                        for (int i = firstIndex; i < results.size(); i++) {
+                            Cell cell = results.get(i);
+                            cells.add(cell);
+                            size += CellUtil.estimatedHeapSizeOfWithoutTags(cell) + SizedUtil.POINTER_SIZE;
+                        }
+                        if (size > maxEntrySize) {
+                            cells = null;
+                        } else if (!hasMore) {
+                            cache.put(key, new CachedResult(dataVersion, cells, size));
+                            cells = null;
+                        }
+                    }
+                    return hasMore;
+                }
+            };
+        }
+    }
+}
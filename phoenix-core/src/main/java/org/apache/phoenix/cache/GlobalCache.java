@@ -62,6 +62,8 @@ public class GlobalCache extends TenantCacheImpl {
     private final ConcurrentMap<ImmutableBytesWritable,TenantCache> perTenantCacheMap = new ConcurrentHashMap<ImmutableBytesWritable,TenantCache>();
     // Cache for lastest PTable for a given Phoenix table
     private volatile Cache<ImmutableBytesPtr,PMetaDataEntity> metaDataCache;
+    // Cache for the per-region results of aggregate scans
+    private volatile AggregateResultCache aggregateResultCache;
     
     public long clearTenantCache() {
         long unfreedBytes = getMemoryManager().getMaxMemory() - getMemoryManager().getAvailableMemory();
@@ -115,6 +117,19 @@ public class GlobalCache extends TenantCacheImpl {
         return result;
     }
 
+    public AggregateResultCache getAggregateResultCache() {
+        AggregateResultCache result = aggregateResultCache;
+        if (result == null) {
+            synchronized(this) {
+                result = aggregateResultCache;
+                if(result == null) {
+                    aggregateResultCache = result = new AggregateResultCache(config);
+                }
+            }
+        }
+        return result;
+    }
+
     public static GlobalCache getInstance(RegionCoprocessorEnvironment env) {
         GlobalCache result = INSTANCE;
         if (result == null) {
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
+import org.apache.phoenix.compile.StatementContext;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.ServerCachedInListExpression;
+import org.apache.phoenix.expression.visitor.CloneExpressionVisitor;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.SQLCloseables;
+import org.apache.phoenix.util.ServerUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+import org.iq80.snappy.Snappy;
+
+import com.google.common.collect.Maps;
+
+/**
+ * 
+ * Client for sending the values of large IN lists of a scan filter once to each region
+ * server, instead of serializing them into the filter of every scan.
+ * 
+ * 
+ * @since 4.13.0
+ */
+public class InListCacheClient {
+    private final ServerCacheClient serverCache;
+
+    public InListCacheClient(PhoenixConnection connection) {
+        serverCache = new ServerCacheClient(connection);
+    }
+
+    /**
+     * Send the values of each IN list of the scan filter with at least minSize values to all
+     * region servers for regions of the table that intersect with the scan ranges, and replace
+     * the list in the filter by a {@link ServerCachedInListExpression} referencing the cache.
+     * Lists already replaced by a previous execution of the scan are sent again.
+     * @return the added caches by id, which must be closed once the scan is complete
+     * @throws SQLException
+     */
+    public Map<ImmutableBytesPtr,ServerCache> addInListCaches(StatementContext context, Scan scan, int minSize) throws SQLException {
+        List<BooleanExpressionFilter> filters = getBooleanExpressionFilters(scan.getFilter());
+        if (filters.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        InListCachingVisitor visitor = new InListCachingVisitor(context, minSize);
+        for (BooleanExpressionFilter filter : filters) {
+            Expression expression = filter.getExpression().accept(visitor);
+            if (visitor.exception != null) {
+                SQLCloseables.closeAllQuietly(visitor.caches.values());
+                throw visitor.exception;
+            }
+            if (expression != filter.getExpression()) {
+                filter.setExpression(expression);
+            }
+        }
+        if (!visitor.caches.isEmpty()) {
+            scan.setAttribute(BaseScannerRegionObserver.SERVER_CACHED_IN_LISTS, PDataType.TRUE_BYTES);
+        }
+        return visitor.caches;
+    }
+
+    private static List<BooleanExpressionFilter> getBooleanExpressionFilters(Filter filter) {
+        if (filter instanceof BooleanExpressionFilter) {
+            return Collections.singletonList((BooleanExpressionFilter)filter);
+        }
+        if (!(filter instanceof FilterList)) {
+            return Collections.emptyList();
+        }
+        List<BooleanExpressionFilter> filters = null;
+        for (Filter child : ((FilterList)filter).getFilters()) {
+            List<BooleanExpressionFilter> childFilters = getBooleanExpressionFilters(child);
+            if (!childFilters.isEmpty()) {
+                if (filters == null) {
+                    filters = new ArrayList<BooleanExpressionFilter>(childFilters);
+                } else {
+                    filters.addAll(childFilters);
+                }
+            }
+        }
+        return filters == null ? Collections.<BooleanExpressionFilter>emptyList() : filters;
+    }
+
+    private ServerCache addInListCache(StatementContext context, InListExpression inList) throws SQLException {
+        long maxSize = serverCache.getConnection().getQueryServices().getProps().getLong(QueryServices.MAX_SERVER_CACHE_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_SIZE);
+        Set<ImmutableBytesPtr> values = inList.getValues();
+        if (getEstimatedSize(values) > maxSize) {
+            // Leave the list in the filter rather than failing the query
+            return null;
+        }
+        ImmutableBytesWritable ptr = serialize(values);
+        return serverCache.addServerCache(context.getScanRanges(), ptr, ByteUtil.EMPTY_BYTE_ARRAY, new InListCacheFactory(), context.getCurrentTable(), true);
+    }
+
+    private static long getEstimatedSize(Set<ImmutableBytesPtr> values) {
+        long valuesLength = 0;
+        for (ImmutableBytesPtr value : values) {
+            valuesLength += value.getLength();
+        }
+        return valuesLength + (long)(values.size() + 2) * WritableUtils.getVIntSize(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Serialize and compress the values, which are expected in ascending byte order
+     */
+    static ImmutableBytesWritable serialize(Set<ImmutableBytesPtr> values) throws SQLException {
+        int valuesLength = 0;
+        for (ImmutableBytesPtr value : values) {
+            valuesLength += value.getLength();
+        }
+        try {
+            TrustedByteArrayOutputStream baOut = new TrustedByteArrayOutputStream((int)getEstimatedSize(values));
+            DataOutputStream out = new DataOutputStream(baOut);
+            try {
+                WritableUtils.writeVInt(out, values.size());
+                WritableUtils.writeVInt(out, valuesLength);
+                for (ImmutableBytesPtr value : values) {
+                    WritableUtils.writeVInt(out, value.getLength());
+                    out.write(value.get(), value.getOffset(), value.getLength());
+                }
+                out.flush();
+                byte[] compressed = new byte[Snappy.maxCompressedLength(baOut.size())]; // size for worst case
+                int compressedSize = Snappy.compress(baOut.getBuffer(), 0, baOut.size(), compressed, 0);
+                return new ImmutableBytesWritable(compressed, 0, compressedSize);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+    }
+
+    /**
+     * Copies the expression tree, replacing the large IN lists by references to the caches
+     * of their values. The first exception raised while adding a cache stops the caching.
+     */
+    private class InListCachingVisitor extends CloneExpressionVisitor {
+        private final StatementContext context;
+        private final int minSize;
+        private final Map<ImmutableBytesPtr,ServerCache> caches = Maps.newHashMap();
+        private SQLException exception;
+
+        private InListCachingVisitor(StatementContext context, int minSize) {
+            this.context = context;
+            this.minSize = minSize;
+        }
+
+        @Override
+        public boolean isCloneNode(Expression node, List<Expression> children) {
+            List<Expression> originalChildren = node.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != originalChildren.get(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Expression visitLeave(InListExpression node, List<Expression> l) {
+            Expression expression = super.visitLeave(node, l);
+            if (expression instanceof InListExpression && ((InListExpression)expression).getValues().size() >= minSize) {
+                return cacheInList((InListExpression)expression);
+            }
+            return expression;
+        }
+
+        @Override
+        public Expression defaultReturn(Expression node, List<Expression> l) {
+            if (node instanceof ServerCachedInListExpression) {
+                return cacheInList(((ServerCachedInListExpression)node).getInList());
+            }
+            return super.defaultReturn(node, l);
+        }
+
+        private Expression cacheInList(InListExpression inList) {
+            if (exception != null) {
+                return inList;
+            }
+            try {
+                ServerCache cache = addInListCache(context, inList);
+                if (cache == null) {
+                    return inList;
+                }
+                caches.put(new ImmutableBytesPtr(cache.getId()), cache);
+                return new ServerCachedInListExpression(inList, cache.getId());
+            } catch (SQLException e) {
+                exception = e;
+                return inList;
+            }
+        }
+    }
+}
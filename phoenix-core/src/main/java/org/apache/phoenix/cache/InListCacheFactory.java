@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.SQLException;
+
+import net.jcip.annotations.Immutable;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.coprocessor.ServerCachingProtocol.ServerCacheFactory;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.util.ServerUtil;
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+/**
+ * 
+ * Factory for the {@link InListCache} sent by {@link InListCacheClient}. The values are
+ * kept in a single byte array in ascending byte order, so that probing is a binary
+ * search over the array instead of a lookup in a set of individually allocated keys.
+ * 
+ * @since 4.13.0
+ */
+public class InListCacheFactory implements ServerCacheFactory {
+
+    public InListCacheFactory() {
+    }
+
+    @Override
+    public void readFields(DataInput input) throws IOException {
+    }
+
+    @Override
+    public void write(DataOutput output) throws IOException {
+    }
+
+    @Override
+    public Closeable newCache(ImmutableBytesWritable cachePtr, byte[] txState, MemoryChunk chunk, boolean useProtoForIndexMaintainer) throws SQLException {
+        try {
+            // This reads the uncompressed length from the front of the compressed input
+            int uncompressedLen = Snappy.getUncompressedLength(cachePtr.get(), cachePtr.getOffset());
+            byte[] uncompressed = new byte[uncompressedLen];
+            Snappy.uncompress(cachePtr.get(), cachePtr.getOffset(), cachePtr.getLength(),
+                uncompressed, 0);
+            return new InListCacheImpl(uncompressed, chunk);
+        } catch (CorruptionException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+    }
+
+    @Immutable
+    private static class InListCacheImpl implements InListCache {
+        private final byte[] values;
+        // Offset of each value in values, followed by the length of values
+        private final int[] offsets;
+        private final MemoryChunk memoryChunk;
+
+        private InListCacheImpl(byte[] inListBytes, MemoryChunk memoryChunk) {
+            try {
+                this.memoryChunk = memoryChunk;
+                DataInputStream input = new DataInputStream(new ByteArrayInputStream(inListBytes));
+                int nValues = WritableUtils.readVInt(input);
+                int valuesLength = WritableUtils.readVInt(input);
+                this.values = new byte[valuesLength];
+                this.offsets = new int[nValues + 1];
+                int offset = 0;
+                for (int i = 0; i < nValues; i++) {
+                    int length = WritableUtils.readVInt(input);
+                    input.readFully(values, offset, length);
+                    offsets[i] = offset;
+                    offset += length;
+                }
+                offsets[nValues] = offset;
+                this.memoryChunk.resize(values.length + (long)offsets.length * Bytes.SIZEOF_INT);
+            } catch (IOException e) { // Not possible with ByteArrayInputStream
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public boolean contains(ImmutableBytesWritable value) {
+            int low = 0;
+            int high = offsets.length - 2;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = Bytes.compareTo(values, offsets[mid], offsets[mid + 1] - offsets[mid],
+                        value.get(), value.getOffset(), value.getLength());
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void close() {
+            memoryChunk.close();
+        }
+    }
+}
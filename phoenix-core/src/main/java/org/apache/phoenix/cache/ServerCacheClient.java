@@ -62,7 +62,6 @@ import org.apache.phoenix.coprocessor.generated.ServerCachingProtos.RemoveServer
 import org.apache.phoenix.coprocessor.generated.ServerCachingProtos.ServerCachingService;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.job.JobManager.JobCallable;
-import org.apache.phoenix.join.HashCacheFactory;
 import org.apache.phoenix.memory.InsufficientMemoryException;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
 import org.apache.phoenix.monitoring.TaskExecutionMetricsHolder;
@@ -123,6 +122,7 @@ public class ServerCacheClient {
         private final int size;
         private final byte[] id;
         private final Map<HRegionLocation, Long> servers;
+        private final ServerCacheFactory cacheFactory;
         private ImmutableBytesWritable cachePtr;
         private MemoryChunk chunk;
         private File outputFile;
@@ -130,11 +130,12 @@ public class ServerCacheClient {
         
         
         public ServerCache(byte[] id, Set<HRegionLocation> servers, ImmutableBytesWritable cachePtr,
-                ConnectionQueryServices services, boolean storeCacheOnClient) throws IOException {
+                ServerCacheFactory cacheFactory, ConnectionQueryServices services, boolean storeCacheOnClient) throws IOException {
             maxServerCacheTTL = services.getProps().getInt(
                     QueryServices.MAX_SERVER_CACHE_TIME_TO_LIVE_MS_ATTRIB,
                     QueryServicesOptions.DEFAULT_MAX_SERVER_CACHE_TIME_TO_LIVE_MS);
             this.id = id;
+            this.cacheFactory = cacheFactory;
             this.servers = new HashMap();
             long currentTime = System.currentTimeMillis();
             for(HRegionLocation loc : servers) {
@@ -181,6 +182,13 @@ public class ServerCacheClient {
             return id;
         }
 
+        /**
+         * Gets the factory used by the region servers to create the cache
+         */
+        public ServerCacheFactory getCacheFactory() {
+            return cacheFactory;
+        }
+
         public boolean addServer(HRegionLocation loc) {
             if(this.servers.containsKey(loc)) {
                 return false;
@@ -291,7 +299,7 @@ public class ServerCacheClient {
                 }
             }
             
-            hashCacheSpec = new ServerCache(cacheId,servers,cachePtr, services, storeCacheOnClient);
+            hashCacheSpec = new ServerCache(cacheId,servers,cachePtr, cacheFactory, services, storeCacheOnClient);
             // Execute in parallel
             int timeoutMs = services.getProps().getInt(QueryServices.THREAD_TIMEOUT_MS_ATTRIB, QueryServicesOptions.DEFAULT_THREAD_TIMEOUT_MS);
             for (Future<Boolean> future : futures) {
@@ -435,7 +443,7 @@ public class ServerCacheClient {
         return regionStartKey;
     }
 
-    public boolean addServerCache(byte[] startkeyOfRegion, ServerCache cache, HashCacheFactory cacheFactory,
+    public boolean addServerCache(byte[] startkeyOfRegion, ServerCache cache, ServerCacheFactory cacheFactory,
              byte[] txState, PTable pTable) throws Exception {
         HTableInterface table = null;
         boolean success = true;
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.phoenix.compile.GroupByCompiler.GroupBy;
+import org.apache.phoenix.expression.function.CountAggregateFunction;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.parse.AliasedNode;
+import org.apache.phoenix.parse.DistinctCountParseNode;
+import org.apache.phoenix.parse.HintNode;
+import org.apache.phoenix.parse.JoinTableNode.JoinType;
+import org.apache.phoenix.parse.OrderByNode;
+import org.apache.phoenix.parse.ParseNode;
+import org.apache.phoenix.parse.ParseNodeFactory;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.TableName;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+import org.apache.phoenix.schema.ColumnRef;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.TableRef;
+
+import com.google.common.collect.Lists;
+
+/**
+ * 
+ * Rewrites an aggregate query whose only aggregate is the COUNT(DISTINCT) of one expression
+ * into a count over a derived table grouping by that expression:
+ * <pre>
+ * SELECT g, COUNT(DISTINCT x) FROM t WHERE ... GROUP BY g
+ * =>
+ * SELECT "$2" g, COUNT("$3") FROM (SELECT g "$2", x "$3" FROM t WHERE ... GROUP BY g, x) "$1" GROUP BY "$2"
+ * </pre>
+ * The distinct values are then found by the group by of the derived table, which spills to
+ * disk on the region servers and is merged on the client as sorted runs, and are counted as
+ * they stream by, instead of being collected in memory by each region and by the client.
+ * The columns of the rewritten query are labeled as the columns of the original query.
+ * 
+ * @since 4.13.0
+ */
+public class DistinctCountRewriter {
+    private static final ParseNodeFactory NODE_FACTORY = new ParseNodeFactory();
+
+    public static SelectStatement transform(SelectStatement select, ColumnResolver resolver,
+            PhoenixStatement statement) throws SQLException {
+        if (!statement.getConnection().getQueryServices().getProps().getBoolean(QueryServices.DISTINCT_COUNT_REWRITE_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_DISTINCT_COUNT_REWRITE_ENABLED)) {
+            return select;
+        }
+        if (!select.isAggregate() || select.isDistinct() || select.isUnion() || select.hasSequence()
+                || select.getHaving() != null || !select.getOrderBy().isEmpty()) {
+            return select;
+        }
+
+        String tableAlias = ParseNodeFactory.createTempAlias();
+        TableName tableName = NODE_FACTORY.table(null, tableAlias);
+        List<ParseNode> groupBy = select.getGroupBy();
+        List<AliasedNode> innerSelect = Lists.newArrayListWithExpectedSize(groupBy.size() + 1);
+        List<ParseNode> outerGroupBy = Lists.newArrayListWithExpectedSize(groupBy.size());
+        for (ParseNode node : groupBy) {
+            String alias = ParseNodeFactory.createTempAlias();
+            innerSelect.add(NODE_FACTORY.aliasedNode(alias, node));
+            outerGroupBy.add(NODE_FACTORY.column(tableName, alias, null));
+        }
+
+        String distinctAlias = ParseNodeFactory.createTempAlias();
+        ParseNode distinctNode = null;
+        List<ParseNode> outerNodes = Lists.newArrayListWithExpectedSize(select.getSelect().size());
+        for (AliasedNode aliasedNode : select.getSelect()) {
+            ParseNode node = aliasedNode.getNode();
+            ParseNode outerNode;
+            if (node instanceof DistinctCountParseNode && node.getChildren().size() == 1) {
+                if (distinctNode == null) {
+                    distinctNode = node.getChildren().get(0);
+                } else if (!distinctNode.equals(node.getChildren().get(0))) {
+                    return select;
+                }
+                outerNode = NODE_FACTORY.function(CountAggregateFunction.NAME,
+                        Collections.<ParseNode>singletonList(NODE_FACTORY.column(tableName, distinctAlias, null)));
+            } else {
+                int index = groupBy.indexOf(node);
+                if (index < 0) {
+                    return select;
+                }
+                outerNode = outerGroupBy.get(index);
+            }
+            outerNodes.add(outerNode);
+        }
+        if (distinctNode == null) {
+            return select;
+        }
+        // The columns of the original query are labeled after their compiled expressions, so only
+        // its projection is compiled
+        RowProjector projector = compileProjection(statement, select, resolver);
+        List<AliasedNode> outerSelect = Lists.newArrayListWithExpectedSize(outerNodes.size());
+        for (int i = 0; i < outerNodes.size(); i++) {
+            ColumnProjector column = projector.getColumnProjector(i);
+            outerSelect.add(NODE_FACTORY.aliasedNode(column.getName(), column.isCaseSensitive(), outerNodes.get(i)));
+        }
+        innerSelect.add(NODE_FACTORY.aliasedNode(distinctAlias, distinctNode));
+        List<ParseNode> innerGroupBy = Lists.newArrayList(groupBy);
+        innerGroupBy.add(distinctNode);
+
+        SelectStatement derivedTable = NODE_FACTORY.select(select.getFrom(), select.getHint(), false, innerSelect,
+                select.getWhere(), innerGroupBy, null, Collections.<OrderByNode>emptyList(), null, null,
+                select.getBindCount(), true, false, Collections.<SelectStatement>emptyList(), select.getUdfParseNodes());
+        return NODE_FACTORY.select(NODE_FACTORY.derivedTable(tableAlias, derivedTable), HintNode.EMPTY_HINT_NODE, false,
+                outerSelect, null, outerGroupBy, null, Collections.<OrderByNode>emptyList(), select.getLimit(),
+                select.getOffset(), select.getBindCount(), true, false, Collections.<SelectStatement>emptyList(),
+                select.getUdfParseNodes());
+    }
+
+    /**
+     * Compiles the projection of the query without compiling a plan for it. The columns of a join
+     * are resolved against the tables of the join projected into one, as they are when the join
+     * is compiled, so that they are labeled after the table aliases.
+     */
+    private static RowProjector compileProjection(PhoenixStatement statement, SelectStatement select,
+            ColumnResolver resolver) throws SQLException {
+        if (select.isJoin()) {
+            PTable projectedTable = null;
+            for (TableRef tableRef : resolver.getTables()) {
+                PTable table = tableRef.getTable();
+                List<ColumnRef> columns = Lists.newArrayListWithExpectedSize(table.getColumns().size());
+                for (int i = table.getBucketNum() == null ? 0 : 1; i < table.getColumns().size(); i++) {
+                    columns.add(new ColumnRef(tableRef, i));
+                }
+                PTable projected = TupleProjectionCompiler.createProjectedTable(tableRef, columns, false);
+                projectedTable = projectedTable == null ? projected
+                        : JoinCompiler.joinProjectedTables(projectedTable, projected, JoinType.Inner);
+            }
+            resolver = FromCompiler.getResolverForProjectedTable(projectedTable, statement.getConnection(),
+                    select.getUdfParseNodes());
+        }
+        StatementContext context = new StatementContext(statement, resolver);
+        GroupBy groupBy = GroupByCompiler.compile(context, select, true);
+        return ProjectionCompiler.compile(context, select, groupBy);
+    }
+}
@@ -57,6 +57,7 @@ import org.apache.phoenix.expression.LongAddExpression;
 import org.apache.phoenix.expression.LongDivideExpression;
 import org.apache.phoenix.expression.LongMultiplyExpression;
 import org.apache.phoenix.expression.LongSubtractExpression;
+import org.apache.phoenix.expression.MemoizedExpression;
 import org.apache.phoenix.expression.ModulusExpression;
 import org.apache.phoenix.expression.NotExpression;
 import org.apache.phoenix.expression.OrExpression;
@@ -308,6 +309,18 @@ public class ExpressionCompiler extends UnsupportedAllParseNodeVisitor<Expressio
         return expression;
     }
 
+    /**
+     * Wraps the function call if it is repeated in several clauses of the query, so that
+     * it is only evaluated once per row.
+     */
+    private Expression wrapSharedExpression(FunctionParseNode node, Expression expression) {
+        Integer slot = context.getSharedExpressionSlot(node);
+        if (slot == null || expression.getDeterminism() != Determinism.ALWAYS || expression.isStateless()) {
+            return expression;
+        }
+        return new MemoizedExpression(expression, context.getSharedExpressionScopeId(), slot);
+    }
+
     /**
      * Add expression to the expression manager, returning the same one if
      * already used.
@@ -352,6 +365,7 @@ public class ExpressionCompiler extends UnsupportedAllParseNodeVisitor<Expressio
             return ExpressionUtil.getConstantExpression(expression, ptr);
         }
         expression = addExpression(expression);
+        expression = wrapSharedExpression(node, expression);
         expression = wrapGroupByExpression(expression);
         if (aggregateFunction == node) {
             aggregateFunction = null; // Turn back off on the way out
@@ -59,6 +59,8 @@ import org.apache.phoenix.parse.UseSchemaStatement;
 import org.apache.phoenix.parse.WildcardParseNode;
 import org.apache.phoenix.query.ConnectionQueryServices;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.AmbiguousColumnException;
 import org.apache.phoenix.schema.AmbiguousTableException;
 import org.apache.phoenix.schema.ColumnFamilyNotFoundException;
@@ -229,6 +231,7 @@ public class FromCompiler {
             return new SingleTableColumnResolver(connection, (NamedTableNode) fromNode, true, 1, statement.getUdfParseNodes(), alwaysHitServer, mutatingTableName);
 
         MultiTableColumnResolver visitor = new MultiTableColumnResolver(connection, 1, statement.getUdfParseNodes(), mutatingTableName);
+        visitor.prefetchTables(fromNode);
         fromNode.accept(visitor);
         return visitor;
     }
@@ -761,6 +764,51 @@ public class FromCompiler {
             return tables;
         }
 
+        /**
+         * Resolves the named tables of the FROM clause (and the parents of views among them)
+         * with concurrent metadata RPCs before they are visited one by one.
+         */
+        private void prefetchTables(TableNode fromNode) throws SQLException {
+            if (!connection.getQueryServices().getProps().getBoolean(QueryServices.METADATA_PREFETCH_ENABLED_ATTRIB,
+                    QueryServicesOptions.DEFAULT_METADATA_PREFETCH_ENABLED)) {
+                return;
+            }
+            final List<TableName> tableNames = Lists.newArrayList();
+            fromNode.accept(new TableNodeVisitor<Void>() {
+                @Override
+                public Void visit(BindTableNode boundTableNode) throws SQLException {
+                    return null;
+                }
+
+                @Override
+                public Void visit(JoinTableNode joinNode) throws SQLException {
+                    joinNode.getLHS().accept(this);
+                    joinNode.getRHS().accept(this);
+                    return null;
+                }
+
+                @Override
+                public Void visit(NamedTableNode tableNode) throws SQLException {
+                    // The mutating table is always resolved against the server, so leave it to createTableRef
+                    if (tableNode.getName().equals(mutatingTableName)) {
+                        return null;
+                    }
+                    String schemaName = tableNode.getName().getSchemaName();
+                    schemaName = connection.getSchema() != null && schemaName == null ? connection.getSchema() : schemaName;
+                    tableNames.add(TableName.create(schemaName, tableNode.getName().getTableName()));
+                    return null;
+                }
+
+                @Override
+                public Void visit(DerivedTableNode subselectNode) throws SQLException {
+                    return null;
+                }
+            });
+            if (tableNames.size() > 1) {
+                client.prefetchTables(connection.getTenantId(), tableNames);
+            }
+        }
+
         @Override
         public Void visit(BindTableNode boundTableNode) throws SQLException {
             throw new SQLFeatureNotSupportedException();
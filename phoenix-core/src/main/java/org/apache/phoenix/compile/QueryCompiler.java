@@ -493,6 +493,11 @@ public class QueryCompiler {
             resolver = FromCompiler.getResolverForQuery(transformedSubquery, connection);
             subquery = StatementNormalizer.normalize(transformedSubquery, resolver);
         }
+        transformedSubquery = DistinctCountRewriter.transform(subquery, resolver, this.statement);
+        if (transformedSubquery != subquery) {
+            resolver = FromCompiler.getResolverForQuery(transformedSubquery, connection);
+            subquery = StatementNormalizer.normalize(transformedSubquery, resolver);
+        }
         int maxRows = this.statement.getMaxRows();
         this.statement.setMaxRows(pushDownMaxRows ? maxRows : 0); // overwrite maxRows to avoid its impact on inner queries.
         QueryPlan plan = new QueryCompiler(this.statement, subquery, resolver, false).compile();
@@ -504,6 +509,7 @@ public class QueryCompiler {
     protected QueryPlan compileSingleQuery(StatementContext context, SelectStatement select, List<Object> binds, boolean asSubquery, boolean allowPageFilter) throws SQLException{
         SelectStatement innerSelect = select.getInnerSelectStatement();
         if (innerSelect == null) {
+            SharedExpressionCompiler.compile(context, select);
             return compileSingleFlatQuery(context, select, binds, asSubquery, allowPageFilter, null, null, true);
         }
 
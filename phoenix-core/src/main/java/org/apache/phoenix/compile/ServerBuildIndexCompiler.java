@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import java.sql.SQLException;
+import java.util.Collections;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.execute.MutationState;
+import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
+import org.apache.phoenix.index.IndexMaintainer;
+import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.jdbc.PhoenixStatement;
+import org.apache.phoenix.jdbc.PhoenixStatement.Operation;
+import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.util.ByteUtil;
+
+/**
+ * Builds a global index from within the regions of the data table, like
+ * {@link PostLocalIndexDDLCompiler} does for local indexes. Each region generates the index
+ * rows from its data rows and writes them to the index table, so the data rows are not
+ * sent to a client, decoded and upserted back through JDBC. The regions are scanned in
+ * parallel by the count(*) query the build piggybacks on.
+ */
+public class ServerBuildIndexCompiler {
+    private final PhoenixConnection connection;
+    private final String tableName;
+
+    public ServerBuildIndexCompiler(PhoenixConnection connection, String tableName) {
+        this.connection = connection;
+        this.tableName = tableName;
+    }
+
+    public MutationPlan compile(PTable index) throws SQLException {
+        try (final PhoenixStatement statement = new PhoenixStatement(connection)) {
+            String query = "SELECT count(*) FROM " + tableName;
+            final QueryPlan plan = statement.compileQuery(query);
+            Scan scan = plan.getContext().getScan();
+            ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+            final PTable dataTable = plan.getTableRef().getTable();
+            for (PTable indexTable : dataTable.getIndexes()) {
+                if (indexTable.getKey().equals(index.getKey())) {
+                    index = indexTable;
+                    break;
+                }
+            }
+            IndexMaintainer.serialize(dataTable, ptr, Collections.singletonList(index), connection);
+            // UngroupedAggregateRegionObserver switches on this attribute to write the index
+            // rows of each region instead of counting them
+            scan.setAttribute(BaseScannerRegionObserver.GLOBAL_INDEX_BUILD_PROTO, ByteUtil.copyKeyBytesIfNecessary(ptr));
+            // Project the data columns that contribute to the index instead of just the first
+            // key value of each row
+            IndexMaintainer indexMaintainer = index.getIndexMaintainer(dataTable, connection);
+            for (ColumnReference columnRef : indexMaintainer.getAllColumns()) {
+                if (index.getImmutableStorageScheme() != ImmutableStorageScheme.ONE_CELL_PER_COLUMN) {
+                    scan.addFamily(columnRef.getFamily());
+                } else {
+                    scan.addColumn(columnRef.getFamily(), columnRef.getQualifier());
+                }
+            }
+            scan.setCacheBlocks(false);
+
+            return new BaseMutationPlan(plan.getContext(), Operation.UPSERT) {
+
+                @Override
+                public MutationState execute() throws SQLException {
+                    connection.getMutationState().commitDDLFence(dataTable);
+                    Tuple tuple = plan.iterator().next();
+                    long rowCount = 0;
+                    if (tuple != null) {
+                        Cell kv = tuple.getValue(0);
+                        ImmutableBytesWritable tmpPtr = new ImmutableBytesWritable(kv.getValueArray(), kv.getValueOffset(), kv.getValueLength());
+                        // The count(*) is the number of index rows written
+                        rowCount = PLong.INSTANCE.getCodec().decodeLong(tmpPtr, SortOrder.getDefault());
+                    }
+                    return new MutationState(0, 0, connection, rowCount);
+                }
+
+            };
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.phoenix.expression.function.ArrayIndexFunction;
+import org.apache.phoenix.parse.AliasedNode;
+import org.apache.phoenix.parse.FunctionParseNode;
+import org.apache.phoenix.parse.OrderByNode;
+import org.apache.phoenix.parse.ParseNode;
+import org.apache.phoenix.parse.SelectStatement;
+import org.apache.phoenix.parse.SequenceValueParseNode;
+import org.apache.phoenix.parse.SubqueryParseNode;
+import org.apache.phoenix.parse.UDFParseNode;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
+
+import com.google.common.collect.Maps;
+
+/**
+ *
+ * Finds the function calls repeated across the clauses of a query, such as TRUNC(ts,'HOUR')
+ * in both the WHERE and the GROUP BY clauses, and assigns each of them a slot. The
+ * {@link ExpressionCompiler} wraps the compiled function in a
+ * {@link org.apache.phoenix.expression.MemoizedExpression}, so that it is evaluated once per
+ * row by the filter, the projector and the aggregators.
+ *
+ * Only the queries over a single table are considered, as the slots are identified by the
+ * row key, which is not unique once rows are joined or projected from a derived table. The
+ * tuples projected from a single table keep its row key, so the projector of a top level query
+ * shares the slots of the filter.
+ *
+ * @since 4.13.0
+ */
+public class SharedExpressionCompiler {
+    private static final Random RANDOM = new Random();
+
+    private SharedExpressionCompiler() {
+    }
+
+    public static void compile(StatementContext context, SelectStatement select) {
+        if (select.getFrom() == null || !context.getConnection().getQueryServices().getProps().getBoolean(
+                QueryServices.SHARED_EXPRESSION_MEMOIZATION_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_SHARED_EXPRESSION_MEMOIZATION_ENABLED)) {
+            return;
+        }
+        Map<ParseNode, Integer> counts = Maps.newHashMap();
+        count(select.getWhere(), counts);
+        for (AliasedNode node : select.getSelect()) {
+            count(node.getNode(), counts);
+        }
+        for (ParseNode node : select.getGroupBy()) {
+            count(node, counts);
+        }
+        count(select.getHaving(), counts);
+        for (OrderByNode node : select.getOrderBy()) {
+            count(node.getNode(), counts);
+        }
+        Map<ParseNode, Integer> slots = Maps.newHashMap();
+        for (Map.Entry<ParseNode, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                slots.put(entry.getKey(), slots.size());
+            }
+        }
+        if (!slots.isEmpty()) {
+            context.setSharedExpressionSlots(RANDOM.nextLong(), Collections.unmodifiableMap(slots));
+        }
+    }
+
+    /**
+     * Counts the occurrences of the function calls. The arguments are only counted for the
+     * first occurrence of a call, as they are not evaluated again for the next ones once the
+     * call is shared.
+     * @return false if the node may not be memoized, because it contains an aggregate function,
+     * a sequence or a subquery
+     */
+    private static boolean count(ParseNode node, Map<ParseNode, Integer> counts) {
+        if (node == null) {
+            return true;
+        }
+        if (node instanceof SequenceValueParseNode || node instanceof SubqueryParseNode) {
+            return false;
+        }
+        boolean isFunction = node instanceof FunctionParseNode;
+        if (isFunction) {
+            Integer count = counts.get(node);
+            if (count != null) {
+                if (count > 0) {
+                    counts.put(node, count + 1);
+                }
+                return count > 0;
+            }
+        }
+        boolean isMemoizable = true;
+        for (ParseNode child : node.getChildren()) {
+            isMemoizable &= count(child, counts);
+        }
+        if (isFunction) {
+            FunctionParseNode function = (FunctionParseNode)node;
+            isMemoizable &= !function.isAggregate() && !(function instanceof UDFParseNode)
+                    && !ArrayIndexFunction.NAME.equals(function.getName());
+            // A count of zero marks the calls that may not be memoized
+            counts.put(node, isMemoizable ? 1 : 0);
+        }
+        return isMemoizable;
+    }
+}
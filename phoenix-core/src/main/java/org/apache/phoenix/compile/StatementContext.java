@@ -33,6 +33,7 @@ import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixStatement;
 import org.apache.phoenix.monitoring.OverAllQueryMetrics;
 import org.apache.phoenix.monitoring.ReadMetricQueue;
+import org.apache.phoenix.parse.ParseNode;
 import org.apache.phoenix.parse.SelectStatement;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
@@ -81,6 +82,8 @@ public class StatementContext {
     private TableRef currentTable;
     private List<Pair<byte[], byte[]>> whereConditionColumns;
     private Map<SelectStatement, Object> subqueryResults;
+    private long sharedExpressionScopeId;
+    private Map<ParseNode, Integer> sharedExpressionSlots = Collections.emptyMap();
     private final ReadMetricQueue readMetricsQueue;
     private final OverAllQueryMetrics overAllQueryMetrics;
     
@@ -299,6 +302,27 @@ public class StatementContext {
         subqueryResults.put(select, result);
     }
     
+    /**
+     * Sets the slots of the function calls shared by several clauses of the query.
+     * @param scopeId the random identifier of the query the slots belong to
+     * @param slots the slot of each shared function call
+     */
+    public void setSharedExpressionSlots(long scopeId, Map<ParseNode, Integer> slots) {
+        this.sharedExpressionScopeId = scopeId;
+        this.sharedExpressionSlots = slots;
+    }
+
+    public long getSharedExpressionScopeId() {
+        return sharedExpressionScopeId;
+    }
+
+    /**
+     * @return the slot of the function call if it is shared by several clauses, or null
+     */
+    public Integer getSharedExpressionSlot(ParseNode node) {
+        return sharedExpressionSlots.get(node);
+    }
+
     public ReadMetricQueue getReadMetricsQueue() {
         return readMetricsQueue;
     }
@@ -178,7 +178,7 @@ public class WhereCompiler {
             TableRef tableRef = ref.getTableRef();
             Expression newColumnExpression = ref.newColumnExpression(node.isTableNameCaseSensitive(), node.isCaseSensitive());
             if (tableRef.equals(context.getCurrentTable()) && !SchemaUtil.isPKColumn(ref.getColumn())) {
-                byte[] cq = tableRef.getTable().getImmutableStorageScheme() == ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_OFFSETS 
+                byte[] cq = tableRef.getTable().getImmutableStorageScheme() != ImmutableStorageScheme.ONE_CELL_PER_COLUMN 
                 		? QueryConstants.SINGLE_KEYVALUE_COLUMN_QUALIFIER_BYTES : ref.getColumn().getColumnQualifierBytes();
                 // track the where condition columns. Later we need to ensure the Scan in HRS scans these column CFs
                 context.addWhereConditionColumn(ref.getColumn().getFamilyName().getBytes(), cq);
@@ -25,6 +25,8 @@ import org.apache.hadoop.hbase.CoprocessorEnvironment;
 import org.apache.hadoop.hbase.DoNotRetryIOException;
 import org.apache.hadoop.hbase.NotServingRegionException;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
 import org.apache.hadoop.hbase.coprocessor.BaseRegionObserver;
 import org.apache.hadoop.hbase.coprocessor.ObserverContext;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
@@ -37,8 +39,16 @@ import org.apache.hadoop.hbase.regionserver.ScannerContextUtil;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.htrace.Span;
 import org.apache.htrace.Trace;
+import org.apache.phoenix.cache.GlobalCache;
+import org.apache.phoenix.cache.InListCache;
+import org.apache.phoenix.cache.TenantCache;
 import org.apache.phoenix.execute.TupleProjector;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.MemoizedExpression;
+import org.apache.phoenix.expression.ServerCachedInListExpression;
 import org.apache.phoenix.hbase.index.covered.update.ColumnReference;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
+import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.index.IndexMaintainer;
 import org.apache.phoenix.iterate.NonAggregateRegionScannerFactory;
 import org.apache.phoenix.iterate.RegionScannerFactory;
@@ -75,6 +85,7 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
     * Needed for backward compatibility purposes. TODO: get rid of this in next major release.
     */
     public static final String LOCAL_INDEX_BUILD_PROTO = "_LocalIndexBuild"; 
+    public static final String GLOBAL_INDEX_BUILD_PROTO = "_GlobalIndexBuild";
     public static final String LOCAL_INDEX_JOIN_SCHEMA = "_LocalIndexJoinSchema";
     public static final String DATA_TABLE_COLUMNS_TO_JOIN = "_DataTableColumnsToJoin";
     public static final String COLUMNS_STORED_IN_SINGLE_CELL = "_ColumnsStoredInSingleCell";
@@ -96,6 +107,9 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
     public final static String SCAN_OFFSET = "_RowOffset";
     public static final String SCAN_START_ROW_SUFFIX = "_ScanStartRowSuffix";
     public static final String SCAN_STOP_ROW_SUFFIX = "_ScanStopRowSuffix";
+    public static final String AGGREGATE_RESULT_CACHE = "_AggregateResultCache";
+    public static final String SERVER_CACHED_IN_LISTS = "_ServerCachedInLists";
+    public static final String COMPILE_EXPRESSIONS = "_CompileExpressions";
     public final static String MIN_QUALIFIER = "_MinQualifier";
     public final static String MAX_QUALIFIER = "_MaxQualifier";
     public final static String USE_NEW_VALUE_COLUMN_QUALIFIER = "_UseNewValueColumnQualifier";
@@ -203,12 +217,62 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
             // last possible moment. You need to swap the start/stop and make the
             // start exclusive and the stop inclusive.
             ScanUtil.setupReverseScan(scan);
+            if (scan.getAttribute(SERVER_CACHED_IN_LISTS) != null) {
+                bindServerCachedInLists(scan.getFilter(),
+                        GlobalCache.getTenantCache(c.getEnvironment(), ScanUtil.getTenantId(scan)));
+            }
+            if (scan.getAttribute(COMPILE_EXPRESSIONS) != null) {
+                compileExpressions(scan.getFilter());
+            }
         }
         this.encodingScheme = EncodedColumnsUtil.getQualifierEncodingScheme(scan);
         this.useNewValueColumnQualifier = EncodedColumnsUtil.useNewValueColumnQualifier(scan);
         return s;
     }
 
+    /**
+     * Binds the IN lists of the filter whose values were sent through the server cache
+     * to the cached values.
+     */
+    private static void bindServerCachedInLists(Filter filter, TenantCache tenantCache) throws IOException {
+        if (filter instanceof FilterList) {
+            for (Filter childFilter : ((FilterList)filter).getFilters()) {
+                bindServerCachedInLists(childFilter, tenantCache);
+            }
+        } else if (filter instanceof BooleanExpressionFilter) {
+            bindServerCachedInLists(((BooleanExpressionFilter)filter).getExpression(), tenantCache);
+        }
+    }
+
+    /**
+     * Compiles the arithmetic of the expressions of the filter, as requested by the client.
+     */
+    private static void compileExpressions(Filter filter) {
+        if (filter instanceof FilterList) {
+            for (Filter childFilter : ((FilterList)filter).getFilters()) {
+                compileExpressions(childFilter);
+            }
+        } else if (filter instanceof BooleanExpressionFilter) {
+            ((BooleanExpressionFilter)filter).compileExpression();
+        }
+    }
+
+    private static void bindServerCachedInLists(Expression expression, TenantCache tenantCache) throws IOException {
+        if (expression instanceof ServerCachedInListExpression) {
+            ServerCachedInListExpression inList = (ServerCachedInListExpression)expression;
+            InListCache inListCache = (InListCache)tenantCache.getServerCache(new ImmutableBytesPtr(inList.getCacheId()));
+            if (inListCache == null) {
+                // Let the client send the cache again, as it does for hash join caches
+                Exception cause = new HashJoinCacheNotFoundException(Bytes.toLong(inList.getCacheId()));
+                throw new DoNotRetryIOException(cause.getMessage(), cause);
+            }
+            inList.setInListCache(inListCache);
+        }
+        for (Expression child : expression.getChildren()) {
+            bindServerCachedInLists(child, tenantCache);
+        }
+    }
+
     private class RegionScannerHolder extends DelegateRegionScanner {
             private final Scan scan;
             private final ObserverContext<RegionCoprocessorEnvironment> c;
@@ -221,6 +285,8 @@ abstract public class BaseScannerRegionObserver extends BaseRegionObserver {
             }
     
             private void overrideDelegate() throws IOException {
+                // The handler thread may have evaluated the same rows for a previous attempt of the scan
+                MemoizedExpression.clearRowCache();
                 if (wasOverriden) {
                     return;
                 }
@@ -48,6 +48,7 @@ import org.apache.hadoop.hbase.regionserver.RegionScanner;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.AggregateResultCache;
 import org.apache.phoenix.cache.GlobalCache;
 import org.apache.phoenix.cache.TenantCache;
 import org.apache.phoenix.cache.aggcache.SpillableGroupByCache;
@@ -63,8 +64,9 @@ import org.apache.phoenix.join.HashJoinInfo;
 import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.ColumnOrdinalMap;
+import org.apache.phoenix.schema.tuple.ColumnOrdinalTuple;
 import org.apache.phoenix.schema.tuple.EncodedColumnQualiferCellsList;
-import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
 import org.apache.phoenix.schema.tuple.PositionBasedMultiKeyValueTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PInteger;
@@ -102,6 +104,13 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
     @Override
     protected RegionScanner doPostScannerOpen(ObserverContext<RegionCoprocessorEnvironment> c,
             Scan scan, RegionScanner s) throws IOException {
+        AggregateResultCache.Lookup resultCacheLookup = AggregateResultCache.lookup(c.getEnvironment(), scan, s);
+        if (resultCacheLookup != null) {
+            RegionScanner cachedScanner = resultCacheLookup.getCachedResultScanner(s);
+            if (cachedScanner != null) {
+                return cachedScanner;
+            }
+        }
         boolean keyOrdered = false;
         byte[] expressionBytes = scan.getAttribute(BaseScannerRegionObserver.UNORDERED_GROUP_BY_EXPRESSIONS);
 
@@ -164,12 +173,14 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
         if (limitBytes != null) {
             limit = PInteger.INSTANCE.getCodec().decodeInt(limitBytes, 0, SortOrder.getDefault());
         }
+        RegionScanner scanner;
         if (keyOrdered) { // Optimize by taking advantage that the rows are
                           // already in the required group by key order
-            return scanOrdered(c, scan, innerScanner, expressions, aggregators, limit);
+            scanner = scanOrdered(c, scan, innerScanner, expressions, aggregators, limit);
         } else { // Otherwse, collect them all up in an in memory map
-            return scanUnordered(c, scan, innerScanner, expressions, aggregators, limit);
+            scanner = scanUnordered(c, scan, innerScanner, expressions, aggregators, limit);
         }
+        return resultCacheLookup == null ? scanner : resultCacheLookup.newCachingScanner(scanner);
     }
 
     public static long sizeOfUnorderedGroupByMap(int nRows, int valueSize) {
@@ -403,7 +414,7 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
         boolean success = false;
         try {
             boolean hasMore;
-            Tuple result = useQualifierAsIndex ? new PositionBasedMultiKeyValueTuple() : new MultiKeyValueTuple();
+            Tuple result = useQualifierAsIndex ? new PositionBasedMultiKeyValueTuple() : new ColumnOrdinalTuple(new ColumnOrdinalMap());
             if (logger.isDebugEnabled()) {
                 logger.debug(LogUtil.addCustomAnnotations("Spillable groupby enabled: " + spillableEnabled, ScanUtil.getCustomAnnotations(scan)));
             }
@@ -469,13 +480,14 @@ public class GroupedAggregateRegionObserver extends BaseScannerRegionObserver {
         return new BaseRegionScanner(scanner) {
             private long rowCount = 0;
             private ImmutableBytesPtr currentKey = null;
+            private final ColumnOrdinalMap columns = new ColumnOrdinalMap();
 
             @Override
             public boolean next(List<Cell> results) throws IOException {
                 boolean hasMore;
                 boolean atLimit;
                 boolean aggBoundary = false;
-                Tuple result = useQualifierAsIndex ? new PositionBasedMultiKeyValueTuple() : new MultiKeyValueTuple();
+                Tuple result = useQualifierAsIndex ? new PositionBasedMultiKeyValueTuple() : new ColumnOrdinalTuple(columns);
                 ImmutableBytesPtr key = null;
                 Aggregator[] rowAggregators = aggregators.getAggregators();
                 // If we're calculating no aggregate functions, we can exit at the
@@ -35,6 +35,7 @@ import java.security.PrivilegedExceptionAction;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -80,6 +81,7 @@ import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.cache.AggregateResultCache;
 import org.apache.phoenix.cache.ServerCacheClient;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MutationCode;
 import org.apache.phoenix.coprocessor.generated.PTableProtos;
@@ -115,8 +117,9 @@ import org.apache.phoenix.schema.ValueSchema.Field;
 import org.apache.phoenix.schema.stats.StatisticsCollectionRunTracker;
 import org.apache.phoenix.schema.stats.StatisticsCollector;
 import org.apache.phoenix.schema.stats.StatisticsCollectorFactory;
+import org.apache.phoenix.schema.tuple.ColumnOrdinalMap;
+import org.apache.phoenix.schema.tuple.ColumnOrdinalTuple;
 import org.apache.phoenix.schema.tuple.EncodedColumnQualiferCellsList;
-import org.apache.phoenix.schema.tuple.MultiKeyValueTuple;
 import org.apache.phoenix.schema.tuple.PositionBasedMultiKeyValueTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.schema.types.PBinary;
@@ -358,6 +361,8 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
                     gp_width_bytes, gp_per_region_bytes);
             return collectStats(s, statsCollector, region, scan, env.getConfiguration());
         } else if (ScanUtil.isIndexRebuild(scan)) { return rebuildIndices(s, region, scan, env.getConfiguration()); }
+        else if (ScanUtil.isGlobalIndexBuild(scan)) { return buildGlobalIndex(s, region, scan, env.getConfiguration()); }
+        AggregateResultCache.Lookup resultCacheLookup = AggregateResultCache.lookup(env, scan, s);
         int offsetToBe = 0;
         if (localIndexScan) {
             /*
@@ -479,13 +484,22 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
             maxBatchSizeBytes = conf.getLong(MUTATE_BATCH_SIZE_BYTES_ATTRIB,
                 QueryServicesOptions.DEFAULT_MUTATE_BATCH_SIZE_BYTES);
         }
+        // Only the results of pure aggregations may be cached
+        if (needToWrite || indexMaintainers != null || j != null) {
+            resultCacheLookup = null;
+        } else if (resultCacheLookup != null) {
+            RegionScanner cachedScanner = resultCacheLookup.getCachedResultScanner(s);
+            if (cachedScanner != null) {
+                return cachedScanner;
+            }
+        }
         Aggregators aggregators = ServerAggregators.deserialize(
                 scan.getAttribute(BaseScannerRegionObserver.AGGREGATORS), conf);
         Aggregator[] rowAggregators = aggregators.getAggregators();
         boolean hasMore;
         boolean hasAny = false;
         Pair<Integer, Integer> minMaxQualifiers = EncodedColumnsUtil.getMinMaxQualifiersFromScan(scan);
-        Tuple result = useQualifierAsIndex ? new PositionBasedMultiKeyValueTuple() : new MultiKeyValueTuple();
+        Tuple result = useQualifierAsIndex ? new PositionBasedMultiKeyValueTuple() : new ColumnOrdinalTuple(new ColumnOrdinalMap());
         if (logger.isDebugEnabled()) {
             logger.debug(LogUtil.addCustomAnnotations("Starting ungrouped coprocessor scan " + scan + " "+region.getRegionInfo(), ScanUtil.getCustomAnnotations(scan)));
         }
@@ -816,7 +830,7 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
                 return scan.getMaxResultSize();
             }
         };
-        return scanner;
+        return resultCacheLookup == null ? scanner : resultCacheLookup.newCachingScanner(scanner);
 
     }
 
@@ -1098,6 +1112,111 @@ public class UngroupedAggregateRegionObserver extends BaseScannerRegionObserver
         return scanner;
     }
     
+    /**
+     * Builds the rows of a global index from the data rows of the region and writes them to the
+     * index table, in batches sorted by index row key. The data rows are not decoded, as the index
+     * maintainer builds the index rows from the raw cells.
+     */
+    private RegionScanner buildGlobalIndex(final RegionScanner innerScanner, final Region region, final Scan scan,
+            Configuration config) throws IOException {
+        List<IndexMaintainer> indexMaintainers =
+                IndexMaintainer.deserialize(scan.getAttribute(GLOBAL_INDEX_BUILD_PROTO), true);
+        int maxBatchSize = config.getInt(MUTATE_BATCH_SIZE_ATTRIB, QueryServicesOptions.DEFAULT_MUTATE_BATCH_SIZE);
+        long maxBatchSizeBytes = config.getLong(MUTATE_BATCH_SIZE_BYTES_ATTRIB,
+            QueryServicesOptions.DEFAULT_MUTATE_BATCH_SIZE_BYTES);
+        HTable[] indexHTables = new HTable[indexMaintainers.size()];
+        MutationList[] indexMutations = new MutationList[indexMaintainers.size()];
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        boolean hasMore;
+        long rowCount = 0;
+        try {
+            for (int i = 0; i < indexMaintainers.size(); i++) {
+                indexHTables[i] = new HTable(upsertSelectConfig, indexMaintainers.get(i).getIndexTableName());
+                indexMutations[i] = new MutationList(maxBatchSize);
+            }
+            region.startRegionOperation();
+            try {
+                synchronized (innerScanner) {
+                    do {
+                        List<Cell> results = new ArrayList<Cell>();
+                        hasMore = innerScanner.nextRaw(results);
+                        if (!results.isEmpty()) {
+                            Cell firstCell = results.get(0);
+                            ptr.set(firstCell.getRowArray(), firstCell.getRowOffset(), firstCell.getRowLength());
+                            byte[] rowKey = ImmutableBytesPtr.copyBytesIfNecessary(ptr);
+                            long ts = 0;
+                            for (Cell cell : results) {
+                                ts = Math.max(ts, cell.getTimestamp());
+                            }
+                            for (int i = 0; i < indexMaintainers.size(); i++) {
+                                IndexMaintainer maintainer = indexMaintainers.get(i);
+                                ValueGetter valueGetter = maintainer.createGetterFromKeyValues(rowKey, results);
+                                indexMutations[i].add(maintainer.buildUpdateMutation(kvBuilder, valueGetter, ptr, ts, null, null));
+                                if (ServerUtil.readyToCommit(indexMutations[i].size(), indexMutations[i].byteSize(),
+                                        maxBatchSize, maxBatchSizeBytes)) {
+                                    commitSortedBatch(indexHTables[i], indexMutations[i]);
+                                }
+                            }
+                            rowCount++;
+                        }
+                    } while (hasMore);
+                    for (int i = 0; i < indexMaintainers.size(); i++) {
+                        commitSortedBatch(indexHTables[i], indexMutations[i]);
+                    }
+                }
+            } finally {
+                region.closeRegionOperation();
+            }
+        } catch (IOException e) {
+            logger.error("IOException during global index build: " + Throwables.getStackTraceAsString(e));
+            throw e;
+        } finally {
+            for (HTable indexHTable : indexHTables) {
+                if (indexHTable != null) {
+                    indexHTable.close();
+                }
+            }
+        }
+        byte[] rowCountBytes = PLong.INSTANCE.toBytes(Long.valueOf(rowCount));
+        final KeyValue aggKeyValue = KeyValueUtil.newKeyValue(UNGROUPED_AGG_ROW_KEY, SINGLE_COLUMN_FAMILY,
+                SINGLE_COLUMN, AGG_TIMESTAMP, rowCountBytes, 0, rowCountBytes.length);
+
+        return new BaseRegionScanner(innerScanner) {
+            @Override
+            public HRegionInfo getRegionInfo() {
+                return region.getRegionInfo();
+            }
+
+            @Override
+            public boolean isFilterDone() {
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                innerScanner.close();
+            }
+
+            @Override
+            public boolean next(List<Cell> results) throws IOException {
+                results.add(aggKeyValue);
+                return false;
+            }
+
+            @Override
+            public long getMaxResultSize() {
+                return scan.getMaxResultSize();
+            }
+        };
+    }
+
+    private void commitSortedBatch(HTable table, MutationList mutations) throws IOException {
+        // Consecutive index rows go to the same index region
+        Collections.sort(mutations);
+        commitBatchWithHTable(table, mutations);
+        mutations.clear();
+    }
+
     private RegionScanner collectStats(final RegionScanner innerScanner, StatisticsCollector stats,
             final Region region, final Scan scan, Configuration config) throws IOException {
         StatsCollectionCallable callable =
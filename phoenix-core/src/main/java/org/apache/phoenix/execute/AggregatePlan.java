@@ -62,6 +62,7 @@ import org.apache.phoenix.iterate.UngroupedAggregatingResultIterator;
 import org.apache.phoenix.parse.FilterableStatement;
 import org.apache.phoenix.parse.HintNode;
 import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PTable.IndexType;
@@ -222,6 +223,13 @@ public class AggregatePlan extends BaseQueryPlan {
                         PInteger.INSTANCE.toBytes(limit + (offset == null ? 0 : offset)));
             }
         }
+        if ((caches == null || caches.isEmpty()) && !getTableRef().getTable().isTransactional()
+                && context.getConnection().getQueryServices().getProps().getBoolean(
+                        QueryServices.AGGREGATE_RESULT_CACHE_ENABLED_ATTRIB,
+                        QueryServicesOptions.DEFAULT_AGGREGATE_RESULT_CACHE_ENABLED)) {
+            // Allow region servers to answer from and populate their per-region result cache
+            scan.setAttribute(BaseScannerRegionObserver.AGGREGATE_RESULT_CACHE, QueryConstants.TRUE);
+        }
         BaseResultIterators iterators = isSerial
                 ? new SerialIterators(this, null, null, wrapParallelIteratorFactory(), scanGrouper, scan, caches)
                 : new ParallelIterators(this, null, wrapParallelIteratorFactory(), scan, false, caches);
@@ -239,8 +247,9 @@ public class AggregatePlan extends BaseQueryPlan {
         } else if (groupBy.isOrderPreserving() && !(this.getTableRef().getTable().getBucketNum() != null || this.getTableRef().getTable().getIndexType() == IndexType.LOCAL)) {
             aggResultIterator = new RowKeyOrderedAggregateResultIterator(iterators, aggregators);
         } else {
-            aggResultIterator = new GroupedAggregatingResultIterator(
-                    new MergeSortRowKeyResultIterator(iterators, 0, this.getOrderBy() == OrderBy.REV_ROW_KEY_ORDER_BY),aggregators);
+            MergeSortRowKeyResultIterator mergeSortIterator = new MergeSortRowKeyResultIterator(iterators, 0, this.getOrderBy() == OrderBy.REV_ROW_KEY_ORDER_BY);
+            mergeSortIterator.enableParallelMerge(context.getConnection().getQueryServices());
+            aggResultIterator = new GroupedAggregatingResultIterator(mergeSortIterator, aggregators);
         }
 
         if (having != null) {
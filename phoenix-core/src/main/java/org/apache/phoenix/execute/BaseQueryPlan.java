@@ -36,6 +36,7 @@ import org.apache.hadoop.hbase.io.TimeRange;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.htrace.TraceScope;
+import org.apache.phoenix.cache.InListCacheClient;
 import org.apache.phoenix.cache.ServerCacheClient.ServerCache;
 import org.apache.phoenix.compile.ExplainPlan;
 import org.apache.phoenix.compile.FromCompiler;
@@ -63,6 +64,8 @@ import org.apache.phoenix.parse.HintNode.Hint;
 import org.apache.phoenix.parse.ParseNodeFactory;
 import org.apache.phoenix.parse.TableName;
 import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.KeyValueSchema;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PName;
@@ -71,6 +74,7 @@ import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
 import org.apache.phoenix.schema.PTable.IndexType;
 import org.apache.phoenix.schema.PTableType;
 import org.apache.phoenix.schema.TableRef;
+import org.apache.phoenix.schema.types.PDataType;
 import org.apache.phoenix.trace.TracingIterator;
 import org.apache.phoenix.trace.util.Tracing;
 import org.apache.phoenix.util.ByteUtil;
@@ -81,6 +85,7 @@ import org.apache.phoenix.util.ScanUtil;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 
 
@@ -227,7 +232,7 @@ public abstract class BaseQueryPlan implements QueryPlan {
 		return wrappedIterator;
 	}
 
-    public final ResultIterator iterator(final Map<ImmutableBytesPtr,ServerCache> caches,
+    public final ResultIterator iterator(Map<ImmutableBytesPtr,ServerCache> caches,
             ParallelScanGrouper scanGrouper, Scan scan) throws SQLException {
          if (scan == null) {
              scan = context.getScan();
@@ -344,6 +349,30 @@ public abstract class BaseQueryPlan implements QueryPlan {
             }
         }
         
+        if (connection.getQueryServices().getProps().getBoolean(
+                QueryServices.EXPRESSION_COMPILATION_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_EXPRESSION_COMPILATION_ENABLED)) {
+            scan.setAttribute(BaseScannerRegionObserver.COMPILE_EXPRESSIONS, PDataType.TRUE_BYTES);
+        }
+
+        if (connection.getQueryServices().getProps().getBoolean(
+                QueryServices.IN_LIST_SERVER_CACHE_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_IN_LIST_SERVER_CACHE_ENABLED)) {
+            // Send large IN lists once per region server instead of with every scan
+            int minSize = connection.getQueryServices().getProps().getInt(
+                    QueryServices.IN_LIST_SERVER_CACHE_MIN_SIZE_ATTRIB,
+                    QueryServicesOptions.DEFAULT_IN_LIST_SERVER_CACHE_MIN_SIZE);
+            Map<ImmutableBytesPtr,ServerCache> inListCaches =
+                    new InListCacheClient(connection).addInListCaches(context, scan, minSize);
+            if (!inListCaches.isEmpty()) {
+                if (caches.isEmpty()) {
+                    caches = Maps.newHashMap();
+                }
+                // Closed along with the other caches once the scan is complete
+                caches.putAll(inListCaches);
+            }
+        }
+
         if (LOG.isDebugEnabled()) {
         	LOG.debug(LogUtil.addCustomAnnotations("Scan ready for iteration: " + scan, connection));
         }
@@ -431,7 +460,7 @@ public abstract class BaseQueryPlan implements QueryPlan {
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
         try {
             DataOutputStream output = new DataOutputStream(stream);
-            boolean storeColsInSingleCell = dataTable.getImmutableStorageScheme() == ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_OFFSETS;
+            boolean storeColsInSingleCell = dataTable.getImmutableStorageScheme() != ImmutableStorageScheme.ONE_CELL_PER_COLUMN;
             if (storeColsInSingleCell) {
                 // if storeColsInSingleCell is true all columns of a given column family are stored in a single cell
                 scan.setAttribute(BaseScannerRegionObserver.COLUMNS_STORED_IN_SINGLE_CELL, QueryConstants.EMPTY_COLUMN_VALUE_BYTES);
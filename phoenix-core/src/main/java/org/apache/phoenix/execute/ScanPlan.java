@@ -23,6 +23,7 @@ import static org.apache.phoenix.util.ScanUtil.isRoundRobinPossible;
 
 import java.sql.SQLException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -39,8 +40,10 @@ import org.apache.phoenix.coprocessor.ScanRegionObserver;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.iterate.BaseResultIterators;
+import org.apache.phoenix.iterate.BatchedGetResultIterator;
 import org.apache.phoenix.iterate.ChunkedResultIterator;
 import org.apache.phoenix.iterate.ConcatResultIterator;
+import org.apache.phoenix.iterate.DefaultParallelScanGrouper;
 import org.apache.phoenix.iterate.LimitingResultIterator;
 import org.apache.phoenix.iterate.MergeSortRowKeyResultIterator;
 import org.apache.phoenix.iterate.MergeSortTopNResultIterator;
@@ -48,11 +51,13 @@ import org.apache.phoenix.iterate.OffsetResultIterator;
 import org.apache.phoenix.iterate.ParallelIteratorFactory;
 import org.apache.phoenix.iterate.ParallelIterators;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
+import org.apache.phoenix.iterate.RangePartitionedSortResultIterator;
 import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.iterate.RoundRobinResultIterator;
 import org.apache.phoenix.iterate.SequenceResultIterator;
 import org.apache.phoenix.iterate.SerialIterators;
 import org.apache.phoenix.iterate.SpoolingResultIterator;
+import org.apache.phoenix.join.HashJoinInfo;
 import org.apache.phoenix.parse.FilterableStatement;
 import org.apache.phoenix.parse.HintNode;
 import org.apache.phoenix.query.ConnectionQueryServices;
@@ -61,16 +66,20 @@ import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
 import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
 import org.apache.phoenix.schema.PTable.IndexType;
 import org.apache.phoenix.schema.SaltingUtil;
 import org.apache.phoenix.schema.TableRef;
 import org.apache.phoenix.util.EnvironmentEdgeManager;
 import org.apache.phoenix.util.QueryUtil;
+import org.apache.phoenix.util.ReadOnlyProps;
 import org.apache.phoenix.util.ScanUtil;
 import org.apache.phoenix.util.SchemaUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 
 
 /**
@@ -233,6 +242,19 @@ public class ScanPlan extends BaseQueryPlan {
         boolean initFirstScanOnly =
                 (orderBy == OrderBy.FWD_ROW_KEY_ORDER_BY || orderBy == OrderBy.REV_ROW_KEY_ORDER_BY)
                         && isDataToScanWithinThreshold; 
+        if (useBatchedGets(scanGrouper, scan, caches)) {
+            scanner = newBatchedGetIterator(scan);
+            if (offset != null) {
+                scanner = new OffsetResultIterator(scanner, offset);
+            }
+            if (limit != null) {
+                scanner = new LimitingResultIterator(scanner, limit);
+            }
+            if (context.getSequenceManager().getSequenceCount() > 0) {
+                scanner = new SequenceResultIterator(scanner, context.getSequenceManager());
+            }
+            return scanner;
+        }
         BaseResultIterators iterators;
         if (isOffsetOnServer) {
             iterators = new SerialIterators(this, perScanLimit, offset, parallelIteratorFactory, scanGrouper, scan, caches);
@@ -251,8 +273,24 @@ public class ScanPlan extends BaseQueryPlan {
             if (limit != null) {
                 scanner = new LimitingResultIterator(scanner, limit);
             }
+        } else if (isOrdered && limit == null && isRangePartitionedSortEnabled()) {
+            ReadOnlyProps props = context.getConnection().getQueryServices().getProps();
+            scanner = new RangePartitionedSortResultIterator(iterators, orderBy.getOrderByExpressions(),
+                    context.getConnection().getQueryServices().getExecutor(),
+                    props.getInt(QueryServices.RANGE_PARTITIONED_SORT_PARTITIONS_ATTRIB,
+                            QueryServicesOptions.DEFAULT_RANGE_PARTITIONED_SORT_PARTITIONS),
+                    props.getLong(QueryServices.RANGE_PARTITIONED_SORT_MAX_ROWS_ATTRIB,
+                            QueryServicesOptions.DEFAULT_RANGE_PARTITIONED_SORT_MAX_ROWS),
+                    context.getConnection().getQueryServices().getMemoryManager(),
+                    props.getLong(QueryServices.RANGE_PARTITIONED_SORT_MAX_BYTES_ATTRIB,
+                            QueryServicesOptions.DEFAULT_RANGE_PARTITIONED_SORT_MAX_BYTES));
+            if (offset != null) {
+                scanner = new OffsetResultIterator(scanner, offset);
+            }
         } else if (isOrdered) {
-            scanner = new MergeSortTopNResultIterator(iterators, limit, offset, orderBy.getOrderByExpressions());
+            MergeSortTopNResultIterator mergeSortIterator = new MergeSortTopNResultIterator(iterators, limit, offset, orderBy.getOrderByExpressions());
+            mergeSortIterator.enableParallelMerge(context.getConnection().getQueryServices());
+            scanner = mergeSortIterator;
         } else {
             if ((isSalted || table.getIndexType() == IndexType.LOCAL) && ScanUtil.shouldRowsBeInRowKeyOrder(orderBy, context)) {
                 /*
@@ -261,7 +299,9 @@ public class ScanPlan extends BaseQueryPlan {
                  * 2) Or if the query has an order by that wants to sort
                  * the results by the row key (forward or reverse ordering)
                  */
-                scanner = new MergeSortRowKeyResultIterator(iterators, isSalted ? SaltingUtil.NUM_SALTING_BYTES : 0, orderBy == OrderBy.REV_ROW_KEY_ORDER_BY);
+                MergeSortRowKeyResultIterator mergeSortIterator = new MergeSortRowKeyResultIterator(iterators, isSalted ? SaltingUtil.NUM_SALTING_BYTES : 0, orderBy == OrderBy.REV_ROW_KEY_ORDER_BY);
+                mergeSortIterator.enableParallelMerge(context.getConnection().getQueryServices());
+                scanner = mergeSortIterator;
             } else if (useRoundRobinIterator()) {
                 /*
                  * For any kind of tables, round robin is possible if there is
@@ -285,6 +325,62 @@ public class ScanPlan extends BaseQueryPlan {
         return scanner;
     }
     
+    /**
+     * Point lookups of enough keys are read through batched multi-gets when the rows need no
+     * processing on the region server besides the filter, as the Gets bypass the region
+     * observers. The keys of a point lookup are sorted, so the rows are still returned in row
+     * key order.
+     */
+    private boolean useBatchedGets(ParallelScanGrouper scanGrouper, Scan scan, Map<ImmutableBytesPtr,ServerCache> caches) {
+        ReadOnlyProps props = context.getConnection().getQueryServices().getProps();
+        if (!props.getBoolean(QueryServices.BATCHED_GET_ENABLED_ATTRIB, QueryServicesOptions.DEFAULT_BATCHED_GET_ENABLED)
+                || !context.getScanRanges().isPointLookup()
+                || context.getScanRanges().getPointLookupCount() < props.getInt(
+                        QueryServices.BATCHED_GET_MIN_KEYS_ATTRIB, QueryServicesOptions.DEFAULT_BATCHED_GET_MIN_KEYS)) {
+            return false;
+        }
+        PTable table = getTableRef().getTable();
+        return scanGrouper instanceof DefaultParallelScanGrouper
+                && caches.isEmpty()
+                && orderBy.getOrderByExpressions().isEmpty()
+                && orderBy != OrderBy.REV_ROW_KEY_ORDER_BY
+                && !(table.getBucketNum() != null && ScanUtil.shouldRowsBeInRowKeyOrder(orderBy, context))
+                && table.getIndexType() != IndexType.LOCAL
+                && !table.isTransactional()
+                && table.getImmutableStorageScheme() == ImmutableStorageScheme.ONE_CELL_PER_COLUMN
+                && !ScanUtil.isReversed(scan)
+                && !HashJoinInfo.isHashJoin(scan)
+                && !TupleProjector.hasProjector(scan)
+                && scan.getAttribute(BaseScannerRegionObserver.SPECIFIC_ARRAY_INDEX) == null;
+    }
+
+    private ResultIterator newBatchedGetIterator(Scan scan) {
+        ConnectionQueryServices services = context.getConnection().getQueryServices();
+        ReadOnlyProps props = services.getProps();
+        List<byte[]> rowKeys = Lists.newArrayListWithExpectedSize(context.getScanRanges().getPointLookupCount());
+        Iterator<KeyRange> keyIterator = context.getScanRanges().getPointLookupKeyIterator();
+        while (keyIterator.hasNext()) {
+            rowKeys.add(keyIterator.next().getLowerRange());
+        }
+        estimatedRows = (long) rowKeys.size();
+        estimatedSize = null;
+        estimateInfoTimestamp = null;
+        splits = Collections.emptyList();
+        scans = Collections.emptyList();
+        return new BatchedGetResultIterator(services, getTableRef().getTable().getPhysicalName().getBytes(), scan,
+                rowKeys,
+                props.getInt(QueryServices.BATCHED_GET_BATCH_SIZE_ATTRIB,
+                        QueryServicesOptions.DEFAULT_BATCHED_GET_BATCH_SIZE),
+                props.getInt(QueryServices.BATCHED_GET_MAX_CONCURRENT_BATCHES_ATTRIB,
+                        QueryServicesOptions.DEFAULT_BATCHED_GET_MAX_CONCURRENT_BATCHES));
+    }
+
+    private boolean isRangePartitionedSortEnabled() {
+        return context.getConnection().getQueryServices().getProps().getBoolean(
+                QueryServices.RANGE_PARTITIONED_SORT_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_RANGE_PARTITIONED_SORT_ENABLED);
+    }
+
     @Override
     public boolean useRoundRobinIterator() throws SQLException {
         return ScanUtil.isRoundRobinPossible(orderBy, context);
@@ -20,10 +20,15 @@ package org.apache.phoenix.execute;
 import static org.apache.phoenix.util.NumberUtil.add;
 import static org.apache.phoenix.util.NumberUtil.getMin;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.MappedByteBuffer;
 import java.sql.ParameterMetaData;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -31,7 +36,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.KeyValueUtil;
 import org.apache.hadoop.hbase.client.Result;
@@ -47,13 +58,22 @@ import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.exception.SQLExceptionCode;
 import org.apache.phoenix.exception.SQLExceptionInfo;
 import org.apache.phoenix.execute.TupleProjector.ProjectedValueTuple;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.iterate.ConcatResultIterator;
 import org.apache.phoenix.iterate.DefaultParallelScanGrouper;
+import org.apache.phoenix.iterate.LookAheadResultIterator;
 import org.apache.phoenix.iterate.MappedByteBufferQueue;
+import org.apache.phoenix.iterate.MaterializedResultIterator;
 import org.apache.phoenix.iterate.ParallelScanGrouper;
+import org.apache.phoenix.iterate.PeekingResultIterator;
+import org.apache.phoenix.iterate.QueuedResultIterator;
 import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.jdbc.PhoenixParameterMetaData;
 import org.apache.phoenix.jdbc.PhoenixStatement.Operation;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
 import org.apache.phoenix.parse.FilterableStatement;
 import org.apache.phoenix.parse.JoinTableNode.JoinType;
 import org.apache.phoenix.query.KeyRange;
@@ -69,12 +89,18 @@ import org.apache.phoenix.schema.tuple.ResultTuple;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ResultUtil;
 import org.apache.phoenix.util.SchemaUtil;
+import org.apache.phoenix.util.ServerUtil;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 public class SortMergeJoinPlan implements QueryPlan {
     private static final byte[] EMPTY_PTR = new byte[0];
+    // Number of sampled join keys per partition used to determine the partition boundaries
+    private static final int SAMPLES_PER_PARTITION = 32;
+    // Number of batches of joined rows a partition may produce ahead of the caller
+    private static final int PARTITION_QUEUE_SIZE = 8;
+    private static final int PARTITION_BATCH_SIZE = 128;
     
     private final StatementContext context;
     private final FilterableStatement statement;
@@ -91,6 +117,8 @@ public class SortMergeJoinPlan implements QueryPlan {
     private final boolean isSingleValueOnly;
     private final Set<TableRef> tableRefs;
     private final int thresholdBytes;
+    private final int joinParallelism;
+    private final long maxParallelJoinBytes;
     private Long estimatedBytes;
     private Long estimatedRows;
     private Long estimateInfoTs;
@@ -118,6 +146,10 @@ public class SortMergeJoinPlan implements QueryPlan {
         this.tableRefs.addAll(rhsPlan.getSourceRefs());
         this.thresholdBytes = context.getConnection().getQueryServices().getProps().getInt(
                 QueryServices.SPOOL_THRESHOLD_BYTES_ATTRIB, QueryServicesOptions.DEFAULT_SPOOL_THRESHOLD_BYTES);
+        this.joinParallelism = context.getConnection().getQueryServices().getProps().getInt(
+                QueryServices.SORT_MERGE_JOIN_PARALLELISM_ATTRIB, QueryServicesOptions.DEFAULT_SORT_MERGE_JOIN_PARALLELISM);
+        this.maxParallelJoinBytes = context.getConnection().getQueryServices().getProps().getLong(
+                QueryServices.SORT_MERGE_JOIN_PARALLEL_MAX_BYTES_ATTRIB, QueryServicesOptions.DEFAULT_SORT_MERGE_JOIN_PARALLEL_MAX_BYTES);
     }
 
     @Override
@@ -144,9 +176,18 @@ public class SortMergeJoinPlan implements QueryPlan {
 
     @Override
     public ResultIterator iterator(ParallelScanGrouper scanGrouper, Scan scan) throws SQLException {        
+        ResultIterator lhsIterator = lhsPlan.iterator(scanGrouper);
+        ResultIterator rhsIterator = rhsPlan.iterator(scanGrouper);
+        return joinParallelism > 1 ?
+                new PartitionedJoinIterator(lhsIterator, rhsIterator) :
+                newJoinIterator(lhsIterator, rhsIterator, lhsKeyExpressions, rhsKeyExpressions);
+    }
+
+    private ResultIterator newJoinIterator(ResultIterator lhsIterator, ResultIterator rhsIterator,
+            List<Expression> lhsKeyExpressions, List<Expression> rhsKeyExpressions) {
         return type == JoinType.Semi || type == JoinType.Anti ? 
-                new SemiAntiJoinIterator(lhsPlan.iterator(scanGrouper), rhsPlan.iterator(scanGrouper)) :
-                new BasicJoinIterator(lhsPlan.iterator(scanGrouper), rhsPlan.iterator(scanGrouper));
+                new SemiAntiJoinIterator(lhsIterator, rhsIterator, lhsKeyExpressions, rhsKeyExpressions) :
+                new BasicJoinIterator(lhsIterator, rhsIterator, lhsKeyExpressions, rhsKeyExpressions);
     }
     
     @Override
@@ -299,8 +340,10 @@ public class SortMergeJoinPlan implements QueryPlan {
         private byte[] emptyProjectedValue;
         private MappedByteBufferTupleQueue queue;
         private Iterator<Tuple> queueIterator;
+        private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
         
-        public BasicJoinIterator(ResultIterator lhsIterator, ResultIterator rhsIterator) {
+        public BasicJoinIterator(ResultIterator lhsIterator, ResultIterator rhsIterator,
+                List<Expression> lhsKeyExpressions, List<Expression> rhsKeyExpressions) {
             this.lhsIterator = lhsIterator;
             this.rhsIterator = rhsIterator;
             this.initialized = false;
@@ -454,7 +497,6 @@ public class SortMergeJoinPlan implements QueryPlan {
                 } else if (lhs instanceof ProjectedValueTuple) {
                     t = (ProjectedValueTuple) lhs;
                 } else {
-                    ImmutableBytesWritable ptr = context.getTempPtr();
                     TupleProjector.decodeProjectedValue(lhs, ptr);
                     lhsBitSet.clear();
                     lhsBitSet.or(ptr);
@@ -483,7 +525,8 @@ public class SortMergeJoinPlan implements QueryPlan {
         private JoinKey lhsKey;
         private JoinKey rhsKey;
         
-        public SemiAntiJoinIterator(ResultIterator lhsIterator, ResultIterator rhsIterator) {
+        public SemiAntiJoinIterator(ResultIterator lhsIterator, ResultIterator rhsIterator,
+                List<Expression> lhsKeyExpressions, List<Expression> rhsKeyExpressions) {
             if (type != JoinType.Semi && type != JoinType.Anti) throw new IllegalArgumentException("Type " + type + " is not allowed by " + SemiAntiJoinIterator.class.getName());
             this.lhsIterator = lhsIterator;
             this.rhsIterator = rhsIterator;
@@ -561,6 +604,336 @@ public class SortMergeJoinPlan implements QueryPlan {
         }
     }
     
+    /**
+     * Joins the two sides by splitting them into ranges of join keys which are joined
+     * concurrently on the query executor. Both sides are first read concurrently, with their
+     * join keys being evaluated once. The range boundaries are then picked from a sample of
+     * the join keys. As both sides are ordered by join key, each range is a contiguous segment
+     * of each side, and no group of rows with the same join key is split between ranges. The
+     * ranges are joined by the usual join iterators, thus spilling large groups of duplicate
+     * keys in the same way, and their results are returned one range after the other.
+     * 
+     * The rows read are accounted for by the MemoryManager, which grants at most the configured
+     * maximum. If the rows of both sides together take more memory than granted, they are
+     * joined serially instead, with the rows already read followed by the remaining ones.
+     */
+    private class PartitionedJoinIterator implements ResultIterator {
+        private final ResultIterator lhsIterator;
+        private final ResultIterator rhsIterator;
+        private final ExecutorService executor;
+        private final MemoryManager memoryManager;
+        private boolean initialized;
+        private volatile boolean isClosed;
+        private MemoryChunk chunk;
+        private Future<DrainedInput> lhsFuture;
+        private Future<DrainedInput> rhsFuture;
+        private ResultIterator serialIterator;
+        private List<List<KeyedTuple>> partitionInputs;
+        private int nextPartition;
+        private final LinkedList<QueuedResultIterator> runningPartitions = Lists.newLinkedList();
+
+        public PartitionedJoinIterator(ResultIterator lhsIterator, ResultIterator rhsIterator) {
+            this.lhsIterator = lhsIterator;
+            this.rhsIterator = rhsIterator;
+            this.executor = context.getConnection().getQueryServices().getExecutor();
+            this.memoryManager = context.getConnection().getQueryServices().getMemoryManager();
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            if (!initialized) {
+                init();
+                initialized = true;
+            }
+            if (serialIterator != null) {
+                return serialIterator.next();
+            }
+            while (!runningPartitions.isEmpty()) {
+                Tuple next = runningPartitions.getFirst().next();
+                if (next != null) {
+                    return next;
+                }
+                runningPartitions.removeFirst().close();
+                startPartitions();
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            try {
+                // The sides may only be closed once the tasks reading them are done
+                awaitDrainTask(lhsFuture);
+                awaitDrainTask(rhsFuture);
+                if (serialIterator != null) {
+                    serialIterator.close();
+                    return;
+                }
+                for (QueuedResultIterator partition : runningPartitions) {
+                    partition.close();
+                }
+                runningPartitions.clear();
+                SQLException e = closeIterators(lhsIterator, rhsIterator);
+                if (e != null) {
+                    throw e;
+                }
+            } finally {
+                partitionInputs = null;
+                if (chunk != null) {
+                    chunk.close();
+                    chunk = null;
+                }
+            }
+        }
+
+        private void awaitDrainTask(Future<DrainedInput> future) throws SQLException {
+            if (future == null) {
+                return;
+            }
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                        .setRootCause(e).build().buildException();
+            } catch (ExecutionException e) {
+                // Already thrown to the caller by next()
+            }
+        }
+
+        @Override
+        public void explain(List<String> planSteps) {
+        }
+
+        private void init() throws SQLException {
+            List<Expression> lhsKeys = copyExpressions(lhsKeyExpressions);
+            List<Expression> rhsKeys = copyExpressions(rhsKeyExpressions);
+            if (lhsKeys == null || rhsKeys == null) {
+                serialIterator = newJoinIterator(lhsIterator, rhsIterator, lhsKeyExpressions, rhsKeyExpressions);
+                return;
+            }
+            chunk = memoryManager.allocate(0, maxParallelJoinBytes);
+            long budget = chunk.getSize();
+            AtomicLong byteCount = new AtomicLong();
+            lhsFuture = executor.submit(newDrainTask(lhsIterator, lhsKeys, byteCount, budget));
+            rhsFuture = executor.submit(newDrainTask(rhsIterator, rhsKeys, byteCount, budget));
+            DrainedInput lhsInput = getResult(lhsFuture);
+            DrainedInput rhsInput = getResult(rhsFuture);
+            if (!lhsInput.isComplete || !rhsInput.isComplete) {
+                // The rows already read stay in memory until the join is closed
+                serialIterator = newJoinIterator(
+                        lhsInput.toIterator(lhsIterator), rhsInput.toIterator(rhsIterator),
+                        lhsKeyExpressions, rhsKeyExpressions);
+                return;
+            }
+            // Release the part of the memory granted that the rows do not need
+            chunk.resize(byteCount.get());
+            List<KeyedTuple> lhsRows = lhsInput.rows;
+            List<KeyedTuple> rhsRows = rhsInput.rows;
+            byte[][][] boundaries = getPartitionBoundaries(lhsRows, rhsRows);
+            partitionInputs = Lists.newArrayListWithExpectedSize(2 * (boundaries.length + 1));
+            int lhsStart = 0;
+            int rhsStart = 0;
+            for (int p = 0; p <= boundaries.length; p++) {
+                int lhsEnd = p == boundaries.length ? lhsRows.size() : lowerBound(lhsRows, lhsStart, boundaries[p]);
+                int rhsEnd = p == boundaries.length ? rhsRows.size() : lowerBound(rhsRows, rhsStart, boundaries[p]);
+                boolean isLhsEmpty = lhsEnd == lhsStart;
+                boolean isRhsEmpty = rhsEnd == rhsStart;
+                // Skip the ranges for which the join cannot return any rows
+                if (!(isLhsEmpty && (isRhsEmpty || type != JoinType.Full))
+                        && !(isRhsEmpty && (type == JoinType.Inner || type == JoinType.Semi))) {
+                    partitionInputs.add(lhsRows.subList(lhsStart, lhsEnd));
+                    partitionInputs.add(rhsRows.subList(rhsStart, rhsEnd));
+                }
+                lhsStart = lhsEnd;
+                rhsStart = rhsEnd;
+            }
+            startPartitions();
+        }
+
+        private void startPartitions() throws SQLException {
+            while (runningPartitions.size() < joinParallelism && nextPartition < partitionInputs.size()) {
+                List<KeyedTuple> lhsRows = partitionInputs.get(nextPartition);
+                List<KeyedTuple> rhsRows = partitionInputs.get(nextPartition + 1);
+                // Release the rows of the range as soon as it has been joined
+                partitionInputs.set(nextPartition, null);
+                partitionInputs.set(nextPartition + 1, null);
+                nextPartition += 2;
+                ResultIterator joinIterator = newJoinIterator(
+                        new MaterializedResultIterator(KeyedTuple.toTuples(lhsRows)),
+                        new MaterializedResultIterator(KeyedTuple.toTuples(rhsRows)),
+                        copyExpressions(lhsKeyExpressions), copyExpressions(rhsKeyExpressions));
+                runningPartitions.add(new QueuedResultIterator(joinIterator, executor,
+                        PARTITION_QUEUE_SIZE, PARTITION_BATCH_SIZE));
+            }
+        }
+
+        private Callable<DrainedInput> newDrainTask(final ResultIterator iterator,
+                final List<Expression> keyExpressions, final AtomicLong byteCount, final long budget) {
+            return new Callable<DrainedInput>() {
+                @Override
+                public DrainedInput call() throws Exception {
+                    List<KeyedTuple> rows = new ArrayList<KeyedTuple>();
+                    ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+                    while (!isClosed && byteCount.get() <= budget) {
+                        Tuple tuple = iterator.next();
+                        if (tuple == null) {
+                            return new DrainedInput(rows, true);
+                        }
+                        byteCount.addAndGet(sizeOf(tuple));
+                        rows.add(new KeyedTuple(tuple, evaluateKey(keyExpressions, tuple, ptr)));
+                    }
+                    return new DrainedInput(rows, false);
+                }
+            };
+        }
+
+        private byte[][][] getPartitionBoundaries(List<KeyedTuple> lhsRows, List<KeyedTuple> rhsRows) {
+            int numPartitions = 4 * joinParallelism;
+            long step = Math.max(1, (long) (lhsRows.size() + rhsRows.size()) / ((long) numPartitions * SAMPLES_PER_PARTITION));
+            List<byte[][]> samples = new ArrayList<byte[][]>();
+            for (List<KeyedTuple> rows : Lists.newArrayList(lhsRows, rhsRows)) {
+                for (int i = 0; i < rows.size(); i += step) {
+                    samples.add(rows.get(i).key);
+                }
+            }
+            Collections.sort(samples, KEY_COMPARATOR);
+            List<byte[][]> boundaries = Lists.newArrayListWithExpectedSize(numPartitions - 1);
+            for (int p = 1; p < numPartitions && !samples.isEmpty(); p++) {
+                byte[][] boundary = samples.get((int) ((long) p * samples.size() / numPartitions));
+                if (boundaries.isEmpty() || KEY_COMPARATOR.compare(boundaries.get(boundaries.size() - 1), boundary) < 0) {
+                    boundaries.add(boundary);
+                }
+            }
+            return boundaries.toArray(new byte[boundaries.size()][][]);
+        }
+    }
+
+    private static int lowerBound(List<KeyedTuple> rows, int fromIndex, byte[][] key) {
+        int low = fromIndex;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (KEY_COMPARATOR.compare(rows.get(mid).key, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static byte[][] evaluateKey(List<Expression> keyExpressions, Tuple tuple, ImmutableBytesWritable ptr) {
+        byte[][] key = new byte[keyExpressions.size()][];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = keyExpressions.get(i).evaluate(tuple, ptr) ? ptr.copyBytes() : EMPTY_PTR;
+        }
+        return key;
+    }
+
+    private static long sizeOf(Tuple tuple) {
+        long size = 0;
+        for (int i = 0; i < tuple.size(); i++) {
+            Cell cell = tuple.getValue(i);
+            size += KeyValueUtil.length(cell);
+        }
+        return size;
+    }
+
+    /**
+     * Copies the join key expressions through their serialized form, since expressions may
+     * hold state while being evaluated and thus may not be evaluated concurrently.
+     * @return the copies, or null if an expression cannot be serialized
+     */
+    private static List<Expression> copyExpressions(List<Expression> expressions) throws SQLException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            for (Expression expression : expressions) {
+                WritableUtils.writeVInt(output, ExpressionType.valueOf(expression).ordinal());
+                expression.write(output);
+            }
+            output.close();
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            List<Expression> copies = Lists.newArrayListWithExpectedSize(expressions.size());
+            for (int i = 0; i < expressions.size(); i++) {
+                Expression copy = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
+                copy.readFields(input);
+                copies.add(copy);
+            }
+            return copies;
+        } catch (IllegalArgumentException e) {
+            return null;
+        } catch (IOException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                    .setRootCause(e).build().buildException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw ServerUtil.parseServerException(e.getCause());
+        }
+    }
+
+    private static final Comparator<byte[][]> KEY_COMPARATOR = new Comparator<byte[][]>() {
+        @Override
+        public int compare(byte[][] key1, byte[][] key2) {
+            for (int i = 0; i < key1.length; i++) {
+                int comp = Bytes.compareTo(key1[i], key2[i]);
+                if (comp != 0)
+                    return comp;
+            }
+            return 0;
+        }
+    };
+
+    private static class KeyedTuple {
+        private final Tuple tuple;
+        private final byte[][] key;
+
+        private KeyedTuple(Tuple tuple, byte[][] key) {
+            this.tuple = tuple;
+            this.key = key;
+        }
+
+        private static List<Tuple> toTuples(List<KeyedTuple> rows) {
+            List<Tuple> tuples = Lists.newArrayListWithExpectedSize(rows.size());
+            for (KeyedTuple row : rows) {
+                tuples.add(row.tuple);
+            }
+            return tuples;
+        }
+    }
+
+    private static class DrainedInput {
+        private final List<KeyedTuple> rows;
+        private final boolean isComplete;
+
+        private DrainedInput(List<KeyedTuple> rows, boolean isComplete) {
+            this.rows = rows;
+            this.isComplete = isComplete;
+        }
+
+        private ResultIterator toIterator(ResultIterator remaining) {
+            return ConcatResultIterator.newIterator(Lists.<PeekingResultIterator>newArrayList(
+                    new MaterializedResultIterator(KeyedTuple.toTuples(rows)),
+                    LookAheadResultIterator.wrap(remaining)));
+        }
+    }
+
     private static class JoinKey implements Comparable<JoinKey> {
         private final List<Expression> expressions;
         private final List<ImmutableBytesWritable> keys;
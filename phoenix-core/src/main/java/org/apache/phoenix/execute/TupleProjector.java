@@ -37,8 +37,10 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.compile.ColumnProjector;
 import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.visitor.CompileExpressionVisitor;
 import org.apache.phoenix.schema.KeyValueSchema;
 import org.apache.phoenix.schema.KeyValueSchema.KeyValueSchemaBuilder;
 import org.apache.phoenix.schema.PColumn;
@@ -58,6 +60,8 @@ public class TupleProjector {
     
     private final KeyValueSchema schema;
     private final Expression[] expressions;
+    // The expressions actually evaluated, which may be compiled copies of the expressions
+    private Expression[] evaluatedExpressions;
     private ValueBitSet valueSet;
     private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
     
@@ -137,6 +141,10 @@ public class TupleProjector {
         
     }
     
+    public static boolean hasProjector(Scan scan) {
+        return scan.getAttribute(SCAN_PROJECTOR) != null;
+    }
+
     public static TupleProjector deserializeProjectorFromScan(Scan scan) {
         byte[] proj = scan.getAttribute(SCAN_PROJECTOR);
         if (proj == null) {
@@ -154,7 +162,14 @@ public class TupleProjector {
             	expressions[i] = ExpressionType.values()[ordinal].newInstance();
             	expressions[i].readFields(input);
             }
-            return new TupleProjector(schema, expressions);
+            TupleProjector projector = new TupleProjector(schema, expressions);
+            if (scan.getAttribute(BaseScannerRegionObserver.COMPILE_EXPRESSIONS) != null) {
+                projector.evaluatedExpressions = new Expression[count];
+                for (int i = 0; i < count; i++) {
+                    projector.evaluatedExpressions[i] = CompileExpressionVisitor.compile(expressions[i]);
+                }
+            }
+            return projector;
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
@@ -274,7 +289,7 @@ public class TupleProjector {
     }
     
     public ProjectedValueTuple projectResults(Tuple tuple) {
-    	byte[] bytesValue = schema.toBytes(tuple, getExpressions(), valueSet, ptr);
+    	byte[] bytesValue = schema.toBytes(tuple, getEvaluatedExpressions(), valueSet, ptr);
     	Cell base = tuple.getValue(0);
         return new ProjectedValueTuple(base.getRowArray(), base.getRowOffset(), base.getRowLength(), base.getTimestamp(), bytesValue, 0, bytesValue.length, valueSet.getEstimatedLength());
     }
@@ -288,7 +303,7 @@ public class TupleProjector {
                 maxTS = ts;
             }
         }
-        byte[] bytesValue = schema.toBytes(tuple, getExpressions(), valueSet, ptr);
+        byte[] bytesValue = schema.toBytes(tuple, getEvaluatedExpressions(), valueSet, ptr);
         Cell base = tuple.getValue(0);
         if (useNewValueQualifier) {
             return new ProjectedValueTuple(base.getRowArray(), base.getRowOffset(), base.getRowLength(), maxTS, bytesValue, 0, bytesValue.length, valueSet.getEstimatedLength());
@@ -346,6 +361,10 @@ public class TupleProjector {
         return expressions;
     }
 
+    private Expression[] getEvaluatedExpressions() {
+        return evaluatedExpressions == null ? expressions : evaluatedExpressions;
+    }
+
     public ValueBitSet getValueBitSet() {
         return valueSet;
     }
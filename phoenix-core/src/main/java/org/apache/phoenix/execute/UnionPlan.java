@@ -158,7 +158,9 @@ public class UnionPlan implements QueryPlan {
         boolean isOrdered = !orderBy.getOrderByExpressions().isEmpty();
 
         if (isOrdered) { // TopN
-            scanner = new MergeSortTopNResultIterator(iterators, limit, offset, orderBy.getOrderByExpressions());
+            MergeSortTopNResultIterator mergeSortIterator = new MergeSortTopNResultIterator(iterators, limit, offset, orderBy.getOrderByExpressions());
+            mergeSortIterator.enableParallelMerge(parentContext.getConnection().getQueryServices());
+            scanner = mergeSortIterator;
         } else {
             scanner = new ConcatResultIterator(iterators);
             if (offset != null) {
@@ -39,6 +39,11 @@ public class ByteBasedLikeExpression extends LikeExpression {
         return new JONIPattern(value, Option.MULTILINE);
     }
 
+    @Override
+    protected boolean hasUnicodeCaseFolding() {
+        return true;
+    }
+
     public static LikeExpression create(List<Expression> children, LikeType likeType) {
         return new ByteBasedLikeExpression(addLikeTypeChild(children, likeType));
     }
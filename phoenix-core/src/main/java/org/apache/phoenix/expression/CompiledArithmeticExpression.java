@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ByteUtil;
+
+/**
+ *
+ * Replaces an {@link ArithmeticExpression} over LONG or DOUBLE values, evaluating the whole
+ * arithmetic tree below it through a {@link NumericEvaluator} and only encoding the final
+ * result. Only created on the server side, once an expression has been deserialized, so it
+ * is never serialized itself.
+ *
+ * @since 4.13.0
+ */
+public class CompiledArithmeticExpression extends BaseCompoundExpression {
+    private final ArithmeticExpression expression;
+    private final NumericEvaluator evaluator;
+
+    public CompiledArithmeticExpression(ArithmeticExpression expression, NumericEvaluator evaluator) {
+        super(expression.getChildren());
+        this.expression = expression;
+        this.evaluator = evaluator;
+    }
+
+    public NumericEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        int status = evaluator.evaluate(tuple, ptr);
+        if (status == NumericEvaluator.UNKNOWN) {
+            return false;
+        }
+        if (status == NumericEvaluator.NULL) {
+            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            return true;
+        }
+        byte[] result = new byte[getDataType().getByteSize()];
+        if (evaluator.isDouble()) {
+            getDataType().getCodec().encodeDouble(evaluator.getDouble(), result, 0);
+        } else {
+            getDataType().getCodec().encodeLong(evaluator.getLong(), result, 0);
+        }
+        ptr.set(result);
+        return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return expression.getDataType();
+    }
+
+    @Override
+    public <T> T accept(ExpressionVisitor<T> visitor) {
+        List<T> l = acceptChildren(visitor, null);
+        return visitor.defaultReturn(this, l);
+    }
+
+    @Override
+    public String toString() {
+        return expression.toString();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Longs;
+
+/**
+ *
+ * Comparison of two LONG or two DOUBLE values which compares the primitive values computed
+ * by a {@link NumericEvaluator} for each side, instead of their encoded bytes. Only created
+ * on the server side, once an expression has been deserialized, so it is never serialized
+ * itself.
+ *
+ * @since 4.13.0
+ */
+public class CompiledComparisonExpression extends ComparisonExpression {
+    private final NumericEvaluator lhs;
+    private final NumericEvaluator rhs;
+
+    public CompiledComparisonExpression(ComparisonExpression expression, NumericEvaluator lhs, NumericEvaluator rhs) {
+        super(expression.getChildren(), expression.getFilterOp());
+        this.lhs = lhs;
+        this.rhs = rhs;
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        int lhsStatus = lhs.evaluate(tuple, ptr);
+        if (lhsStatus == NumericEvaluator.UNKNOWN) {
+            return false;
+        }
+        if (lhsStatus == NumericEvaluator.NULL) { // null comparison evals to null
+            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            return true;
+        }
+        int rhsStatus = rhs.evaluate(tuple, ptr);
+        if (rhsStatus == NumericEvaluator.UNKNOWN) {
+            return false;
+        }
+        if (rhsStatus == NumericEvaluator.NULL) { // null comparison evals to null
+            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            return true;
+        }
+        int comparisonResult = lhs.isDouble() ?
+                Doubles.compare(lhs.getDouble(), rhs.getDouble()) : Longs.compare(lhs.getLong(), rhs.getLong());
+        ptr.set(ByteUtil.compare(getFilterOp(), comparisonResult) ? PDataType.TRUE_BYTES : PDataType.FALSE_BYTES);
+        return true;
+    }
+}
@@ -52,6 +52,7 @@ import org.apache.phoenix.expression.function.DistinctValueAggregateFunction;
 import org.apache.phoenix.expression.function.EncodeFunction;
 import org.apache.phoenix.expression.function.ExpFunction;
 import org.apache.phoenix.expression.function.ExternalSqlTypeIdFunction;
+import org.apache.phoenix.expression.function.FingerprintFunction;
 import org.apache.phoenix.expression.function.FirstValueFunction;
 import org.apache.phoenix.expression.function.FirstValuesFunction;
 import org.apache.phoenix.expression.function.FloorDateExpression;
@@ -131,6 +132,11 @@ import org.apache.phoenix.expression.function.YearFunction;
 import org.apache.phoenix.expression.function.DayOfWeekFunction;
 import org.apache.phoenix.expression.function.DayOfYearFunction;
 import org.apache.phoenix.expression.function.DistinctCountHyperLogLogAggregateFunction;
+import org.apache.phoenix.expression.function.ApproxMedianAggregateFunction;
+import org.apache.phoenix.expression.function.ApproxPercentileAggregateFunction;
+import org.apache.phoenix.expression.function.HyperLogLogEstimateFunction;
+import org.apache.phoenix.expression.function.HyperLogLogMergeAggregateFunction;
+import org.apache.phoenix.expression.function.HyperLogLogSketchAggregateFunction;
 
 import com.google.common.collect.Maps;
 
@@ -294,7 +300,15 @@ public enum ExpressionType {
     ArrayColumnExpression(SingleCellColumnExpression.class),
     FirstValuesFunction(FirstValuesFunction.class),
     LastValuesFunction(LastValuesFunction.class),
-    DistinctCountHyperLogLogAggregateFunction(DistinctCountHyperLogLogAggregateFunction.class);
+    DistinctCountHyperLogLogAggregateFunction(DistinctCountHyperLogLogAggregateFunction.class),
+    ServerCachedInListExpression(ServerCachedInListExpression.class),
+    ApproxPercentileAggregateFunction(ApproxPercentileAggregateFunction.class),
+    ApproxMedianAggregateFunction(ApproxMedianAggregateFunction.class),
+    HyperLogLogSketchAggregateFunction(HyperLogLogSketchAggregateFunction.class),
+    HyperLogLogMergeAggregateFunction(HyperLogLogMergeAggregateFunction.class),
+    HyperLogLogEstimateFunction(HyperLogLogEstimateFunction.class),
+    MemoizedExpression(MemoizedExpression.class),
+    FingerprintFunction(FingerprintFunction.class);
 
     ExpressionType(Class<? extends Expression> clazz) {
         this.clazz = clazz;
@@ -258,6 +258,13 @@ public class InListExpression extends BaseSingleExpression {
         return keyExpressions;
     }
 
+    /**
+     * @return the distinct non null values of the list, in ascending byte order
+     */
+    public Set<ImmutableBytesPtr> getValues() {
+        return values;
+    }
+
     public ImmutableBytesWritable getMinKey() {
         return minValue;
     }
@@ -24,6 +24,7 @@ import java.util.List;
 
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.expression.util.regex.AbstractBasePattern;
+import org.apache.phoenix.expression.util.regex.LiteralPattern;
 import org.apache.phoenix.expression.visitor.ExpressionVisitor;
 import org.apache.phoenix.parse.LikeParseNode.LikeType;
 import org.apache.phoenix.schema.SortOrder;
@@ -246,12 +247,29 @@ public abstract class LikeExpression extends BaseCompoundExpression {
 
     protected abstract AbstractBasePattern compilePatternSpec(String value);
 
+    /**
+     * @return true if the case insensitive matching of the patterns compiled by
+     * {@link #compilePatternSpec(String)} folds the case of other than ASCII characters
+     */
+    protected boolean hasUnicodeCaseFolding() {
+        return false;
+    }
+
     protected AbstractBasePattern compilePattern(String value) {
+        String patternSpec;
         if (likeType == LikeType.CASE_SENSITIVE) {
-            return compilePatternSpec(toPattern(value));
+            patternSpec = toPattern(value);
         } else {
-            return compilePatternSpec("(?i)" + toPattern(value));
+            patternSpec = "(?i)" + toPattern(value);
+        }
+        // Patterns without single character wildcards are matched without a regex engine
+        boolean isCaseInsensitive = likeType == LikeType.CASE_INSENSITIVE;
+        AbstractBasePattern nonAsciiPattern = isCaseInsensitive && hasUnicodeCaseFolding() ? compilePatternSpec(patternSpec) : null;
+        AbstractBasePattern pattern = LiteralPattern.fromLike(value, patternSpec, isCaseInsensitive, nonAsciiPattern);
+        if (pattern != null) {
+            return pattern;
         }
+        return nonAsciiPattern != null ? nonAsciiPattern : compilePatternSpec(patternSpec);
     }
 
     private Expression getStrExpression() {
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+
+/**
+ *
+ * Wrapper of a deterministic expression shared by several clauses of a query, such as
+ * TRUNC(ts,'HOUR') used in the WHERE, SELECT and GROUP BY clauses. The filter, the projector
+ * and the aggregators each get their own copy of the expression, so the value is kept in a
+ * per thread slot for the row being evaluated, identified by its row key, and is computed only
+ * once per row. All the occurrences of the same subtree in a query share the same scope and
+ * slot. A value is only cached once the tuple is complete, as the filters evaluate the
+ * expression on a partial row first.
+ *
+ * Visitors see through the wrapper, so that the expression is optimized like its child.
+ *
+ * @since 4.13.0
+ */
+public class MemoizedExpression extends BaseSingleExpression {
+    private static final ThreadLocal<RowCache> ROW_CACHE = new ThreadLocal<RowCache>() {
+        @Override
+        protected RowCache initialValue() {
+            return new RowCache();
+        }
+    };
+
+    private long scopeId;
+    private int slot;
+
+    public MemoizedExpression() {
+    }
+
+    public MemoizedExpression(Expression expression, long scopeId, int slot) {
+        super(expression);
+        this.scopeId = scopeId;
+        this.slot = slot;
+    }
+
+    /**
+     * Clears the values cached by the current thread. Called before a scanner processes rows,
+     * as a scan may be retried with the same scope after the rows have been modified.
+     */
+    public static void clearRowCache() {
+        ROW_CACHE.get().clear();
+    }
+
+    public long getScopeId() {
+        return scopeId;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (tuple == null || !tuple.isImmutable()) {
+            return getChild().evaluate(tuple, ptr);
+        }
+        RowCache cache = ROW_CACHE.get();
+        byte[] value = cache.get(tuple, scopeId, slot);
+        if (value != null) {
+            ptr.set(value);
+            return true;
+        }
+        if (!getChild().evaluate(tuple, ptr)) {
+            return false;
+        }
+        cache.put(slot, ptr.copyBytes());
+        return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return getChild().getDataType();
+    }
+
+    @Override
+    public SortOrder getSortOrder() {
+        return getChild().getSortOrder();
+    }
+
+    @Override
+    public Integer getMaxLength() {
+        return getChild().getMaxLength();
+    }
+
+    @Override
+    public Integer getScale() {
+        return getChild().getScale();
+    }
+
+    @Override
+    public Determinism getDeterminism() {
+        return getChild().getDeterminism();
+    }
+
+    @Override
+    public boolean isStateless() {
+        return getChild().isStateless();
+    }
+
+    @Override
+    public void readFields(DataInput input) throws IOException {
+        super.readFields(input);
+        scopeId = WritableUtils.readVLong(input);
+        slot = WritableUtils.readVInt(input);
+    }
+
+    @Override
+    public void write(DataOutput output) throws IOException {
+        super.write(output);
+        WritableUtils.writeVLong(output, scopeId);
+        WritableUtils.writeVInt(output, slot);
+    }
+
+    @Override
+    public String toString() {
+        return getChild().toString();
+    }
+
+    /**
+     * Values of the slots for the last row evaluated by a thread.
+     */
+    private static class RowCache {
+        private final ImmutableBytesWritable keyPtr = new ImmutableBytesWritable();
+        private byte[] key;
+        private long scopeId;
+        private byte[][] values = new byte[4][];
+
+        private void clear() {
+            key = null;
+            Arrays.fill(values, null);
+        }
+
+        private byte[] get(Tuple tuple, long scopeId, int slot) {
+            tuple.getKey(keyPtr);
+            if (key == null || this.scopeId != scopeId
+                    || Bytes.compareTo(key, 0, key.length, keyPtr.get(), keyPtr.getOffset(), keyPtr.getLength()) != 0) {
+                clear();
+                key = keyPtr.copyBytes();
+                this.scopeId = scopeId;
+                return null;
+            }
+            return slot < values.length ? values[slot] : null;
+        }
+
+        private void put(int slot, byte[] value) {
+            if (slot >= values.length) {
+                values = Arrays.copyOf(values, Math.max(slot + 1, values.length * 2));
+            }
+            values[slot] = value;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PFloat;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PTinyint;
+import org.apache.phoenix.schema.tuple.Tuple;
+
+/**
+ *
+ * Evaluates a tree of LONG or DOUBLE arithmetic to a primitive value, without encoding and
+ * decoding the intermediate results. The result of an evaluation is one of {@link #UNKNOWN},
+ * {@link #NULL} or {@link #VALUE}, corresponding to an {@link Expression} returning false,
+ * returning true with an empty result or returning true with a value. The value is then
+ * obtained through {@link #getLong()} or {@link #getDouble()}.
+ *
+ * An evaluator holds the value it last evaluated, so it may only be used by one thread.
+ *
+ * @since 4.13.0
+ */
+public abstract class NumericEvaluator {
+    public static final int UNKNOWN = 0;
+    public static final int NULL = 1;
+    public static final int VALUE = 2;
+
+    private static final int ADD = 0;
+    private static final int SUBTRACT = 1;
+    private static final int MULTIPLY = 2;
+
+    /**
+     * Evaluates the value of the tree for the given row.
+     * @param tuple the row
+     * @param ptr pointer used to evaluate the expressions at the leaves of the tree
+     * @return {@link #UNKNOWN}, {@link #NULL} or {@link #VALUE}
+     */
+    public abstract int evaluate(Tuple tuple, ImmutableBytesWritable ptr);
+
+    /**
+     * @return true if the value is a double, and false if it is a long
+     */
+    public abstract boolean isDouble();
+
+    public abstract long getLong();
+
+    public abstract double getDouble();
+
+    public static boolean isLongType(PDataType type) {
+        return type == PLong.INSTANCE || type == PInteger.INSTANCE || type == PSmallint.INSTANCE || type == PTinyint.INSTANCE;
+    }
+
+    public static boolean isDoubleType(PDataType type) {
+        return type == PDouble.INSTANCE || type == PFloat.INSTANCE;
+    }
+
+    /**
+     * Evaluates an expression of a LONG or DOUBLE compatible type, decoding its value.
+     */
+    public static class LeafEvaluator extends NumericEvaluator {
+        private final Expression expression;
+        private final boolean isDouble;
+        private long longValue;
+        private double doubleValue;
+
+        public LeafEvaluator(Expression expression, boolean isDouble) {
+            this.expression = expression;
+            this.isDouble = isDouble;
+        }
+
+        @Override
+        public int evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            if (!expression.evaluate(tuple, ptr)) {
+                return UNKNOWN;
+            }
+            if (ptr.getLength() == 0) {
+                return NULL;
+            }
+            if (isDouble) {
+                doubleValue = expression.getDataType().getCodec().decodeDouble(ptr, expression.getSortOrder());
+            } else {
+                longValue = expression.getDataType().getCodec().decodeLong(ptr, expression.getSortOrder());
+            }
+            return VALUE;
+        }
+
+        @Override
+        public boolean isDouble() {
+            return isDouble;
+        }
+
+        @Override
+        public long getLong() {
+            return longValue;
+        }
+
+        @Override
+        public double getDouble() {
+            return isDouble ? doubleValue : longValue;
+        }
+    }
+
+    /**
+     * Evaluates the operation of {@link LongAddExpression}, {@link LongSubtractExpression}
+     * or {@link LongMultiplyExpression}, with the same handling of nulls.
+     */
+    public static class LongArithmeticEvaluator extends NumericEvaluator {
+        private final int operation;
+        private final NumericEvaluator[] children;
+        private long value;
+
+        public LongArithmeticEvaluator(ArithmeticExpression expression, List<NumericEvaluator> children) {
+            this.operation = expression instanceof LongAddExpression ? ADD
+                    : expression instanceof LongSubtractExpression ? SUBTRACT : MULTIPLY;
+            this.children = children.toArray(new NumericEvaluator[children.size()]);
+        }
+
+        @Override
+        public int evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            long result = operation == MULTIPLY ? 1 : 0;
+            for (int i = 0; i < children.length; i++) {
+                if (children[i].evaluate(tuple, ptr) != VALUE) {
+                    return UNKNOWN;
+                }
+                long childValue = children[i].getLong();
+                if (operation == ADD) {
+                    result += childValue;
+                } else if (operation == SUBTRACT) {
+                    result = i == 0 ? childValue : result - childValue;
+                } else {
+                    result *= childValue;
+                }
+            }
+            value = result;
+            return VALUE;
+        }
+
+        @Override
+        public boolean isDouble() {
+            return false;
+        }
+
+        @Override
+        public long getLong() {
+            return value;
+        }
+
+        @Override
+        public double getDouble() {
+            return value;
+        }
+    }
+
+    /**
+     * Evaluates the operation of {@link DoubleAddExpression}, {@link DoubleSubtractExpression}
+     * or {@link DoubleMultiplyExpression}, with the same handling of nulls and of values which
+     * are not finite.
+     */
+    public static class DoubleArithmeticEvaluator extends NumericEvaluator {
+        private final int operation;
+        private final NumericEvaluator[] children;
+        private double value;
+
+        public DoubleArithmeticEvaluator(ArithmeticExpression expression, List<NumericEvaluator> children) {
+            this.operation = expression instanceof DoubleAddExpression ? ADD
+                    : expression instanceof DoubleSubtractExpression ? SUBTRACT : MULTIPLY;
+            this.children = children.toArray(new NumericEvaluator[children.size()]);
+        }
+
+        @Override
+        public int evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            double result = operation == MULTIPLY ? 1.0 : 0.0;
+            for (int i = 0; i < children.length; i++) {
+                int status = children[i].evaluate(tuple, ptr);
+                if (status != VALUE) {
+                    return status;
+                }
+                double childValue = children[i].getDouble();
+                if (Double.isNaN(childValue) || Double.isInfinite(childValue)) {
+                    return UNKNOWN;
+                }
+                if (operation == ADD) {
+                    result += childValue;
+                } else if (operation == SUBTRACT) {
+                    result = i == 0 ? childValue : result - childValue;
+                } else {
+                    result *= childValue;
+                }
+            }
+            value = result;
+            return VALUE;
+        }
+
+        @Override
+        public boolean isDouble() {
+            return true;
+        }
+
+        @Override
+        public long getLong() {
+            return (long) value;
+        }
+
+        @Override
+        public double getDouble() {
+            return value;
+        }
+    }
+}
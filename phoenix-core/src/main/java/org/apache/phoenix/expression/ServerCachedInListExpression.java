@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.cache.InListCache;
+import org.apache.phoenix.cache.ServerCacheClient;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+
+
+/*
+ * Implementation of a SQL foo IN (a,b,c) expression whose values were sent once to each
+ * region server through the server cache, instead of being serialized with the expression.
+ * Only the id of the cache is serialized, and the region server binds the expression to
+ * the cached values through {@link #setInListCache(InListCache)} before evaluating it.
+ *
+ */
+public class ServerCachedInListExpression extends BaseSingleExpression {
+    private byte[] cacheId;
+    private InListExpression inList; // client side only
+    private InListCache inListCache; // server side only
+
+    public ServerCachedInListExpression() {
+    }
+
+    public ServerCachedInListExpression(InListExpression inList, byte[] cacheId) {
+        super(inList.getChild());
+        this.inList = inList;
+        this.cacheId = cacheId;
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (inListCache == null) {
+            throw new IllegalStateException("IN list cache " + ServerCacheClient.idToString(cacheId) + " was not bound");
+        }
+        if (!getChild().evaluate(tuple, ptr)) {
+            return false;
+        }
+        if (ptr.getLength() == 0) { // null IN (...) is always null
+            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            return true;
+        }
+        if (inListCache.contains(ptr)) {
+            ptr.set(PDataType.TRUE_BYTES);
+            return true;
+        }
+        ptr.set(PDataType.FALSE_BYTES);
+        return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PBoolean.INSTANCE;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + children.hashCode() + Arrays.hashCode(cacheId);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null) return false;
+        if (getClass() != obj.getClass()) return false;
+        ServerCachedInListExpression other = (ServerCachedInListExpression)obj;
+        if (!children.equals(other.children) || !Arrays.equals(cacheId, other.cacheId)) return false;
+        return true;
+    }
+
+    @Override
+    public void readFields(DataInput input) throws IOException {
+        super.readFields(input);
+        cacheId = Bytes.readByteArray(input);
+    }
+
+    @Override
+    public void write(DataOutput output) throws IOException {
+        super.write(output);
+        Bytes.writeByteArray(output, cacheId);
+    }
+
+    @Override
+    public final <T> T accept(ExpressionVisitor<T> visitor) {
+        List<T> l = acceptChildren(visitor, null);
+        return visitor.defaultReturn(this, l);
+    }
+
+    public byte[] getCacheId() {
+        return cacheId;
+    }
+
+    /**
+     * @return the IN list whose values were cached, on the client side
+     */
+    public InListExpression getInList() {
+        return inList;
+    }
+
+    public void setInListCache(InListCache inListCache) {
+        this.inListCache = inListCache;
+    }
+
+    @Override
+    public String toString() {
+        return inList == null ? getChild() + " IN (<cache " + ServerCacheClient.idToString(cacheId) + ">)" : inList.toString();
+    }
+}
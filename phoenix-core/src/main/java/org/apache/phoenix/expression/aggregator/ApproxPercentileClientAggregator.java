@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PVarbinary;
+import org.apache.phoenix.util.ByteUtil;
+
+/**
+ * Client side Aggregator for APPROX_PERCENTILE aggregations, which merges the digests returned
+ * by the {@link ApproxPercentileServerAggregator} of each region and computes the percentile
+ * from the merged digest.
+ *
+ *
+ * @since 4.13.0
+ */
+public class ApproxPercentileClientAggregator extends BaseAggregator {
+    private final double percentile;
+    private TDigest digest = new TDigest();
+    private Double cachedResult;
+
+    public ApproxPercentileClientAggregator(double percentile, SortOrder sortOrder) {
+        super(sortOrder);
+        this.percentile = percentile;
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (tuple instanceof SingleKeyValueTuple) {
+            // Case when scanners do look ahead and re-aggregate result row.The result is already available in the ptr
+            cachedResult = (Double) PDouble.INSTANCE.toObject(ptr, PDouble.INSTANCE, sortOrder);
+        } else {
+            digest.add(TDigest.fromBytes(ptr.get(), ptr.getOffset(), ptr.getLength()));
+            cachedResult = null;
+        }
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (cachedResult == null) {
+            if (digest.size() == 0) {
+                ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+                return true;
+            }
+            cachedResult = digest.quantile(percentile);
+        }
+        ptr.set(PDouble.INSTANCE.toBytes(cachedResult));
+        return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PVarbinary.INSTANCE;
+    }
+
+    @Override
+    public void reset() {
+        digest = new TDigest();
+        cachedResult = null;
+        super.reset();
+    }
+
+    @Override
+    public int getSize() {
+        return super.getSize() + digest.getSize();
+    }
+
+    @Override
+    public String toString() {
+        return "APPROX_PERCENTILE [percentile=" + percentile + ", values=" + digest.size() + "]";
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDataType.PDataCodec;
+import org.apache.phoenix.schema.types.PVarbinary;
+
+/**
+ * Server side Aggregator for APPROX_PERCENTILE aggregations, which adds the values to a
+ * {@link TDigest} and returns the serialized digest instead of the values.
+ *
+ *
+ * @since 4.13.0
+ */
+public class ApproxPercentileServerAggregator extends BaseAggregator {
+    private final PDataType inputDataType;
+    private TDigest digest = new TDigest();
+
+    public ApproxPercentileServerAggregator(PDataType inputDataType, SortOrder sortOrder) {
+        super(sortOrder);
+        this.inputDataType = inputDataType;
+    }
+
+    /**
+     * Creates an aggregator starting from the values of a serialized digest, as returned by
+     * {@link #evaluate(Tuple, ImmutableBytesWritable)}.
+     */
+    public ApproxPercentileServerAggregator(PDataType inputDataType, SortOrder sortOrder,
+            ImmutableBytesWritable ptr) {
+        this(inputDataType, sortOrder);
+        if (ptr != null) {
+            digest.add(TDigest.fromBytes(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        }
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+        PDataCodec codec = inputDataType.getCodec();
+        double value = codec != null ? codec.decodeDouble(ptr, sortOrder)
+                : ((Number) inputDataType.toObject(ptr, sortOrder)).doubleValue();
+        digest.add(value);
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        ptr.set(digest.toBytes());
+        return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PVarbinary.INSTANCE;
+    }
+
+    @Override
+    public void reset() {
+        digest = new TDigest();
+        super.reset();
+    }
+
+    @Override
+    public int getSize() {
+        return super.getSize() + digest.getSize();
+    }
+
+    @Override
+    public String toString() {
+        return "APPROX_PERCENTILE [values=" + digest.size() + "]";
+    }
+}
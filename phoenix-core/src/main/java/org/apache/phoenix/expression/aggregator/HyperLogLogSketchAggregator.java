@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import java.io.IOException;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.function.DistinctCountHyperLogLogAggregateFunction;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarbinary;
+import org.apache.phoenix.util.ByteUtil;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+
+/**
+ * Aggregator producing a serialized HyperLogLog sketch, with the same precision as
+ * APPROX_COUNT_DISTINCT, either from the values to count or by merging sketches. Merging
+ * a sketch more than once does not change it, so the sketch of a row that was already
+ * aggregated may be aggregated again.
+ *
+ *
+ * @since 4.13.0
+ */
+public class HyperLogLogSketchAggregator extends BaseAggregator {
+    private final boolean isSketchInput;
+    private HyperLogLogPlus hll = newHyperLogLog();
+
+    /**
+     * @param sortOrder the sort order of the aggregated values
+     * @param isSketchInput true if the aggregated values are serialized sketches to merge, and
+     * false if they are the values to count
+     */
+    public HyperLogLogSketchAggregator(SortOrder sortOrder, boolean isSketchInput) {
+        super(sortOrder);
+        this.isSketchInput = isSketchInput;
+    }
+
+    /**
+     * Creates an aggregator starting from a sketch, as returned by
+     * {@link #evaluate(Tuple, ImmutableBytesWritable)}.
+     */
+    public HyperLogLogSketchAggregator(SortOrder sortOrder, boolean isSketchInput, ImmutableBytesWritable sketch) {
+        this(sortOrder, isSketchInput);
+        if (sketch != null) {
+            merge(sketch, SortOrder.getDefault());
+        }
+    }
+
+    private static HyperLogLogPlus newHyperLogLog() {
+        return new HyperLogLogPlus(DistinctCountHyperLogLogAggregateFunction.NormalSetPrecision,
+                DistinctCountHyperLogLogAggregateFunction.SparseSetPrecision);
+    }
+
+    private void merge(ImmutableBytesWritable ptr, SortOrder sortOrder) {
+        byte[] bytes = ByteUtil.copyKeyBytesIfNecessary(ptr);
+        if (sortOrder == SortOrder.DESC) {
+            bytes = SortOrder.invert(bytes, 0, bytes.length);
+        }
+        try {
+            hll.addAll(HyperLogLogPlus.Builder.build(bytes));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (CardinalityMergeException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void aggregate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (isSketchInput) {
+            merge(ptr, sortOrder);
+        } else {
+            hll.offer(ptr);
+        }
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        try {
+            ptr.set(hll.getBytes());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PVarbinary.INSTANCE;
+    }
+
+    @Override
+    public void reset() {
+        hll = newHyperLogLog();
+        super.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "HLL_SKETCH [cardinality=" + hll.cardinality() + "]";
+    }
+}
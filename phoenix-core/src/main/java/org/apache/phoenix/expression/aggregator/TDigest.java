@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.util.SizedUtil;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+/**
+ *
+ * Mergeable sketch of the distribution of a set of values, from which approximate quantiles
+ * are computed, as described by Dunning and Ertl in "Computing Extremely Accurate Quantiles
+ * Using t-Digests". Values are summarized by centroids, each holding the mean and the number
+ * of the values it covers. Centroids covering values close to the extremes of the
+ * distribution cover fewer values, so that the error of a quantile is proportional to
+ * q * (1 - q). The number of centroids is bounded by about the compression, independently of
+ * the number of values, so a digest serializes to a few KB.
+ *
+ * Added values are buffered and merged into the centroids once the buffer is full, or before
+ * the digest is read.
+ *
+ * @since 4.13.0
+ */
+public class TDigest {
+    public static final int DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private double[] means;
+    private double[] weights;
+    private int centroidCount;
+    private double[] bufferMeans;
+    private double[] bufferWeights;
+    private int bufferCount;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        // The merge produces at most about compression / 2 centroids, leaving room for the buffer
+        int capacity = (int) Math.ceil(compression) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.bufferMeans = new double[capacity * 4];
+        this.bufferWeights = new double[capacity * 4];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Adds a value occurring the given number of times.
+     */
+    public void add(double value, long weight) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (bufferCount == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all the values summarized by the other digest to this digest.
+     */
+    public void add(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroidCount; i++) {
+            if (bufferCount == bufferMeans.length) {
+                compress();
+            }
+            bufferMeans[bufferCount] = other.means[i];
+            bufferWeights[bufferCount] = other.weights[i];
+            bufferCount++;
+            totalWeight += other.weights[i];
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @return the number of values summarized by the digest
+     */
+    public long size() {
+        return (long) totalWeight;
+    }
+
+    /**
+     * @param q the quantile, between 0 and 1
+     * @return the approximate value at the quantile, or NaN if the digest is empty
+     */
+    public double quantile(double q) {
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        if (centroidCount == 1) {
+            return means[0];
+        }
+        double index = q * totalWeight;
+        // Between the minimum and the center of the first centroid
+        if (index < weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+        // Between the center of the last centroid and the maximum
+        int last = centroidCount - 1;
+        if (index > totalWeight - weights[last] / 2) {
+            return max - (max - means[last]) * (totalWeight - index) / (weights[last] / 2);
+        }
+        // Interpolate between the centers of the two centroids surrounding the index
+        double center = weights[0] / 2;
+        for (int i = 0; i < last; i++) {
+            double distance = (weights[i] + weights[i + 1]) / 2;
+            if (index <= center + distance) {
+                return means[i] + (means[i + 1] - means[i]) * (index - center) / distance;
+            }
+            center += distance;
+        }
+        return means[last];
+    }
+
+    /**
+     * Merges the buffered values into the centroids, sorting all of them by mean and then
+     * combining neighbours as long as a centroid stays within the size allowed at its quantile.
+     */
+    private void compress() {
+        if (bufferCount == 0) {
+            return;
+        }
+        int count = centroidCount + bufferCount;
+        double[] sortedMeans = new double[count];
+        double[] sortedWeights = new double[count];
+        System.arraycopy(means, 0, sortedMeans, 0, centroidCount);
+        System.arraycopy(weights, 0, sortedWeights, 0, centroidCount);
+        System.arraycopy(bufferMeans, 0, sortedMeans, centroidCount, bufferCount);
+        System.arraycopy(bufferWeights, 0, sortedWeights, centroidCount, bufferCount);
+        sort(sortedMeans, sortedWeights, 0, count - 1);
+        bufferCount = 0;
+
+        int merged = 0;
+        double weightSoFar = 0;
+        double mean = sortedMeans[0];
+        double weight = sortedWeights[0];
+        double weightLimit = totalWeight * quantileLimit(0);
+        for (int i = 1; i < count; i++) {
+            if (weightSoFar + weight + sortedWeights[i] <= weightLimit) {
+                weight += sortedWeights[i];
+                mean += (sortedMeans[i] - mean) * sortedWeights[i] / weight;
+            } else {
+                merged = addCentroid(merged, mean, weight);
+                weightSoFar += weight;
+                weightLimit = totalWeight * quantileLimit(weightSoFar / totalWeight);
+                mean = sortedMeans[i];
+                weight = sortedWeights[i];
+            }
+        }
+        centroidCount = addCentroid(merged, mean, weight);
+    }
+
+    private int addCentroid(int index, double mean, double weight) {
+        if (index == means.length) {
+            means = Arrays.copyOf(means, index * 2);
+            weights = Arrays.copyOf(weights, index * 2);
+        }
+        means[index] = mean;
+        weights[index] = weight;
+        return index + 1;
+    }
+
+    /**
+     * Scale function k(q) = compression / (2 pi) * asin(2q - 1). A centroid starting at quantile
+     * q may extend to the quantile at which k has grown by one.
+     */
+    private double quantileLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+        if (k >= compression / 4) {
+            return 1;
+        }
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    private static void sort(double[] keys, double[] values, int from, int to) {
+        while (from < to) {
+            if (to - from < 16) {
+                for (int i = from + 1; i <= to; i++) {
+                    for (int j = i; j > from && keys[j - 1] > keys[j]; j--) {
+                        swap(keys, values, j - 1, j);
+                    }
+                }
+                return;
+            }
+            double pivot = keys[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // Recurse into the smaller part to bound the stack depth
+            if (j - from < to - i) {
+                sort(keys, values, from, j);
+                from = i;
+            } else {
+                sort(keys, values, i, to);
+                to = j;
+            }
+        }
+    }
+
+    private static void swap(double[] keys, double[] values, int i, int j) {
+        double key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * @return an estimate of the heap size of the digest
+     */
+    public int getSize() {
+        return SizedUtil.OBJECT_SIZE + 4 * SizedUtil.ARRAY_SIZE
+                + (means.length + weights.length + bufferMeans.length + bufferWeights.length) * 8;
+    }
+
+    public byte[] toBytes() {
+        compress();
+        TrustedByteArrayOutputStream stream = new TrustedByteArrayOutputStream(
+                4 * Bytes.SIZEOF_DOUBLE + centroidCount * (Bytes.SIZEOF_DOUBLE + 2));
+        DataOutputStream output = new DataOutputStream(stream);
+        try {
+            output.writeDouble(compression);
+            output.writeDouble(min);
+            output.writeDouble(max);
+            WritableUtils.writeVInt(output, centroidCount);
+            for (int i = 0; i < centroidCount; i++) {
+                output.writeDouble(means[i]);
+                WritableUtils.writeVLong(output, (long) weights[i]);
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e); // Impossible as we're writing to a byte array
+        }
+        return stream.toByteArray();
+    }
+
+    public static TDigest fromBytes(byte[] bytes, int offset, int length) {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+        try {
+            TDigest digest = new TDigest(input.readDouble());
+            digest.min = input.readDouble();
+            digest.max = input.readDouble();
+            int count = WritableUtils.readVInt(input);
+            for (int i = 0; i < count; i++) {
+                double mean = input.readDouble();
+                double weight = WritableUtils.readVLong(input);
+                digest.centroidCount = digest.addCentroid(digest.centroidCount, mean, weight);
+                digest.totalWeight += weight;
+            }
+            return digest;
+        } catch (IOException e) {
+            throw new RuntimeException(e); // Impossible as we're reading from a byte array
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.util.List;
+
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.parse.FunctionParseNode.Argument;
+import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
+import org.apache.phoenix.schema.types.PDecimal;
+
+/**
+ * 
+ * Built-in function for APPROX_MEDIAN(<expression>) aggregate function, which is
+ * APPROX_PERCENTILE(<expression>, 0.5)
+ *
+ * 
+ * @since 4.13.0
+ */
+@BuiltInFunction(name = ApproxMedianAggregateFunction.NAME, args = { @Argument(allowedTypes = { PDecimal.class }) })
+public class ApproxMedianAggregateFunction extends ApproxPercentileAggregateFunction {
+    public static final String NAME = "APPROX_MEDIAN";
+
+    public ApproxMedianAggregateFunction() {
+    }
+
+    public ApproxMedianAggregateFunction(List<Expression> children) {
+        super(children);
+    }
+
+    @Override
+    protected double getPercentile() {
+        return 0.5;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
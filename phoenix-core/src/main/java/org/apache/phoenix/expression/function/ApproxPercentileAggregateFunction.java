@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.ApproxPercentileClientAggregator;
+import org.apache.phoenix.expression.aggregator.ApproxPercentileServerAggregator;
+import org.apache.phoenix.parse.FunctionParseNode.Argument;
+import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PDouble;
+
+/**
+ * 
+ * Built-in function for APPROX_PERCENTILE(<expression>, <percentile>) aggregate function,
+ * which approximates PERCENTILE_CONT through a t-digest. Each region returns a digest of
+ * a few KB instead of all of its distinct values.
+ *
+ * 
+ * @since 4.13.0
+ */
+@BuiltInFunction(name = ApproxPercentileAggregateFunction.NAME, args = { @Argument(allowedTypes = { PDecimal.class }),
+        @Argument(allowedTypes = { PDecimal.class }, isConstant = true, minValue = "0", maxValue = "1") })
+public class ApproxPercentileAggregateFunction extends SingleAggregateFunction {
+    public static final String NAME = "APPROX_PERCENTILE";
+
+    public ApproxPercentileAggregateFunction() {
+    }
+
+    public ApproxPercentileAggregateFunction(List<Expression> children) {
+        super(children);
+    }
+
+    protected double getPercentile() {
+        // Not available for the aggregator created by the default constructor
+        if (children.size() < 2) {
+            return 0.5;
+        }
+        return ((Number)((LiteralExpression)children.get(1)).getValue()).doubleValue();
+    }
+
+    @Override
+    public Aggregator newServerAggregator(Configuration conf) {
+        Expression child = getAggregatorExpression();
+        return new ApproxPercentileServerAggregator(child.getDataType(), child.getSortOrder());
+    }
+
+    @Override
+    public Aggregator newServerAggregator(Configuration conf, ImmutableBytesWritable ptr) {
+        Expression child = getAggregatorExpression();
+        return new ApproxPercentileServerAggregator(child.getDataType(), child.getSortOrder(), ptr);
+    }
+
+    @Override
+    public Aggregator newClientAggregator() {
+        return new ApproxPercentileClientAggregator(getPercentile(), getAggregatorExpression().getSortOrder());
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PDouble.INSTANCE;
+    }
+}
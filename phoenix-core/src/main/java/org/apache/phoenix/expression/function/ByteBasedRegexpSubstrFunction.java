@@ -22,6 +22,7 @@ import java.util.List;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.util.regex.AbstractBasePattern;
 import org.apache.phoenix.expression.util.regex.JONIPattern;
+import org.apache.phoenix.expression.util.regex.LiteralPattern;
 import org.joni.Option;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.util.regex.AbstractBasePattern;
@@ -50,6 +51,8 @@ public class ByteBasedRegexpSubstrFunction extends RegexpSubstrFunction {
 
     @Override
     protected AbstractBasePattern compilePatternSpec(String value) {
-        return new JONIPattern(value, Option.MULTILINE);
+        // Search for literal patterns without a regex engine
+        AbstractBasePattern pattern = LiteralPattern.fromRegex(value);
+        return pattern != null ? pattern : new JONIPattern(value, Option.MULTILINE);
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.parse.FunctionParseNode.Argument;
+import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PLong;
+
+/**
+ * 64 bit fingerprint of the serialized value of an expression, for comparing rows without
+ * shipping them. The bytes are hashed in ascending sort order, so that the same value stored
+ * with a different sort order has the same fingerprint. Multiple values are combined by passing
+ * the fingerprint of the previous values as the seed, e.g.
+ * FINGERPRINT(C, FINGERPRINT(B, FINGERPRINT(A))). Null values have a fingerprint as well, so
+ * the result is never null.
+ *
+ * The fingerprint is not cryptographic.
+ */
+@BuiltInFunction(name = FingerprintFunction.NAME, args = { @Argument(),
+        @Argument(allowedTypes = { PLong.class }, defaultValue = "0") })
+public class FingerprintFunction extends ScalarFunction {
+    public static final String NAME = "FINGERPRINT";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    // Hashed instead of the bytes of a null value, which would otherwise be the same as the
+    // seed of an empty value
+    private static final long NULL_MARKER = 0x9e3779b97f4a7c15L;
+
+    public FingerprintFunction() {
+    }
+
+    public FingerprintFunction(List<Expression> children) throws SQLException {
+        super(children);
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        if (!children.get(1).evaluate(tuple, ptr)) {
+            return false;
+        }
+        long seed = ptr.getLength() == 0 ? 0
+                : PLong.INSTANCE.getCodec().decodeLong(ptr, children.get(1).getSortOrder());
+        Expression child = children.get(0);
+        long hash;
+        if (!child.evaluate(tuple, ptr)) {
+            // Only a value missing from a complete row is null
+            if (tuple == null || !tuple.isImmutable()) {
+                return false;
+            }
+            hash = fingerprintNull(seed);
+        } else if (ptr.getLength() == 0) {
+            hash = fingerprintNull(seed);
+        } else {
+            hash = fingerprint(seed, ptr.get(), ptr.getOffset(), ptr.getLength(),
+                child.getSortOrder());
+        }
+        ptr.set(PLong.INSTANCE.toBytes(hash));
+        return true;
+    }
+
+    /**
+     * FNV-1a over the bytes in ascending sort order, followed by the MurmurHash3 finalizer
+     * to spread the bits of the last bytes.
+     */
+    public static long fingerprint(long seed, byte[] bytes, int offset, int length,
+            SortOrder sortOrder) {
+        long hash = FNV_OFFSET_BASIS ^ seed;
+        int mask = sortOrder == SortOrder.DESC ? 0xff : 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= (bytes[i] ^ mask) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash ^ length);
+    }
+
+    public static long fingerprintNull(long seed) {
+        return mix(FNV_OFFSET_BASIS ^ seed ^ NULL_MARKER);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PLong.INSTANCE;
+    }
+
+    @Override
+    public boolean isNullable() {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
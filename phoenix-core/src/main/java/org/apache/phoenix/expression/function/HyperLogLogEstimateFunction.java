@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.parse.FunctionParseNode.Argument;
+import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarbinary;
+import org.apache.phoenix.util.ByteUtil;
+
+import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+
+/**
+ * Built-in function for HLL_ESTIMATE(<sketch>), which returns the estimated number of
+ * distinct values of a sketch produced by HLL_SKETCH or HLL_MERGE.
+ * 
+ * 
+ * @since 4.13.0
+ */
+@BuiltInFunction(name = HyperLogLogEstimateFunction.NAME, args = { @Argument(allowedTypes = { PVarbinary.class }) })
+public class HyperLogLogEstimateFunction extends ScalarFunction {
+    public static final String NAME = "HLL_ESTIMATE";
+
+    public HyperLogLogEstimateFunction() {
+    }
+
+    public HyperLogLogEstimateFunction(List<Expression> children) {
+        super(children);
+    }
+
+    @Override
+    public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+        Expression sketchExpr = children.get(0);
+        if (!sketchExpr.evaluate(tuple, ptr)) {
+            return false;
+        }
+        if (ptr.getLength() == 0) {
+            return true;
+        }
+        byte[] sketch = ByteUtil.copyKeyBytesIfNecessary(ptr);
+        if (sketchExpr.getSortOrder() == SortOrder.DESC) {
+            sketch = SortOrder.invert(sketch, 0, sketch.length);
+        }
+        long cardinality;
+        try {
+            cardinality = HyperLogLogPlus.Builder.build(sketch).cardinality();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        byte[] buffer = new byte[PLong.INSTANCE.getByteSize()];
+        PLong.INSTANCE.getCodec().encodeLong(cardinality, buffer, 0);
+        ptr.set(buffer);
+        return true;
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PLong.INSTANCE;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.util.List;
+
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.parse.FunctionParseNode.Argument;
+import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
+import org.apache.phoenix.schema.types.PVarbinary;
+
+/**
+ * Built-in function for HLL_MERGE(<sketch>) aggregate function, which merges the sketches
+ * produced by HLL_SKETCH into the sketch of the union of their values.
+ * 
+ * 
+ * @since 4.13.0
+ */
+@BuiltInFunction(name=HyperLogLogMergeAggregateFunction.NAME, args= {@Argument(allowedTypes={PVarbinary.class})} )
+public class HyperLogLogMergeAggregateFunction extends HyperLogLogSketchAggregateFunction {
+    public static final String NAME = "HLL_MERGE";
+
+    public HyperLogLogMergeAggregateFunction() {
+    }
+
+    public HyperLogLogMergeAggregateFunction(List<Expression> childExpressions) {
+        super(childExpressions);
+    }
+
+    @Override
+    protected boolean isSketchInput() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.function;
+
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.aggregator.Aggregator;
+import org.apache.phoenix.expression.aggregator.HyperLogLogSketchAggregator;
+import org.apache.phoenix.parse.FunctionParseNode.Argument;
+import org.apache.phoenix.parse.FunctionParseNode.BuiltInFunction;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PVarbinary;
+
+/**
+ * Built-in function for HLL_SKETCH(<expression>) aggregate function, which returns the
+ * HyperLogLog sketch used by APPROX_COUNT_DISTINCT as a VARBINARY value, so that it can be
+ * stored, for example by an UPSERT SELECT into a rollup table. Stored sketches are merged
+ * by HLL_MERGE and estimated by HLL_ESTIMATE.
+ * 
+ * 
+ * @since 4.13.0
+ */
+@BuiltInFunction(name=HyperLogLogSketchAggregateFunction.NAME, args= {@Argument()} )
+public class HyperLogLogSketchAggregateFunction extends SingleAggregateFunction {
+    public static final String NAME = "HLL_SKETCH";
+
+    public HyperLogLogSketchAggregateFunction() {
+    }
+
+    public HyperLogLogSketchAggregateFunction(List<Expression> childExpressions) {
+        super(childExpressions);
+    }
+
+    /**
+     * @return true if the argument is a serialized sketch to merge, and false if it is the
+     * value to count
+     */
+    protected boolean isSketchInput() {
+        return false;
+    }
+
+    @Override
+    public Aggregator newServerAggregator(Configuration conf) {
+        return new HyperLogLogSketchAggregator(getAggregatorExpression().getSortOrder(), isSketchInput());
+    }
+
+    @Override
+    public Aggregator newServerAggregator(Configuration conf, ImmutableBytesWritable ptr) {
+        return new HyperLogLogSketchAggregator(getAggregatorExpression().getSortOrder(), isSketchInput(), ptr);
+    }
+
+    @Override
+    public Aggregator newClientAggregator() {
+        return new HyperLogLogSketchAggregator(SortOrder.getDefault(), true);
+    }
+
+    @Override
+    public PDataType getDataType() {
+        return PVarbinary.INSTANCE;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
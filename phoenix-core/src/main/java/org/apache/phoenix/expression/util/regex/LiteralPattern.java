@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.util.regex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.StringUtil;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * Pattern made of literal strings separated by wildcards matching zero or more characters,
+ * such as the LIKE patterns 'foo%', '%foo%', '%suffix' or 'a%b%c' and the regular expressions
+ * without any special character. It is matched directly against the UTF-8 bytes, by comparing
+ * the anchored literals at the start and at the end and by searching for the other literals in
+ * order, using a Boyer-Moore-Horspool skip table per literal. As UTF-8 is self synchronizing, a
+ * literal can only be found at the start of a character. Case insensitive patterns must be
+ * ASCII and fold only the ASCII letters. Values with other characters are matched by the
+ * regular expression engine if its case folding may differ, as Unicode folds for example the
+ * Kelvin sign to 'k' and the sharp s to "ss".
+ *
+ * The results are the same as the ones of the regular expression the pattern is created for,
+ * which is returned by {@link #pattern()}.
+ *
+ * @since 4.13.0
+ */
+public class LiteralPattern extends AbstractBasePattern {
+    private static final String REGEX_SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final String patternString;
+    private final byte[][] literals;
+    private final int[][] skipTables;
+    private final boolean isAnchoredAtStart;
+    private final boolean isAnchoredAtEnd;
+    private final boolean hasWildcard;
+    private final boolean isCaseInsensitive;
+    private final AbstractBasePattern nonAsciiPattern;
+
+    private LiteralPattern(String patternString, List<String> literals, boolean isAnchoredAtStart,
+            boolean isAnchoredAtEnd, boolean hasWildcard, boolean isCaseInsensitive,
+            AbstractBasePattern nonAsciiPattern) {
+        this.patternString = patternString;
+        this.nonAsciiPattern = nonAsciiPattern;
+        this.isAnchoredAtStart = isAnchoredAtStart;
+        this.isAnchoredAtEnd = isAnchoredAtEnd;
+        this.hasWildcard = hasWildcard;
+        this.isCaseInsensitive = isCaseInsensitive;
+        this.literals = new byte[literals.size()][];
+        this.skipTables = new int[literals.size()][];
+        for (int i = 0; i < this.literals.length; i++) {
+            String literal = isCaseInsensitive ? literals.get(i).toLowerCase(Locale.ROOT) : literals.get(i);
+            this.literals[i] = Bytes.toBytes(literal);
+            this.skipTables[i] = newSkipTable(this.literals[i]);
+        }
+    }
+
+    /**
+     * @param likePattern the LIKE pattern
+     * @param patternString the regular expression the LIKE pattern is translated to
+     * @param isCaseInsensitive true for ILIKE
+     * @param nonAsciiPattern the compiled regular expression, to match the values containing
+     * other than ASCII characters when the case folding of the regular expression engine is not
+     * limited to ASCII, or null
+     * @return the pattern, or null if the LIKE pattern contains a single character wildcard or
+     * if it is case insensitive and contains other than ASCII characters
+     */
+    public static LiteralPattern fromLike(String likePattern, String patternString, boolean isCaseInsensitive,
+            AbstractBasePattern nonAsciiPattern) {
+        List<String> parts = Lists.newArrayList();
+        StringBuilder part = new StringBuilder();
+        boolean wasSlash = false;
+        for (int i = 0; i < likePattern.length(); i++) {
+            char c = likePattern.charAt(i);
+            if (wasSlash) {
+                part.append(c);
+                wasSlash = false;
+            } else if (c == StringUtil.SINGLE_CHAR_LIKE) {
+                return null;
+            } else if (c == StringUtil.MULTI_CHAR_LIKE) {
+                parts.add(part.toString());
+                part.setLength(0);
+            } else if (c == '\\') {
+                wasSlash = true;
+            } else {
+                part.append(c);
+            }
+        }
+        parts.add(part.toString());
+        if (isCaseInsensitive && !isAscii(likePattern)) {
+            return null;
+        }
+        boolean isAnchoredAtStart = !parts.get(0).isEmpty();
+        boolean isAnchoredAtEnd = !parts.get(parts.size() - 1).isEmpty();
+        List<String> literals = Lists.newArrayListWithExpectedSize(parts.size());
+        for (String literal : parts) {
+            if (!literal.isEmpty()) {
+                literals.add(literal);
+            }
+        }
+        return new LiteralPattern(patternString, literals, isAnchoredAtStart, isAnchoredAtEnd, parts.size() > 1,
+                isCaseInsensitive, isCaseInsensitive ? nonAsciiPattern : null);
+    }
+
+    /**
+     * @return the pattern searching for the regular expression, or null if the regular
+     * expression is empty or contains any special character
+     */
+    public static LiteralPattern fromRegex(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < regex.length(); i++) {
+            if (REGEX_SPECIAL_CHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        return new LiteralPattern(regex, Arrays.asList(regex), true, true, false, false, null);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] newSkipTable(byte[] literal) {
+        int[] skipTable = new int[256];
+        Arrays.fill(skipTable, literal.length);
+        int last = literal.length - 1;
+        for (int i = 0; i < last; i++) {
+            skipTable[literal[i] & 0xFF] = last - i;
+            if (isCaseInsensitive) {
+                skipTable[Character.toUpperCase((char)literal[i]) & 0xFF] = last - i;
+            }
+        }
+        return skipTable;
+    }
+
+    private boolean equals(byte b, byte literalByte) {
+        return b == literalByte || (isCaseInsensitive && b >= 'A' && b <= 'Z' && b + ('a' - 'A') == literalByte);
+    }
+
+    private boolean matchesAt(byte[] bytes, int offset, int literalIndex) {
+        byte[] literal = literals[literalIndex];
+        for (int i = 0; i < literal.length; i++) {
+            if (!equals(bytes[offset + i], literal[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the offset of the first occurrence of the literal between the offsets, or -1
+     */
+    private int indexOf(byte[] bytes, int from, int to, int literalIndex) {
+        byte[] literal = literals[literalIndex];
+        int[] skipTable = skipTables[literalIndex];
+        int last = literal.length - 1;
+        for (int i = from; i + last < to; i += skipTable[bytes[i + last] & 0xFF]) {
+            int j = last;
+            while (equals(bytes[i + j], literal[j])) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(byte[] bytes, int offset, int length) {
+        int from = offset;
+        int to = offset + length;
+        int first = 0;
+        int last = literals.length - 1;
+        if (!hasWildcard) {
+            int literalLength = literals.length == 0 ? 0 : literals[0].length;
+            return length == literalLength && (literalLength == 0 || matchesAt(bytes, offset, 0));
+        }
+        if (isAnchoredAtStart) {
+            if (length < literals[first].length || !matchesAt(bytes, from, first)) {
+                return false;
+            }
+            from += literals[first++].length;
+        }
+        if (isAnchoredAtEnd) {
+            if (to - from < literals[last].length || !matchesAt(bytes, to - literals[last].length, last)) {
+                return false;
+            }
+            to -= literals[last--].length;
+        }
+        for (int i = first; i <= last; i++) {
+            int index = indexOf(bytes, from, to, i);
+            if (index < 0) {
+                return false;
+            }
+            from = index + literals[i].length;
+        }
+        return true;
+    }
+
+    @Override
+    public void matches(ImmutableBytesWritable srcPtr) {
+        Preconditions.checkNotNull(srcPtr);
+        if (nonAsciiPattern != null && !isAscii(srcPtr.get(), srcPtr.getOffset(), srcPtr.getLength())) {
+            nonAsciiPattern.matches(srcPtr);
+            return;
+        }
+        boolean ret = matches(srcPtr.get(), srcPtr.getOffset(), srcPtr.getLength());
+        srcPtr.set(ret ? PDataType.TRUE_BYTES : PDataType.FALSE_BYTES);
+    }
+
+    /**
+     * Replaces all the occurrences of a pattern created by {@link #fromRegex(String)}.
+     */
+    @Override
+    public void replaceAll(ImmutableBytesWritable srcPtr, byte[] rStrBytes, int rStrOffset, int rStrLen) {
+        Preconditions.checkNotNull(srcPtr);
+        Preconditions.checkNotNull(rStrBytes);
+        Preconditions.checkState(literals.length == 1 && !hasWildcard);
+        byte[] srcBytes = srcPtr.get();
+        int cur = srcPtr.getOffset();
+        int range = srcPtr.getOffset() + srcPtr.getLength();
+        int literalLength = literals[0].length;
+        int index = indexOf(srcBytes, cur, range, 0);
+        if (index < 0) {
+            return;
+        }
+        // Count the occurrences first to allocate the result once
+        int count = 0;
+        for (int i = index; i >= 0; i = indexOf(srcBytes, i + literalLength, range, 0)) {
+            count++;
+        }
+        byte[] ret = new byte[srcPtr.getLength() + count * (rStrLen - literalLength)];
+        int curPosInRet = 0;
+        for (int i = index; i >= 0; i = indexOf(srcBytes, cur, range, 0)) {
+            System.arraycopy(srcBytes, cur, ret, curPosInRet, i - cur);
+            curPosInRet += i - cur;
+            System.arraycopy(rStrBytes, rStrOffset, ret, curPosInRet, rStrLen);
+            curPosInRet += rStrLen;
+            cur = i + literalLength;
+        }
+        System.arraycopy(srcBytes, cur, ret, curPosInRet, range - cur);
+        srcPtr.set(ret);
+    }
+
+    /**
+     * Finds the first occurrence of a pattern created by {@link #fromRegex(String)} starting
+     * at or after the character at the offset.
+     */
+    @Override
+    public void substr(ImmutableBytesWritable ptr, int offsetInStr) {
+        Preconditions.checkNotNull(ptr);
+        Preconditions.checkState(literals.length == 1 && !hasWildcard);
+        int offsetInBytes = StringUtil.calculateUTF8Offset(ptr.get(), ptr.getOffset(),
+                ptr.getLength(), SortOrder.ASC, offsetInStr);
+        int index = offsetInBytes < 0 ? -1
+                : indexOf(ptr.get(), offsetInBytes, ptr.getOffset() + ptr.getLength(), 0);
+        if (index < 0) {
+            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+        } else {
+            ptr.set(ptr.get(), index, literals[0].length);
+        }
+    }
+
+    @Override
+    public String pattern() {
+        return patternString;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.visitor;
+
+import java.util.List;
+
+import org.apache.phoenix.expression.AddExpression;
+import org.apache.phoenix.expression.ArithmeticExpression;
+import org.apache.phoenix.expression.CompiledArithmeticExpression;
+import org.apache.phoenix.expression.CompiledComparisonExpression;
+import org.apache.phoenix.expression.ComparisonExpression;
+import org.apache.phoenix.expression.DoubleAddExpression;
+import org.apache.phoenix.expression.DoubleMultiplyExpression;
+import org.apache.phoenix.expression.DoubleSubtractExpression;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.LongAddExpression;
+import org.apache.phoenix.expression.LongMultiplyExpression;
+import org.apache.phoenix.expression.LongSubtractExpression;
+import org.apache.phoenix.expression.MultiplyExpression;
+import org.apache.phoenix.expression.NumericEvaluator;
+import org.apache.phoenix.expression.NumericEvaluator.DoubleArithmeticEvaluator;
+import org.apache.phoenix.expression.NumericEvaluator.LeafEvaluator;
+import org.apache.phoenix.expression.NumericEvaluator.LongArithmeticEvaluator;
+import org.apache.phoenix.expression.SubtractExpression;
+import org.apache.phoenix.schema.types.PDataType;
+
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * Visitor that copies an expression tree, replacing its LONG and DOUBLE arithmetic and the
+ * comparisons of their results by {@link CompiledArithmeticExpression} and
+ * {@link CompiledComparisonExpression}, which keep the intermediate values as primitives
+ * instead of encoding and decoding them at every level of the tree. The nodes of the tree
+ * that are not replaced are shared with the original tree, unless one of their descendants
+ * was replaced. The result evaluates to the same values as the original tree.
+ *
+ * @since 4.13.0
+ */
+public class CompileExpressionVisitor extends CloneExpressionVisitor {
+
+    /**
+     * @return the compiled copy of the expression, or the expression itself if nothing in it
+     * may be compiled
+     */
+    public static Expression compile(Expression expression) {
+        if (expression == null) {
+            return expression;
+        }
+        return expression.accept(new CompileExpressionVisitor());
+    }
+
+    @Override
+    public boolean isCloneNode(Expression node, List<Expression> children) {
+        List<Expression> originalChildren = node.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) != originalChildren.get(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Expression visitLeave(AddExpression node, List<Expression> l) {
+        return compileArithmetic(super.visitLeave(node, l));
+    }
+
+    @Override
+    public Expression visitLeave(SubtractExpression node, List<Expression> l) {
+        return compileArithmetic(super.visitLeave(node, l));
+    }
+
+    @Override
+    public Expression visitLeave(MultiplyExpression node, List<Expression> l) {
+        return compileArithmetic(super.visitLeave(node, l));
+    }
+
+    @Override
+    public Expression visitLeave(InListExpression node, List<Expression> l) {
+        // The key expressions of the list are not serialized, so a deserialized list cannot be
+        // cloned around a compiled operand
+        return node;
+    }
+
+    @Override
+    public Expression visitLeave(ComparisonExpression node, List<Expression> l) {
+        Expression expression = super.visitLeave(node, l);
+        if (!(expression instanceof ComparisonExpression)) {
+            return expression;
+        }
+        ComparisonExpression comparison = (ComparisonExpression) expression;
+        Expression lhs = comparison.getChildren().get(0);
+        Expression rhs = comparison.getChildren().get(1);
+        // Only compare primitives when it is equivalent to comparing the bytes of both sides
+        boolean isDouble = NumericEvaluator.isDoubleType(lhs.getDataType());
+        if (isDouble ? !NumericEvaluator.isDoubleType(rhs.getDataType())
+                : !NumericEvaluator.isLongType(lhs.getDataType()) || !NumericEvaluator.isLongType(rhs.getDataType())) {
+            return expression;
+        }
+        // Nothing is gained unless one of the sides is compiled arithmetic
+        if (!(lhs instanceof CompiledArithmeticExpression) && !(rhs instanceof CompiledArithmeticExpression)) {
+            return expression;
+        }
+        return new CompiledComparisonExpression(comparison, toEvaluator(lhs, isDouble), toEvaluator(rhs, isDouble));
+    }
+
+    private static Expression compileArithmetic(Expression expression) {
+        boolean isLong = expression instanceof LongAddExpression || expression instanceof LongSubtractExpression
+                || expression instanceof LongMultiplyExpression;
+        boolean isDouble = expression instanceof DoubleAddExpression || expression instanceof DoubleSubtractExpression
+                || expression instanceof DoubleMultiplyExpression;
+        if (!isLong && !isDouble) {
+            return expression;
+        }
+        List<NumericEvaluator> children = Lists.newArrayListWithExpectedSize(expression.getChildren().size());
+        for (Expression child : expression.getChildren()) {
+            PDataType childType = child.getDataType();
+            if (!NumericEvaluator.isLongType(childType) && !(isDouble && NumericEvaluator.isDoubleType(childType))) {
+                return expression;
+            }
+            children.add(toEvaluator(child, isDouble));
+        }
+        ArithmeticExpression arithmetic = (ArithmeticExpression) expression;
+        NumericEvaluator evaluator = isDouble ? new DoubleArithmeticEvaluator(arithmetic, children)
+                : new LongArithmeticEvaluator(arithmetic, children);
+        return new CompiledArithmeticExpression(arithmetic, evaluator);
+    }
+
+    private static NumericEvaluator toEvaluator(Expression expression, boolean isDouble) {
+        if (expression instanceof CompiledArithmeticExpression) {
+            return ((CompiledArithmeticExpression) expression).getEvaluator();
+        }
+        return new LeafEvaluator(expression, isDouble || NumericEvaluator.isDoubleType(expression.getDataType()));
+    }
+}
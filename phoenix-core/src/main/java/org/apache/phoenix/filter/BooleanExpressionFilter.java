@@ -28,6 +28,7 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.ExpressionType;
+import org.apache.phoenix.expression.visitor.CompileExpressionVisitor;
 import org.apache.phoenix.schema.IllegalDataException;
 import org.apache.phoenix.schema.tuple.Tuple;
 import org.apache.phoenix.util.ServerUtil;
@@ -44,6 +45,8 @@ import org.apache.phoenix.util.ServerUtil;
 abstract public class BooleanExpressionFilter extends FilterBase implements Writable {
 
     protected Expression expression;
+    // The expression actually evaluated, which may be a compiled copy of the expression
+    private Expression evaluatedExpression;
     private ImmutableBytesWritable tempPtr = new ImmutableBytesWritable();
     
     public BooleanExpressionFilter() {
@@ -51,11 +54,29 @@ abstract public class BooleanExpressionFilter extends FilterBase implements Writ
 
     public BooleanExpressionFilter(Expression expression) {
         this.expression = expression;
+        this.evaluatedExpression = expression;
+    }
+
+    /**
+     * Evaluates a compiled copy of the expression from now on.
+     * @see CompileExpressionVisitor
+     */
+    public void compileExpression() {
+        evaluatedExpression = CompileExpressionVisitor.compile(expression);
     }
 
     public Expression getExpression() {
         return expression;
     }
+
+    /**
+     * Replaces the expression of the filter on the client side. The new expression
+     * must reference the same columns as the current one.
+     */
+    public void setExpression(Expression expression) {
+        this.expression = expression;
+        this.evaluatedExpression = expression;
+    }
     
     @Override
     public boolean hasFilterRow() {
@@ -90,13 +111,13 @@ abstract public class BooleanExpressionFilter extends FilterBase implements Writ
             justification="Returns null by design.")
     protected Boolean evaluate(Tuple input) {
         try {
-            if (!expression.evaluate(input, tempPtr)) {
+            if (!evaluatedExpression.evaluate(input, tempPtr)) {
                 return null;
             }
         } catch (IllegalDataException e) {
             return Boolean.FALSE;
         }
-        return (Boolean)expression.getDataType().toObject(tempPtr);
+        return (Boolean)evaluatedExpression.getDataType().toObject(tempPtr);
     }
 
     @Override
@@ -105,6 +126,7 @@ abstract public class BooleanExpressionFilter extends FilterBase implements Writ
             expression = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
             expression.readFields(input);
             expression.reset(); // Initializes expression tree for partial evaluation
+            evaluatedExpression = expression;
         } catch (Throwable t) { // Catches incompatibilities during reading/writing and doesn't retry
             ServerUtil.throwIOException("BooleanExpressionFilter failed during reading", t);
         }
@@ -128,5 +150,8 @@ abstract public class BooleanExpressionFilter extends FilterBase implements Writ
     @Override
     public void reset() {
         expression.reset();
+        if (evaluatedExpression != expression) {
+            evaluatedExpression.reset();
+        }
     }
 }
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.HTableInterface;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.io.TimeRange;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.filter.SkipScanFilter;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.schema.tuple.ResultTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.Closeables;
+import org.apache.phoenix.util.ServerUtil;
+
+/**
+ *
+ * ResultIterator that reads a list of rows by their row keys through batches of Gets,
+ * instead of through a skip scan. Each batch is issued as a single multi-get, which the
+ * HBase client splits into one RPC per region server hosting the rows of the batch. A
+ * bounded number of batches run ahead of the consumer on the executor. Rows are returned
+ * in the order of the row keys, and missing or filtered out rows are skipped.
+ *
+ * The Gets bypass the Phoenix region observers, so this may only be used for rows which
+ * need no processing on the region server besides the filter of the scan.
+ *
+ * @since 4.13.0
+ */
+public class BatchedGetResultIterator implements ResultIterator {
+    private final ConnectionQueryServices services;
+    private final byte[] physicalTableName;
+    private final Scan scan;
+    private final Filter filter;
+    private final List<byte[]> rowKeys;
+    private final int batchSize;
+    private final int maxConcurrentBatches;
+    private final Deque<Future<Result[]>> batches = new ArrayDeque<Future<Result[]>>();
+    private int nextBatchStart;
+    private Result[] results;
+    private int index;
+    private boolean isClosed;
+
+    /**
+     * @param scan the scan providing the columns, time range and filter of the Gets
+     * @param rowKeys the row keys of the rows to read, in the order in which to return them
+     */
+    public BatchedGetResultIterator(ConnectionQueryServices services, byte[] physicalTableName, Scan scan,
+            List<byte[]> rowKeys, int batchSize, int maxConcurrentBatches) {
+        this.services = services;
+        this.physicalTableName = physicalTableName;
+        this.scan = scan;
+        this.filter = withoutSkipScanFilter(scan.getFilter());
+        this.rowKeys = rowKeys;
+        this.batchSize = batchSize;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+    }
+
+    /**
+     * The rows are read by key, so the skip scan filter, which only navigates between them,
+     * is not needed and is not safe to share between concurrent Gets.
+     */
+    private static Filter withoutSkipScanFilter(Filter filter) {
+        if (filter instanceof SkipScanFilter) {
+            return null;
+        }
+        if (filter instanceof FilterList) {
+            FilterList filterList = (FilterList)filter;
+            List<Filter> filters = new ArrayList<Filter>(filterList.getFilters().size());
+            for (Filter childFilter : filterList.getFilters()) {
+                if (!(childFilter instanceof SkipScanFilter)) {
+                    filters.add(childFilter);
+                }
+            }
+            if (filters.size() == filterList.getFilters().size()) {
+                return filter;
+            }
+            return filters.isEmpty() ? null : new FilterList(filterList.getOperator(), filters);
+        }
+        return filter;
+    }
+
+    private Get newGet(byte[] rowKey) throws IOException {
+        Get get = new Get(rowKey);
+        for (Map.Entry<byte[], NavigableSet<byte[]>> entry : scan.getFamilyMap().entrySet()) {
+            if (entry.getValue() == null) {
+                get.addFamily(entry.getKey());
+            } else {
+                for (byte[] qualifier : entry.getValue()) {
+                    get.addColumn(entry.getKey(), qualifier);
+                }
+            }
+        }
+        TimeRange timeRange = scan.getTimeRange();
+        get.setTimeRange(timeRange.getMin(), timeRange.getMax());
+        get.setMaxVersions(scan.getMaxVersions());
+        get.setCacheBlocks(scan.getCacheBlocks());
+        get.setConsistency(scan.getConsistency());
+        get.setFilter(filter);
+        return get;
+    }
+
+    private void submitBatches() {
+        ExecutorService executor = services.getExecutor();
+        while (batches.size() < maxConcurrentBatches && nextBatchStart < rowKeys.size()) {
+            final List<byte[]> batchKeys = rowKeys.subList(nextBatchStart,
+                    Math.min(rowKeys.size(), nextBatchStart + batchSize));
+            nextBatchStart += batchKeys.size();
+            batches.add(executor.submit(new Callable<Result[]>() {
+                @Override
+                public Result[] call() throws Exception {
+                    List<Get> gets = new ArrayList<Get>(batchKeys.size());
+                    for (byte[] rowKey : batchKeys) {
+                        gets.add(newGet(rowKey));
+                    }
+                    HTableInterface table = services.getTable(physicalTableName);
+                    try {
+                        return table.get(gets);
+                    } finally {
+                        Closeables.closeQuietly(table);
+                    }
+                }
+            }));
+        }
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+        if (isClosed) {
+            return null;
+        }
+        while (true) {
+            while (results != null && index < results.length) {
+                Result result = results[index++];
+                if (result != null && !result.isEmpty()) {
+                    return new ResultTuple(result);
+                }
+            }
+            submitBatches();
+            Future<Result[]> batch = batches.poll();
+            if (batch == null) {
+                results = null;
+                return null;
+            }
+            try {
+                results = batch.get();
+                index = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                        .setRootCause(e).build().buildException();
+            } catch (ExecutionException e) {
+                throw ServerUtil.parseServerException(e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        isClosed = true;
+        results = null;
+        for (Future<Result[]> batch : batches) {
+            batch.cancel(true);
+        }
+        batches.clear();
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+        planSteps.add("CLIENT " + rowKeys.size() + "-KEY BATCHED GET OVER " + Bytes.toString(physicalTableName));
+    }
+
+    @Override
+    public String toString() {
+        return "BatchedGetResultIterator [table=" + Bytes.toString(physicalTableName) + ", keys=" + rowKeys.size()
+                + ", batchSize=" + batchSize + "]";
+    }
+}
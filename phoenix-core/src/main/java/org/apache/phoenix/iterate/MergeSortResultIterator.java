@@ -18,34 +18,115 @@
 package org.apache.phoenix.iterate;
 
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ReadOnlyProps;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * Base class for a ResultIterator that does a merge sort on the list of iterators provided.
  * @since 1.2
  */
 public abstract class MergeSortResultIterator implements PeekingResultIterator {
+    private static final Log LOG = LogFactory.getLog(MergeSortResultIterator.class);
+    // Number of rows handed over at a time by the threads merging groups of the iterators
+    private static final int MERGE_BATCH_SIZE = 128;
+    private static final long MERGE_THREAD_KEEP_ALIVE_MS = 60000;
+    // Shared by all the merges of the JVM, and sized by the first of them
+    private static ThreadPoolExecutor mergePool;
+
     protected final ResultIterators resultIterators;
     protected final ImmutableBytesWritable tempPtr = new ImmutableBytesWritable();
     private PriorityQueue<MaterializedComparableResultIterator> minHeap;
     private final IteratorComparator itrComparator = new IteratorComparator();
+    private boolean isParallelMergeEnabled;
+    private int mergeFanIn;
+    private int mergeQueueSize;
+    private ExecutorService pool;
+    private final List<QueuedResultIterator> queuedIterators = Lists.newArrayList();
 
     public MergeSortResultIterator(ResultIterators iterators) {
         this.resultIterators = iterators;
     }
 
+    /**
+     * Enables merging the iterators as a tree when there are more of them than the configured
+     * fan in. Groups of at most that many iterators are then merged on threads of their own,
+     * each handing its rows to the next level through a bounded queue, so that the comparisons
+     * are spread over several threads instead of all being done by the caller. The threads come
+     * from a pool shared by all the merges, which hands each group to an idle thread or rejects it
+     * rather than queueing it, since a merging thread blocks until the next level takes its rows
+     * and so may not hold a thread a queued group needs. The groups that find no thread are merged
+     * by the caller.
+     * Must be called before the first row is read.
+     * @param services the query services providing the configuration
+     */
+    public void enableParallelMerge(ConnectionQueryServices services) {
+        ReadOnlyProps props = services.getProps();
+        if (!props.getBoolean(QueryServices.PARALLEL_MERGE_SORT_ENABLED_ATTRIB,
+                QueryServicesOptions.DEFAULT_PARALLEL_MERGE_SORT_ENABLED)) {
+            return;
+        }
+        this.isParallelMergeEnabled = true;
+        this.mergeFanIn = Math.max(2, props.getInt(QueryServices.PARALLEL_MERGE_SORT_FAN_IN_ATTRIB,
+                QueryServicesOptions.DEFAULT_PARALLEL_MERGE_SORT_FAN_IN));
+        this.mergeQueueSize = Math.max(1, props.getInt(QueryServices.PARALLEL_MERGE_SORT_QUEUE_SIZE_ATTRIB,
+                QueryServicesOptions.DEFAULT_PARALLEL_MERGE_SORT_QUEUE_SIZE));
+        this.pool = getMergePool(Math.max(1, props.getInt(QueryServices.PARALLEL_MERGE_SORT_MAX_THREADS_ATTRIB,
+                QueryServicesOptions.DEFAULT_PARALLEL_MERGE_SORT_MAX_THREADS)));
+    }
+
+    private static synchronized ExecutorService getMergePool(int maxThreads) {
+        if (mergePool == null) {
+            mergePool = new ThreadPoolExecutor(maxThreads, maxThreads, MERGE_THREAD_KEEP_ALIVE_MS,
+                    TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(), new ThreadFactoryBuilder()
+                            .setDaemon(true).setNameFormat("phoenix-merge-sort-%d").build());
+            mergePool.allowCoreThreadTimeOut(true);
+        }
+        return mergePool;
+    }
+
     @Override
     public void close() throws SQLException {
+        // Top level first, as closing an iterator waits for its merging thread, which closes
+        // the iterators of the level below that it reads from
+        for (QueuedResultIterator iterator : Lists.reverse(queuedIterators)) {
+            iterator.close();
+        }
         resultIterators.close();
     }
 
     abstract protected int compare(Tuple t1, Tuple t2);
 
+    /**
+     * Creates an iterator merging a subset of the iterators being merged by this one, to be
+     * run on a separate thread, thus not sharing any state with this iterator.
+     * @param iterators the subset of iterators to merge
+     * @return the merging iterator, or null if the iterators may not be merged in parallel
+     */
+    protected MergeSortResultIterator newMergeSortIterator(ResultIterators iterators) throws SQLException {
+        return null;
+    }
+
     @Override
     public Tuple peek() throws SQLException {
         MaterializedComparableResultIterator iterator = minIterator();
@@ -70,6 +151,9 @@ public abstract class MergeSortResultIterator implements PeekingResultIterator {
     private PriorityQueue<MaterializedComparableResultIterator> getMinHeap() throws SQLException {
         if (minHeap == null) {
             List<PeekingResultIterator> iterators = resultIterators.getIterators();
+            if (isParallelMergeEnabled) {
+                iterators = mergeInParallel(iterators);
+            }
             minHeap = new PriorityQueue<MaterializedComparableResultIterator>(Math.max(1, iterators.size()));
             for (PeekingResultIterator itr : iterators) {
                 if (itr.peek() == null) {
@@ -82,6 +166,92 @@ public abstract class MergeSortResultIterator implements PeekingResultIterator {
         return minHeap;
     }
 
+    private List<PeekingResultIterator> mergeInParallel(List<PeekingResultIterator> iterators) throws SQLException {
+        while (iterators.size() > mergeFanIn) {
+            int numGroups = (iterators.size() + mergeFanIn - 1) / mergeFanIn;
+            List<PeekingResultIterator> merged = Lists.newArrayListWithExpectedSize(numGroups);
+            for (int i = 0; i < numGroups; i++) {
+                List<PeekingResultIterator> group = iterators.subList(
+                        i * iterators.size() / numGroups, (i + 1) * iterators.size() / numGroups);
+                MergeSortResultIterator groupIterator = newMergeSortIterator(new IteratorGroup(group));
+                QueuedResultIterator queuedIterator = null;
+                if (groupIterator != null) {
+                    try {
+                        queuedIterator = new QueuedResultIterator(groupIterator, pool, mergeQueueSize, MERGE_BATCH_SIZE);
+                    } catch (RejectedExecutionException e) {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("No merging thread available, merging the remaining iterators serially", e);
+                        }
+                    }
+                }
+                if (queuedIterator == null) {
+                    // The caller merges the groups already handed to threads with the iterators of the others
+                    for (int j = i; j < numGroups; j++) {
+                        merged.addAll(iterators.subList(
+                                j * iterators.size() / numGroups, (j + 1) * iterators.size() / numGroups));
+                    }
+                    return merged;
+                }
+                queuedIterators.add(queuedIterator);
+                merged.add(queuedIterator);
+            }
+            iterators = merged;
+        }
+        return iterators;
+    }
+
+    /**
+     * The iterators merged by one of the merging threads.
+     */
+    private static class IteratorGroup implements ResultIterators {
+        private final List<PeekingResultIterator> iterators;
+
+        private IteratorGroup(List<PeekingResultIterator> iterators) {
+            this.iterators = iterators;
+        }
+
+        @Override
+        public int size() {
+            return iterators.size();
+        }
+
+        @Override
+        public List<KeyRange> getSplits() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<List<Scan>> getScans() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void explain(List<String> planSteps) {
+        }
+
+        @Override
+        public List<PeekingResultIterator> getIterators() throws SQLException {
+            return iterators;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            SQLException toThrow = null;
+            for (PeekingResultIterator iterator : iterators) {
+                try {
+                    iterator.close();
+                } catch (SQLException e) {
+                    if (toThrow == null) {
+                        toThrow = e;
+                    }
+                }
+            }
+            if (toThrow != null) {
+                throw toThrow;
+            }
+        }
+    }
+
     private class IteratorComparator implements Comparator<Tuple> {
         @Override
         public int compare(Tuple c1, Tuple c2) {
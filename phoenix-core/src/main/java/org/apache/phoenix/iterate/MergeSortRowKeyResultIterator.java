@@ -51,6 +51,11 @@ public class MergeSortRowKeyResultIterator extends MergeSortResultIterator {
         return factor * TupleUtil.compare(t1, t2, tempPtr, keyOffset);
     }
 
+    @Override
+    protected MergeSortResultIterator newMergeSortIterator(ResultIterators iterators) {
+        return new MergeSortRowKeyResultIterator(iterators, keyOffset, factor < 0);
+    }
+
     @Override
     public void explain(List<String> planSteps) {
         resultIterators.explain(planSteps);
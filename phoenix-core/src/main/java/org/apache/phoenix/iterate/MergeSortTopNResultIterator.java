@@ -17,6 +17,11 @@
  */
 package org.apache.phoenix.iterate;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -24,6 +29,9 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.OrderByExpression;
 import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ServerUtil;
+
+import com.google.common.collect.Lists;
 
 /**
  * 
@@ -73,6 +81,38 @@ public class MergeSortTopNResultIterator extends MergeSortResultIterator {
         return 0;
     }
 
+    @Override
+    protected MergeSortResultIterator newMergeSortIterator(ResultIterators iterators) throws SQLException {
+        // No more rows than the ones within the offset and limit are needed from any subset of the iterators
+        Integer groupLimit = limit < 0 ? null : limit + Math.max(0, offset);
+        try {
+            return new MergeSortTopNResultIterator(iterators, groupLimit, null, copyOrderByExpressions(orderByColumns));
+        } catch (IOException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+    }
+
+    /**
+     * Copies the OrderByExpressions through their serialized form, since expressions may hold
+     * state while being evaluated and thus may not be evaluated concurrently.
+     */
+    static List<OrderByExpression> copyOrderByExpressions(List<OrderByExpression> orderByExpressions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (OrderByExpression orderByExpression : orderByExpressions) {
+            orderByExpression.write(output);
+        }
+        output.close();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        List<OrderByExpression> copies = Lists.newArrayListWithExpectedSize(orderByExpressions.size());
+        for (int i = 0; i < orderByExpressions.size(); i++) {
+            OrderByExpression copy = new OrderByExpression();
+            copy.readFields(input);
+            copies.add(copy);
+        }
+        return copies;
+    }
+
     @Override
     public Tuple peek() throws SQLException {
         while (offsetCount < offset) {
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ServerUtil;
+
+/**
+ *
+ * ResultIterator that reads the rows of another iterator on a separate thread, which hands
+ * them over in batches through a bounded queue. The reading thread runs ahead of the
+ * consumer by at most the capacity of the queue. The delegate is only ever used by the
+ * reading thread, which closes it, and {@link #close()} waits for the reading thread to be
+ * done with it.
+ *
+ */
+public class QueuedResultIterator implements PeekingResultIterator {
+    // How often a reading thread waiting for room in the queue checks whether it was closed
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final List<Tuple> endOfResults = new ArrayList<Tuple>(0);
+    private final ResultIterator delegate;
+    private final BlockingQueue<List<Tuple>> queue;
+    private final int batchSize;
+    private final Future<?> future;
+    // Set by whichever of the reading thread and close() comes first, which then owns the delegate
+    private final AtomicBoolean isStarted = new AtomicBoolean();
+    private final CountDownLatch isDelegateClosed = new CountDownLatch(1);
+    private volatile boolean isClosed;
+    private volatile Throwable failure;
+    private List<Tuple> batch = Collections.emptyList();
+    private int index;
+    private boolean isDone;
+
+    /**
+     * @throws java.util.concurrent.RejectedExecutionException if the executor does not accept
+     * the reading task, in which case the delegate has not been read from
+     */
+    public QueuedResultIterator(ResultIterator delegate, ExecutorService executor, int queueSize, int batchSize) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<List<Tuple>>(queueSize);
+        this.batchSize = batchSize;
+        this.future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (isStarted.compareAndSet(false, true)) {
+                    produce();
+                }
+            }
+        });
+    }
+
+    private void produce() {
+        try {
+            List<Tuple> batch = new ArrayList<Tuple>(batchSize);
+            Tuple tuple;
+            while (!isClosed && (tuple = delegate.next()) != null) {
+                batch.add(tuple);
+                if (batch.size() == batchSize) {
+                    if (!offer(batch)) {
+                        return;
+                    }
+                    batch = new ArrayList<Tuple>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                offer(batch);
+            }
+        } catch (InterruptedException e) {
+            // Only interrupted when closed, so nothing is waiting for the remaining rows
+            Thread.currentThread().interrupt();
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            try {
+                delegate.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                isDelegateClosed.countDown();
+            }
+            try {
+                offer(endOfResults);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Hands a batch over to the consumer, waiting for room in the queue until it is closed.
+     * @return false if the iterator was closed before the batch was handed over
+     */
+    private boolean offer(List<Tuple> batch) throws InterruptedException {
+        while (!isClosed) {
+            if (queue.offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean advance() throws SQLException {
+        while (index >= batch.size()) {
+            if (isDone) {
+                return false;
+            }
+            try {
+                batch = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                        .setRootCause(e).build().buildException();
+            }
+            index = 0;
+            if (batch == endOfResults) {
+                isDone = true;
+                if (failure instanceof SQLException) {
+                    throw (SQLException) failure;
+                } else if (failure != null) {
+                    throw ServerUtil.parseServerException(failure);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Tuple peek() throws SQLException {
+        return advance() ? batch.get(index) : null;
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+        return advance() ? batch.get(index++) : null;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        if (isStarted.compareAndSet(false, true)) {
+            // The reading thread never started and no longer will, so the delegate is ours to close
+            future.cancel(false);
+            try {
+                delegate.close();
+            } finally {
+                isDelegateClosed.countDown();
+                queue.clear();
+            }
+            return;
+        }
+        future.cancel(true);
+        queue.clear();
+        try {
+            // The delegate, and the iterators it reads from, may only be closed by the caller
+            // once the reading thread is done with them
+            isDelegateClosed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                    .setRootCause(e).build().buildException();
+        } finally {
+            queue.clear();
+        }
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+        delegate.explain(planSteps);
+    }
+
+    @Override
+    public String toString() {
+        return "QueuedResultIterator [delegate=" + delegate + ", batchSize=" + batchSize + "]";
+    }
+}
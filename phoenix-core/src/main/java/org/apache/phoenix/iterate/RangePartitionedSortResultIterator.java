@@ -0,0 +1,460 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.exception.SQLExceptionCode;
+import org.apache.phoenix.exception.SQLExceptionInfo;
+import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.memory.MemoryManager.MemoryChunk;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.util.ByteUtil;
+import org.apache.phoenix.util.ServerUtil;
+import org.apache.phoenix.util.SizedUtil;
+
+import com.google.common.collect.Lists;
+
+/**
+ *
+ * ResultIterator that returns the rows of the iterators provided ordered by the
+ * OrderByExpressions, as {@link MergeSortTopNResultIterator} does, but without a single
+ * threaded merge over all of them. The input iterators, which must each be ordered by the
+ * OrderByExpressions, are drained concurrently while the sort key of every row is evaluated
+ * once. A sample of the sort keys then determines the boundaries of a number of key ranges.
+ * Since each input is sorted, each range is a contiguous segment of each input, so the
+ * ranges are merged independently and concurrently, and returned one after the other.
+ *
+ * As all rows are held in memory, they are accounted for by the MemoryManager. If more than a
+ * maximum number of rows are found, or if they take more memory than the MemoryManager grants,
+ * the rows already read are merged together with the remaining ones by a
+ * {@link MergeSortTopNResultIterator} instead.
+ *
+ */
+public class RangePartitionedSortResultIterator implements PeekingResultIterator {
+    // Number of sampled sort keys per partition used to determine the partition boundaries
+    private static final int SAMPLES_PER_PARTITION = 32;
+
+    private final ResultIterators resultIterators;
+    private final List<OrderByExpression> orderByExpressions;
+    private final ExecutorService executor;
+    private final int numPartitions;
+    private final long maxRows;
+    private final MemoryManager memoryManager;
+    private final long maxBytes;
+    private final SortKeyComparator keyComparator;
+
+    private MemoryChunk chunk;
+    private PeekingResultIterator fallbackIterator;
+    private List<Future<List<Tuple>>> partitions;
+    private int partitionIndex = -1;
+    private List<Tuple> currentPartition = Collections.emptyList();
+    private int rowIndex;
+
+    public RangePartitionedSortResultIterator(ResultIterators iterators, List<OrderByExpression> orderByExpressions,
+            ExecutorService executor, int numPartitions, long maxRows, MemoryManager memoryManager, long maxBytes) {
+        this.resultIterators = iterators;
+        this.orderByExpressions = orderByExpressions;
+        this.executor = executor;
+        this.numPartitions = numPartitions;
+        this.maxRows = maxRows;
+        this.memoryManager = memoryManager;
+        this.maxBytes = maxBytes;
+        this.keyComparator = new SortKeyComparator(orderByExpressions);
+    }
+
+    @Override
+    public Tuple peek() throws SQLException {
+        if (init()) {
+            return fallbackIterator.peek();
+        }
+        return advance() ? currentPartition.get(rowIndex) : null;
+    }
+
+    @Override
+    public Tuple next() throws SQLException {
+        if (init()) {
+            return fallbackIterator.next();
+        }
+        return advance() ? currentPartition.get(rowIndex++) : null;
+    }
+
+    private boolean advance() throws SQLException {
+        while (rowIndex >= currentPartition.size()) {
+            if (++partitionIndex >= partitions.size()) {
+                currentPartition = Collections.emptyList();
+                return false;
+            }
+            currentPartition = getResult(partitions.get(partitionIndex));
+            rowIndex = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (partitions != null) {
+                for (Future<List<Tuple>> partition : partitions) {
+                    partition.cancel(false);
+                }
+            }
+            if (fallbackIterator != null) {
+                fallbackIterator.close();
+            } else {
+                resultIterators.close();
+            }
+        } finally {
+            if (chunk != null) {
+                chunk.close();
+            }
+        }
+    }
+
+    @Override
+    public void explain(List<String> planSteps) {
+        resultIterators.explain(planSteps);
+        planSteps.add("CLIENT RANGE PARTITIONED MERGE SORT");
+    }
+
+    /**
+     * Reads all the input rows and starts merging the partitions the first time it is called.
+     * @return true if the fallback iterator is to be used and false otherwise
+     */
+    private boolean init() throws SQLException {
+        if (fallbackIterator != null) {
+            return true;
+        }
+        if (partitions != null) {
+            return false;
+        }
+        final List<PeekingResultIterator> iterators = resultIterators.getIterators();
+        if (iterators.size() <= 1 || numPartitions <= 1) {
+            fallbackIterator = new MergeSortTopNResultIterator(resultIterators, null, null, orderByExpressions);
+            return true;
+        }
+        List<Future<List<KeyedTuple>>> drainFutures = Lists.newArrayListWithExpectedSize(iterators.size());
+        final AtomicLong rowCount = new AtomicLong();
+        final AtomicLong byteCount = new AtomicLong();
+        // Take what is available up to maxBytes, rather than waiting for memory, as the merge
+        // sort fallback needs little of it
+        chunk = memoryManager.allocate(0, maxBytes);
+        final long budget = chunk.getSize();
+        try {
+            for (final PeekingResultIterator iterator : iterators) {
+                // Expressions may hold state while being evaluated, so each thread gets its own copy
+                final List<OrderByExpression> expressions = MergeSortTopNResultIterator.copyOrderByExpressions(orderByExpressions);
+                drainFutures.add(submit(new Callable<List<KeyedTuple>>() {
+                    @Override
+                    public List<KeyedTuple> call() throws Exception {
+                        List<KeyedTuple> rows = new ArrayList<KeyedTuple>();
+                        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+                        Tuple tuple;
+                        while (rowCount.incrementAndGet() <= maxRows && byteCount.get() <= budget
+                                && (tuple = iterator.next()) != null) {
+                            KeyedTuple row = new KeyedTuple(tuple, getSortKey(expressions, tuple, ptr));
+                            byteCount.addAndGet(sizeOf(row));
+                            rows.add(row);
+                        }
+                        return rows;
+                    }
+                }));
+            }
+        } catch (IOException e) {
+            throw ServerUtil.parseServerException(e);
+        }
+        final List<List<KeyedTuple>> inputs = Lists.newArrayListWithExpectedSize(iterators.size());
+        for (Future<List<KeyedTuple>> future : drainFutures) {
+            inputs.add(getResult(future));
+        }
+        boolean isComplete = byteCount.get() <= budget;
+        for (int i = 0; isComplete && i < iterators.size(); i++) {
+            PeekingResultIterator iterator = iterators.get(i);
+            if (iterator.peek() != null) {
+                isComplete = false;
+                break;
+            }
+        }
+        if (!isComplete) {
+            // Too many rows to sort in memory, so merge what was read with what is left instead.
+            // The chunk keeps accounting for the rows read until the iterator is closed
+            final List<PeekingResultIterator> mergeIterators = Lists.newArrayListWithExpectedSize(iterators.size());
+            for (int i = 0; i < iterators.size(); i++) {
+                List<Tuple> rows = Lists.newArrayListWithExpectedSize(inputs.get(i).size());
+                for (KeyedTuple row : inputs.get(i)) {
+                    rows.add(row.tuple);
+                }
+                mergeIterators.add(ConcatResultIterator.newIterator(
+                        Lists.<PeekingResultIterator>newArrayList(new MaterializedResultIterator(rows), iterators.get(i))));
+            }
+            fallbackIterator = new MergeSortTopNResultIterator(new ResultIterators() {
+                @Override
+                public List<PeekingResultIterator> getIterators() throws SQLException {
+                    return mergeIterators;
+                }
+
+                @Override
+                public int size() {
+                    return mergeIterators.size();
+                }
+
+                @Override
+                public List<KeyRange> getSplits() {
+                    return resultIterators.getSplits();
+                }
+
+                @Override
+                public List<List<Scan>> getScans() {
+                    return resultIterators.getScans();
+                }
+
+                @Override
+                public void explain(List<String> planSteps) {
+                    resultIterators.explain(planSteps);
+                }
+
+                @Override
+                public void close() throws SQLException {
+                    resultIterators.close();
+                }
+            }, null, null, orderByExpressions);
+            return true;
+        }
+        chunk.resize(byteCount.get());
+        byte[][][] boundaries = getPartitionBoundaries(inputs);
+        partitions = Lists.newArrayListWithExpectedSize(boundaries.length + 1);
+        int[] segmentStarts = new int[inputs.size()];
+        for (int p = 0; p <= boundaries.length; p++) {
+            final List<List<KeyedTuple>> segments = Lists.newArrayListWithExpectedSize(inputs.size());
+            for (int i = 0; i < inputs.size(); i++) {
+                List<KeyedTuple> input = inputs.get(i);
+                int segmentEnd = p == boundaries.length ? input.size() : lowerBound(input, segmentStarts[i], boundaries[p]);
+                if (segmentEnd > segmentStarts[i]) {
+                    segments.add(input.subList(segmentStarts[i], segmentEnd));
+                }
+                segmentStarts[i] = segmentEnd;
+            }
+            partitions.add(submit(new Callable<List<Tuple>>() {
+                @Override
+                public List<Tuple> call() throws Exception {
+                    return merge(segments);
+                }
+            }));
+        }
+        return false;
+    }
+
+    /**
+     * Submits the task to the executor, or runs it on the calling thread if the executor is
+     * saturated or shut down, so that the sort goes on with less concurrency instead of failing.
+     */
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            FutureTask<T> future = new FutureTask<T>(task);
+            future.run();
+            return future;
+        }
+    }
+
+    private byte[][][] getPartitionBoundaries(List<List<KeyedTuple>> inputs) {
+        long totalRows = 0;
+        for (List<KeyedTuple> input : inputs) {
+            totalRows += input.size();
+        }
+        long step = Math.max(1, totalRows / ((long) numPartitions * SAMPLES_PER_PARTITION));
+        List<byte[][]> samples = new ArrayList<byte[][]>();
+        for (List<KeyedTuple> input : inputs) {
+            for (int i = 0; i < input.size(); i += step) {
+                samples.add(input.get(i).key);
+            }
+        }
+        Collections.sort(samples, keyComparator);
+        int numBoundaries = (int) Math.min(numPartitions - 1, samples.size());
+        byte[][][] boundaries = new byte[numBoundaries][][];
+        for (int p = 0; p < numBoundaries; p++) {
+            boundaries[p] = samples.get((int) ((long) (p + 1) * samples.size() / (numBoundaries + 1)));
+        }
+        return boundaries;
+    }
+
+    /**
+     * @return the index of the first row at or after fromIndex with a sort key not less than key
+     */
+    private int lowerBound(List<KeyedTuple> input, int fromIndex, byte[][] key) {
+        int low = fromIndex;
+        int high = input.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyComparator.compare(input.get(mid).key, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<Tuple> merge(List<List<KeyedTuple>> segments) {
+        int size = 0;
+        for (List<KeyedTuple> segment : segments) {
+            size += segment.size();
+        }
+        List<Tuple> result = new ArrayList<Tuple>(size);
+        if (segments.size() == 1) {
+            for (KeyedTuple row : segments.get(0)) {
+                result.add(row.tuple);
+            }
+            return result;
+        }
+        PriorityQueue<SegmentCursor> minHeap = new PriorityQueue<SegmentCursor>(Math.max(1, segments.size()));
+        for (List<KeyedTuple> segment : segments) {
+            minHeap.add(new SegmentCursor(segment));
+        }
+        while (!minHeap.isEmpty()) {
+            SegmentCursor cursor = minHeap.poll();
+            result.add(cursor.current().tuple);
+            if (++cursor.index < cursor.segment.size()) {
+                minHeap.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private static byte[][] getSortKey(List<OrderByExpression> expressions, Tuple tuple, ImmutableBytesWritable ptr) {
+        byte[][] key = new byte[expressions.size()][];
+        for (int i = 0; i < key.length; i++) {
+            if (expressions.get(i).getExpression().evaluate(tuple, ptr) && ptr.getLength() != 0) {
+                key[i] = ByteUtil.copyKeyBytesIfNecessary(ptr);
+            }
+        }
+        return key;
+    }
+
+    private static long sizeOf(KeyedTuple row) {
+        long size = SizedUtil.OBJECT_SIZE * 2 + SizedUtil.ARRAY_SIZE + SizedUtil.POINTER_SIZE * 2;
+        for (byte[] key : row.key) {
+            size += SizedUtil.POINTER_SIZE + (key == null ? 0 : SizedUtil.ARRAY_SIZE + key.length);
+        }
+        for (int i = 0; i < row.tuple.size(); i++) {
+            size += SizedUtil.POINTER_SIZE + CellUtil.estimatedHeapSizeOfWithoutTags(row.tuple.getValue(i));
+        }
+        return size;
+    }
+
+    private static <T> T getResult(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLExceptionInfo.Builder(SQLExceptionCode.INTERRUPTED_EXCEPTION)
+                    .setRootCause(e).build().buildException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw ServerUtil.parseServerException(e.getCause());
+        }
+    }
+
+    private static class KeyedTuple {
+        private final Tuple tuple;
+        private final byte[][] key;
+
+        private KeyedTuple(Tuple tuple, byte[][] key) {
+            this.tuple = tuple;
+            this.key = key;
+        }
+    }
+
+    private class SegmentCursor implements Comparable<SegmentCursor> {
+        private final List<KeyedTuple> segment;
+        private int index;
+
+        private SegmentCursor(List<KeyedTuple> segment) {
+            this.segment = segment;
+        }
+
+        private KeyedTuple current() {
+            return segment.get(index);
+        }
+
+        @Override
+        public int compareTo(SegmentCursor o) {
+            return keyComparator.compare(current().key, o.current().key);
+        }
+    }
+
+    /**
+     * Compares evaluated sort keys the same way {@link MergeSortTopNResultIterator} compares rows,
+     * with a null element standing for a null value.
+     */
+    private static class SortKeyComparator implements Comparator<byte[][]> {
+        private final List<OrderByExpression> orderByExpressions;
+
+        private SortKeyComparator(List<OrderByExpression> orderByExpressions) {
+            this.orderByExpressions = orderByExpressions;
+        }
+
+        @Override
+        public int compare(byte[][] key1, byte[][] key2) {
+            for (int i = 0; i < key1.length; i++) {
+                OrderByExpression order = orderByExpressions.get(i);
+                if (key1[i] == null && key2[i] == null) {
+                    continue;
+                } else if (key1[i] == null) {
+                    return order.isNullsLast() ? 1 : -1;
+                } else if (key2[i] == null) {
+                    return order.isNullsLast() ? -1 : 1;
+                }
+                int cmp = Bytes.compareTo(key1[i], key2[i]);
+                if (cmp == 0) {
+                    continue;
+                }
+                return order.isAscending() ? cmp : -cmp;
+            }
+            return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RangePartitionedSortResultIterator [orderByExpressions=" + orderByExpressions
+                + ", numPartitions=" + numPartitions + ", maxRows=" + maxRows + "]";
+    }
+}
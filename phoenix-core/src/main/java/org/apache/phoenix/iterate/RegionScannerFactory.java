@@ -21,7 +21,6 @@ package org.apache.phoenix.iterate;
 import com.google.common.collect.ImmutableList;
 
 import org.apache.hadoop.hbase.*;
-import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.coprocessor.RegionCoprocessorEnvironment;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
@@ -107,6 +106,8 @@ public abstract class RegionScannerFactory {
       private boolean hasReferences = checkForReferenceFiles();
       private HRegionInfo regionInfo = env.getRegionInfo();
       private byte[] actualStartKey = getActualStartKey();
+      // Reused for every row, as the projected tuple does not reference it
+      private final ColumnOrdinalTuple toProjectTuple = new ColumnOrdinalTuple(new ColumnOrdinalMap());
 
       // If there are any reference files after local index region merge some cases we might
       // get the records less than scan start row key. This will happen when we replace the
@@ -197,8 +198,13 @@ public abstract class RegionScannerFactory {
                 tupleProjector, dataRegion, indexMaintainer, viewConstants, ptr);
           }
           if (projector != null) {
-            Tuple toProject = useQualifierAsListIndex ? new PositionBasedResultTuple(result) : new ResultTuple(
-                Result.create(result));
+            Tuple toProject;
+            if (useQualifierAsListIndex) {
+              toProject = new PositionBasedResultTuple(result);
+            } else {
+              toProjectTuple.setKeyValues(result);
+              toProject = toProjectTuple;
+            }
             Tuple tuple = projector.projectResults(toProject, useNewValueColumnQualifier);
             result.clear();
             result.add(tuple.getValue(0));
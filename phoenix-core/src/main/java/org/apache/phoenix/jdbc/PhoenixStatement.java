@@ -60,6 +60,7 @@ import org.apache.phoenix.compile.CreateSequenceCompiler;
 import org.apache.phoenix.compile.CreateTableCompiler;
 import org.apache.phoenix.compile.DeclareCursorCompiler;
 import org.apache.phoenix.compile.DeleteCompiler;
+import org.apache.phoenix.compile.DistinctCountRewriter;
 import org.apache.phoenix.compile.DropSequenceCompiler;
 import org.apache.phoenix.compile.ExplainPlan;
 import org.apache.phoenix.compile.ExpressionProjector;
@@ -472,6 +473,11 @@ public class PhoenixStatement implements Statement, SQLCloseable {
                 resolver = FromCompiler.getResolverForQuery(transformedSelect, stmt.getConnection());
                 select = StatementNormalizer.normalize(transformedSelect, resolver);
             }
+            transformedSelect = DistinctCountRewriter.transform(select, resolver, stmt);
+            if (transformedSelect != select) {
+                resolver = FromCompiler.getResolverForQuery(transformedSelect, stmt.getConnection());
+                select = StatementNormalizer.normalize(transformedSelect, resolver);
+            }
 
             QueryPlan plan = new QueryCompiler(stmt, select, resolver, Collections.<PDatum>emptyList(), stmt.getConnection().getIteratorFactory(), new SequenceManager(stmt), true).compile();
             plan.getContext().getSequenceManager().validateSequences(seqAction);
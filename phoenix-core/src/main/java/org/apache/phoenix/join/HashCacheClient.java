@@ -88,7 +88,8 @@ public class HashCacheClient  {
     }
     
     /**
-     * Should only be used to resend the hash table cache to the regionserver.
+     * Should only be used to resend the hash table cache, or any other cache added through
+     * {@link ServerCacheClient}, to the regionserver.
      *  
      * @param startkeyOfRegion start key of any region hosted on a regionserver which needs hash cache
      * @param cacheId Id of the cache which needs to be sent
@@ -98,7 +99,7 @@ public class HashCacheClient  {
      */
     public boolean addHashCacheToServer(byte[] startkeyOfRegion, ServerCache cache, PTable pTable) throws Exception{
         if (cache == null) { return false; }
-        return serverCache.addServerCache(startkeyOfRegion, cache, new HashCacheFactory(), ByteUtil.EMPTY_BYTE_ARRAY, pTable);
+        return serverCache.addServerCache(startkeyOfRegion, cache, cache.getCacheFactory(), ByteUtil.EMPTY_BYTE_ARRAY, pTable);
     }
     
     private void serialize(ImmutableBytesWritable ptr, ResultIterator iterator, long estimatedSize, List<Expression> onExpressions, boolean singleValueOnly, Expression keyRangeRhsExpression, List<Expression> keyRangeRhsValues) throws SQLException {
@@ -46,6 +46,7 @@ import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRConfig;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -90,8 +91,13 @@ public abstract class AbstractBulkLoadTool extends Configured implements Tool {
     static final Option INDEX_TABLE_NAME_OPT = new Option("it", "index-table", true, "Phoenix index table name when just loading this particualar index table");
     static final Option IMPORT_COLUMNS_OPT = new Option("c", "import-columns", true, "Comma-separated list of columns to be imported");
     static final Option IGNORE_ERRORS_OPT = new Option("g", "ignore-errors", false, "Ignore input errors");
+    static final Option MAP_ONLY_OPT = new Option("mo", "map-only", false, "Sort and write the HFiles in the mappers without a reduce phase, for input already partitioned by row key (optional)");
+    static final Option LOCAL_THREADS_OPT = new Option("lt", "local-threads", true, "Run the import in this JVM with the given number of threads instead of submitting a MapReduce job (optional)");
     static final Option HELP_OPT = new Option("h", "help", false, "Show this help and quit");
 
+    /** Configuration key of the LocalJobRunner for the number of mappers run in parallel */
+    static final String LOCAL_MAX_MAPS_CONFKEY = "mapreduce.local.map.tasks.maximum";
+
     /**
      * Set configuration values based on parsed command line options.
      *
@@ -113,6 +119,8 @@ public abstract class AbstractBulkLoadTool extends Configured implements Tool {
         options.addOption(SCHEMA_NAME_OPT);
         options.addOption(IMPORT_COLUMNS_OPT);
         options.addOption(IGNORE_ERRORS_OPT);
+        options.addOption(MAP_ONLY_OPT);
+        options.addOption(LOCAL_THREADS_OPT);
         options.addOption(HELP_OPT);
         return options;
     }
@@ -218,6 +226,10 @@ public abstract class AbstractBulkLoadTool extends Configured implements Tool {
         boolean ignoreInvalidRows = cmdLine.hasOption(IGNORE_ERRORS_OPT.getOpt());
         conf.setBoolean(FormatToBytesWritableMapper.IGNORE_INVALID_ROW_CONFKEY, ignoreInvalidRows);
         conf.set(FormatToBytesWritableMapper.TABLE_NAME_CONFKEY, qualifiedTableName);
+        conf.setBoolean(FormatToBytesWritableMapper.MAP_ONLY_CONFKEY, cmdLine.hasOption(MAP_ONLY_OPT.getOpt()));
+        if (cmdLine.hasOption(LOCAL_THREADS_OPT.getOpt())) {
+            configureLocalJob(conf, Integer.parseInt(cmdLine.getOptionValue(LOCAL_THREADS_OPT.getOpt())));
+        }
 
         // give subclasses their hook
         configureOptions(cmdLine, importColumns, conf);
@@ -270,6 +282,22 @@ public abstract class AbstractBulkLoadTool extends Configured implements Tool {
         return submitJob(conf, tableName, inputPaths, outputPath, tablesToBeLoaded, hasLocalIndexes);
     }
 
+    /**
+     * Configures the job to run in this JVM, with the mappers running in parallel threads.
+     * The mappers sort and write the HFiles themselves, as a local job has no parallel shuffle.
+     *
+     * @param conf job configuration
+     * @param threads number of mappers run in parallel
+     */
+    @VisibleForTesting
+    static void configureLocalJob(Configuration conf, int threads) {
+        Preconditions.checkArgument(threads > 0, "Number of local threads must be positive");
+        LOG.info("Running the import in this JVM with {} threads", threads);
+        conf.set(MRConfig.FRAMEWORK_NAME, MRConfig.LOCAL_FRAMEWORK_NAME);
+        conf.setInt(LOCAL_MAX_MAPS_CONFKEY, threads);
+        conf.setBoolean(FormatToBytesWritableMapper.MAP_ONLY_CONFKEY, true);
+    }
+
     /**
      * Submits the jobs to the cluster.
      * Loads the HFiles onto the respective tables.
@@ -299,6 +327,12 @@ public abstract class AbstractBulkLoadTool extends Configured implements Tool {
             }
         }
         MultiHfileOutputFormat.configureIncrementalLoad(job, tablesToBeLoaded);
+        if (conf.getBoolean(FormatToBytesWritableMapper.MAP_ONLY_CONFKEY, false)) {
+            // Each mapper sorts its KeyValues and writes its own HFiles, which are assigned to
+            // the regions when loaded
+            LOG.info("Writing HFiles from the mappers without a reduce phase");
+            job.setNumReduceTasks(0);
+        }
 
         final String tableNamesAsJson = TargetTableRefFunctions.NAMES_TO_JSON.apply(tablesToBeLoaded);
         final String logicalNamesAsJson = TargetTableRefFunctions.LOGICAL_NAMES_TO_JSON.apply(tablesToBeLoaded);
@@ -19,9 +19,11 @@ package org.apache.phoenix.mapreduce;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +35,8 @@ import javax.annotation.Nullable;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HRegionLocation;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -41,7 +45,9 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.phoenix.jdbc.PhoenixConnection;
+import org.apache.phoenix.mapreduce.bulkload.ExternalKeyValueSorter;
 import org.apache.phoenix.mapreduce.bulkload.TableRowkeyPair;
 import org.apache.phoenix.mapreduce.bulkload.TargetTableRefFunctions;
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
@@ -96,6 +102,14 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
     /** Configuration key for the table logical names */
     public static final String LOGICAL_NAMES_CONFKEY = "phoenix.mapreduce.import.logicalnames";
 
+    /** Configuration key for the flag to sort and write the HFiles in the mappers */
+    public static final String MAP_ONLY_CONFKEY = "phoenix.mapreduce.import.maponly";
+
+    /** Configuration key for the size of the KeyValues sorted in memory by a mapper before spilling */
+    public static final String MAP_ONLY_BUFFER_SIZE_CONFKEY = "phoenix.mapreduce.import.maponly.buffersize";
+
+    public static final long DEFAULT_MAP_ONLY_BUFFER_SIZE = 64 * 1024 * 1024;
+
     /**
      * Parses a single input line, returning a {@code T}.
      */
@@ -115,6 +129,11 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
      */
     protected Map<byte[], Integer> columnIndexes;
 
+    /*
+    KeyValues sorted by the mapper when writing the HFiles itself, null otherwise
+     */
+    private ExternalKeyValueSorter sorter;
+
     protected abstract UpsertExecutor<RECORD,?> buildUpsertExecutor(Configuration conf);
     protected abstract LineParser<RECORD> getLineParser();
 
@@ -149,6 +168,10 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
                 context, conf.getBoolean(IGNORE_INVALID_ROW_CONFKEY, true));
         upsertExecutor = buildUpsertExecutor(conf);
         preUpdateProcessor = PhoenixConfigurationUtil.loadPreUpsertProcessor(conf);
+        if (conf.getBoolean(MAP_ONLY_CONFKEY, false)) {
+            sorter = new ExternalKeyValueSorter(new File(System.getProperty("java.io.tmpdir")),
+                    conf.getLong(MAP_ONLY_BUFFER_SIZE_CONFKEY, DEFAULT_MAP_ONLY_BUFFER_SIZE));
+        }
     }
 
     @SuppressWarnings("deprecation")
@@ -197,8 +220,12 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
             for (Map.Entry<Integer, List<KeyValue>> rowEntry : map.entrySet()) {
                 int tableIndex = rowEntry.getKey();
                 List<KeyValue> lkv = rowEntry.getValue();
-                // All KV values combines to a single byte array
-                writeAggregatedRow(context, tableNames.get(tableIndex), lkv);
+                if (sorter != null) {
+                    addToSorter(tableIndex, lkv);
+                } else {
+                    // All KV values combines to a single byte array
+                    writeAggregatedRow(context, tableNames.get(tableIndex), lkv);
+                }
             }
             conn.rollback();
         } catch (Exception e) {
@@ -326,14 +353,103 @@ public abstract class FormatToBytesWritableMapper<RECORD> extends Mapper<LongWri
         }
     }
 
+    private void addToSorter(int tableIndex, List<KeyValue> lkv) throws IOException {
+        for (KeyValue cell : lkv) {
+            if (findIndex(cell) == -1) {
+                // Skip the KVs that are not part of the tables being loaded, as for the
+                // aggregated rows
+                continue;
+            }
+            sorter.add(tableIndex, cell);
+        }
+    }
+
+    /**
+     * Write the KeyValues sorted by the mapper to HFiles, instead of shuffling them to the
+     * reducers. The HFiles are rolled at the region boundaries of each table, so that they
+     * don't need to be split when loaded.
+     *
+     * @param context    Current mapper context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void writeSortedKeyValues(Context context) throws IOException, InterruptedException {
+        RecordWriter<TableRowkeyPair, KeyValue> writer =
+                MultiHfileOutputFormat.<KeyValue>createRecordWriter(context);
+        try {
+            int tableIndex = -1;
+            List<byte[]> startKeys = null;
+            int region = 0;
+            TableRowkeyPair row = null;
+            KeyValue previous = null;
+            long count = 0;
+            for (ExternalKeyValueSorter.Entry entry : sorter) {
+                KeyValue kv = entry.getKeyValue();
+                if (entry.getTableIndex() != tableIndex) {
+                    tableIndex = entry.getTableIndex();
+                    startKeys = getRegionStartKeys(tableNames.get(tableIndex));
+                    region = 0;
+                    row = null;
+                } else if (KeyValue.COMPARATOR.compare(previous, kv) == 0) {
+                    // Same cell upserted more than once, only the first one is kept as in the reducer
+                    continue;
+                }
+                if (row == null || !CellUtil.matchingRow(kv, row.getRowkey().get())) {
+                    byte[] rowKey = CellUtil.cloneRow(kv);
+                    boolean nextRegion = false;
+                    while (region + 1 < startKeys.size()
+                            && Bytes.compareTo(rowKey, startKeys.get(region + 1)) >= 0) {
+                        region++;
+                        nextRegion = true;
+                    }
+                    if (nextRegion && row != null) {
+                        writer.write(null, null);
+                    }
+                    row = new TableRowkeyPair(tableNames.get(tableIndex), new ImmutableBytesWritable(rowKey));
+                }
+                writer.write(row, kv);
+                previous = kv;
+                if (++count % 100000 == 0) {
+                    context.setStatus("Wrote " + count);
+                }
+            }
+            context.getCounter(COUNTER_GROUP_NAME, "Map-side spills").increment(sorter.getSpillCount());
+        } finally {
+            writer.close(context);
+        }
+    }
+
+    private List<byte[]> getRegionStartKeys(String tableName) throws IOException {
+        try {
+            List<HRegionLocation> regions = conn.getQueryServices().getAllTableRegions(Bytes.toBytes(tableName));
+            List<byte[]> startKeys = Lists.newArrayListWithExpectedSize(regions.size());
+            for (HRegionLocation region : regions) {
+                startKeys.add(region.getRegionInfo().getStartKey());
+            }
+            Collections.sort(startKeys, Bytes.BYTES_COMPARATOR);
+            return startKeys;
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
         try {
-            if (conn != null) {
-                conn.close();
+            if (sorter != null) {
+                writeSortedKeyValues(context);
+            }
+        } finally {
+            if (sorter != null) {
+                sorter.close();
+            }
+            try {
+                if (conn != null) {
+                    conn.close();
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
     }
 
@@ -121,6 +121,9 @@ public class PhoenixInputFormat<T extends DBWritable> extends InputFormat<NullWr
             boolean splitByStats = PhoenixConfigurationUtil.getSplitByStats(config);
 
             if(splitByStats) {
+                // each guidepost covers about an equal share of the region, which lets callers
+                // such as Pig combine the splits of a region server up to a target size
+                long scanSize = regionSize / scans.size();
                 for(Scan aScan: scans) {
                     if (LOG.isDebugEnabled()) {
                         LOG.debug("Split for  scan : " + aScan + "with scanAttribute : " + aScan
@@ -129,7 +132,7 @@ public class PhoenixInputFormat<T extends DBWritable> extends InputFormat<NullWr
                                 .getBatch() + "] and  regionLocation : " + regionLocation);
                     }
 
-                    psplits.add(new PhoenixInputSplit(Collections.singletonList(aScan), regionSize, regionLocation));
+                    psplits.add(new PhoenixInputSplit(Collections.singletonList(aScan), scanSize, regionLocation));
                 }
             }
             else {
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce.bulkload;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.util.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Sorts the KeyValues generated for the tables being bulk loaded, by table and then in the
+ * order of the HFiles. The KeyValues are buffered in memory up to the given size, after which
+ * the buffer is sorted and spilled to a local file. The sorted KeyValues are returned by merging
+ * the spilled runs with the KeyValues still in memory.
+ */
+public class ExternalKeyValueSorter implements Closeable, Iterable<ExternalKeyValueSorter.Entry> {
+    private static final Logger LOG = LoggerFactory.getLogger(ExternalKeyValueSorter.class);
+
+    // Approximate overhead of an entry in the buffer
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            if (e1.tableIndex != e2.tableIndex) {
+                return e1.tableIndex < e2.tableIndex ? -1 : 1;
+            }
+            return KeyValue.COMPARATOR.compare(e1.keyValue, e2.keyValue);
+        }
+    };
+
+    private final File spillDir;
+    private final long maxBufferSize;
+    private final List<Entry> buffer = Lists.newArrayList();
+    private final List<File> spillFiles = Lists.newArrayList();
+    private final List<Closeable> openRuns = Lists.newArrayList();
+    private long bufferSize;
+
+    /**
+     * KeyValue of a table, identified by its index in the list of tables being loaded.
+     */
+    public static class Entry {
+        private final int tableIndex;
+        private final KeyValue keyValue;
+
+        public Entry(int tableIndex, KeyValue keyValue) {
+            this.tableIndex = tableIndex;
+            this.keyValue = keyValue;
+        }
+
+        public int getTableIndex() {
+            return tableIndex;
+        }
+
+        public KeyValue getKeyValue() {
+            return keyValue;
+        }
+    }
+
+    /**
+     * @param spillDir the local directory of the files the sorted runs are spilled to
+     * @param maxBufferSize the size of the KeyValues sorted in memory before being spilled
+     */
+    public ExternalKeyValueSorter(File spillDir, long maxBufferSize) {
+        this.spillDir = spillDir;
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    public void add(int tableIndex, KeyValue keyValue) throws IOException {
+        buffer.add(new Entry(tableIndex, keyValue));
+        bufferSize += keyValue.heapSize() + ENTRY_OVERHEAD;
+        if (bufferSize >= maxBufferSize) {
+            spill();
+        }
+    }
+
+    public int getSpillCount() {
+        return spillFiles.size();
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(buffer, ENTRY_COMPARATOR);
+        File file = File.createTempFile("phoenix-bulkload-", ".spill", spillDir);
+        spillFiles.add(file);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            WritableUtils.writeVInt(output, buffer.size());
+            for (Entry entry : buffer) {
+                WritableUtils.writeVInt(output, entry.tableIndex);
+                KeyValue.write(entry.keyValue, output);
+            }
+        } finally {
+            output.close();
+        }
+        LOG.info("Spilled {} KeyValues to {}", buffer.size(), file);
+        buffer.clear();
+        bufferSize = 0;
+    }
+
+    /**
+     * Returns the KeyValues added so far in sorted order. Must only be called once all the
+     * KeyValues were added.
+     */
+    @Override
+    public Iterator<Entry> iterator() {
+        Collections.sort(buffer, ENTRY_COMPARATOR);
+        if (spillFiles.isEmpty()) {
+            return buffer.iterator();
+        }
+        final PriorityQueue<Run> runs = new PriorityQueue<Run>(spillFiles.size() + 1, new Comparator<Run>() {
+            @Override
+            public int compare(Run r1, Run r2) {
+                return ENTRY_COMPARATOR.compare(r1.current, r2.current);
+            }
+        });
+        try {
+            for (File file : spillFiles) {
+                SpilledRun run = new SpilledRun(file);
+                openRuns.add(run);
+                if (run.advance()) {
+                    runs.add(run);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Run memoryRun = new MemoryRun(buffer.iterator());
+        if (memoryRun.advance()) {
+            runs.add(memoryRun);
+        }
+        return new Iterator<Entry>() {
+            @Override
+            public boolean hasNext() {
+                return !runs.isEmpty();
+            }
+
+            @Override
+            public Entry next() {
+                Run run = runs.poll();
+                if (run == null) {
+                    throw new NoSuchElementException();
+                }
+                Entry entry = run.current;
+                try {
+                    if (run.advance()) {
+                        runs.add(run);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Deletes the spilled files.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Closeable run : openRuns) {
+            Closeables.closeQuietly(run);
+        }
+        openRuns.clear();
+        for (File file : spillFiles) {
+            if (!file.delete()) {
+                LOG.warn("Failed to delete {}", file);
+            }
+        }
+        spillFiles.clear();
+        buffer.clear();
+        bufferSize = 0;
+    }
+
+    private static abstract class Run {
+        protected Entry current;
+
+        abstract boolean advance() throws IOException;
+    }
+
+    private static class MemoryRun extends Run {
+        private final Iterator<Entry> iterator;
+
+        private MemoryRun(Iterator<Entry> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+    }
+
+    private static class SpilledRun extends Run implements Closeable {
+        private final DataInputStream input;
+        private int remaining;
+
+        private SpilledRun(File file) throws IOException {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            remaining = WritableUtils.readVInt(input);
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                current = null;
+                input.close();
+                return false;
+            }
+            remaining--;
+            int tableIndex = WritableUtils.readVInt(input);
+            current = new Entry(tableIndex, KeyValue.create(input));
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce.index;
+
+import static org.apache.phoenix.mapreduce.index.IndexScrutinyTableOutput.SCRUTINY_EXECUTE_TIME_COL_NAME;
+import static org.apache.phoenix.mapreduce.index.IndexScrutinyTableOutput.SOURCE_TABLE_COL_NAME;
+import static org.apache.phoenix.mapreduce.index.IndexScrutinyTableOutput.TARGET_TABLE_COL_NAME;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.apache.phoenix.expression.function.FingerprintFunction;
+import org.apache.phoenix.mapreduce.index.SourceTargetColumnNames.DataSourceColNames;
+import org.apache.phoenix.util.EnvironmentEdgeManager;
+import org.apache.phoenix.util.SchemaUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Verifies an index against its data table without reading the rows on the client unless they
+ * differ. The rows of both tables are hashed to buckets by their data table primary key, and the
+ * region servers aggregate the row count and the sum of the {@link FingerprintFunction} of the
+ * rows of each bucket. The sums of all the buckets form the root of a two level hash tree. Only
+ * the rows of the buckets whose count or digest differ between the tables are read and compared
+ * one by one.
+ *
+ * The bucket digests are persisted in {@link #DIGEST_TABLE_NAME}. A bucket found invalid by a
+ * previous run whose digests did not change since is not compared again, and its previous
+ * invalid row count is reported instead.
+ *
+ * Buckets are hash ranges of the data table primary key rather than row key ranges, as the rows
+ * of the index are ordered by the index key.
+ */
+public class IndexScrutinyDigest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexScrutinyDigest.class);
+
+    public static final int DEFAULT_BUCKET_COUNT = 1024;
+
+    /**
+     * This table holds the digests of the buckets of the last run for an index, and the number of
+     * invalid rows found in them.
+     */
+    public static final String DIGEST_TABLE_NAME = "PHOENIX_INDEX_SCRUTINY_DIGEST";
+    public static final String DIGEST_TABLE_DDL =
+            "CREATE TABLE IF NOT EXISTS " + DIGEST_TABLE_NAME + "\n" +
+            "(\n" +
+            "    " + SOURCE_TABLE_COL_NAME + " VARCHAR NOT NULL,\n" +
+            "    " + TARGET_TABLE_COL_NAME + " VARCHAR NOT NULL,\n" +
+            "    BUCKET_COUNT INTEGER NOT NULL,\n" +
+            "    BUCKET BIGINT NOT NULL,\n" +
+            "    SOURCE_ROW_COUNT BIGINT,\n" +
+            "    SOURCE_DIGEST BIGINT,\n" +
+            "    TARGET_ROW_COUNT BIGINT,\n" +
+            "    TARGET_DIGEST BIGINT,\n" +
+            "    INVALID_ROW_COUNT BIGINT,\n" +
+            "    " + SCRUTINY_EXECUTE_TIME_COL_NAME + " BIGINT,\n" + // time at which the bucket was last compared
+            "    CONSTRAINT PK PRIMARY KEY\n" +
+            "    (\n" +
+            "        " + SOURCE_TABLE_COL_NAME + ",\n" +
+            "        " + TARGET_TABLE_COL_NAME + ",\n" +
+            "        BUCKET_COUNT,\n" + // digests of different bucket counts can't be compared
+            "        BUCKET\n" +
+            "    )\n" +
+            ")";
+
+    private static final String SELECT_DIGESTS_SQL =
+            "SELECT BUCKET, SOURCE_ROW_COUNT, SOURCE_DIGEST, TARGET_ROW_COUNT, TARGET_DIGEST, INVALID_ROW_COUNT, "
+                    + SCRUTINY_EXECUTE_TIME_COL_NAME + " FROM " + DIGEST_TABLE_NAME + " WHERE "
+                    + SOURCE_TABLE_COL_NAME + " = ? AND " + TARGET_TABLE_COL_NAME
+                    + " = ? AND BUCKET_COUNT = ?";
+    private static final String UPSERT_DIGEST_SQL =
+            "UPSERT INTO " + DIGEST_TABLE_NAME + " VALUES (?,?,?,?,?,?,?,?,?,?)";
+    private static final String DELETE_DIGEST_SQL =
+            "DELETE FROM " + DIGEST_TABLE_NAME + " WHERE " + SOURCE_TABLE_COL_NAME + " = ? AND "
+                    + TARGET_TABLE_COL_NAME + " = ? AND BUCKET_COUNT = ? AND BUCKET = ?";
+
+    private final Connection connection;
+    private final Connection outputConnection;
+    private final DataSourceColNames columnNames;
+    private final int bucketCount;
+    private final long outputMaxRows;
+    private final String qDataTable;
+    private final String qIndexTable;
+
+    /**
+     * @param connection connection the tables are read with, at the timestamp to compare them at
+     * @param outputConnection connection the digests are persisted with
+     * @param columnNames the data and index columns to compare
+     * @param bucketCount number of buckets the rows are hashed to
+     * @param outputMaxRows max number of invalid rows to log
+     */
+    public IndexScrutinyDigest(Connection connection, Connection outputConnection,
+            DataSourceColNames columnNames, int bucketCount, long outputMaxRows) {
+        this.connection = connection;
+        this.outputConnection = outputConnection;
+        this.columnNames = columnNames;
+        this.bucketCount = bucketCount;
+        this.outputMaxRows = outputMaxRows;
+        this.qDataTable = columnNames.getQualifiedDataTableName();
+        this.qIndexTable = columnNames.getQualifiedIndexTableName();
+    }
+
+    /**
+     * Row count and digest of a bucket on both tables
+     */
+    static class BucketDigest {
+        long dataRowCount;
+        long dataDigest;
+        long indexRowCount;
+        long indexDigest;
+        long invalidRowCount;
+        long verifiedTime;
+
+        boolean isValid() {
+            return dataRowCount == indexRowCount && dataDigest == indexDigest;
+        }
+
+        boolean hasSameDigests(BucketDigest other) {
+            return dataRowCount == other.dataRowCount && dataDigest == other.dataDigest
+                    && indexRowCount == other.indexRowCount && indexDigest == other.indexDigest;
+        }
+    }
+
+    /**
+     * Outcome of a digest scrutiny
+     */
+    public static class Result {
+        private long bucketCount;
+        private long invalidBucketCount;
+        private long comparedBucketCount;
+        private long invalidRowCount;
+
+        /**
+         * @return the number of buckets holding rows in either table
+         */
+        public long getBucketCount() {
+            return bucketCount;
+        }
+
+        /**
+         * @return the number of buckets whose digests differ between the tables
+         */
+        public long getInvalidBucketCount() {
+            return invalidBucketCount;
+        }
+
+        /**
+         * @return the number of invalid buckets whose rows were compared by this run
+         */
+        public long getComparedBucketCount() {
+            return comparedBucketCount;
+        }
+
+        /**
+         * @return the number of data and index rows without an identical row in the other
+         *         table, including the rows found by a previous run in unchanged buckets
+         */
+        public long getInvalidRowCount() {
+            return invalidRowCount;
+        }
+
+        @Override
+        public String toString() {
+            return "[buckets=" + bucketCount + ", invalidBuckets=" + invalidBucketCount
+                    + ", comparedBuckets=" + comparedBucketCount + ", invalidRows="
+                    + invalidRowCount + "]";
+        }
+    }
+
+    public Result run() throws SQLException {
+        List<String> dataColNames = SchemaUtil.getEscapedFullColumnNames(columnNames.getDataColNames());
+        List<String> indexColNames = columnNames.getCastedTargetColNames();
+        int pkCount = columnNames.getDataPkColNames().size();
+
+        SortedMap<Long, BucketDigest> digests = Maps.newTreeMap();
+        long dataRoot = readDigests(qDataTable, dataColNames, pkCount, digests, true);
+        long indexRoot = readDigests(qIndexTable, indexColNames, pkCount, digests, false);
+        LOG.info("Root digest of " + qDataTable + " is " + dataRoot + " and of " + qIndexTable
+                + " is " + indexRoot);
+
+        Map<Long, BucketDigest> previousDigests = readPreviousDigests();
+        Result result = new Result();
+        result.bucketCount = digests.size();
+        List<Long> bucketsToCompare = Lists.newArrayList();
+        long now = EnvironmentEdgeManager.currentTimeMillis();
+        for (Map.Entry<Long, BucketDigest> entry : digests.entrySet()) {
+            BucketDigest digest = entry.getValue();
+            BucketDigest previous = previousDigests.get(entry.getKey());
+            if (digest.isValid()) {
+                digest.verifiedTime = now;
+                continue;
+            }
+            result.invalidBucketCount++;
+            if (previous != null && previous.hasSameDigests(digest)) {
+                // Nothing changed since the rows were compared
+                digest.invalidRowCount = previous.invalidRowCount;
+                digest.verifiedTime = previous.verifiedTime;
+                result.invalidRowCount += digest.invalidRowCount;
+            } else {
+                bucketsToCompare.add(entry.getKey());
+            }
+        }
+        LOG.info(result.invalidBucketCount + " of " + result.bucketCount
+                + " buckets have different digests, comparing the rows of "
+                + bucketsToCompare.size() + " of them");
+
+        if (!bucketsToCompare.isEmpty()) {
+            result.comparedBucketCount = bucketsToCompare.size();
+            compareRows(dataColNames, indexColNames, pkCount, bucketsToCompare, digests);
+            for (Long bucket : bucketsToCompare) {
+                BucketDigest digest = digests.get(bucket);
+                digest.verifiedTime = now;
+                result.invalidRowCount += digest.invalidRowCount;
+            }
+        }
+
+        writeDigests(digests, previousDigests);
+        return result;
+    }
+
+    private String getBucket(List<String> colNames, int pkCount) {
+        return "MOD(" + getChainedFingerprint(colNames.subList(0, pkCount)) + ", " + bucketCount + ")";
+    }
+
+    /**
+     * @return FINGERPRINT(Cn, ... FINGERPRINT(C2, FINGERPRINT(C1)))
+     */
+    static String getChainedFingerprint(List<String> colNames) {
+        String fingerprint = null;
+        for (String colName : colNames) {
+            fingerprint = FingerprintFunction.NAME + "(" + colName
+                    + (fingerprint == null ? "" : ", " + fingerprint) + ")";
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Aggregates the row count and digest of the buckets of a table on the region servers.
+     * @return the sum of the digests of the buckets
+     */
+    private long readDigests(String qTable, List<String> colNames, int pkCount,
+            Map<Long, BucketDigest> digests, boolean isDataTable) throws SQLException {
+        String bucket = getBucket(colNames, pkCount);
+        String query = "SELECT /*+ NO_INDEX */ " + bucket + ", COUNT(*), SUM("
+                + getChainedFingerprint(colNames) + ") FROM " + qTable + " GROUP BY " + bucket;
+        LOG.info("Query used to compute the digests of " + qTable + ": " + query);
+        long root = 0;
+        try (ResultSet rs = connection.createStatement().executeQuery(query)) {
+            while (rs.next()) {
+                long bucketId = rs.getLong(1);
+                BucketDigest digest = digests.get(bucketId);
+                if (digest == null) {
+                    digest = new BucketDigest();
+                    digests.put(bucketId, digest);
+                }
+                if (isDataTable) {
+                    digest.dataRowCount = rs.getLong(2);
+                    digest.dataDigest = rs.getLong(3);
+                } else {
+                    digest.indexRowCount = rs.getLong(2);
+                    digest.indexDigest = rs.getLong(3);
+                }
+                root += rs.getLong(3);
+            }
+        }
+        return root;
+    }
+
+    private Map<Long, BucketDigest> readPreviousDigests() throws SQLException {
+        Map<Long, BucketDigest> previousDigests = Maps.newHashMap();
+        try (PreparedStatement stmt = outputConnection.prepareStatement(SELECT_DIGESTS_SQL)) {
+            stmt.setString(1, qDataTable);
+            stmt.setString(2, qIndexTable);
+            stmt.setInt(3, bucketCount);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    BucketDigest digest = new BucketDigest();
+                    digest.dataRowCount = rs.getLong(2);
+                    digest.dataDigest = rs.getLong(3);
+                    digest.indexRowCount = rs.getLong(4);
+                    digest.indexDigest = rs.getLong(5);
+                    digest.invalidRowCount = rs.getLong(6);
+                    digest.verifiedTime = rs.getLong(7);
+                    previousDigests.put(rs.getLong(1), digest);
+                }
+            }
+        }
+        return previousDigests;
+    }
+
+    private void writeDigests(Map<Long, BucketDigest> digests,
+            Map<Long, BucketDigest> previousDigests) throws SQLException {
+        boolean autoCommit = outputConnection.getAutoCommit();
+        outputConnection.setAutoCommit(false);
+        try (PreparedStatement upsert = outputConnection.prepareStatement(UPSERT_DIGEST_SQL);
+                PreparedStatement delete = outputConnection.prepareStatement(DELETE_DIGEST_SQL)) {
+            for (Map.Entry<Long, BucketDigest> entry : digests.entrySet()) {
+                BucketDigest digest = entry.getValue();
+                upsert.setString(1, qDataTable);
+                upsert.setString(2, qIndexTable);
+                upsert.setInt(3, bucketCount);
+                upsert.setLong(4, entry.getKey());
+                upsert.setLong(5, digest.dataRowCount);
+                upsert.setLong(6, digest.dataDigest);
+                upsert.setLong(7, digest.indexRowCount);
+                upsert.setLong(8, digest.indexDigest);
+                upsert.setLong(9, digest.invalidRowCount);
+                upsert.setLong(10, digest.verifiedTime);
+                upsert.execute();
+            }
+            // Buckets which no longer have rows in either table
+            for (Long bucket : previousDigests.keySet()) {
+                if (!digests.containsKey(bucket)) {
+                    delete.setString(1, qDataTable);
+                    delete.setString(2, qIndexTable);
+                    delete.setInt(3, bucketCount);
+                    delete.setLong(4, bucket);
+                    delete.execute();
+                }
+            }
+            outputConnection.commit();
+        } finally {
+            outputConnection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Row of a bucket being compared
+     */
+    private static class Row {
+        private final long bucket;
+        private final long pkFingerprint;
+        private final long fingerprint;
+        private final String[] values;
+
+        private Row(ResultSet rs, int colCount) throws SQLException {
+            bucket = rs.getLong(1);
+            pkFingerprint = rs.getLong(2);
+            fingerprint = rs.getLong(3);
+            values = new String[colCount];
+            for (int i = 0; i < colCount; i++) {
+                values[i] = rs.getString(i + 4);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Joiner.on(", ").useForNull("null").join(values);
+        }
+    }
+
+    private ResultSet selectRows(String qTable, List<String> colNames, int pkCount,
+            List<Long> buckets) throws SQLException {
+        String bucket = getBucket(colNames, pkCount);
+        String pkFingerprint = getChainedFingerprint(colNames.subList(0, pkCount));
+        // Rows are merged in the order of the fingerprint of their data table primary key, as
+        // the index rows are not in the order of the data table primary key
+        String query = "SELECT /*+ NO_INDEX */ " + bucket + ", " + pkFingerprint + ", "
+                + getChainedFingerprint(colNames) + ", " + Joiner.on(", ").join(colNames)
+                + " FROM " + qTable + " WHERE " + bucket + " IN (" + Joiner.on(",").join(buckets)
+                + ") ORDER BY " + pkFingerprint;
+        LOG.info("Query used to compare the rows of " + qTable + ": " + query);
+        return connection.createStatement().executeQuery(query);
+    }
+
+    private void compareRows(List<String> dataColNames, List<String> indexColNames, int pkCount,
+            List<Long> buckets, Map<Long, BucketDigest> digests) throws SQLException {
+        long loggedRows = 0;
+        try (ResultSet dataRs = selectRows(qDataTable, dataColNames, pkCount, buckets);
+                ResultSet indexRs = selectRows(qIndexTable, indexColNames, pkCount, buckets)) {
+            Row dataRow = dataRs.next() ? new Row(dataRs, dataColNames.size()) : null;
+            Row indexRow = indexRs.next() ? new Row(indexRs, indexColNames.size()) : null;
+            List<Row> dataRows = Lists.newArrayList();
+            List<Row> indexRows = Lists.newArrayList();
+            while (dataRow != null || indexRow != null) {
+                // Collect the rows of both tables with the next primary key fingerprint, which
+                // is the same primary key barring collisions
+                long pkFingerprint = dataRow == null ? indexRow.pkFingerprint
+                        : indexRow == null ? dataRow.pkFingerprint
+                        : Math.min(dataRow.pkFingerprint, indexRow.pkFingerprint);
+                while (dataRow != null && dataRow.pkFingerprint == pkFingerprint) {
+                    dataRows.add(dataRow);
+                    dataRow = dataRs.next() ? new Row(dataRs, dataColNames.size()) : null;
+                }
+                while (indexRow != null && indexRow.pkFingerprint == pkFingerprint) {
+                    indexRows.add(indexRow);
+                    indexRow = indexRs.next() ? new Row(indexRs, indexColNames.size()) : null;
+                }
+                // Rows with the same fingerprint on both tables are valid
+                for (Iterator<Row> dataIter = dataRows.iterator(); dataIter.hasNext();) {
+                    Row row = dataIter.next();
+                    for (Iterator<Row> indexIter = indexRows.iterator(); indexIter.hasNext();) {
+                        if (indexIter.next().fingerprint == row.fingerprint) {
+                            indexIter.remove();
+                            dataIter.remove();
+                            break;
+                        }
+                    }
+                }
+                for (Row row : dataRows) {
+                    digests.get(row.bucket).invalidRowCount++;
+                    if (loggedRows++ < outputMaxRows) {
+                        LOG.info("Data table row without a matching index row: " + row);
+                    }
+                }
+                for (Row row : indexRows) {
+                    digests.get(row.bucket).invalidRowCount++;
+                    if (loggedRows++ < outputMaxRows) {
+                        LOG.info("Index table row without a matching data row: " + row);
+                    }
+                }
+                dataRows.clear();
+                indexRows.clear();
+            }
+        }
+    }
+}
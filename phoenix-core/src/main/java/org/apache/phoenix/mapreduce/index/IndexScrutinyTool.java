@@ -23,6 +23,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Properties;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -111,6 +112,16 @@ public class IndexScrutinyTool extends Configured implements Tool {
     private static final Option OUTPUT_PATH_OPTION =
             new Option("op", "output-path", true, "Output path where the files are written");
     private static final Option OUTPUT_MAX = new Option("om", "output-max", true, "Max number of invalid rows to output per mapper.  Defaults to 1M");
+    private static final Option DIGEST_OPTION =
+            new Option("dg", "digest", false,
+                    "If specified, compares digests of the rows of both tables computed on the region servers,"
+                            + " and only compares the rows of the buckets whose digests differ, without a MR job."
+                            + " Invalid rows are logged. Buckets found invalid by the previous run are not compared"
+                            + " again unless their digests changed");
+    private static final Option DIGEST_BUCKETS_OPTION =
+            new Option("db", "digest-buckets", true,
+                    "Number of buckets the rows are hashed to by their data table primary key in digest mode."
+                            + "  Defaults to " + IndexScrutinyDigest.DEFAULT_BUCKET_COUNT);
     public static final String INDEX_JOB_NAME_TEMPLATE = "PHOENIX_SCRUTINY_[%s]_[%s]";
 
     /**
@@ -129,6 +140,7 @@ public class IndexScrutinyTool extends Configured implements Tool {
     }
 
     private List<Job> jobs = Lists.newArrayList();
+    private IndexScrutinyDigest.Result digestResult;
 
     private Options getOptions() {
         final Options options = new Options();
@@ -145,6 +157,8 @@ public class IndexScrutinyTool extends Configured implements Tool {
         options.addOption(TIMESTAMP);
         options.addOption(BATCH_SIZE_OPTION);
         options.addOption(SOURCE_TABLE_OPTION);
+        options.addOption(DIGEST_OPTION);
+        options.addOption(DIGEST_BUCKETS_OPTION);
         return options;
     }
 
@@ -406,6 +420,22 @@ public class IndexScrutinyTool extends Configured implements Tool {
                             : 1000000L;
             /** end - parse command line configs **/
 
+            if (cmdLine.hasOption(DIGEST_OPTION.getOpt())) {
+                int bucketCount =
+                        cmdLine.hasOption(DIGEST_BUCKETS_OPTION.getOpt())
+                                ? Integer.parseInt(
+                                    cmdLine.getOptionValue(DIGEST_BUCKETS_OPTION.getOpt()))
+                                : IndexScrutinyDigest.DEFAULT_BUCKET_COUNT;
+                LOG.info(String.format(
+                    "Running digest scrutiny [schemaName=%s, dataTable=%s, indexTable=%s, timestamp=%s, buckets=%s, outputMaxRows=%s]",
+                    schemaName, dataTable, indexTable, ts, bucketCount, outputMaxRows));
+                digestResult =
+                        runDigest(connection, configuration, schemaName, dataTable, indexTable, ts,
+                            bucketCount, outputMaxRows);
+                LOG.info("Digest scrutiny result: " + digestResult);
+                return 0;
+            }
+
             if (outputInvalidRows && OutputFormat.TABLE.equals(outputFormat)) {
                 // create the output table if it doesn't exist
                 try (Connection outputConn = ConnectionUtil.getOutputConnection(configuration)) {
@@ -477,11 +507,40 @@ public class IndexScrutinyTool extends Configured implements Tool {
         }
     }
 
+    private IndexScrutinyDigest.Result runDigest(Connection connection,
+            Configuration configuration, String schemaName, String dataTable, String indexTable,
+            long ts, int bucketCount, long outputMaxRows) throws SQLException {
+        Preconditions.checkArgument(bucketCount > 0, "digest-buckets must be positive");
+        final String qDataTable = SchemaUtil.getQualifiedTableName(schemaName, dataTable);
+        final String qIndexTable = SchemaUtil.getQualifiedTableName(schemaName, indexTable);
+        final PTable pdataTable = PhoenixRuntime.getTable(connection, qDataTable);
+        final PTable pindexTable = PhoenixRuntime.getTable(connection, qIndexTable);
+        // read both tables as of the same timestamp so that incoming writes don't throw off
+        // scrutiny
+        Properties props = new Properties();
+        props.setProperty(PhoenixRuntime.CURRENT_SCN_ATTRIB, Long.toString(ts));
+        try (Connection scnConnection = ConnectionUtil.getInputConnection(configuration, props);
+                Connection outputConn = ConnectionUtil.getOutputConnection(configuration)) {
+            outputConn.createStatement().execute(IndexScrutinyDigest.DIGEST_TABLE_DDL);
+            IndexScrutinyDigest digest =
+                    new IndexScrutinyDigest(scnConnection, outputConn,
+                            new SourceTargetColumnNames.DataSourceColNames(pdataTable,
+                                    pindexTable),
+                            bucketCount, outputMaxRows);
+            return digest.run();
+        }
+    }
+
     @VisibleForTesting
     public List<Job> getJobs() {
         return jobs;
     }
 
+    @VisibleForTesting
+    public IndexScrutinyDigest.Result getDigestResult() {
+        return digestResult;
+    }
+
     /**
      * Checks for the validity of the index table passed to the job.
      * @param connection
@@ -29,6 +29,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -64,7 +65,10 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.apache.phoenix.compile.MutationPlan;
 import org.apache.phoenix.compile.PostIndexDDLCompiler;
+import org.apache.phoenix.compile.PostLocalIndexDDLCompiler;
+import org.apache.phoenix.compile.ServerBuildIndexCompiler;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.hbase.index.util.IndexManagementUtil;
 import org.apache.phoenix.index.IndexMaintainer;
@@ -122,6 +126,8 @@ public class IndexTool extends Configured implements Tool {
             "Output path where the files are written");
     private static final Option SNAPSHOT_OPTION = new Option("snap", "snapshot", false,
         "If specified, uses Snapshots for async index building (optional)");
+    private static final Option SERVER_BUILD_OPTION = new Option("sb", "server-build", false,
+        "If specified, builds the index from within the data table regions instead of running a MapReduce job (optional)");
     private static final Option HELP_OPTION = new Option("h", "help", false, "Help");
     public static final String INDEX_JOB_NAME_TEMPLATE = "PHOENIX_%s_INDX_%s";
 
@@ -135,6 +141,7 @@ public class IndexTool extends Configured implements Tool {
         options.addOption(RUN_FOREGROUND_OPTION);
         options.addOption(OUTPUT_PATH_OPTION);
         options.addOption(SNAPSHOT_OPTION);
+        options.addOption(SERVER_BUILD_OPTION);
         options.addOption(HELP_OPTION);
         return options;
     }
@@ -166,8 +173,8 @@ public class IndexTool extends Configured implements Tool {
                     + "parameter");
         }
 
-		if (!(cmdLine.hasOption(PARTIAL_REBUILD_OPTION.getOpt()) || cmdLine.hasOption(DIRECT_API_OPTION.getOpt()))
-				&& !cmdLine.hasOption(OUTPUT_PATH_OPTION.getOpt())) {
+		if (!(cmdLine.hasOption(PARTIAL_REBUILD_OPTION.getOpt()) || cmdLine.hasOption(DIRECT_API_OPTION.getOpt())
+				|| cmdLine.hasOption(SERVER_BUILD_OPTION.getOpt())) && !cmdLine.hasOption(OUTPUT_PATH_OPTION.getOpt())) {
 			throw new IllegalStateException(OUTPUT_PATH_OPTION.getLongOpt() + " is a mandatory " + "parameter");
 		}
         
@@ -175,6 +182,11 @@ public class IndexTool extends Configured implements Tool {
 			throw new IllegalStateException("Index name should not be passed with " + PARTIAL_REBUILD_OPTION.getLongOpt());
 		}
         		
+        if (cmdLine.hasOption(SERVER_BUILD_OPTION.getOpt()) && !cmdLine.hasOption(INDEX_TABLE_OPTION.getOpt())) {
+            throw new IllegalStateException(INDEX_TABLE_OPTION.getLongOpt() + " is a mandatory parameter for "
+                    + SERVER_BUILD_OPTION.getLongOpt());
+        }
+
         if (!(cmdLine.hasOption(DIRECT_API_OPTION.getOpt())) && cmdLine.hasOption(INDEX_TABLE_OPTION.getOpt())
                 && cmdLine.hasOption(RUN_FOREGROUND_OPTION
                         .getOpt())) {
@@ -513,6 +525,17 @@ public class IndexTool extends Configured implements Tool {
             }
             
             PTable pdataTable = PhoenixRuntime.getTableNoCache(connection, qDataTable);
+            if (cmdLine.hasOption(SERVER_BUILD_OPTION.getOpt())) {
+                if (pdataTable.isTransactional()) {
+                    throw new IllegalArgumentException(String.format(
+                        " %s is transactional and cannot be indexed with %s ", qDataTable, SERVER_BUILD_OPTION.getLongOpt()));
+                }
+                LOG.info("Building index {} from within the regions of {}", indexTable, qDataTable);
+                long rowCount = buildIndexOnServer(configuration, qDataTable, pindexTable);
+                LOG.info("Built {} rows of index {}", rowCount, indexTable);
+                IndexToolUtil.updateIndexState(connection, qDataTable, indexTable, PIndexState.ACTIVE);
+                return 0;
+            }
 			Path outputPath = null;
 			FileSystem fs = null;
 			if (basePath != null) {
@@ -571,6 +594,25 @@ public class IndexTool extends Configured implements Tool {
 
     
 
+    /**
+     * Builds the index from within the regions of the data table, which write the index rows
+     * they generate from their data rows. The data rows are read as of the creation of the
+     * index, as for the MapReduce build.
+     * @return the number of data rows indexed
+     */
+    private long buildIndexOnServer(Configuration configuration, String qDataTable, PTable pindexTable)
+            throws SQLException {
+        Properties props = new Properties();
+        props.setProperty(PhoenixRuntime.CURRENT_SCN_ATTRIB, Long.toString(pindexTable.getTimeStamp() + 1));
+        try (PhoenixConnection conn =
+                ConnectionUtil.getInputConnection(configuration, props).unwrap(PhoenixConnection.class)) {
+            MutationPlan plan = IndexType.LOCAL.equals(pindexTable.getIndexType())
+                    ? new PostLocalIndexDDLCompiler(conn, qDataTable).compile(pindexTable)
+                    : new ServerBuildIndexCompiler(conn, qDataTable).compile(pindexTable);
+            return plan.execute().getUpdateCount();
+        }
+    }
+
     private boolean validateSplitForLocalIndex(byte[][] splitKeysBeforeJob, HTable htable) throws Exception {
         if (splitKeysBeforeJob != null
                 && !IndexUtil.matchingSplitKeys(splitKeysBeforeJob, htable.getRegionLocator().getStartKeys())) {
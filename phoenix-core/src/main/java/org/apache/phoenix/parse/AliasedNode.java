@@ -38,6 +38,15 @@ public class AliasedNode {
         this.node = node;
     }
 
+    /**
+     * @param alias the alias, already normalized
+     */
+    public AliasedNode(String alias, boolean isCaseSensitive, ParseNode node) {
+        this.isCaseSensitve = isCaseSensitive;
+        this.alias = alias;
+        this.node = node;
+    }
+
     public String getAlias() {
         return alias;
     }
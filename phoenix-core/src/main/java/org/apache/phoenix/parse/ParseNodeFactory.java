@@ -212,6 +212,10 @@ public class ParseNodeFactory {
     	return new AliasedNode(alias, expression);
     }
 
+    public AliasedNode aliasedNode(String alias, boolean isCaseSensitive, ParseNode expression) {
+        return new AliasedNode(alias, isCaseSensitive, expression);
+    }
+
     public AddParseNode add(List<ParseNode> children) {
         return new AddParseNode(children);
     }
@@ -118,6 +118,9 @@ public interface QueryServices extends SQLCloseable {
     public static final String SEQUENCE_CACHE_SIZE_ATTRIB = "phoenix.sequence.cacheSize";
     public static final String MAX_SERVER_METADATA_CACHE_TIME_TO_LIVE_MS_ATTRIB = "phoenix.coprocessor.maxMetaDataCacheTimeToLiveMs";
     public static final String MAX_SERVER_METADATA_CACHE_SIZE_ATTRIB = "phoenix.coprocessor.maxMetaDataCacheSize";
+    public static final String MAX_AGGREGATE_RESULT_CACHE_TIME_TO_LIVE_MS_ATTRIB = "phoenix.coprocessor.maxAggregateResultCacheTimeToLiveMs";
+    public static final String MAX_AGGREGATE_RESULT_CACHE_SIZE_ATTRIB = "phoenix.coprocessor.maxAggregateResultCacheSize";
+    public static final String MAX_AGGREGATE_RESULT_CACHE_ENTRY_SIZE_ATTRIB = "phoenix.coprocessor.maxAggregateResultCacheEntrySize";
     public static final String MAX_CLIENT_METADATA_CACHE_SIZE_ATTRIB = "phoenix.client.maxMetaDataCacheSize";
 
     public static final String AUTO_UPGRADE_WHITELIST_ATTRIB = "phoenix.client.autoUpgradeWhiteList";
@@ -292,6 +295,51 @@ public interface QueryServices extends SQLCloseable {
     //Update Cache Frequency default config attribute
     public static final String DEFAULT_UPDATE_CACHE_FREQUENCY_ATRRIB  = "phoenix.default.update.cache.frequency";
 
+    // whether to resolve all tables of a multi-table FROM clause with concurrent metadata RPCs up front
+    public static final String METADATA_PREFETCH_ENABLED_ATTRIB = "phoenix.metadata.prefetch.enabled";
+
+    // whether aggregate queries may be answered from per-region results cached on the region servers
+    public static final String AGGREGATE_RESULT_CACHE_ENABLED_ATTRIB = "phoenix.query.aggregateResultCache.enabled";
+
+    // whether ORDER BY queries without a LIMIT are sorted by merging key ranges of the rows concurrently
+    public static final String RANGE_PARTITIONED_SORT_ENABLED_ATTRIB = "phoenix.query.rangePartitionedSort.enabled";
+    public static final String RANGE_PARTITIONED_SORT_PARTITIONS_ATTRIB = "phoenix.query.rangePartitionedSort.partitions";
+    public static final String RANGE_PARTITIONED_SORT_MAX_ROWS_ATTRIB = "phoenix.query.rangePartitionedSort.maxRows";
+    public static final String RANGE_PARTITIONED_SORT_MAX_BYTES_ATTRIB = "phoenix.query.rangePartitionedSort.maxBytes";
+
+    // whether client merge sorts of many iterators are done as a tree of merges running on separate threads
+    public static final String PARALLEL_MERGE_SORT_ENABLED_ATTRIB = "phoenix.query.parallelMergeSort.enabled";
+    public static final String PARALLEL_MERGE_SORT_FAN_IN_ATTRIB = "phoenix.query.parallelMergeSort.fanIn";
+    public static final String PARALLEL_MERGE_SORT_QUEUE_SIZE_ATTRIB = "phoenix.query.parallelMergeSort.queueSize";
+    public static final String PARALLEL_MERGE_SORT_MAX_THREADS_ATTRIB = "phoenix.query.parallelMergeSort.maxThreads";
+
+    // number of key ranges of a sort-merge join that are joined concurrently, with 1 meaning the join is serial
+    public static final String SORT_MERGE_JOIN_PARALLELISM_ATTRIB = "phoenix.query.sortMergeJoin.parallelism";
+    public static final String SORT_MERGE_JOIN_PARALLEL_MAX_BYTES_ATTRIB = "phoenix.query.sortMergeJoin.parallel.maxBytes";
+
+    // whether the region servers evaluate LONG and DOUBLE arithmetic in the filters and projections of a query on primitive values
+    public static final String EXPRESSION_COMPILATION_ENABLED_ATTRIB = "phoenix.query.expressionCompilation.enabled";
+
+    // whether IN lists in the WHERE clause are sent once to each region server through the server cache
+    public static final String IN_LIST_SERVER_CACHE_ENABLED_ATTRIB = "phoenix.query.inListServerCache.enabled";
+    // minimum number of values an IN list must have to be sent through the server cache
+    public static final String IN_LIST_SERVER_CACHE_MIN_SIZE_ATTRIB = "phoenix.query.inListServerCache.minSize";
+
+    // whether point lookups of simple scans read their rows through batched multi-gets instead of a skip scan
+    public static final String BATCHED_GET_ENABLED_ATTRIB = "phoenix.query.batchedGet.enabled";
+    // minimum number of point lookup keys for the rows to be read through batched multi-gets
+    public static final String BATCHED_GET_MIN_KEYS_ATTRIB = "phoenix.query.batchedGet.minKeys";
+    // number of rows read by each multi-get
+    public static final String BATCHED_GET_BATCH_SIZE_ATTRIB = "phoenix.query.batchedGet.batchSize";
+    // maximum number of multi-gets of a query that run ahead of the client concurrently
+    public static final String BATCHED_GET_MAX_CONCURRENT_BATCHES_ATTRIB = "phoenix.query.batchedGet.maxConcurrentBatches";
+
+    // whether a COUNT(DISTINCT) is computed by counting the groups of a derived table grouping by its argument
+    public static final String DISTINCT_COUNT_REWRITE_ENABLED_ATTRIB = "phoenix.query.distinctCount.rewrite.enabled";
+
+    // whether the function calls repeated across the clauses of a query are evaluated once per row
+    public static final String SHARED_EXPRESSION_MEMOIZATION_ENABLED_ATTRIB = "phoenix.query.sharedExpression.memoization.enabled";
+
     /**
      * Get executor service used for parallel scans
      */
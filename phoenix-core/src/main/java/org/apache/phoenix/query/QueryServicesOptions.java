@@ -179,6 +179,9 @@ public class QueryServicesOptions {
     public static final long DEFAULT_SEQUENCE_CACHE_SIZE = 100;  // reserve 100 sequences at a time
     public static final long DEFAULT_MAX_SERVER_METADATA_CACHE_TIME_TO_LIVE_MS =  60000 * 30; // 30 mins
     public static final long DEFAULT_MAX_SERVER_METADATA_CACHE_SIZE =  1024L*1024L*20L; // 20 Mb
+    public static final long DEFAULT_MAX_AGGREGATE_RESULT_CACHE_TIME_TO_LIVE_MS =  60000 * 5; // 5 mins
+    public static final long DEFAULT_MAX_AGGREGATE_RESULT_CACHE_SIZE =  1024L*1024L*20L; // 20 Mb
+    public static final long DEFAULT_MAX_AGGREGATE_RESULT_CACHE_ENTRY_SIZE =  1024L*1024L; // 1 Mb
     public static final long DEFAULT_MAX_CLIENT_METADATA_CACHE_SIZE =  1024L*1024L*10L; // 10 Mb
     public static final int DEFAULT_GROUPBY_ESTIMATED_DISTINCT_VALUES = 1000;
     public static final int DEFAULT_CLOCK_SKEW_INTERVAL = 2000;
@@ -337,6 +340,28 @@ public class QueryServicesOptions {
     // RS -> RS calls for upsert select statements are disabled by default
     public static final boolean DEFAULT_ENABLE_SERVER_UPSERT_SELECT = false;
 
+    public static final boolean DEFAULT_METADATA_PREFETCH_ENABLED = false;
+    public static final boolean DEFAULT_AGGREGATE_RESULT_CACHE_ENABLED = false;
+    public static final boolean DEFAULT_RANGE_PARTITIONED_SORT_ENABLED = false;
+    public static final int DEFAULT_RANGE_PARTITIONED_SORT_PARTITIONS = Runtime.getRuntime().availableProcessors();
+    public static final long DEFAULT_RANGE_PARTITIONED_SORT_MAX_ROWS = 1000000;
+    public static final long DEFAULT_RANGE_PARTITIONED_SORT_MAX_BYTES = 1024L*1024L*100L; // 100 Mb
+    public static final boolean DEFAULT_PARALLEL_MERGE_SORT_ENABLED = false;
+    public static final int DEFAULT_PARALLEL_MERGE_SORT_FAN_IN = 32;
+    public static final int DEFAULT_PARALLEL_MERGE_SORT_QUEUE_SIZE = 8;
+    public static final int DEFAULT_PARALLEL_MERGE_SORT_MAX_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_SORT_MERGE_JOIN_PARALLELISM = 1;
+    public static final long DEFAULT_SORT_MERGE_JOIN_PARALLEL_MAX_BYTES = 1024L * 1024L * 100L; // 100 Mb
+    public static final boolean DEFAULT_EXPRESSION_COMPILATION_ENABLED = false;
+    public static final boolean DEFAULT_IN_LIST_SERVER_CACHE_ENABLED = false;
+    public static final int DEFAULT_IN_LIST_SERVER_CACHE_MIN_SIZE = 10000;
+    public static final boolean DEFAULT_BATCHED_GET_ENABLED = false;
+    public static final int DEFAULT_BATCHED_GET_MIN_KEYS = 100;
+    public static final int DEFAULT_BATCHED_GET_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BATCHED_GET_MAX_CONCURRENT_BATCHES = 4;
+    public static final boolean DEFAULT_DISTINCT_COUNT_REWRITE_ENABLED = false;
+    public static final boolean DEFAULT_SHARED_EXPRESSION_MEMOIZATION_ENABLED = false;
+
     private final Configuration config;
 
     private QueryServicesOptions(Configuration config) {
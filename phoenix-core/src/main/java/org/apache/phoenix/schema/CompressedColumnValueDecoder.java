@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema;
+
+import static org.apache.phoenix.schema.CompressedColumnValueEncoder.ABSENT_VALUE;
+import static org.apache.phoenix.schema.CompressedColumnValueEncoder.DELTA_VALUE;
+import static org.apache.phoenix.schema.CompressedColumnValueEncoder.MAX_PACKED_WIDTH;
+import static org.apache.phoenix.schema.CompressedColumnValueEncoder.NULL_VALUE;
+import static org.apache.phoenix.schema.CompressedColumnValueEncoder.PACKED_VALUE;
+import static org.apache.phoenix.schema.CompressedColumnValueEncoder.RAW_VALUE;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.util.ByteUtil;
+
+/**
+ *
+ * Decoder of the column values serialized by {@link CompressedColumnValueEncoder}. The values
+ * preceding the requested one are skipped over without being copied, and a value written as
+ * is is returned in place. Only a packed value is expanded into a new array of at most 8 bytes.
+ *
+ * @since 4.13.0
+ */
+public class CompressedColumnValueDecoder implements ColumnValueDecoder {
+    private byte[] bytes;
+    private int pos;
+
+    @Override
+    public boolean decode(ImmutableBytesWritable ptr, int index) {
+        bytes = ptr.get();
+        pos = ptr.getOffset();
+        int count = (int)readVarLong();
+        if (index >= count) {
+            ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+            return false;
+        }
+        int tagOffset = pos;
+        pos += (count + 1) / 2;
+        boolean hasPreviousLong = false;
+        long previousLong = 0;
+        for (int i = 0; ; i++) {
+            int tag = getTag(tagOffset, i);
+            long value;
+            int width;
+            switch (tag) {
+            case NULL_VALUE:
+                if (i == index) {
+                    ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+                    return true;
+                }
+                continue;
+            case ABSENT_VALUE:
+                if (i == index) {
+                    ptr.set(ByteUtil.EMPTY_BYTE_ARRAY);
+                    return false;
+                }
+                continue;
+            case RAW_VALUE:
+                int length = (int)readVarLong();
+                if (i == index) {
+                    ptr.set(bytes, pos, length);
+                    return true;
+                }
+                // Only values of 8 bytes may be referenced by a delta
+                if (length == MAX_PACKED_WIDTH) {
+                    hasPreviousLong = true;
+                    previousLong = CompressedColumnValueEncoder.toLong(bytes, pos, length);
+                }
+                pos += length;
+                continue;
+            case DELTA_VALUE:
+                if (!hasPreviousLong) {
+                    throw new IllegalStateException("Delta encoded value at index " + i + " without a previous value");
+                }
+                value = previousLong + CompressedColumnValueEncoder.unzigzag(readVarLong());
+                width = MAX_PACKED_WIDTH;
+                break;
+            default:
+                value = CompressedColumnValueEncoder.unzigzag(readVarLong());
+                width = tag - PACKED_VALUE + 1;
+                break;
+            }
+            if (i == index) {
+                ptr.set(CompressedColumnValueEncoder.toBytes(value, width));
+                return true;
+            }
+            if (width == MAX_PACKED_WIDTH) {
+                hasPreviousLong = true;
+                previousLong = value;
+            }
+        }
+    }
+
+    private int getTag(int tagOffset, int index) {
+        int b = bytes[tagOffset + index / 2];
+        return (index % 2 == 0 ? b >> 4 : b) & 0x0F;
+    }
+
+    private long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos++];
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.phoenix.query.QueryConstants;
+import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
+import org.apache.phoenix.util.TrustedByteArrayOutputStream;
+
+/**
+ *
+ * Encoder of the column values of {@link ImmutableStorageScheme#SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES}.
+ * The cell is serialized as:
+ * <ul>
+ * <li>the number of values, as a varint. Trailing absent values are not counted.</li>
+ * <li>a 4 bit tag per value, packed two per byte, telling whether the value is null, absent
+ * or how it is encoded</li>
+ * <li>the encoded values that are neither null nor absent</li>
+ * <li>the serialized value of the storage scheme</li>
+ * </ul>
+ * The values of at most 8 bytes, which include the serialized INTEGER, BIGINT, DATE and
+ * other fixed width numeric types, are read as a big endian number with its sign bit flipped
+ * and written as a zigzag varint when it is shorter, which stores small numbers in a byte or
+ * two. A value of 8 bytes, such as a DATE or a TIMESTAMP, may instead be written as the
+ * zigzag varint of its difference with the previous value of 8 bytes of the cell, which keeps
+ * related dates of a row short. Any other value is written as its varint length followed by
+ * its bytes. As the transformations are lossless for any bytes, the encoding does not need
+ * to know the types of the columns.
+ *
+ * @since 4.13.0
+ */
+public class CompressedColumnValueEncoder implements ColumnValueEncoder {
+    static final byte NULL_VALUE = 0;
+    static final byte ABSENT_VALUE = 1;
+    static final byte RAW_VALUE = 2;
+    // PACKED_VALUE + width - 1 for a value of 1 to 8 bytes
+    static final byte PACKED_VALUE = 3;
+    static final byte DELTA_VALUE = 11;
+    static final int MAX_PACKED_WIDTH = 8;
+
+    private final TrustedByteArrayOutputStream byteStream;
+    private byte[] tags;
+    private int numElements;
+    private int numPresentElements;
+    private boolean hasPreviousLong;
+    private long previousLong;
+
+    public CompressedColumnValueEncoder(int numElements) {
+        this.tags = new byte[numElements];
+        this.byteStream = new TrustedByteArrayOutputStream(numElements * 4 + 8);
+    }
+
+    private void appendTag(byte tag) {
+        if (numElements == tags.length) {
+            tags = Arrays.copyOf(tags, Math.max(8, tags.length * 2));
+        }
+        tags[numElements++] = tag;
+        if (tag != ABSENT_VALUE) {
+            numPresentElements = numElements;
+        }
+    }
+
+    @Override
+    public void appendValue(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            appendTag(NULL_VALUE);
+            return;
+        }
+        int rawSize = getVarIntSize(length) + length;
+        if (length > MAX_PACKED_WIDTH) {
+            appendTag(RAW_VALUE);
+            writeVarLong(length);
+            byteStream.write(bytes, offset, length);
+            return;
+        }
+        long value = toLong(bytes, offset, length);
+        long packed = zigzag(value);
+        int packedSize = getVarIntSize(packed);
+        long delta = 0;
+        int deltaSize = Integer.MAX_VALUE;
+        if (length == MAX_PACKED_WIDTH) {
+            if (hasPreviousLong) {
+                delta = zigzag(value - previousLong);
+                deltaSize = getVarIntSize(delta);
+            }
+            hasPreviousLong = true;
+            previousLong = value;
+        }
+        if (deltaSize < packedSize && deltaSize < rawSize) {
+            appendTag(DELTA_VALUE);
+            writeVarLong(delta);
+        } else if (packedSize < rawSize) {
+            appendTag((byte)(PACKED_VALUE + length - 1));
+            writeVarLong(packed);
+        } else {
+            appendTag(RAW_VALUE);
+            writeVarLong(length);
+            byteStream.write(bytes, offset, length);
+        }
+    }
+
+    @Override
+    public void appendAbsentValue() {
+        appendTag(ABSENT_VALUE);
+    }
+
+    @Override
+    public byte[] encode() {
+        int count = numPresentElements;
+        int tagBytes = (count + 1) / 2;
+        byte[] bytes = new byte[getVarIntSize(count) + tagBytes + byteStream.size() + 1];
+        int pos = writeVarLong(count, bytes, 0);
+        for (int i = 0; i < count; i++) {
+            bytes[pos + i / 2] |= (i % 2 == 0 ? tags[i] << 4 : tags[i]);
+        }
+        pos += tagBytes;
+        System.arraycopy(byteStream.getBuffer(), 0, bytes, pos, byteStream.size());
+        bytes[bytes.length - 1] = ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES.getSerializedMetadataValue();
+        return bytes;
+    }
+
+    private void writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            byteStream.write((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        byteStream.write((int)value);
+    }
+
+    private static int writeVarLong(long value, byte[] bytes, int pos) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[pos++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[pos++] = (byte)value;
+        return pos;
+    }
+
+    static int getVarIntSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads the bytes as a big endian number of the given width whose sign bit is flipped, as
+     * serialized by the fixed width numeric types, and sign extends it to a long.
+     */
+    static long toLong(byte[] bytes, int offset, int width) {
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        int shift = Long.SIZE - width * Byte.SIZE;
+        return ((value << shift) ^ Long.MIN_VALUE) >> shift;
+    }
+
+    /**
+     * Inverse of {@link #toLong(byte[], int, int)}
+     */
+    static byte[] toBytes(long value, int width) {
+        int shift = Long.SIZE - width * Byte.SIZE;
+        long unsigned = (value << shift) ^ Long.MIN_VALUE;
+        byte[] bytes = new byte[width];
+        for (int i = 0; i < width; i++) {
+            bytes[i] = (byte)(unsigned >>> (Long.SIZE - Byte.SIZE * (i + 1)));
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the estimated size of the cells of the row, counting each value at its full length
+     */
+    public static int getEstimatedByteSize(PTable table, int rowLength,
+            Map<PColumn, byte[]> colValueMap) {
+        int rowSize = 0;
+        for (PColumnFamily family : table.getColumnFamilies()) {
+            Collection<PColumn> columns = family.getColumns();
+            // the first position is reserved
+            int numColumns = columns.size() + 1;
+            int cellSize = getVarIntSize(numColumns) + (numColumns + 1) / 2 + 1;
+            for (PColumn column : columns) {
+                byte[] colValue = colValueMap.get(column);
+                if (colValue != null && colValue.length > 0) {
+                    cellSize += getVarIntSize(colValue.length) + colValue.length;
+                }
+            }
+            rowSize +=
+                    KeyValue.getKeyValueDataStructureSize(rowLength,
+                        family.getName().getBytes().length,
+                        QueryConstants.SINGLE_KEYVALUE_COLUMN_QUALIFIER_BYTES.length, cellSize);
+        }
+        return rowSize;
+    }
+}
@@ -96,7 +96,6 @@ import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_DROP_METADAT
 import static org.apache.phoenix.query.QueryServicesOptions.DEFAULT_RUN_UPDATE_STATS_ASYNC;
 import static org.apache.phoenix.schema.PTable.EncodedCQCounter.NULL_COUNTER;
 import static org.apache.phoenix.schema.PTable.ImmutableStorageScheme.ONE_CELL_PER_COLUMN;
-import static org.apache.phoenix.schema.PTable.ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_OFFSETS;
 import static org.apache.phoenix.schema.PTable.QualifierEncodingScheme.NON_ENCODED_QUALIFIERS;
 import static org.apache.phoenix.schema.PTable.ViewType.MAPPED;
 import static org.apache.phoenix.schema.PTableType.TABLE;
@@ -126,6 +125,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HConstants;
@@ -235,6 +236,7 @@ import org.apache.phoenix.util.UpgradeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.ListMultimap;
@@ -482,6 +484,8 @@ public class MetaDataClient {
 
 
     private final PhoenixConnection connection;
+    // getTable results fetched ahead of time by prefetchTables and not yet consumed by updateCache
+    private final Map<PrefetchKey, MetaDataMutationResult> prefetchedResults = Maps.newHashMap();
 
     public MetaDataClient(PhoenixConnection connection) {
         this.connection = connection;
@@ -595,7 +599,10 @@ public class MetaDataClient {
             final byte[] schemaBytes = PVarchar.INSTANCE.toBytes(schemaName);
             final byte[] tableBytes = PVarchar.INSTANCE.toBytes(tableName);
             ConnectionQueryServices queryServices = connection.getQueryServices();
-            result = queryServices.getTable(tenantId, schemaBytes, tableBytes, tableTimestamp, resolvedTimestamp);
+            result = prefetchedResults.remove(new PrefetchKey(tenantId, fullTableName, tableTimestamp, resolvedTimestamp));
+            if (result == null) {
+                result = queryServices.getTable(tenantId, schemaBytes, tableBytes, tableTimestamp, resolvedTimestamp);
+            }
             // if the table was assumed to be transactional, but is actually not transactional then re-resolve as of the right timestamp (and vice versa)
             if (table==null && result.getTable()!=null && result.getTable().isTransactional()!=isTransactional) {
                 result = queryServices.getTable(tenantId, schemaBytes, tableBytes, tableTimestamp, TransactionUtil.getResolvedTimestamp(connection, result.getTable().isTransactional(), HConstants.LATEST_TIMESTAMP));
@@ -656,6 +663,171 @@ public class MetaDataClient {
         return updateCache(schemaName, false);
     }
 
+    /**
+     * Issues the getTable RPCs for the given tables concurrently, followed by the RPCs for the
+     * parents of any views among them, so that resolving a join or a view hierarchy does not pay
+     * for one sequential round trip to SYSTEM.CATALOG per table. The results are held by this
+     * client and consumed by subsequent calls to {@link #updateCache(PName, String, String, boolean)}
+     * made with the same tenant and timestamps, which then skip their own RPC. Tables that
+     * updateCache would serve from the client-side cache are not requested. Prefetching is
+     * best effort: a failed lookup is simply retried by updateCache.
+     * @param tenantId tenant id to resolve the tables with
+     * @param tableNames names of the tables, with their schema name already defaulted
+     */
+    public void prefetchTables(PName tenantId, List<TableName> tableNames) throws SQLException {
+        Set<String> requested = Sets.newHashSet();
+        List<TableName> toResolve = tableNames;
+        while (!toResolve.isEmpty()) {
+            List<TableName> parents = Lists.newArrayList();
+            for (PTable table : prefetchTables(tenantId, toResolve, requested)) {
+                if (table.getType() == PTableType.VIEW && table.getViewType() != ViewType.MAPPED && table.getParentName() != null) {
+                    String parentName = table.getParentName().getString();
+                    parents.add(TableName.create(SchemaUtil.getSchemaNameFromFullName(parentName), SchemaUtil.getTableNameFromFullName(parentName)));
+                }
+            }
+            // Parent tables are always looked up with the connection tenant id (see addIndexesFromParentTable)
+            tenantId = connection.getTenantId();
+            toResolve = parents;
+        }
+    }
+
+    private List<PTable> prefetchTables(PName origTenantId, List<TableName> tableNames, Set<String> requested) throws SQLException {
+        List<PTable> resolvedTables = Lists.newArrayListWithExpectedSize(tableNames.size());
+        List<PrefetchKey> keys = Lists.newArrayListWithExpectedSize(tableNames.size());
+        List<Callable<MetaDataMutationResult[]>> lookups = Lists.newArrayListWithExpectedSize(tableNames.size());
+        for (TableName name : tableNames) {
+            final String schemaName = name.getSchemaName();
+            final String tableName = name.getTableName();
+            String fullTableName = SchemaUtil.getTableName(schemaName, tableName);
+            // System tables are never requested by updateCache once they are cached
+            if (SYSTEM_CATALOG_SCHEMA.equals(schemaName) || !requested.add(fullTableName)) {
+                continue;
+            }
+            PTable table = null;
+            PTableRef tableRef = null;
+            long tableTimestamp = HConstants.LATEST_TIMESTAMP;
+            long tableResolvedTimestamp = HConstants.LATEST_TIMESTAMP;
+            try {
+                tableRef = connection.getTableRef(new PTableKey(origTenantId, fullTableName));
+                table = tableRef.getTable();
+                tableTimestamp = table.getTimeStamp();
+                tableResolvedTimestamp = tableRef.getResolvedTimeStamp();
+            } catch (TableNotFoundException e) {
+            }
+            // Transactional tables start a transaction as part of being resolved, so leave them to updateCache
+            boolean isTransactional = connection.getQueryServices().getProps().getBoolean(
+                    QueryServices.DEFAULT_TABLE_ISTRANSACTIONAL_ATTRIB,
+                    QueryServicesOptions.DEFAULT_TRANSACTIONAL) || (table != null && table.isTransactional());
+            if (isTransactional) {
+                continue;
+            }
+            final long resolvedTimestamp = TransactionUtil.getResolvedTimestamp(connection, false, HConstants.LATEST_TIMESTAMP);
+            // Same conditions as in updateCache under which no RPC is made
+            if (table != null && (resolvedTimestamp == tableResolvedTimestamp ||
+                    (table.getRowTimestampColPos() == -1 && connection.getMetaDataCache().getAge(tableRef) < table.getUpdateCacheFrequency()))) {
+                resolvedTables.add(table);
+                continue;
+            }
+            final PName tenantId = origTenantId;
+            final long finalTableTimestamp = tableTimestamp;
+            final boolean isCached = table != null;
+            keys.add(new PrefetchKey(tenantId, fullTableName, tableTimestamp, resolvedTimestamp));
+            lookups.add(new Callable<MetaDataMutationResult[]>() {
+                @Override
+                public MetaDataMutationResult[] call() throws Exception {
+                    ConnectionQueryServices queryServices = connection.getQueryServices();
+                    byte[] schemaBytes = PVarchar.INSTANCE.toBytes(schemaName);
+                    byte[] tableBytes = PVarchar.INSTANCE.toBytes(tableName);
+                    MetaDataMutationResult result = queryServices.getTable(tenantId, schemaBytes, tableBytes, finalTableTimestamp, resolvedTimestamp);
+                    // Mirror the retry with a null tenant id that updateCache does for global tables
+                    if (tenantId != null && result.getTable() == null
+                            && !(isCached && result.getMutationCode() == MutationCode.TABLE_ALREADY_EXISTS)) {
+                        return new MetaDataMutationResult[] {result,
+                                queryServices.getTable(null, schemaBytes, tableBytes, finalTableTimestamp, resolvedTimestamp)};
+                    }
+                    return new MetaDataMutationResult[] {result};
+                }
+            });
+            if (table != null) {
+                resolvedTables.add(table);
+            }
+        }
+        if (lookups.isEmpty()) {
+            return resolvedTables;
+        }
+        // Run the first lookup in this thread, the others on the query executor
+        List<Future<MetaDataMutationResult[]>> futures = Lists.newArrayListWithExpectedSize(lookups.size() - 1);
+        for (int i = 1; i < lookups.size(); i++) {
+            futures.add(connection.getQueryServices().getExecutor().submit(lookups.get(i)));
+        }
+        for (int i = 0; i < lookups.size(); i++) {
+            MetaDataMutationResult[] results;
+            try {
+                results = i == 0 ? lookups.get(0).call() : futures.get(i - 1).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Nobody consumes the remaining lookups, so stop them
+                for (int j = Math.max(i - 1, 0); j < futures.size(); j++) {
+                    futures.get(j).cancel(true);
+                }
+                break;
+            } catch (Exception e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(LogUtil.addCustomAnnotations("Prefetch of " + keys.get(i).fullTableName + " failed", connection), e);
+                }
+                continue;
+            }
+            PrefetchKey key = keys.get(i);
+            prefetchedResults.put(key, results[0]);
+            if (results.length > 1) {
+                prefetchedResults.put(new PrefetchKey(null, key.fullTableName, key.tableTimestamp, key.resolvedTimestamp), results[1]);
+            }
+            PTable resultTable = results[results.length - 1].getTable();
+            if (resultTable != null) {
+                resolvedTables.add(resultTable);
+            }
+        }
+        return resolvedTables;
+    }
+
+    /**
+     * Identifies a getTable RPC by its arguments, so that a prefetched result is only used in
+     * place of an RPC that would have been made with exactly the same arguments.
+     */
+    private static final class PrefetchKey {
+        private final String tenantId;
+        private final String fullTableName;
+        private final long tableTimestamp;
+        private final long resolvedTimestamp;
+
+        private PrefetchKey(PName tenantId, String fullTableName, long tableTimestamp, long resolvedTimestamp) {
+            this.tenantId = tenantId == null ? null : tenantId.getString();
+            this.fullTableName = fullTableName;
+            this.tableTimestamp = tableTimestamp;
+            this.resolvedTimestamp = resolvedTimestamp;
+        }
+
+        @Override
+        public int hashCode() {
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + ((tenantId == null) ? 0 : tenantId.hashCode());
+            result = prime * result + fullTableName.hashCode();
+            result = prime * result + (int) (tableTimestamp ^ (tableTimestamp >>> 32));
+            result = prime * result + (int) (resolvedTimestamp ^ (resolvedTimestamp >>> 32));
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            PrefetchKey other = (PrefetchKey) obj;
+            return Objects.equal(tenantId, other.tenantId) && fullTableName.equals(other.fullTableName)
+                    && tableTimestamp == other.tableTimestamp && resolvedTimestamp == other.resolvedTimestamp;
+        }
+    }
+
     public MetaDataMutationResult updateCache(String schemaName, boolean alwaysHitServer) throws SQLException {
         long clientTimeStamp = getClientTimeStamp();
         PSchema schema = null;
@@ -2276,7 +2448,7 @@ public class MetaDataClient {
                 boolean isPkColumn = isPkColumn(pkConstraint, colDef, columnDefName);
                 String cqCounterFamily = null;
                 if (!isPkColumn) {
-                    if (immutableStorageScheme == SINGLE_CELL_ARRAY_WITH_OFFSETS && encodingScheme != NON_ENCODED_QUALIFIERS) {
+                    if (immutableStorageScheme != ONE_CELL_PER_COLUMN && encodingScheme != NON_ENCODED_QUALIFIERS) {
                         // For this scheme we track column qualifier counters at the column family level.
                         cqCounterFamily = colDefFamily != null ? colDefFamily : (defaultFamilyName != null ? defaultFamilyName : DEFAULT_COLUMN_FAMILY);
                     } else {
@@ -3358,7 +3530,7 @@ public class MetaDataClient {
                                     if (table.getType() == PTableType.INDEX && table.getIndexType() == IndexType.LOCAL) {
                                         defaultColumnFamily = QueryConstants.LOCAL_INDEX_COLUMN_FAMILY_PREFIX + defaultColumnFamily;
                                     }
-                                if (storageScheme == SINGLE_CELL_ARRAY_WITH_OFFSETS) {
+                                if (storageScheme != ONE_CELL_PER_COLUMN) {
                                     familyName = colDefFamily != null ? colDefFamily : defaultColumnFamily;
                                 } else {
                                     familyName = defaultColumnFamily;
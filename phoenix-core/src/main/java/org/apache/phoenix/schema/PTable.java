@@ -204,6 +204,18 @@ public interface PTable extends PMetaDataEntity {
             public ColumnValueDecoder getDecoder() {
                 return new PArrayDataTypeDecoder();
             }
+        },
+        // stores a single cell per column family that contains all column values, compactly encoded (see CompressedColumnValueEncoder)
+        SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES((byte)3) {
+            @Override
+            public ColumnValueEncoder getEncoder(int numElements) {
+                return new CompressedColumnValueEncoder(numElements);
+            }
+
+            @Override
+            public ColumnValueDecoder getDecoder() {
+                return new CompressedColumnValueDecoder();
+            }
         };
 
         private final byte serializedValue;
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.tuple;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Ordinals of the columns referenced by the expressions evaluated during a scan of a table
+ * without encoded column qualifiers, used by {@link ColumnOrdinalTuple}. A column is looked
+ * up by the identity of the family and qualifier arrays of the expression referencing it, so
+ * that once each expression has been resolved, no bytes are compared. The expressions
+ * deserialized separately for the filter, the projector and the aggregators share the same
+ * ordinal for the same column.
+ *
+ * The map also remembers the position of each column in the cells of the last row it was
+ * found in, as the rows of a table usually have the same columns.
+ *
+ * Not thread safe, as it is used by the thread scanning a region.
+ */
+public class ColumnOrdinalMap {
+    private final IdentityHashMap<byte[], Reference> references = new IdentityHashMap<byte[], Reference>();
+    private final List<byte[]> families = Lists.newArrayList();
+    private final List<byte[]> qualifiers = Lists.newArrayList();
+    private int[] positions = new int[8];
+
+    /**
+     * Reference to a column through the family and qualifier arrays of an expression.
+     * References sharing the same qualifier array are chained.
+     */
+    private static final class Reference {
+        private final byte[] family;
+        private final int ordinal;
+        private final Reference next;
+
+        private Reference(byte[] family, int ordinal, Reference next) {
+            this.family = family;
+            this.ordinal = ordinal;
+            this.next = next;
+        }
+    }
+
+    public int getOrdinal(byte[] family, byte[] qualifier) {
+        Reference first = references.get(qualifier);
+        for (Reference reference = first; reference != null; reference = reference.next) {
+            if (reference.family == family) {
+                return reference.ordinal;
+            }
+        }
+        int ordinal = indexOf(family, qualifier);
+        if (ordinal < 0) {
+            ordinal = families.size();
+            families.add(family);
+            qualifiers.add(qualifier);
+            if (ordinal == positions.length) {
+                positions = Arrays.copyOf(positions, ordinal * 2);
+            }
+        }
+        references.put(qualifier, new Reference(family, ordinal, first));
+        return ordinal;
+    }
+
+    private int indexOf(byte[] family, byte[] qualifier) {
+        for (int i = 0; i < families.size(); i++) {
+            if (Bytes.equals(qualifiers.get(i), qualifier) && Bytes.equals(families.get(i), family)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of distinct columns referenced so far
+     */
+    public int size() {
+        return families.size();
+    }
+
+    /**
+     * @return the position of the column in the cells of the last row it was found in
+     */
+    public int getPosition(int ordinal) {
+        return positions[ordinal];
+    }
+
+    public void setPosition(int ordinal, int position) {
+        positions[ordinal] = position;
+    }
+}
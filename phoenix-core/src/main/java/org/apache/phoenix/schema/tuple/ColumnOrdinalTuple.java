@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.tuple;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * Tuple over the sorted cells of a row of a table without encoded column qualifiers, which
+ * resolves a column to its slot in a {@link ColumnOrdinalMap} shared by the tuples of a scan
+ * instead of doing a binary search over the cells for every column reference. The cell of a
+ * column is looked up once per row, at the position it had in the previous row when it is
+ * still there, and kept in the slot of the column for the other references to it.
+ * No memory is allocated per row once the slots are sized.
+ *
+ * Like {@link MultiKeyValueTuple}, the cells must be sorted using {@link KeyValue#COMPARATOR}
+ * and contain at most one version of each column.
+ */
+public class ColumnOrdinalTuple extends BaseTuple {
+    private static final Cell[] EMPTY_CELLS = new Cell[0];
+    private static final int[] EMPTY_GENERATIONS = new int[0];
+
+    private final ColumnOrdinalMap columns;
+    private List<Cell> values;
+    private Cell[] cells = EMPTY_CELLS;
+    // The slot of a column is valid for the current row if it has the current generation
+    private int[] generations = EMPTY_GENERATIONS;
+    private int generation;
+
+    public ColumnOrdinalTuple(ColumnOrdinalMap columns) {
+        this.columns = columns;
+    }
+
+    public ColumnOrdinalTuple(ColumnOrdinalMap columns, List<Cell> values) {
+        this(columns);
+        setKeyValues(values);
+    }
+
+    /** Caller must not modify the list that is passed here */
+    @Override
+    public void setKeyValues(List<Cell> values) {
+        this.values = values;
+        if (++generation == 0) {
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    @Override
+    public void getKey(ImmutableBytesWritable ptr) {
+        Cell value = values.get(0);
+        ptr.set(value.getRowArray(), value.getRowOffset(), value.getRowLength());
+    }
+
+    @Override
+    public boolean isImmutable() {
+        return true;
+    }
+
+    @Override
+    public Cell getValue(byte[] family, byte[] qualifier) {
+        int ordinal = columns.getOrdinal(family, qualifier);
+        if (ordinal >= cells.length) {
+            int length = Math.max(ordinal + 1, columns.size());
+            cells = Arrays.copyOf(cells, length);
+            generations = Arrays.copyOf(generations, length);
+        }
+        if (generations[ordinal] != generation) {
+            cells[ordinal] = findCell(ordinal, family, qualifier);
+            generations[ordinal] = generation;
+        }
+        return cells[ordinal];
+    }
+
+    private Cell findCell(int ordinal, byte[] family, byte[] qualifier) {
+        int size = values.size();
+        int position = columns.getPosition(ordinal);
+        if (position < size) {
+            Cell cell = values.get(position);
+            if (compare(cell, family, qualifier) == 0) {
+                return cell;
+            }
+        }
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Cell cell = values.get(mid);
+            int cmp = compare(cell, family, qualifier);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                columns.setPosition(ordinal, mid);
+                return cell;
+            }
+        }
+        return null;
+    }
+
+    private static int compare(Cell cell, byte[] family, byte[] qualifier) {
+        int cmp = Bytes.compareTo(cell.getFamilyArray(), cell.getFamilyOffset(), cell.getFamilyLength(),
+                family, 0, family.length);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return Bytes.compareTo(cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength(),
+                qualifier, 0, qualifier.length);
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public Cell getValue(int index) {
+        return values.get(index);
+    }
+
+    @Override
+    public boolean getValue(byte[] family, byte[] qualifier, ImmutableBytesWritable ptr) {
+        Cell kv = getValue(family, qualifier);
+        if (kv == null)
+            return false;
+        ptr.set(kv.getValueArray(), kv.getValueOffset(), kv.getValueLength());
+        return true;
+    }
+}
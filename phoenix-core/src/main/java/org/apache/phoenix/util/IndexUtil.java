@@ -521,7 +521,7 @@ public class IndexUtil {
             Get get = new Get(dataRowKey);
             ImmutableStorageScheme storageScheme = indexMaintainer.getIndexStorageScheme();
             for (int i = 0; i < dataColumns.length; i++) {
-                if (storageScheme == ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_OFFSETS) {
+                if (storageScheme != ImmutableStorageScheme.ONE_CELL_PER_COLUMN) {
                     get.addFamily(dataColumns[i].getFamily());
                 } else {
                     get.addColumn(dataColumns[i].getFamily(), dataColumns[i].getQualifier());
@@ -34,6 +34,7 @@ import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.execute.MutationState.RowMutationState;
 import org.apache.phoenix.hbase.index.util.ImmutableBytesPtr;
 import org.apache.phoenix.hbase.index.util.KeyValueBuilder;
+import org.apache.phoenix.schema.CompressedColumnValueEncoder;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PTable;
 import org.apache.phoenix.schema.TableRef;
@@ -222,6 +223,12 @@ public class KeyValueUtil {
                             PArrayDataTypeEncoder.getEstimatedByteSize(table, rowLength,
                                 colValueMap);
                     break;
+                case SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES:
+                    // the encoded values are at most as large as the values
+                    size +=
+                            CompressedColumnValueEncoder.getEstimatedByteSize(table, rowLength,
+                                colValueMap);
+                    break;
                 }
                 // count the empty key value
                 Pair<byte[], byte[]> emptyKeyValueInfo =
@@ -55,15 +55,20 @@ import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.phoenix.compile.QueryPlan;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MetaDataMutationResult;
 import org.apache.phoenix.coprocessor.MetaDataProtocol.MutationCode;
+import org.apache.phoenix.expression.Determinism;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
 import org.apache.phoenix.expression.OrderByExpression;
 import org.apache.phoenix.expression.RowKeyColumnExpression;
+import org.apache.phoenix.iterate.BatchedGetResultIterator;
+import org.apache.phoenix.iterate.ResultIterator;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
 import org.apache.phoenix.jdbc.PhoenixResultSet;
@@ -71,8 +76,10 @@ import org.apache.phoenix.jdbc.PhoenixStatement;
 import org.apache.phoenix.monitoring.GlobalClientMetrics;
 import org.apache.phoenix.monitoring.GlobalMetric;
 import org.apache.phoenix.monitoring.MetricType;
+import org.apache.phoenix.parse.HintNode.Hint;
 import org.apache.phoenix.query.QueryConstants;
 import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.query.QueryServicesOptions;
 import org.apache.phoenix.schema.AmbiguousColumnException;
 import org.apache.phoenix.schema.ColumnNotFoundException;
 import org.apache.phoenix.schema.KeyValueSchema;
@@ -81,6 +88,7 @@ import org.apache.phoenix.schema.MetaDataClient;
 import org.apache.phoenix.schema.PColumn;
 import org.apache.phoenix.schema.PColumnFamily;
 import org.apache.phoenix.schema.PTable;
+import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
 import org.apache.phoenix.schema.PTable.IndexType;
 import org.apache.phoenix.schema.PTableKey;
 import org.apache.phoenix.schema.PTableType;
@@ -1298,6 +1306,81 @@ public class PhoenixRuntime {
         return new RowKeyColumnExpression(pkColumns.get(pkPosition), new RowKeyValueAccessor(pkColumns, pkPosition));
     }
     
+    /**
+     * Reads the rows of a table with the given primary keys through batched multi-gets, which
+     * the HBase client groups into one RPC per region server for each batch, instead of through
+     * a skip scan. Rows that do not exist are skipped.
+     * @param conn open Phoenix connection
+     * @param fullTableName fully qualified table name
+     * @param pkValues the values of the primary key columns of each row, in the order of the
+     * primary key columns, excluding the salt, view index id and, for a tenant-specific connection
+     * to a multi-tenant table, the tenant id columns
+     * @param inRowKeyOrder true to return the rows in row key order, and false to return them in
+     * the order of pkValues
+     * @return a result set over all the columns of the rows
+     * @throws SQLException if the table name is not found, a TableNotFoundException
+     * is thrown. If an index, a table with a view index id, a transactional table or a
+     * table storing its columns in a single cell is supplied a SQLFeatureNotSupportedException
+     * is thrown.
+     * @throws IllegalArgumentException if a row does not have exactly one value for each of
+     * these primary key columns
+     */
+    public static ResultSet getRowsByPrimaryKeys(Connection conn, String fullTableName, List<Object[]> pkValues,
+            boolean inRowKeyOrder) throws SQLException {
+        PhoenixConnection pconn = conn.unwrap(PhoenixConnection.class);
+        PTable table = getTable(conn, fullTableName);
+        // The Gets bypass the region observers, so only rows which need no processing on the
+        // region server may be read
+        if (table.getType() == PTableType.INDEX || table.getViewIndexId() != null || table.isTransactional()
+                || table.getImmutableStorageScheme() != ImmutableStorageScheme.ONE_CELL_PER_COLUMN) {
+            throw new SQLFeatureNotSupportedException();
+        }
+        List<PColumn> pkColumns = table.getPKColumns();
+        int offset = table.getBucketNum() == null ? 0 : 1;
+        byte[] tenantIdBytes = null;
+        if (table.isMultiTenant() && pconn.getTenantId() != null) {
+            tenantIdBytes = ScanUtil.getTenantIdBytes(table.getRowKeySchema(), table.getBucketNum() != null,
+                    pconn.getTenantId(), false);
+            offset++;
+        }
+        List<byte[]> rowKeys = Lists.newArrayListWithExpectedSize(pkValues.size());
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        for (Object[] values : pkValues) {
+            if (values.length != pkColumns.size() - offset) {
+                throw new IllegalArgumentException("Expected " + (pkColumns.size() - offset)
+                        + " primary key values for " + fullTableName + ", but got " + values.length);
+            }
+            byte[][] keyValues = new byte[pkColumns.size()][];
+            if (tenantIdBytes != null) {
+                keyValues[offset - 1] = tenantIdBytes;
+            }
+            for (int i = 0; i < values.length; i++) {
+                PColumn column = pkColumns.get(offset + i);
+                keyValues[offset + i] = LiteralExpression.newConstant(values[i], column.getDataType(),
+                        column.getMaxLength(), column.getScale(), column.getSortOrder(), Determinism.ALWAYS).getBytes();
+            }
+            table.newKey(ptr, keyValues);
+            rowKeys.add(ptr.copyBytes());
+        }
+        if (inRowKeyOrder) {
+            Collections.sort(rowKeys, Bytes.BYTES_COMPARATOR);
+        }
+        PhoenixStatement statement = pconn.createStatement().unwrap(PhoenixStatement.class);
+        QueryPlan plan = statement.compileQuery("SELECT /*+ " + Hint.NO_INDEX + " */ * FROM "
+                + SchemaUtil.getEscapedFullTableName(fullTableName));
+        Scan scan = plan.getContext().getScan();
+        ScanUtil.setTimeRange(scan, pconn.getSCN() == null ? HConstants.LATEST_TIMESTAMP : pconn.getSCN());
+        scan.setConsistency(pconn.getConsistency());
+        ReadOnlyProps props = pconn.getQueryServices().getProps();
+        ResultIterator iterator = new BatchedGetResultIterator(pconn.getQueryServices(),
+                table.getPhysicalName().getBytes(), scan, rowKeys,
+                props.getInt(QueryServices.BATCHED_GET_BATCH_SIZE_ATTRIB,
+                        QueryServicesOptions.DEFAULT_BATCHED_GET_BATCH_SIZE),
+                props.getInt(QueryServices.BATCHED_GET_MAX_CONCURRENT_BATCHES_ATTRIB,
+                        QueryServicesOptions.DEFAULT_BATCHED_GET_MAX_CONCURRENT_BATCHES));
+        return new PhoenixResultSet(iterator, plan.getProjector(), plan.getContext());
+    }
+
     /**
      * Exposes the various internal phoenix metrics collected at the client JVM level. 
      */
@@ -930,5 +930,9 @@ public class ScanUtil {
     public static boolean isIndexRebuild(Scan scan) {
         return scan.getAttribute((BaseScannerRegionObserver.REBUILD_INDEXES)) != null;
     }
+
+    public static boolean isGlobalIndexBuild(Scan scan) {
+        return scan.getAttribute(BaseScannerRegionObserver.GLOBAL_INDEX_BUILD_PROTO) != null;
+    }
     
 }
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.PageFilter;
+import org.apache.hadoop.hbase.regionserver.Region;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.regionserver.Store;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.coprocessor.BaseRegionScanner;
+import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
+import org.apache.phoenix.query.QueryServices;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AggregateResultCacheTest {
+
+    private static final byte[] FAMILY = Bytes.toBytes("0");
+    private static final byte[] QUALIFIER = Bytes.toBytes("V");
+
+    private Region region;
+    private Store store;
+    private RegionScanner regionScanner;
+    private AggregateResultCache cache;
+
+    @Before
+    public void setUp() {
+        region = mock(Region.class);
+        when(region.getRegionInfo()).thenReturn(new HRegionInfo(TableName.valueOf("T"), Bytes.toBytes("a"), Bytes.toBytes("z")));
+        store = mock(Store.class);
+        when(store.getMaxSequenceId()).thenReturn(10L);
+        when(store.getStorefilesCount()).thenReturn(1);
+        when(store.getStorefilesSize()).thenReturn(1000L);
+        when(region.getStores()).thenReturn(Collections.singletonList(store));
+        regionScanner = mock(RegionScanner.class);
+        when(regionScanner.getMvccReadPoint()).thenReturn(100L);
+        cache = new AggregateResultCache(new Configuration(false));
+    }
+
+    private static Scan newScan(String startRow, String stopRow) {
+        Scan scan = new Scan(Bytes.toBytes(startRow), Bytes.toBytes(stopRow));
+        scan.setAttribute(BaseScannerRegionObserver.AGGREGATE_RESULT_CACHE, Bytes.toBytes(true));
+        return scan;
+    }
+
+    private static List<Cell> newResult(int rows, int valueSize) {
+        List<Cell> cells = new ArrayList<Cell>();
+        for (int i = 0; i < rows; i++) {
+            cells.add(new KeyValue(Bytes.toBytes("row" + i), FAMILY, QUALIFIER, new byte[valueSize]));
+        }
+        return cells;
+    }
+
+    /**
+     * Runs the aggregation, which returns the given rows, through the caching scanner.
+     */
+    private List<Cell> aggregate(Scan scan, final List<Cell> result) throws IOException {
+        RegionScanner aggregateScanner = new BaseRegionScanner(regionScanner) {
+            private int index = 0;
+
+            @Override
+            public boolean next(List<Cell> results) throws IOException {
+                if (index >= result.size()) {
+                    return false;
+                }
+                results.add(result.get(index++));
+                return index < result.size();
+            }
+        };
+        return readAll(cache.newLookup(region, scan, regionScanner).newCachingScanner(aggregateScanner));
+    }
+
+    private List<Cell> getCached(Scan scan) throws IOException {
+        RegionScanner cachedScanner = cache.newLookup(region, scan, regionScanner).getCachedResultScanner(regionScanner);
+        return cachedScanner == null ? null : readAll(cachedScanner);
+    }
+
+    private static List<Cell> readAll(RegionScanner scanner) throws IOException {
+        List<Cell> cells = new ArrayList<Cell>();
+        boolean hasMore;
+        do {
+            hasMore = scanner.nextRaw(cells);
+        } while (hasMore);
+        return cells;
+    }
+
+    @Test
+    public void testCachedResult() throws Exception {
+        List<Cell> result = newResult(3, 10);
+        assertNull(getCached(newScan("a", "m")));
+        assertEquals(result, aggregate(newScan("a", "m"), result));
+        assertEquals(result, getCached(newScan("a", "m")));
+        // the location of the region does not change the key
+        Scan scan = newScan("a", "m");
+        scan.setAttribute(BaseScannerRegionObserver.SCAN_REGION_SERVER, Bytes.toBytes("host2"));
+        assertEquals(result, getCached(scan));
+    }
+
+    @Test
+    public void testCacheKey() throws Exception {
+        aggregate(newScan("a", "m"), newResult(3, 10));
+        // scan range, which includes the tenant id for multi-tenant tables
+        assertNull(getCached(newScan("a", "n")));
+        assertNull(getCached(newScan("b", "m")));
+        assertNull(getCached(newScan("tenant1a", "tenant1m")));
+        // filter
+        Scan scan = newScan("a", "m");
+        scan.setFilter(new PageFilter(1));
+        assertNull(getCached(scan));
+        aggregate(scan, newResult(1, 10));
+        scan = newScan("a", "m");
+        scan.setFilter(new PageFilter(2));
+        assertNull(getCached(scan));
+        // projected columns
+        scan = newScan("a", "m");
+        scan.addColumn(FAMILY, QUALIFIER);
+        assertNull(getCached(scan));
+        // attributes, such as the group by expressions and aggregators
+        scan = newScan("a", "m");
+        scan.setAttribute(BaseScannerRegionObserver.UNORDERED_GROUP_BY_EXPRESSIONS, Bytes.toBytes("x"));
+        assertNull(getCached(scan));
+        // time range
+        scan = newScan("a", "m");
+        scan.setTimeRange(0, 1000);
+        assertNull(getCached(scan));
+        // region
+        when(region.getRegionInfo()).thenReturn(new HRegionInfo(TableName.valueOf("T"), Bytes.toBytes("a"), Bytes.toBytes("y")));
+        assertNull(getCached(newScan("a", "m")));
+    }
+
+    @Test
+    public void testInvalidatedByWrite() throws Exception {
+        aggregate(newScan("a", "m"), newResult(3, 10));
+        when(regionScanner.getMvccReadPoint()).thenReturn(101L);
+        assertNull(getCached(newScan("a", "m")));
+        // the stale entry is dropped rather than served once the read point is back
+        when(regionScanner.getMvccReadPoint()).thenReturn(100L);
+        assertNull(getCached(newScan("a", "m")));
+    }
+
+    @Test
+    public void testInvalidatedByStoreFiles() throws Exception {
+        aggregate(newScan("a", "m"), newResult(3, 10));
+        // a flush or bulk load
+        when(store.getMaxSequenceId()).thenReturn(11L);
+        assertNull(getCached(newScan("a", "m")));
+        aggregate(newScan("a", "m"), newResult(3, 10));
+        assertNotNull(getCached(newScan("a", "m")));
+        // a compaction
+        when(store.getStorefilesCount()).thenReturn(2);
+        assertNull(getCached(newScan("a", "m")));
+    }
+
+    @Test
+    public void testEntrySizeLimit() throws Exception {
+        Configuration config = new Configuration(false);
+        config.setLong(QueryServices.MAX_AGGREGATE_RESULT_CACHE_ENTRY_SIZE_ATTRIB, 1000);
+        cache = new AggregateResultCache(config);
+        List<Cell> result = newResult(20, 100);
+        // the rows are still returned, but not cached
+        assertEquals(result, aggregate(newScan("a", "m"), result));
+        assertNull(getCached(newScan("a", "m")));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testEvictionAtSizeLimit() throws Exception {
+        long maxSize = 20000;
+        Configuration config = new Configuration(false);
+        config.setLong(QueryServices.MAX_AGGREGATE_RESULT_CACHE_SIZE_ATTRIB, maxSize);
+        cache = new AggregateResultCache(config);
+        List<Cell> result = newResult(10, 50);
+        int entries = 50;
+        for (int i = 0; i < entries; i++) {
+            aggregate(newScan("a" + i, "m"), result);
+        }
+        long entryCount = cache.getEntryCount();
+        assertTrue(entryCount > 0);
+        // every entry holds more than 500 bytes of values
+        assertTrue(entryCount < maxSize / 500);
+        // the most recent entry survives
+        assertEquals(result, getCached(newScan("a" + (entries - 1), "m")));
+        int cached = 0;
+        for (int i = 0; i < entries; i++) {
+            if (getCached(newScan("a" + i, "m")) != null) {
+                cached++;
+            }
+        }
+        assertEquals(entryCount, cached);
+        assertFalse(cached == entries);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.InListExpression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.util.ByteUtil;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class InListCacheFactoryTest {
+
+    @Test
+    public void testContains() throws Exception {
+        List<Expression> children = Lists.newArrayList();
+        children.add(LiteralExpression.newConstant("", PVarchar.INSTANCE));
+        // Variable length values, added out of order
+        for (int i = 999; i >= 0; i -= 2) {
+            children.add(LiteralExpression.newConstant(Integer.toString(i), PVarchar.INSTANCE));
+        }
+        InListExpression inList = new InListExpression(children, false);
+        ImmutableBytesWritable cachePtr = InListCacheClient.serialize(inList.getValues());
+
+        GlobalMemoryManager memoryManager = new GlobalMemoryManager(1024 * 1024);
+        InListCache cache = (InListCache)new InListCacheFactory().newCache(cachePtr, ByteUtil.EMPTY_BYTE_ARRAY,
+                memoryManager.allocate(cachePtr.getLength()), true);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                ImmutableBytesWritable value = new ImmutableBytesWritable(PVarchar.INSTANCE.toBytes(Integer.toString(i)));
+                assertEquals(i % 2 == 1, cache.contains(value));
+            }
+            assertFalse(cache.contains(new ImmutableBytesWritable(PVarchar.INSTANCE.toBytes("1000"))));
+            assertFalse(cache.contains(new ImmutableBytesWritable(ByteUtil.EMPTY_BYTE_ARRAY)));
+            assertTrue(cache.contains(new ImmutableBytesWritable(PVarchar.INSTANCE.toBytes("999"))));
+        } finally {
+            cache.close();
+        }
+        assertEquals(1024 * 1024, memoryManager.getAvailableMemory());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.compile;
+
+import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.apache.phoenix.execute.ClientAggregatePlan;
+import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
+import org.apache.phoenix.query.BaseConnectionlessQueryTest;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.util.PropertiesUtil;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class DistinctCountRewriterTest extends BaseConnectionlessQueryTest {
+
+    @BeforeClass
+    public static void createTables() throws Exception {
+        Connection conn = DriverManager.getConnection(getUrl(), PropertiesUtil.deepCopy(TEST_PROPERTIES));
+        try {
+            conn.createStatement().execute("CREATE TABLE DC_T (id INTEGER NOT NULL PRIMARY KEY,"
+                    + " g VARCHAR, v INTEGER, w INTEGER, \"Mixed\" VARCHAR)");
+            conn.createStatement().execute("CREATE TABLE DC_U (id INTEGER NOT NULL PRIMARY KEY, v INTEGER)");
+        } finally {
+            conn.close();
+        }
+    }
+
+    private static QueryPlan getQueryPlan(String query, boolean isRewriteEnabled) throws SQLException {
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.DISTINCT_COUNT_REWRITE_ENABLED_ATTRIB, Boolean.toString(isRewriteEnabled));
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        try {
+            return conn.prepareStatement(query).unwrap(PhoenixPreparedStatement.class).optimizeQuery(query);
+        } finally {
+            conn.close();
+        }
+    }
+
+    /**
+     * Asserts that the query is rewritten only when the rewrite is enabled and possible, and
+     * that both plans have the same columns.
+     */
+    private static QueryPlan assertRewrite(String query, boolean isRewritten) throws SQLException {
+        QueryPlan plan = getQueryPlan(query, false);
+        QueryPlan rewrittenPlan = getQueryPlan(query, true);
+        assertFalse(query, plan instanceof ClientAggregatePlan);
+        assertEquals(query, isRewritten, rewrittenPlan instanceof ClientAggregatePlan);
+        RowProjector projector = plan.getProjector();
+        RowProjector rewrittenProjector = rewrittenPlan.getProjector();
+        assertEquals(projector.getColumnCount(), rewrittenProjector.getColumnCount());
+        for (int i = 0; i < projector.getColumnCount(); i++) {
+            ColumnProjector column = projector.getColumnProjector(i);
+            ColumnProjector rewrittenColumn = rewrittenProjector.getColumnProjector(i);
+            assertEquals(column.getName(), rewrittenColumn.getName());
+            assertEquals(column.isCaseSensitive(), rewrittenColumn.isCaseSensitive());
+            assertEquals(column.getExpression().getDataType(), rewrittenColumn.getExpression().getDataType());
+        }
+        assertEquals(plan.getLimit(), rewrittenPlan.getLimit());
+        return rewrittenPlan;
+    }
+
+    @Test
+    public void testRewrite() throws Exception {
+        QueryPlan plan = assertRewrite("SELECT COUNT(DISTINCT v) FROM DC_T", true);
+        assertEquals("DISTINCT_COUNT(V)", plan.getProjector().getColumnProjector(0).getName());
+        assertRewrite("SELECT COUNT(DISTINCT v) FROM DC_T WHERE w > 5", true);
+        assertRewrite("SELECT COUNT(DISTINCT v + w) FROM DC_T", true);
+    }
+
+    @Test
+    public void testGroupBy() throws Exception {
+        assertRewrite("SELECT g, COUNT(DISTINCT v) FROM DC_T GROUP BY g", true);
+        assertRewrite("SELECT COUNT(DISTINCT v), g FROM DC_T GROUP BY g", true);
+        assertRewrite("SELECT COUNT(DISTINCT v) FROM DC_T GROUP BY g", true);
+        assertRewrite("SELECT SUBSTR(g, 1, 1), COUNT(DISTINCT v) FROM DC_T GROUP BY SUBSTR(g, 1, 1)", true);
+        assertRewrite("SELECT \"Mixed\", g, COUNT(DISTINCT v) FROM DC_T GROUP BY g, \"Mixed\"", true);
+        // Only the group by expressions may be selected
+        assertRewrite("SELECT SUBSTR(g, 1, 1), COUNT(DISTINCT v) FROM DC_T GROUP BY g", false);
+    }
+
+    @Test
+    public void testAliases() throws Exception {
+        QueryPlan plan = assertRewrite("SELECT g AS grp, COUNT(DISTINCT v) \"Count\" FROM DC_T GROUP BY g", true);
+        assertEquals("GRP", plan.getProjector().getColumnProjector(0).getName());
+        assertEquals("Count", plan.getProjector().getColumnProjector(1).getName());
+        assertEquals(0, plan.getProjector().getColumnIndex("grp"));
+        assertEquals(1, plan.getProjector().getColumnIndex("Count"));
+        assertRewrite("SELECT t.g, COUNT(DISTINCT t.v) c FROM DC_T t GROUP BY t.g", true);
+    }
+
+    @Test
+    public void testSeveralDistinctCounts() throws Exception {
+        assertRewrite("SELECT COUNT(DISTINCT v), COUNT(DISTINCT v) c FROM DC_T", true);
+        assertRewrite("SELECT COUNT(DISTINCT v), COUNT(DISTINCT w) FROM DC_T", false);
+        assertRewrite("SELECT COUNT(DISTINCT v), COUNT(*) FROM DC_T", false);
+        assertRewrite("SELECT COUNT(DISTINCT v), SUM(v) FROM DC_T", false);
+    }
+
+    @Test
+    public void testOrderByAndLimit() throws Exception {
+        QueryPlan plan = assertRewrite("SELECT g, COUNT(DISTINCT v) FROM DC_T GROUP BY g LIMIT 10", true);
+        assertEquals(Integer.valueOf(10), plan.getLimit());
+        assertRewrite("SELECT g, COUNT(DISTINCT v) FROM DC_T GROUP BY g LIMIT 10 OFFSET 2", true);
+        assertRewrite("SELECT g, COUNT(DISTINCT v) FROM DC_T GROUP BY g ORDER BY g", false);
+        assertRewrite("SELECT g, COUNT(DISTINCT v) FROM DC_T GROUP BY g HAVING COUNT(DISTINCT v) > 1", false);
+    }
+
+    @Test
+    public void testJoin() throws Exception {
+        assertRewrite("SELECT t.g, COUNT(DISTINCT u.v) FROM DC_T t JOIN DC_U u ON t.id = u.id GROUP BY t.g", true);
+        assertRewrite("SELECT COUNT(DISTINCT t.v) FROM DC_T t LEFT JOIN DC_U u ON t.id = u.id WHERE u.v > 0", true);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        assertTrue(getQueryPlan("SELECT COUNT(DISTINCT v) FROM DC_T", true) instanceof ClientAggregatePlan);
+        assertFalse(getQueryPlan("SELECT COUNT(DISTINCT v) FROM DC_T", false) instanceof ClientAggregatePlan);
+    }
+}
@@ -38,6 +38,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -59,10 +60,12 @@ import org.apache.phoenix.execute.SortMergeJoinPlan;
 import org.apache.phoenix.execute.TupleProjectionPlan;
 import org.apache.phoenix.expression.Expression;
 import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.MemoizedExpression;
 import org.apache.phoenix.expression.aggregator.Aggregator;
 import org.apache.phoenix.expression.aggregator.CountAggregator;
 import org.apache.phoenix.expression.aggregator.ServerAggregators;
 import org.apache.phoenix.expression.function.TimeUnit;
+import org.apache.phoenix.filter.BooleanExpressionFilter;
 import org.apache.phoenix.filter.EncodedQualifiersColumnProjectionFilter;
 import org.apache.phoenix.jdbc.PhoenixConnection;
 import org.apache.phoenix.jdbc.PhoenixPreparedStatement;
@@ -4173,4 +4176,29 @@ public class QueryCompilerTest extends BaseConnectionlessQueryTest {
             assertEquals(e.getErrorCode(), SQLExceptionCode.CONNECTION_CLOSED.getErrorCode());
         }
     }
+
+    @Test
+    public void testSharedExpressionsMemoized() throws Exception {
+        String query = "SELECT ABS(a_integer), ABS(a_integer) + 1 FROM atable WHERE ABS(a_integer) > 1";
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        props.setProperty(QueryServices.SHARED_EXPRESSION_MEMOIZATION_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        Connection conn = DriverManager.getConnection(getUrl(), props);
+        try {
+            QueryPlan plan = conn.prepareStatement(query).unwrap(PhoenixPreparedStatement.class).compileQuery(query);
+            Expression first = plan.getProjector().getColumnProjector(0).getExpression();
+            Expression second = plan.getProjector().getColumnProjector(1).getExpression().getChildren().get(0);
+            Expression filter = ((BooleanExpressionFilter)plan.getContext().getScan().getFilter()).getExpression()
+                    .getChildren().get(0);
+            for (Expression expression : Arrays.asList(first, second, filter)) {
+                assertTrue(expression.getClass().getName(), expression instanceof MemoizedExpression);
+                assertEquals(((MemoizedExpression)first).getScopeId(), ((MemoizedExpression)expression).getScopeId());
+                assertEquals(((MemoizedExpression)first).getSlot(), ((MemoizedExpression)expression).getSlot());
+            }
+        } finally {
+            conn.close();
+        }
+
+        QueryPlan plan = getQueryPlan(query, Collections.emptyList());
+        assertFalse(plan.getProjector().getColumnProjector(0).getExpression() instanceof MemoizedExpression);
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.expression.visitor.CompileExpressionVisitor;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.junit.Test;
+
+public class CompiledExpressionTest {
+    private static final byte[] ROW = Bytes.toBytes("r");
+
+    private static final PDatum LONG_DATUM = new PDatum() {
+        @Override
+        public boolean isNullable() {
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PLong.INSTANCE;
+        }
+
+        @Override
+        public Integer getMaxLength() {
+            return null;
+        }
+
+        @Override
+        public Integer getScale() {
+            return null;
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return SortOrder.getDefault();
+        }
+    };
+
+    @Test
+    public void testLongArithmetic() throws Exception {
+        Expression sum = new LongAddExpression(Arrays.<Expression>asList(
+                LiteralExpression.newConstant(3L, PLong.INSTANCE),
+                LiteralExpression.newConstant(4, PInteger.INSTANCE, SortOrder.DESC)));
+        Expression product = new LongMultiplyExpression(Arrays.<Expression>asList(
+                sum, LiteralExpression.newConstant(-5L, PLong.INSTANCE)));
+        Expression difference = new LongSubtractExpression(Arrays.<Expression>asList(
+                product, LiteralExpression.newConstant(2L, PLong.INSTANCE)));
+        assertCompiledEquals(difference);
+        assertCompiledEquals(new ComparisonExpression(Arrays.<Expression>asList(
+                difference, LiteralExpression.newConstant(-37L, PLong.INSTANCE)), CompareOp.EQUAL));
+        assertCompiledEquals(new ComparisonExpression(Arrays.<Expression>asList(
+                LiteralExpression.newConstant(-38L, PLong.INSTANCE), difference), CompareOp.GREATER_OR_EQUAL));
+    }
+
+    @Test
+    public void testDoubleArithmetic() throws Exception {
+        Expression product = new DoubleMultiplyExpression(Arrays.<Expression>asList(
+                LiteralExpression.newConstant(1.5, PDouble.INSTANCE),
+                LiteralExpression.newConstant(4L, PLong.INSTANCE)));
+        Expression sum = new DoubleAddExpression(Arrays.<Expression>asList(
+                product, LiteralExpression.newConstant(-0.25, PDouble.INSTANCE, SortOrder.DESC)));
+        assertCompiledEquals(sum);
+        assertCompiledEquals(new ComparisonExpression(Arrays.<Expression>asList(
+                sum, LiteralExpression.newConstant(5.75, PDouble.INSTANCE)), CompareOp.LESS));
+    }
+
+    @Test
+    public void testNullOperands() throws Exception {
+        Expression longSum = new LongAddExpression(Arrays.<Expression>asList(
+                LiteralExpression.newConstant(3L, PLong.INSTANCE),
+                LiteralExpression.newConstant(null, PLong.INSTANCE)));
+        assertCompiledEquals(longSum);
+        Expression doubleSum = new DoubleAddExpression(Arrays.<Expression>asList(
+                LiteralExpression.newConstant(null, PDouble.INSTANCE),
+                LiteralExpression.newConstant(1.0, PDouble.INSTANCE)));
+        assertCompiledEquals(doubleSum);
+        assertCompiledEquals(new ComparisonExpression(Arrays.<Expression>asList(
+                doubleSum, LiteralExpression.newConstant(1.0, PDouble.INSTANCE)), CompareOp.EQUAL));
+    }
+
+    @Test
+    public void testUnsupportedTypesNotCompiled() throws Exception {
+        Expression sum = new DecimalAddExpression(Arrays.<Expression>asList(
+                LiteralExpression.newConstant(3L, PLong.INSTANCE),
+                LiteralExpression.newConstant(null, PDecimal.INSTANCE)));
+        assertSame(sum, CompileExpressionVisitor.compile(sum));
+    }
+
+    @Test
+    public void testDeserializedInListOverArithmetic() throws Exception {
+        // x + 1 IN (2, 3, 5) AND x + 1 > 0
+        Expression x = new KeyValueColumnExpression(LONG_DATUM, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN);
+        Expression sum = new LongAddExpression(Arrays.<Expression>asList(
+                x, LiteralExpression.newConstant(1L, PLong.INSTANCE)));
+        Expression inList = InListExpression.create(Arrays.<Expression>asList(sum,
+                LiteralExpression.newConstant(2L, PLong.INSTANCE),
+                LiteralExpression.newConstant(3L, PLong.INSTANCE),
+                LiteralExpression.newConstant(5L, PLong.INSTANCE)), false, new ImmutableBytesWritable(), true);
+        assertTrue(inList instanceof InListExpression);
+        Expression and = new AndExpression(Arrays.<Expression>asList(inList,
+                new ComparisonExpression(Arrays.<Expression>asList(
+                        sum, LiteralExpression.newConstant(0L, PLong.INSTANCE)), CompareOp.GREATER)));
+        // The filters compiled on the region servers are deserialized, thus without the key
+        // expressions of their IN lists
+        Expression deserialized = deserialize(and);
+        Expression compiled = CompileExpressionVisitor.compile(deserialized);
+        assertSame(deserialized.getChildren().get(0), compiled.getChildren().get(0));
+        assertTrue(compiled.getChildren().get(1) instanceof CompiledComparisonExpression);
+        for (long value = -3; value <= 6; value++) {
+            Tuple tuple = new SingleKeyValueTuple(new KeyValue(ROW, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN,
+                    PLong.INSTANCE.toBytes(value)));
+            ImmutableBytesWritable expected = new ImmutableBytesWritable();
+            ImmutableBytesWritable actual = new ImmutableBytesWritable();
+            assertTrue(and.evaluate(tuple, expected));
+            assertTrue(compiled.evaluate(tuple, actual));
+            assertArrayEquals(expected.copyBytes(), actual.copyBytes());
+            assertEquals(value == 1 || value == 2 || value == 4, PBoolean.INSTANCE.toObject(actual));
+        }
+    }
+
+    private static Expression deserialize(Expression expression) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        WritableUtils.writeVInt(output, ExpressionType.valueOf(expression).ordinal());
+        expression.write(output);
+        output.close();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Expression copy = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
+        copy.readFields(input);
+        return copy;
+    }
+
+    private static void assertCompiledEquals(Expression expression) {
+        Expression compiled = CompileExpressionVisitor.compile(expression);
+        assertTrue(compiled instanceof CompiledArithmeticExpression || compiled instanceof CompiledComparisonExpression);
+        assertEquals(expression.getDataType(), compiled.getDataType());
+        ImmutableBytesWritable expected = new ImmutableBytesWritable();
+        ImmutableBytesWritable actual = new ImmutableBytesWritable();
+        assertEquals(expression.evaluate(null, expected), compiled.evaluate(null, actual));
+        assertArrayEquals(expected.copyBytes(), actual.copyBytes());
+    }
+}
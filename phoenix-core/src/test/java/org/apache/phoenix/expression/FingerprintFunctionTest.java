@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.function.FingerprintFunction;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for {@link FingerprintFunction}
+ */
+public class FingerprintFunctionTest {
+
+    private static long fingerprint(Expression child, Expression seed) throws SQLException {
+        List<Expression> children = Lists.newArrayList(child, seed);
+        Expression fingerprint = new FingerprintFunction(children);
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        assertTrue(fingerprint.evaluate(null, ptr));
+        return (Long) PLong.INSTANCE.toObject(ptr, fingerprint.getSortOrder());
+    }
+
+    private static long fingerprint(Object value, PDataType dataType, SortOrder sortOrder, long seed)
+            throws SQLException {
+        return fingerprint(LiteralExpression.newConstant(value, dataType, sortOrder),
+            LiteralExpression.newConstant(seed, PLong.INSTANCE));
+    }
+
+    @Test
+    public void testSortOrder() throws SQLException {
+        assertEquals(fingerprint("abc", PVarchar.INSTANCE, SortOrder.ASC, 0),
+            fingerprint("abc", PVarchar.INSTANCE, SortOrder.DESC, 0));
+        assertEquals(fingerprint(-7, PInteger.INSTANCE, SortOrder.ASC, 3),
+            fingerprint(-7, PInteger.INSTANCE, SortOrder.DESC, 3));
+    }
+
+    @Test
+    public void testDistinctValues() throws SQLException {
+        assertNotEquals(fingerprint("abc", PVarchar.INSTANCE, SortOrder.ASC, 0),
+            fingerprint("abd", PVarchar.INSTANCE, SortOrder.ASC, 0));
+        assertNotEquals(fingerprint("abc", PVarchar.INSTANCE, SortOrder.ASC, 0),
+            fingerprint("abc", PVarchar.INSTANCE, SortOrder.ASC, 1));
+        assertNotEquals(fingerprint(1, PInteger.INSTANCE, SortOrder.ASC, 0),
+            fingerprint(2, PInteger.INSTANCE, SortOrder.ASC, 0));
+    }
+
+    @Test
+    public void testNull() throws SQLException {
+        long nullFingerprint = fingerprint(null, PVarchar.INSTANCE, SortOrder.ASC, 0);
+        assertEquals(FingerprintFunction.fingerprintNull(0), nullFingerprint);
+        assertNotEquals(nullFingerprint, fingerprint("a", PVarchar.INSTANCE, SortOrder.ASC, 0));
+        assertNotEquals(nullFingerprint, fingerprint(null, PVarchar.INSTANCE, SortOrder.ASC, 1));
+    }
+
+    @Test
+    public void testChaining() throws SQLException {
+        // (a, bc) and (ab, c) have different fingerprints
+        Expression a = LiteralExpression.newConstant("a", PVarchar.INSTANCE);
+        Expression bc = LiteralExpression.newConstant("bc", PVarchar.INSTANCE);
+        Expression ab = LiteralExpression.newConstant("ab", PVarchar.INSTANCE);
+        Expression c = LiteralExpression.newConstant("c", PVarchar.INSTANCE);
+        Expression zero = LiteralExpression.newConstant(0L, PLong.INSTANCE);
+        long first = fingerprint(bc, new FingerprintFunction(Lists.newArrayList(a, zero)));
+        long second = fingerprint(c, new FingerprintFunction(Lists.newArrayList(ab, zero)));
+        assertNotEquals(first, second);
+        assertEquals(first, fingerprint(bc, LiteralExpression.newConstant(
+            FingerprintFunction.fingerprint(0, PVarchar.INSTANCE.toBytes("a"), 0, 1, SortOrder.ASC),
+            PLong.INSTANCE)));
+    }
+}
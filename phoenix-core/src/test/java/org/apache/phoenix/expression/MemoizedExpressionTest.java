@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.phoenix.expression.visitor.ExpressionVisitor;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.KeyValueUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MemoizedExpressionTest {
+    private static final byte[] CF = Bytes.toBytes("0");
+    private static final byte[] CQ = Bytes.toBytes("V");
+
+    /**
+     * Returns the number of times it was evaluated.
+     */
+    private static class CountingExpression extends BaseTerminalExpression {
+        private int count;
+
+        @Override
+        public boolean evaluate(Tuple tuple, ImmutableBytesWritable ptr) {
+            ptr.set(PInteger.INSTANCE.toBytes(++count));
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PInteger.INSTANCE;
+        }
+
+        @Override
+        public <T> T accept(ExpressionVisitor<T> visitor) {
+            return visitor.defaultReturn(this, null);
+        }
+    }
+
+    private static Tuple newTuple(String row) {
+        return new SingleKeyValueTuple(KeyValueUtil.newKeyValue(Bytes.toBytes(row), CF, CQ, 1, Bytes.toBytes(row)));
+    }
+
+    private static int evaluate(Expression expression, Tuple tuple) {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        assertTrue(expression.evaluate(tuple, ptr));
+        return (Integer)PInteger.INSTANCE.toObject(ptr);
+    }
+
+    @Before
+    public void clearRowCache() {
+        MemoizedExpression.clearRowCache();
+    }
+
+    @Test
+    public void testEvaluatedOncePerRow() {
+        CountingExpression child = new CountingExpression();
+        // Each clause gets its own copy of the shared expression
+        MemoizedExpression filterCopy = new MemoizedExpression(child, 1, 0);
+        MemoizedExpression projectorCopy = new MemoizedExpression(child, 1, 0);
+        Tuple row1 = newTuple("a");
+        assertEquals(1, evaluate(filterCopy, row1));
+        assertEquals(1, evaluate(projectorCopy, row1));
+        assertEquals(1, evaluate(projectorCopy, newTuple("a")));
+        Tuple row2 = newTuple("b");
+        assertEquals(2, evaluate(filterCopy, row2));
+        assertEquals(2, evaluate(projectorCopy, row2));
+    }
+
+    @Test
+    public void testSlotsAndScopes() {
+        CountingExpression child = new CountingExpression();
+        Tuple row = newTuple("a");
+        assertEquals(1, evaluate(new MemoizedExpression(child, 1, 0), row));
+        // Another shared expression of the same query
+        assertEquals(2, evaluate(new MemoizedExpression(child, 1, 5), row));
+        assertEquals(1, evaluate(new MemoizedExpression(child, 1, 0), row));
+        // Another query evaluating the same row
+        assertEquals(3, evaluate(new MemoizedExpression(child, 2, 0), row));
+        assertEquals(4, evaluate(new MemoizedExpression(child, 1, 0), row));
+        MemoizedExpression.clearRowCache();
+        assertEquals(5, evaluate(new MemoizedExpression(child, 1, 0), row));
+        // Not cached without a row
+        assertEquals(6, evaluate(new MemoizedExpression(child, 1, 0), null));
+        assertEquals(7, evaluate(new MemoizedExpression(child, 1, 0), null));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        MemoizedExpression expression = new MemoizedExpression(LiteralExpression.newConstant(42), 123456789L, 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        WritableUtils.writeVInt(output, ExpressionType.valueOf(expression).ordinal());
+        expression.write(output);
+        output.close();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Expression copy = ExpressionType.values()[WritableUtils.readVInt(input)].newInstance();
+        copy.readFields(input);
+        assertEquals(expression, copy);
+        assertEquals(123456789L, ((MemoizedExpression)copy).getScopeId());
+        assertEquals(3, ((MemoizedExpression)copy).getSlot());
+        assertEquals(PInteger.INSTANCE, copy.getDataType());
+        assertFalse(expression.equals(new MemoizedExpression(LiteralExpression.newConstant(43), 123456789L, 3)));
+    }
+}
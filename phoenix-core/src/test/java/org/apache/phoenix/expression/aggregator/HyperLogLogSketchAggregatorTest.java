@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.LiteralExpression;
+import org.apache.phoenix.expression.function.HyperLogLogEstimateFunction;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PVarbinary;
+import org.junit.Test;
+
+public class HyperLogLogSketchAggregatorTest {
+
+    @Test
+    public void testMergeSketches() throws Exception {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        HyperLogLogSketchAggregator merged = new HyperLogLogSketchAggregator(SortOrder.ASC, true);
+        // Two overlapping hours of user ids: 0-999 and 500-1499
+        for (int hour = 0; hour < 2; hour++) {
+            HyperLogLogSketchAggregator sketch = new HyperLogLogSketchAggregator(SortOrder.ASC, false);
+            for (long i = 0; i < 1000; i++) {
+                ptr.set(PLong.INSTANCE.toBytes(hour * 500 + i));
+                sketch.aggregate(null, ptr);
+            }
+            sketch.evaluate(null, ptr);
+            merged.aggregate(null, ptr);
+            // Merging the same sketch again does not change the result
+            merged.aggregate(null, ptr);
+        }
+        merged.evaluate(null, ptr);
+        HyperLogLogEstimateFunction estimate = new HyperLogLogEstimateFunction(Collections.<Expression>singletonList(
+                LiteralExpression.newConstant(ptr.copyBytes(), PVarbinary.INSTANCE)));
+        estimate.evaluate(null, ptr);
+        assertEquals(1500, (Long) PLong.INSTANCE.toObject(ptr), 30);
+    }
+}
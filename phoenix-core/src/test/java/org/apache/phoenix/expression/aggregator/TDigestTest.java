@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.aggregator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PLong;
+import org.junit.Test;
+
+public class TDigestTest {
+
+    @Test
+    public void testQuantilesOfUniformValues() {
+        TDigest digest = new TDigest();
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            digest.add(random.nextDouble() * 1000);
+        }
+        assertEquals(100000, digest.size());
+        assertEquals(10, digest.quantile(0.01), 2);
+        assertEquals(500, digest.quantile(0.5), 10);
+        assertEquals(990, digest.quantile(0.99), 2);
+        assertTrue(digest.toBytes().length < 4096);
+    }
+
+    @Test
+    public void testMergeAndSerialize() {
+        TDigest first = new TDigest();
+        TDigest second = new TDigest();
+        for (int i = 0; i < 10000; i++) {
+            first.add(i);
+            second.add(i + 10000);
+        }
+        byte[] bytes = second.toBytes();
+        first.add(TDigest.fromBytes(bytes, 0, bytes.length));
+        assertEquals(20000, first.size());
+        assertEquals(0, first.quantile(0), 0);
+        assertEquals(19999, first.quantile(1), 0);
+        assertEquals(10000, first.quantile(0.5), 100);
+    }
+
+    @Test
+    public void testSmallDigests() {
+        TDigest digest = new TDigest();
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+        digest.add(42);
+        assertEquals(42, digest.quantile(0.5), 0);
+        digest.add(44);
+        assertEquals(43, digest.quantile(0.5), 0);
+    }
+
+    @Test
+    public void testAggregators() {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        ApproxPercentileClientAggregator client = new ApproxPercentileClientAggregator(0.5, SortOrder.ASC);
+        for (int region = 0; region < 3; region++) {
+            ApproxPercentileServerAggregator server = new ApproxPercentileServerAggregator(PLong.INSTANCE, SortOrder.ASC);
+            for (long i = 0; i < 1000; i++) {
+                ptr.set(PLong.INSTANCE.toBytes(region * 1000 + i));
+                server.aggregate(null, ptr);
+            }
+            server.evaluate(null, ptr);
+            client.aggregate(null, ptr);
+        }
+        assertTrue(client.evaluate(null, ptr));
+        assertEquals(1500, (Double) PDouble.INSTANCE.toObject(ptr), 30);
+        client.reset();
+        assertTrue(client.evaluate(null, ptr));
+        assertEquals(0, ptr.getLength());
+    }
+}
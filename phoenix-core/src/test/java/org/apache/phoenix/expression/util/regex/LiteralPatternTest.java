@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.expression.util.regex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.phoenix.schema.types.PBoolean;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.joni.Option;
+import org.junit.Test;
+
+public class LiteralPatternTest {
+    private static final String[] VALUES = { "", "a", "abc", "xabcx", "abcabc", "ABC", "aBc", "abab",
+            "error: disk full", "WARN Error in foo", "foo%bar", "foo_bar", "\u00e9t\u00e9 abc \u00e9t\u00e9",
+            "\u212a", "k", "stra\u00dfe", "STRASSE" };
+
+    private static ImmutableBytesWritable getPtr(String str) {
+        // Offset the value in a larger array, as when read from a cell
+        byte[] bytes = PVarchar.INSTANCE.toBytes("##" + str + "##");
+        return new ImmutableBytesWritable(bytes, 2, bytes.length - 4);
+    }
+
+    private static String toRegex(String likePattern) {
+        StringBuilder sb = new StringBuilder("\\Q");
+        boolean wasSlash = false;
+        for (char c : likePattern.toCharArray()) {
+            if (wasSlash) {
+                sb.append(c);
+                wasSlash = false;
+            } else if (c == '%') {
+                sb.append("\\E.*\\Q");
+            } else if (c == '\\') {
+                wasSlash = true;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append("\\E").toString();
+    }
+
+    private static boolean matches(AbstractBasePattern pattern, String value) {
+        ImmutableBytesWritable ptr = getPtr(value);
+        pattern.matches(ptr);
+        return (Boolean) PBoolean.INSTANCE.toObject(ptr);
+    }
+
+    private static void assertLike(String likePattern, boolean isCaseInsensitive) {
+        String regex = (isCaseInsensitive ? "(?i)" : "") + toRegex(likePattern);
+        AbstractBasePattern javaPattern = new JavaPattern(regex, Pattern.DOTALL);
+        AbstractBasePattern joniPattern = new JONIPattern(regex, Option.MULTILINE);
+        LiteralPattern pattern = LiteralPattern.fromLike(likePattern, regex, isCaseInsensitive, null);
+        LiteralPattern unicodePattern = LiteralPattern.fromLike(likePattern, regex, isCaseInsensitive, joniPattern);
+        assertNotNull(pattern);
+        assertEquals(regex, pattern.pattern());
+        for (String value : VALUES) {
+            String message = likePattern + " on " + value;
+            assertEquals(message, matches(javaPattern, value), matches(pattern, value));
+            assertEquals(message, matches(joniPattern, value), matches(unicodePattern, value));
+        }
+    }
+
+    @Test
+    public void testLikePatterns() {
+        String[] likePatterns = { "", "%", "%%", "abc", "abc%", "%abc", "%abc%", "a%c", "a%b%c", "%b%a%",
+                "ab%ab", "%a%b%", "abc%abc", "%error%", "%Error%full", "foo\\%bar", "foo\\_bar",
+                "\u00e9t\u00e9%", "%\u00e9t\u00e9" };
+        for (String likePattern : likePatterns) {
+            assertLike(likePattern, false);
+        }
+        String[] iLikePatterns = { "abc", "%ABC%", "a%C", "%error%", "k", "%K%", "%strasse%", "STRA%" };
+        for (String likePattern : iLikePatterns) {
+            assertLike(likePattern, true);
+        }
+    }
+
+    @Test
+    public void testUnsupportedPatterns() {
+        assertNull(LiteralPattern.fromLike("a_c", toRegex("a_c"), false, null));
+        assertNull(LiteralPattern.fromLike("%\u00e9t\u00e9%", "(?i)" + toRegex("%\u00e9t\u00e9%"), true, null));
+        assertNull(LiteralPattern.fromRegex("a.c"));
+        assertNull(LiteralPattern.fromRegex("[a-z]+"));
+        assertNull(LiteralPattern.fromRegex(""));
+    }
+
+    @Test
+    public void testReplaceAllAndSubstr() {
+        String[] regexes = { "abc", "a", "ab", "\u00e9t\u00e9", " ", "disk" };
+        ImmutableBytesWritable replacePtr = getPtr("<\u00e9>");
+        for (String regex : regexes) {
+            AbstractBasePattern joniPattern = new JONIPattern(regex, Option.MULTILINE);
+            AbstractBasePattern pattern = LiteralPattern.fromRegex(regex);
+            assertNotNull(pattern);
+            for (String value : VALUES) {
+                String message = regex + " on " + value;
+                ImmutableBytesWritable expected = getPtr(value);
+                ImmutableBytesWritable actual = getPtr(value);
+                joniPattern.replaceAll(expected, replacePtr.get(), replacePtr.getOffset(), replacePtr.getLength());
+                pattern.replaceAll(actual, replacePtr.get(), replacePtr.getOffset(), replacePtr.getLength());
+                assertEquals(message, PVarchar.INSTANCE.toObject(expected), PVarchar.INSTANCE.toObject(actual));
+                for (int offset = -3; offset <= 3; offset++) {
+                    expected = getPtr(value);
+                    actual = getPtr(value);
+                    joniPattern.substr(expected, offset);
+                    pattern.substr(actual, offset);
+                    assertEquals(message + " from " + offset, PVarchar.INSTANCE.toObject(expected),
+                            PVarchar.INSTANCE.toObject(actual));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.query.ConnectionQueryServices;
+import org.apache.phoenix.query.QueryServices;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.ReadOnlyProps;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+public class ParallelMergeSortResultIteratorTest {
+    private static final int ITERATORS = 100;
+    private static final int ROWS = 50;
+
+    private static final PDatum INTEGER_DATUM = new PDatum() {
+        @Override
+        public boolean isNullable() {
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PInteger.INSTANCE;
+        }
+
+        @Override
+        public Integer getMaxLength() {
+            return null;
+        }
+
+        @Override
+        public Integer getScale() {
+            return null;
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return SortOrder.getDefault();
+        }
+    };
+
+    private final AtomicBoolean isMisused = new AtomicBoolean();
+    private List<TrackingResultIterator> leaves;
+    private ConnectionQueryServices services;
+
+    @Before
+    public void setUp() {
+        Map<String, String> props = Maps.newHashMap();
+        props.put(QueryServices.PARALLEL_MERGE_SORT_ENABLED_ATTRIB, Boolean.TRUE.toString());
+        // small enough for a tree of several levels
+        props.put(QueryServices.PARALLEL_MERGE_SORT_FAN_IN_ATTRIB, Integer.toString(3));
+        props.put(QueryServices.PARALLEL_MERGE_SORT_QUEUE_SIZE_ATTRIB, Integer.toString(1));
+        services = mock(ConnectionQueryServices.class);
+        when(services.getProps()).thenReturn(new ReadOnlyProps(props));
+    }
+
+    /**
+     * Iterator over sorted rows with random row keys and values, which records any use after
+     * close or any close during a call to next.
+     */
+    private class TrackingResultIterator implements PeekingResultIterator {
+        private final PeekingResultIterator delegate;
+        private final int failAt;
+        private final AtomicInteger callsInProgress = new AtomicInteger();
+        private volatile boolean isClosed;
+        private int count;
+
+        private TrackingResultIterator(List<Tuple> tuples, int failAt) {
+            this.delegate = new MaterializedResultIterator(tuples);
+            this.failAt = failAt;
+        }
+
+        @Override
+        public Tuple next() throws SQLException {
+            enter();
+            try {
+                if (count++ == failAt) {
+                    throw new SQLException("Failed at row " + failAt);
+                }
+                return delegate.next();
+            } finally {
+                callsInProgress.decrementAndGet();
+            }
+        }
+
+        @Override
+        public Tuple peek() throws SQLException {
+            enter();
+            try {
+                return delegate.peek();
+            } finally {
+                callsInProgress.decrementAndGet();
+            }
+        }
+
+        private void enter() {
+            callsInProgress.incrementAndGet();
+            if (isClosed) {
+                isMisused.set(true);
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (callsInProgress.get() != 0) {
+                isMisused.set(true);
+            }
+            isClosed = true;
+        }
+
+        @Override
+        public void explain(List<String> planSteps) {
+        }
+    }
+
+    private ResultIterators newIterators(int failingIterator, int failAt) {
+        Random random = new Random(ITERATORS);
+        leaves = new ArrayList<TrackingResultIterator>();
+        List<PeekingResultIterator> iterators = new ArrayList<PeekingResultIterator>();
+        for (int i = 0; i < ITERATORS; i++) {
+            List<Integer> keys = new ArrayList<Integer>();
+            for (int j = 0; j < ROWS; j++) {
+                keys.add(random.nextInt(Integer.MAX_VALUE));
+            }
+            Collections.sort(keys);
+            List<Tuple> tuples = new ArrayList<Tuple>();
+            for (int j = 0; j < ROWS; j++) {
+                // values sort the same way as row keys
+                tuples.add(new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(keys.get(j)), SINGLE_COLUMN_FAMILY,
+                        SINGLE_COLUMN, PInteger.INSTANCE.toBytes(keys.get(j)))));
+            }
+            TrackingResultIterator leaf = new TrackingResultIterator(tuples, i == failingIterator ? failAt : -1);
+            leaves.add(leaf);
+            iterators.add(leaf);
+        }
+        return new MaterializedResultIterators(iterators);
+    }
+
+    private ResultIterators newIterators() {
+        return newIterators(-1, -1);
+    }
+
+    private static List<Integer> readKeys(ResultIterator iterator) throws SQLException {
+        List<Integer> keys = new ArrayList<Integer>();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        Tuple tuple;
+        while ((tuple = iterator.next()) != null) {
+            tuple.getKey(ptr);
+            keys.add(Bytes.toInt(ptr.get(), ptr.getOffset(), ptr.getLength()));
+        }
+        iterator.close();
+        return keys;
+    }
+
+    private void assertAllClosed() {
+        for (TrackingResultIterator leaf : leaves) {
+            assertTrue(leaf.isClosed);
+        }
+        assertFalse(isMisused.get());
+    }
+
+    private static MergeSortTopNResultIterator newTopNIterator(ResultIterators iterators, Integer limit, Integer offset) {
+        OrderByExpression orderByExpression = new OrderByExpression(
+                new KeyValueColumnExpression(INTEGER_DATUM, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN), false, true);
+        return new MergeSortTopNResultIterator(iterators, limit, offset, Collections.singletonList(orderByExpression));
+    }
+
+    @Test
+    public void testRowKeyOrderMatchesSerialMerge() throws Exception {
+        List<Integer> expected = readKeys(new MergeSortRowKeyResultIterator(newIterators()));
+        assertEquals(ITERATORS * ROWS, expected.size());
+
+        MergeSortRowKeyResultIterator iterator = new MergeSortRowKeyResultIterator(newIterators());
+        iterator.enableParallelMerge(services);
+        assertEquals(expected, readKeys(iterator));
+        assertAllClosed();
+    }
+
+    @Test
+    public void testTopNOrderMatchesSerialMerge() throws Exception {
+        List<Integer> expected = readKeys(newTopNIterator(newIterators(), 200, 10));
+        assertEquals(200, expected.size());
+
+        MergeSortTopNResultIterator iterator = newTopNIterator(newIterators(), 200, 10);
+        iterator.enableParallelMerge(services);
+        assertEquals(expected, readKeys(iterator));
+        assertAllClosed();
+
+        expected = readKeys(newTopNIterator(newIterators(), null, null));
+        iterator = newTopNIterator(newIterators(), null, null);
+        iterator.enableParallelMerge(services);
+        assertEquals(expected, readKeys(iterator));
+        assertAllClosed();
+    }
+
+    @Test
+    public void testConcurrentMergesShareThreads() throws Exception {
+        List<Integer> expected = readKeys(new MergeSortRowKeyResultIterator(newIterators()));
+
+        // the first merge holds its merging threads until closed, leaving the second one fewer
+        // threads than groups to merge, so that it merges some of them serially
+        MergeSortRowKeyResultIterator first = new MergeSortRowKeyResultIterator(newIterators());
+        List<TrackingResultIterator> firstLeaves = leaves;
+        first.enableParallelMerge(services);
+        first.next();
+        MergeSortRowKeyResultIterator second = new MergeSortRowKeyResultIterator(newIterators());
+        second.enableParallelMerge(services);
+        assertEquals(expected, readKeys(second));
+        assertAllClosed();
+        first.close();
+        leaves = firstLeaves;
+        assertAllClosed();
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws Exception {
+        for (int rowsRead = 0; rowsRead < 20; rowsRead += 5) {
+            MergeSortRowKeyResultIterator iterator = new MergeSortRowKeyResultIterator(newIterators());
+            iterator.enableParallelMerge(services);
+            for (int i = 0; i < rowsRead; i++) {
+                iterator.next();
+            }
+            // the merging threads are still reading, or waiting for room in their queues
+            iterator.close();
+            assertAllClosed();
+        }
+    }
+
+    @Test
+    public void testFailureReachesConsumer() throws Exception {
+        MergeSortRowKeyResultIterator iterator = new MergeSortRowKeyResultIterator(newIterators(ITERATORS / 2, ROWS / 2));
+        iterator.enableParallelMerge(services);
+        try {
+            while (iterator.next() != null) {
+            }
+            fail();
+        } catch (SQLException e) {
+            assertEquals("Failed at row " + ROWS / 2, e.getMessage());
+        }
+        iterator.close();
+        assertAllClosed();
+    }
+
+    @Test
+    public void testQueuedIteratorClosedBeforeStart() throws Exception {
+        TrackingResultIterator leaf = new TrackingResultIterator(Collections.<Tuple>emptyList(), -1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocker = new CountDownLatch(1);
+        // keeps the only thread busy so that the reading task cannot start before the close
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        try {
+            QueuedResultIterator iterator = new QueuedResultIterator(leaf, executor, 1, 1);
+            iterator.close();
+            assertTrue(leaf.isClosed);
+            blocker.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertFalse(isMisused.get());
+        assertEquals(0, leaf.count);
+    }
+}
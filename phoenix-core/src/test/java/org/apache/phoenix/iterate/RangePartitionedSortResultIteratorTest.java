@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.iterate;
+
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN;
+import static org.apache.phoenix.query.QueryConstants.SINGLE_COLUMN_FAMILY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.expression.KeyValueColumnExpression;
+import org.apache.phoenix.expression.OrderByExpression;
+import org.apache.phoenix.memory.GlobalMemoryManager;
+import org.apache.phoenix.memory.MemoryManager;
+import org.apache.phoenix.query.KeyRange;
+import org.apache.phoenix.schema.PDatum;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.SingleKeyValueTuple;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.util.ByteUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RangePartitionedSortResultIteratorTest {
+    private static final PDatum INTEGER_DATUM = new PDatum() {
+        @Override
+        public boolean isNullable() {
+            return true;
+        }
+
+        @Override
+        public PDataType getDataType() {
+            return PInteger.INSTANCE;
+        }
+
+        @Override
+        public Integer getMaxLength() {
+            return null;
+        }
+
+        @Override
+        public Integer getScale() {
+            return null;
+        }
+
+        @Override
+        public SortOrder getSortOrder() {
+            return SortOrder.getDefault();
+        }
+    };
+
+    private static final long MAX_MEMORY = 10 * 1024 * 1024;
+
+    private ExecutorService executor;
+    private MemoryManager memoryManager;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        memoryManager = new GlobalMemoryManager(MAX_MEMORY);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSort() throws Exception {
+        assertSorted(newIterator(true, 4, Long.MAX_VALUE), true);
+    }
+
+    @Test
+    public void testDescendingSort() throws Exception {
+        assertSorted(newIterator(false, 4, Long.MAX_VALUE), false);
+    }
+
+    @Test
+    public void testMergeSortAfterMaxRows() throws Exception {
+        assertSorted(newIterator(true, 4, 100), true);
+        assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testMergeSortAfterMaxBytes() throws Exception {
+        // less memory than the rows take
+        memoryManager = new GlobalMemoryManager(10000);
+        assertSorted(newIterator(true, 4, Long.MAX_VALUE), true);
+        assertEquals(10000, memoryManager.getAvailableMemory());
+        memoryManager = new GlobalMemoryManager(MAX_MEMORY);
+        assertSorted(newIterator(true, 4, Long.MAX_VALUE, 10000), true);
+        assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testSortWhenExecutorRejects() throws Exception {
+        // a single thread and no queue, so that some of the tasks are rejected
+        executor.shutdownNow();
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>());
+        assertSorted(newIterator(true, 4, Long.MAX_VALUE), true);
+        // every task rejected
+        executor.shutdownNow();
+        assertSorted(newIterator(true, 4, Long.MAX_VALUE), true);
+        assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testMemoryReleasedOnClose() throws Exception {
+        ResultIterator iterator = newIterator(true, 4, Long.MAX_VALUE);
+        iterator.next();
+        long usedMemory = MAX_MEMORY - memoryManager.getAvailableMemory();
+        // 1000 rows of at least a key value each
+        assertTrue(usedMemory > 1000 * 50);
+        assertTrue(usedMemory < MAX_MEMORY);
+        iterator.close();
+        assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+    }
+
+    @Test
+    public void testNullAndEmptySortKeys() throws Exception {
+        assertNullsSorted(false);
+        assertNullsSorted(true);
+    }
+
+    private void assertNullsSorted(boolean isNullsLast) throws Exception {
+        List<List<Tuple>> inputs = new ArrayList<List<Tuple>>();
+        for (int i = 0; i < 5; i++) {
+            List<Tuple> values = new ArrayList<Tuple>();
+            for (int j = 0; j < 40; j++) {
+                values.add(newTuple(i * 1000 + j, PInteger.INSTANCE.toBytes(j * 5 + i)));
+            }
+            List<Tuple> nulls = new ArrayList<Tuple>();
+            for (int j = 40; j < 50; j++) {
+                if (j % 2 == 0) {
+                    // no value for the sort column
+                    nulls.add(new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(i * 1000 + j), SINGLE_COLUMN_FAMILY,
+                            Bytes.toBytes("OTHER"), PInteger.INSTANCE.toBytes(j))));
+                } else {
+                    // an empty value
+                    nulls.add(newTuple(i * 1000 + j, ByteUtil.EMPTY_BYTE_ARRAY));
+                }
+            }
+            List<Tuple> tuples = new ArrayList<Tuple>();
+            tuples.addAll(isNullsLast ? values : nulls);
+            tuples.addAll(isNullsLast ? nulls : values);
+            inputs.add(tuples);
+        }
+        OrderByExpression orderByExpression = new OrderByExpression(
+                new KeyValueColumnExpression(INTEGER_DATUM, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN), isNullsLast, true);
+        ResultIterator iterator = newIterator(inputs, orderByExpression, 4, Long.MAX_VALUE, MAX_MEMORY);
+        Expression expression = orderByExpression.getExpression();
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        int nullCount = 0;
+        int count = 0;
+        Tuple tuple;
+        while ((tuple = iterator.next()) != null) {
+            if (!expression.evaluate(tuple, ptr) || ptr.getLength() == 0) {
+                // nulls all come before or after the values
+                assertTrue(isNullsLast ? count == 200 : count == 0);
+                nullCount++;
+            } else {
+                assertEquals(count, PInteger.INSTANCE.getCodec().decodeInt(ptr, SortOrder.getDefault()));
+                count++;
+            }
+        }
+        assertEquals(200, count);
+        assertEquals(50, nullCount);
+        assertNull(iterator.next());
+        iterator.close();
+        assertEquals(MAX_MEMORY, memoryManager.getAvailableMemory());
+    }
+
+    private static Tuple newTuple(int row, byte[] value) {
+        return new SingleKeyValueTuple(new KeyValue(Bytes.toBytes(row), SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, value));
+    }
+
+    private RangePartitionedSortResultIterator newIterator(boolean isAscending, int numPartitions, long maxRows) {
+        return newIterator(isAscending, numPartitions, maxRows, MAX_MEMORY);
+    }
+
+    private RangePartitionedSortResultIterator newIterator(boolean isAscending, int numPartitions, long maxRows,
+            long maxBytes) {
+        List<List<Tuple>> inputs = new ArrayList<List<Tuple>>();
+        for (int i = 0; i < 5; i++) {
+            List<Tuple> tuples = new ArrayList<Tuple>();
+            for (int j = 0; j < 200; j++) {
+                int value = isAscending ? j * 5 + i : 1000 - j * 5 - i;
+                tuples.add(newTuple(i * 1000 + j, PInteger.INSTANCE.toBytes(value)));
+            }
+            inputs.add(tuples);
+        }
+        OrderByExpression orderByExpression = new OrderByExpression(
+                new KeyValueColumnExpression(INTEGER_DATUM, SINGLE_COLUMN_FAMILY, SINGLE_COLUMN), false, isAscending);
+        return newIterator(inputs, orderByExpression, numPartitions, maxRows, maxBytes);
+    }
+
+    private RangePartitionedSortResultIterator newIterator(List<List<Tuple>> inputs,
+            OrderByExpression orderByExpression, int numPartitions, long maxRows, long maxBytes) {
+        final List<PeekingResultIterator> results = new ArrayList<PeekingResultIterator>();
+        for (List<Tuple> tuples : inputs) {
+            results.add(new MaterializedResultIterator(tuples));
+        }
+        ResultIterators iterators = new ResultIterators() {
+
+            @Override
+            public List<PeekingResultIterator> getIterators() throws SQLException {
+                return results;
+            }
+
+            @Override
+            public int size() {
+                return results.size();
+            }
+
+            @Override
+            public void explain(List<String> planSteps) {
+            }
+
+            @Override
+            public List<KeyRange> getSplits() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public List<List<Scan>> getScans() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public void close() throws SQLException {
+            }
+        };
+        return new RangePartitionedSortResultIterator(iterators, Collections.singletonList(orderByExpression),
+                executor, numPartitions, maxRows, memoryManager, maxBytes);
+    }
+
+    private static void assertSorted(ResultIterator iterator, boolean isAscending) throws SQLException {
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        int count = 0;
+        Tuple tuple;
+        while ((tuple = iterator.next()) != null) {
+            tuple.getValue(SINGLE_COLUMN_FAMILY, SINGLE_COLUMN, ptr);
+            int value = PInteger.INSTANCE.getCodec().decodeInt(ptr, SortOrder.getDefault());
+            assertEquals(isAscending ? count : 1000 - count, value);
+            count++;
+        }
+        assertEquals(1000, count);
+        assertNull(iterator.next());
+        iterator.close();
+    }
+}
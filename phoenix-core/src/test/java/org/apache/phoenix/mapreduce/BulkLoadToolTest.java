@@ -21,12 +21,15 @@ import java.util.Arrays;
 import java.util.Collection;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.MRConfig;
 import org.apache.phoenix.util.SchemaUtil;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(Parameterized.class)
 public class BulkLoadToolTest {
@@ -67,6 +70,27 @@ public class BulkLoadToolTest {
         bulkLoadTool.parseOptions(new String[] { "--input", "/input" });
     }
 
+    @Test
+    public void testParseOptions_LocalThreads() {
+        CommandLine cmdLine = bulkLoadTool.parseOptions(new String[] { "--input", "/input",
+                "--table", "mytable", "--local-threads", "4" });
+        assertEquals("4", cmdLine.getOptionValue(AbstractBulkLoadTool.LOCAL_THREADS_OPT.getOpt()));
+    }
+
+    @Test
+    public void testConfigureLocalJob() {
+        Configuration conf = new Configuration(false);
+        AbstractBulkLoadTool.configureLocalJob(conf, 4);
+        assertEquals(MRConfig.LOCAL_FRAMEWORK_NAME, conf.get(MRConfig.FRAMEWORK_NAME));
+        assertEquals(4, conf.getInt(AbstractBulkLoadTool.LOCAL_MAX_MAPS_CONFKEY, 1));
+        assertTrue(conf.getBoolean(FormatToBytesWritableMapper.MAP_ONLY_CONFKEY, false));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testConfigureLocalJob_NoThreads() {
+        AbstractBulkLoadTool.configureLocalJob(new Configuration(false), 0);
+    }
+
     @Test
     public void testGetQualifiedTableName() {
         assertEquals("MYSCHEMA.MYTABLE", SchemaUtil.getQualifiedTableName("mySchema", "myTable"));
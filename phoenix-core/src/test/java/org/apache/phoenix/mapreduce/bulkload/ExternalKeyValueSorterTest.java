@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.mapreduce.bulkload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+public class ExternalKeyValueSorterTest {
+    private static final byte[] CF = Bytes.toBytes("0");
+    private static final byte[] CQ = Bytes.toBytes("V");
+
+    private File spillDir;
+
+    @Before
+    public void createSpillDir() {
+        spillDir = Files.createTempDir();
+    }
+
+    @After
+    public void deleteSpillDir() {
+        spillDir.delete();
+    }
+
+    private static KeyValue newKeyValue(int row) {
+        return new KeyValue(Bytes.toBytes(String.format("row%06d", row)), CF, CQ, 1, Bytes.toBytes(row));
+    }
+
+    private List<ExternalKeyValueSorter.Entry> sort(long maxBufferSize, int expectedSpills) throws Exception {
+        Random random = new Random(11);
+        ExternalKeyValueSorter sorter = new ExternalKeyValueSorter(spillDir, maxBufferSize);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                sorter.add(random.nextInt(3), newKeyValue(random.nextInt(500)));
+            }
+            assertTrue(sorter.getSpillCount() >= expectedSpills);
+            return Lists.newArrayList(sorter);
+        } finally {
+            sorter.close();
+            assertEquals(0, spillDir.list().length);
+        }
+    }
+
+    private static void assertSorted(List<ExternalKeyValueSorter.Entry> entries) {
+        assertEquals(1000, entries.size());
+        for (int i = 1; i < entries.size(); i++) {
+            ExternalKeyValueSorter.Entry previous = entries.get(i - 1);
+            ExternalKeyValueSorter.Entry entry = entries.get(i);
+            assertTrue(previous.getTableIndex() <= entry.getTableIndex());
+            if (previous.getTableIndex() == entry.getTableIndex()) {
+                assertTrue(KeyValue.COMPARATOR.compare(previous.getKeyValue(), entry.getKeyValue()) <= 0);
+            }
+        }
+    }
+
+    @Test
+    public void testSortInMemory() throws Exception {
+        assertSorted(sort(Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    public void testSortWithSpills() throws Exception {
+        List<ExternalKeyValueSorter.Entry> spilled = sort(8 * 1024, 5);
+        assertSorted(spilled);
+        List<ExternalKeyValueSorter.Entry> inMemory = sort(Long.MAX_VALUE, 0);
+        for (int i = 0; i < inMemory.size(); i++) {
+            assertEquals(inMemory.get(i).getTableIndex(), spilled.get(i).getTableIndex());
+            assertEquals(inMemory.get(i).getKeyValue(), spilled.get(i).getKeyValue());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.schema.PTable.ImmutableStorageScheme;
+import org.apache.phoenix.schema.types.PDate;
+import org.apache.phoenix.schema.types.PDouble;
+import org.apache.phoenix.schema.types.PInteger;
+import org.apache.phoenix.schema.types.PLong;
+import org.apache.phoenix.schema.types.PSmallint;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class CompressedColumnValueEncoderTest {
+
+    private static byte[] encode(List<byte[]> values) {
+        ColumnValueEncoder encoder = ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES.getEncoder(values.size());
+        for (byte[] value : values) {
+            if (value == null) {
+                encoder.appendAbsentValue();
+            } else {
+                encoder.appendValue(value, 0, value.length);
+            }
+        }
+        return encoder.encode();
+    }
+
+    private static void assertDecoded(byte[] cell, List<byte[]> values) {
+        ColumnValueDecoder decoder = ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES.getDecoder();
+        for (int i = 0; i < values.size(); i++) {
+            // decode a copy at an offset, as cells are usually part of a larger array
+            byte[] buffer = new byte[cell.length + 3];
+            System.arraycopy(cell, 0, buffer, 3, cell.length);
+            ImmutableBytesWritable ptr = new ImmutableBytesWritable(buffer, 3, cell.length);
+            if (values.get(i) == null) {
+                assertFalse(decoder.decode(ptr, i));
+                assertEquals(0, ptr.getLength());
+            } else {
+                assertTrue(decoder.decode(ptr, i));
+                assertArrayEquals(values.get(i), ptr.copyBytes());
+            }
+        }
+    }
+
+    @Test
+    public void testNumericValues() {
+        List<byte[]> values = Lists.newArrayList(
+                PInteger.INSTANCE.toBytes(0),
+                PInteger.INSTANCE.toBytes(-1),
+                PInteger.INSTANCE.toBytes(Integer.MAX_VALUE),
+                PInteger.INSTANCE.toBytes(Integer.MIN_VALUE),
+                PSmallint.INSTANCE.toBytes((short)-300),
+                PLong.INSTANCE.toBytes(123456789L),
+                PLong.INSTANCE.toBytes(Long.MIN_VALUE),
+                PLong.INSTANCE.toBytes(Long.MAX_VALUE),
+                PDouble.INSTANCE.toBytes(3.14));
+        byte[] cell = encode(values);
+        assertDecoded(cell, values);
+        // the small numbers take a byte or two instead of four
+        List<byte[]> smallValues = Lists.newArrayList(
+                PInteger.INSTANCE.toBytes(1), PInteger.INSTANCE.toBytes(-2), PInteger.INSTANCE.toBytes(100));
+        byte[] smallCell = encode(smallValues);
+        assertDecoded(smallCell, smallValues);
+        assertTrue(smallCell.length <= 1 + 2 + 4 + 1);
+    }
+
+    @Test
+    public void testDeltaEncodedDates() {
+        long now = 1500000000000L;
+        List<byte[]> values = Lists.newArrayList(
+                PDate.INSTANCE.toBytes(new java.sql.Date(now)),
+                PVarchar.INSTANCE.toBytes("event"),
+                PDate.INSTANCE.toBytes(new java.sql.Date(now + 1000)),
+                PDate.INSTANCE.toBytes(new java.sql.Date(now - 5)));
+        byte[] cell = encode(values);
+        assertDecoded(cell, values);
+        // the first date is packed, the next ones only store their difference with the previous one
+        assertTrue(cell.length < 1 + 2 + 7 + 6 + 3 + 2 + 1);
+    }
+
+    @Test
+    public void testNullAndAbsentValues() {
+        List<byte[]> values = Lists.newArrayList(
+                new byte[0],
+                null,
+                Bytes.toBytes("a longer string value"),
+                new byte[0],
+                null,
+                PVarchar.INSTANCE.toBytes("x"),
+                null,
+                null);
+        byte[] cell = encode(values);
+        assertDecoded(cell, values);
+        // trailing absent values are not stored, and any index past the last value is absent
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable(cell);
+        assertFalse(ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES.getDecoder().decode(ptr, 100));
+        assertEquals(ImmutableStorageScheme.SINGLE_CELL_ARRAY_WITH_COMPRESSED_VALUES.getSerializedMetadataValue(),
+                cell[cell.length - 1]);
+    }
+
+    @Test
+    public void testPackingIsLosslessForAnyBytes() {
+        for (int width = 1; width <= 8; width++) {
+            byte[] bytes = new byte[width];
+            for (int b = 0; b < 256; b++) {
+                for (int i = 0; i < width; i++) {
+                    bytes[i] = (byte)(b + i * 37);
+                }
+                long value = CompressedColumnValueEncoder.toLong(bytes, 0, width);
+                assertEquals(value, CompressedColumnValueEncoder.unzigzag(CompressedColumnValueEncoder.zigzag(value)));
+                assertArrayEquals(bytes, CompressedColumnValueEncoder.toBytes(value, width));
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.schema.tuple;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.phoenix.util.KeyValueUtil;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ColumnOrdinalTupleTest {
+    private static final byte[][] FAMILIES = { Bytes.toBytes("0"), Bytes.toBytes("A"), Bytes.toBytes("B") };
+    private static final byte[][] QUALIFIERS = { Bytes.toBytes("V1"), Bytes.toBytes("V2"), Bytes.toBytes("V3"),
+            Bytes.toBytes("_0") };
+
+    private static List<Cell> newRow(String row, Random random) {
+        List<Cell> cells = Lists.newArrayList();
+        for (byte[] family : FAMILIES) {
+            for (byte[] qualifier : QUALIFIERS) {
+                if (random.nextInt(3) > 0) {
+                    cells.add(KeyValueUtil.newKeyValue(Bytes.toBytes(row), family, qualifier, 1,
+                            Bytes.toBytes(row + Bytes.toString(family) + Bytes.toString(qualifier))));
+                }
+            }
+        }
+        Collections.sort(cells, KeyValue.COMPARATOR);
+        return cells;
+    }
+
+    @Test
+    public void testSameCellsAsMultiKeyValueTuple() {
+        Random random = new Random(7);
+        ColumnOrdinalMap columns = new ColumnOrdinalMap();
+        ColumnOrdinalTuple tuple = new ColumnOrdinalTuple(columns);
+        for (int i = 0; i < 200; i++) {
+            List<Cell> cells = newRow("row" + i, random);
+            if (cells.isEmpty()) {
+                continue;
+            }
+            tuple.setKeyValues(cells);
+            MultiKeyValueTuple expected = new MultiKeyValueTuple(cells);
+            // Each expression has its own copy of the family and qualifier
+            for (int j = 0; j < 3; j++) {
+                for (byte[] family : FAMILIES) {
+                    for (byte[] qualifier : QUALIFIERS) {
+                        byte[] familyCopy = j == 0 ? family : family.clone();
+                        byte[] qualifierCopy = j == 0 ? qualifier : qualifier.clone();
+                        assertEquals(expected.getValue(family, qualifier), tuple.getValue(familyCopy, qualifierCopy));
+                    }
+                }
+            }
+        }
+        assertEquals(FAMILIES.length * QUALIFIERS.length, columns.size());
+    }
+
+    @Test
+    public void testMissingColumns() {
+        ColumnOrdinalTuple tuple = new ColumnOrdinalTuple(new ColumnOrdinalMap());
+        byte[] row = Bytes.toBytes("r");
+        Cell cell = KeyValueUtil.newKeyValue(row, FAMILIES[1], QUALIFIERS[1], 1, Bytes.toBytes("v"));
+        tuple.setKeyValues(Collections.singletonList(cell));
+        ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+        assertTrue(tuple.getValue(FAMILIES[1], QUALIFIERS[1], ptr));
+        assertEquals("v", Bytes.toString(ptr.copyBytes()));
+        assertFalse(tuple.getValue(FAMILIES[0], QUALIFIERS[1], ptr));
+        assertNull(tuple.getValue(FAMILIES[1], QUALIFIERS[2]));
+        tuple.getKey(ptr);
+        assertEquals("r", Bytes.toString(ptr.copyBytes()));
+        // The column is found again once the tuple moves to the next row
+        Cell other = KeyValueUtil.newKeyValue(row, FAMILIES[1], QUALIFIERS[2], 1, Bytes.toBytes("w"));
+        tuple.setKeyValues(Lists.newArrayList(cell, other));
+        assertEquals(other, tuple.getValue(FAMILIES[1], QUALIFIERS[2]));
+    }
+}
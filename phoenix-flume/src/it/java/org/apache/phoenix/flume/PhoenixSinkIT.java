@@ -18,6 +18,7 @@
 package org.apache.phoenix.flume;
 
 import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -30,6 +31,7 @@ import java.util.Properties;
 
 import org.apache.flume.Channel;
 import org.apache.flume.Context;
+import org.apache.flume.EventDeliveryException;
 import org.apache.flume.Sink;
 import org.apache.flume.SinkFactory;
 import org.apache.flume.Transaction;
@@ -43,6 +45,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.end2end.BaseHBaseManagedTimeIT;
 import org.apache.phoenix.flume.serializer.CustomSerializer;
 import org.apache.phoenix.flume.serializer.EventSerializers;
+import org.apache.phoenix.flume.serializer.FailingSerializer;
 import org.apache.phoenix.flume.sink.NullPhoenixSink;
 import org.apache.phoenix.flume.sink.PhoenixSink;
 import org.apache.phoenix.util.PropertiesUtil;
@@ -255,6 +258,160 @@ public class PhoenixSinkIT extends BaseHBaseManagedTimeIT {
         assertTrue(rs.getLong(1) == 1L);
     }
     
+    @Test
+    public void testInflightBatches() throws Exception {
+        String tableName = generateUniqueName();
+        String ddl = "CREATE TABLE " + tableName +
+                "  (uid varchar not null, col1 varchar , col2 varchar" +
+                "  CONSTRAINT pk PRIMARY KEY (uid))\n";
+
+        sinkContext = new Context ();
+        sinkContext.put(FlumeConstants.CONFIG_TABLE,  tableName);
+        sinkContext.put(FlumeConstants.CONFIG_JDBC_URL, getUrl());
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER,EventSerializers.REGEX.name());
+        sinkContext.put(FlumeConstants.CONFIG_TABLE_DDL, ddl);
+        sinkContext.put(FlumeConstants.CONFIG_BATCHSIZE, "10");
+        sinkContext.put(FlumeConstants.CONFIG_INFLIGHT_BATCHES, "3");
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_REGULAR_EXPRESSION,"^([^\t]+)\t([^\t]+)$");
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_COLUMN_NAMES,"col1,col2");
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_ROWKEY_TYPE_GENERATOR,DefaultKeyGenerator.UUID.name());
+
+        sink = new PhoenixSink();
+        Configurables.configure(sink, sinkContext);
+
+        final Channel channel = this.initChannel();
+        sink.setChannel(channel);
+        sink.start();
+
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < 100; i++) {
+            channel.put(EventBuilder.withBody(Bytes.toBytes("value" + i + "\tvalue" + i)));
+        }
+        transaction.commit();
+        transaction.close();
+
+        // once 3 batches are in flight, every other call waits for the oldest one
+        for (int i = 0; i < 20; i++) {
+            sink.process();
+        }
+        sink.stop();
+
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + tableName);
+            assertTrue(rs.next());
+            Assert.assertEquals(100, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testInflightBatchFailure() throws Exception {
+        String tableName = generateUniqueName();
+        String ddl = "CREATE TABLE " + tableName + " (ID BIGINT NOT NULL PRIMARY KEY, COUNTS UNSIGNED_LONG)";
+
+        sinkContext = new Context ();
+        sinkContext.put(FlumeConstants.CONFIG_TABLE, tableName);
+        sinkContext.put(FlumeConstants.CONFIG_JDBC_URL, getUrl());
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER, FailingSerializer.class.getName());
+        sinkContext.put(FlumeConstants.CONFIG_TABLE_DDL, ddl);
+        sinkContext.put(FlumeConstants.CONFIG_BATCHSIZE, "10");
+        sinkContext.put(FlumeConstants.CONFIG_INFLIGHT_BATCHES, "2");
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_COLUMN_NAMES, "ID, COUNTS");
+
+        sink = new PhoenixSink();
+        Configurables.configure(sink, sinkContext);
+
+        final Channel channel = this.initChannel();
+        sink.setChannel(channel);
+        sink.start();
+
+        Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < 10; i++) {
+            channel.put(EventBuilder.withBody(Bytes.toBytes("event" + i)));
+        }
+        transaction.commit();
+        transaction.close();
+
+        // the failure of a batch is raised once the sink waits for it
+        EventDeliveryException failure = null;
+        for (int i = 0; i < 10 && failure == null; i++) {
+            try {
+                sink.process();
+            } catch (EventDeliveryException e) {
+                failure = e;
+            }
+        }
+        assertNotNull(failure);
+        sink.stop();
+
+        // the transaction of the failed batch was rolled back
+        transaction = channel.getTransaction();
+        transaction.begin();
+        int count = 0;
+        while (channel.take() != null) {
+            count++;
+        }
+        transaction.commit();
+        transaction.close();
+        Assert.assertEquals(10, count);
+    }
+
+    @Test
+    public void testStopInterruptedWithInflightBatches() throws Exception {
+        String tableName = generateUniqueName();
+        String ddl = "CREATE TABLE " + tableName +
+                "  (uid varchar not null, col1 varchar , col2 varchar" +
+                "  CONSTRAINT pk PRIMARY KEY (uid))\n";
+
+        sinkContext = new Context ();
+        sinkContext.put(FlumeConstants.CONFIG_TABLE,  tableName);
+        sinkContext.put(FlumeConstants.CONFIG_JDBC_URL, getUrl());
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER,EventSerializers.REGEX.name());
+        sinkContext.put(FlumeConstants.CONFIG_TABLE_DDL, ddl);
+        sinkContext.put(FlumeConstants.CONFIG_BATCHSIZE, "100");
+        sinkContext.put(FlumeConstants.CONFIG_INFLIGHT_BATCHES, "3");
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_REGULAR_EXPRESSION,"^([^\t]+)\t([^\t]+)$");
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_COLUMN_NAMES,"col1,col2");
+        sinkContext.put(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_ROWKEY_TYPE_GENERATOR,DefaultKeyGenerator.UUID.name());
+
+        sink = new PhoenixSink();
+        Configurables.configure(sink, sinkContext);
+
+        final Channel channel = this.initChannel();
+        sink.setChannel(channel);
+        sink.start();
+
+        final Transaction transaction = channel.getTransaction();
+        transaction.begin();
+        for (int i = 0; i < 200; i++) {
+            channel.put(EventBuilder.withBody(Bytes.toBytes("value" + i + "\tvalue" + i)));
+        }
+        transaction.commit();
+        transaction.close();
+
+        for (int i = 0; i < 3; i++) {
+            sink.process();
+        }
+        // the SinkRunner interrupts its thread before stopping the sink
+        Thread.currentThread().interrupt();
+        try {
+            sink.stop();
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        // the batches in flight were committed before their serializers were closed
+        Properties props = PropertiesUtil.deepCopy(TEST_PROPERTIES);
+        try (Connection conn = DriverManager.getConnection(getUrl(), props)) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM " + tableName);
+            assertTrue(rs.next());
+            Assert.assertEquals(200, rs.getInt(1));
+        }
+    }
+
     private Channel initChannel() {
         //Channel configuration
         Context channelContext = new Context();
@@ -55,6 +55,17 @@ public final class FlumeConstants {
      */
     public static final Integer DEFAULT_BATCH_SIZE = 100;
 
+    /**
+     * Maximum number of batches the sink processes at a time, each in its own transaction on its
+     * own thread and connection.
+     */
+    public static final String CONFIG_INFLIGHT_BATCHES = "inflightBatches";
+
+    /**
+     * Default number of in-flight batches.
+     */
+    public static final Integer DEFAULT_INFLIGHT_BATCHES = 1;
+
     /** Regular expression used to parse groups from event data. */
     public static final String CONFIG_REGULAR_EXPRESSION = "regex";
     public static final String REGEX_DEFAULT = "(.*)";
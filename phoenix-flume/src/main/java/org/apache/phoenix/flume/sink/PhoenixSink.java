@@ -18,7 +18,15 @@
 package org.apache.phoenix.flume.sink;
 
 import java.sql.SQLException;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -41,7 +49,15 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+/**
+ * Sink upserting the events of the channel into a Phoenix table. With inflightBatches greater than
+ * one, that many batches are processed at a time, each on its own thread with its own serializer
+ * and connection, so events are parsed and upserted while other batches are committed. The
+ * transaction of a batch is committed only after its upserts are committed to Phoenix.
+ */
 public class PhoenixSink extends AbstractSink implements Configurable {
     private static final Logger logger = LoggerFactory.getLogger(PhoenixSink.class);
     private static AtomicInteger counter = new AtomicInteger();
@@ -49,7 +65,13 @@ public class PhoenixSink extends AbstractSink implements Configurable {
   
     private SinkCounter sinkCounter;
     private Integer    batchSize;
+    private Integer    inflightBatches;
     private EventSerializer serializer;
+    // serializers not used by an in-flight batch
+    private BlockingQueue<EventSerializer> serializers;
+    private List<EventSerializer> allSerializers;
+    private ExecutorService executor;
+    private Deque<Future<Status>> inflight;
  
     public PhoenixSink(){
     }
@@ -58,10 +80,16 @@ public class PhoenixSink extends AbstractSink implements Configurable {
     public void configure(Context context){
         this.setName(NAME + counter.incrementAndGet());
         this.batchSize = context.getInteger(FlumeConstants.CONFIG_BATCHSIZE, FlumeConstants.DEFAULT_BATCH_SIZE);
+        this.inflightBatches = context.getInteger(FlumeConstants.CONFIG_INFLIGHT_BATCHES, FlumeConstants.DEFAULT_INFLIGHT_BATCHES);
         final String eventSerializerType = context.getString(FlumeConstants.CONFIG_SERIALIZER);
         
         Preconditions.checkNotNull(eventSerializerType,"Event serializer cannot be empty, please specify in the configuration file");
-        initializeSerializer(context,eventSerializerType);
+        Preconditions.checkArgument(inflightBatches > 0, "The number of in-flight batches must be positive");
+        this.allSerializers = Lists.newArrayListWithCapacity(inflightBatches);
+        for (int i = 0; i < inflightBatches; i++) {
+            initializeSerializer(context,eventSerializerType);
+            allSerializers.add(serializer);
+        }
         this.sinkCounter = new SinkCounter(this.getName());
     }
 
@@ -116,30 +144,115 @@ public class PhoenixSink extends AbstractSink implements Configurable {
         logger.info("Starting sink {} ",this.getName());
         sinkCounter.start();
         try {
-              serializer.initialize();
-              sinkCounter.incrementConnectionCreatedCount();
+              for (EventSerializer eventSerializer : allSerializers) {
+                  eventSerializer.initialize();
+                  sinkCounter.incrementConnectionCreatedCount();
+              }
         } catch(Exception ex) {
             sinkCounter.incrementConnectionFailedCount();
             logger.error("Error {} in initializing the serializer.",ex.getMessage());
             Throwables.propagate(ex);
        }
+       if (inflightBatches > 1) {
+           serializers = new LinkedBlockingQueue<EventSerializer>(allSerializers);
+           inflight = Queues.newArrayDeque();
+           executor = Executors.newFixedThreadPool(inflightBatches, new ThreadFactoryBuilder()
+                   .setNameFormat(this.getName() + "-batch-%d").setDaemon(true).build());
+       }
        super.start();
     }
     
     @Override
     public void stop(){
       super.stop();
-      try {
-          serializer.close();
-        } catch (SQLException e) {
-            logger.error(" Error while closing connection {} for sink {} ",e.getMessage(),this.getName());
-        }
-      sinkCounter.incrementConnectionClosedCount();
+      if (executor != null) {
+          // let the in-flight batches commit or roll back their transactions before closing their
+          // serializers, even though the SinkRunner interrupts this thread before stopping the sink
+          executor.shutdown();
+          boolean interrupted = false;
+          try {
+              while (true) {
+                  try {
+                      if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                          break;
+                      }
+                      logger.info("Waiting for {} in-flight batches of sink {}", inflight.size(), this.getName());
+                  } catch (InterruptedException e) {
+                      interrupted = true;
+                  }
+              }
+              while (!inflight.isEmpty()) {
+                  try {
+                      awaitOldestBatch();
+                  } catch (EventDeliveryException e) {
+                      logger.error(" Error while stopping sink {} ",this.getName(), e);
+                  }
+              }
+          } finally {
+              if (interrupted) {
+                  Thread.currentThread().interrupt();
+              }
+          }
+      }
+      for (EventSerializer eventSerializer : allSerializers) {
+          try {
+              eventSerializer.close();
+          } catch (SQLException e) {
+              logger.error(" Error while closing connection {} for sink {} ",e.getMessage(),this.getName());
+          }
+          sinkCounter.incrementConnectionClosedCount();
+      }
       sinkCounter.stop();
     }
 
     @Override
     public Status process() throws EventDeliveryException {
+        if (executor == null) {
+            return processBatch(serializer);
+        }
+
+        // start another batch while there is room, otherwise wait for the oldest one
+        if (inflight.size() < inflightBatches) {
+            inflight.add(executor.submit(new Callable<Status>() {
+                @Override
+                public Status call() throws Exception {
+                    EventSerializer eventSerializer = serializers.take();
+                    try {
+                        return processBatch(eventSerializer);
+                    } finally {
+                        serializers.add(eventSerializer);
+                    }
+                }
+            }));
+            return Status.READY;
+        }
+        return awaitOldestBatch();
+    }
+
+    /**
+     * Waits for the oldest in-flight batch. The batch stays in flight if the wait is interrupted.
+     */
+    private Status awaitOldestBatch() throws EventDeliveryException {
+        Future<Status> batch = inflight.peek();
+        try {
+            Status status = batch.get();
+            inflight.remove();
+            return status;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventDeliveryException("Interrupted while waiting for a batch", e);
+        } catch (ExecutionException e) {
+            inflight.remove();
+            Throwables.propagateIfInstanceOf(e.getCause(), EventDeliveryException.class);
+            throw new EventDeliveryException("Failed to persist message", e.getCause());
+        }
+    }
+
+    /**
+     * Takes a batch of events from the channel and upserts them with the given serializer, in a
+     * transaction of the channel bound to the calling thread.
+     */
+    private Status processBatch(EventSerializer eventSerializer) throws EventDeliveryException {
         
         Status status = Status.READY;
         Channel channel = getChannel();
@@ -173,7 +286,7 @@ public class PhoenixSink extends AbstractSink implements Configurable {
                     status = Status.BACKOFF;
                 }
                 // save to Hbase
-                serializer.upsertEvents(events);
+                eventSerializer.upsertEvents(events);
                 sinkCounter.addToEventDrainSuccessCount(events.size());
             }
             else {
@@ -25,6 +25,9 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
 import org.apache.hadoop.hbase.MiniHBaseCluster;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hive.ql.Driver;
+import org.apache.hadoop.hive.ql.processors.CommandProcessorResponse;
+import org.apache.hadoop.hive.ql.session.SessionState;
 import org.apache.phoenix.end2end.NeedsOwnMiniClusterTest;
 import org.apache.phoenix.jdbc.PhoenixDriver;
 import org.apache.phoenix.query.QueryServices;
@@ -37,9 +40,12 @@ import org.junit.experimental.categories.Category;
 import java.io.File;
 import java.io.IOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import static org.apache.phoenix.query.BaseTest.setUpConfigForMiniCluster;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -103,6 +109,29 @@ public class BaseHivePhoenixStoreIT {
         stmt.execute("create table t(a integer primary key,b varchar)");
     }
 
+    /**
+     * Asserts that Hive runs the query with vectorized execution, in the session of the last test
+     * run.
+     */
+    protected void assertVectorized(String query) throws Exception {
+        Driver driver = new Driver(SessionState.get().getConf());
+        try {
+            CommandProcessorResponse response = driver.run("EXPLAIN " + query);
+            assertEquals(response.getErrorMessage(), 0, response.getResponseCode());
+            List<String> plan = new ArrayList<String>();
+            driver.getResults(plan);
+            for (String line : plan) {
+                if (line.contains("Execution mode: vectorized")) {
+                    return;
+                }
+            }
+            fail("Query is not vectorized: " + plan);
+        } finally {
+            driver.close();
+            driver.destroy();
+        }
+    }
+
     protected void runTest(String fname, String fpath) throws Exception {
         long startTime = System.currentTimeMillis();
         try {
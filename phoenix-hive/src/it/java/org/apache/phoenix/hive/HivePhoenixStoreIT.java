@@ -248,6 +248,50 @@ public class HivePhoenixStoreIT  extends BaseHivePhoenixStoreIT {
         runTest(testName, fullPath);
     }
 
+    /**
+     * Test that Hive reads Phoenix tables with vectorized execution, and that the columns it reads
+     * match the Phoenix table
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testVectorizedRead() throws Exception {
+        String testName = "testVectorizedRead";
+        hbaseTestUtil.getTestFileSystem().createNewFile(new Path(hiveLogDir, testName + ".out"));
+        createFile(StringUtil.EMPTY_STRING, new Path(hiveLogDir, testName + ".out").toString());
+        createFile("5\tpart2\t200.0\t2.0\tfoo\n10\tpart2\t300.0\t3.0\tbar\n",
+                new Path(hiveOutputDir, testName + ".out").toString());
+        StringBuilder sb = new StringBuilder();
+        sb.append("SET hive.vectorized.execution.enabled=true;" + HiveTestUtil.CRLF);
+        sb.append("CREATE TABLE vectorizedTable(ID int, ID2 String, db DOUBLE, fl FLOAT, " +
+                "description STRING)" + HiveTestUtil.CRLF +
+                " STORED BY  \"org.apache.phoenix.hive.PhoenixStorageHandler\"" + HiveTestUtil
+                .CRLF +
+                " TBLPROPERTIES(" + HiveTestUtil.CRLF +
+                "   'phoenix.hbase.table.name'='vectorizedTable'," + HiveTestUtil.CRLF +
+                "   'phoenix.zookeeper.znode.parent'='/hbase'," + HiveTestUtil.CRLF +
+                "   'phoenix.zookeeper.quorum'='localhost'," + HiveTestUtil.CRLF +
+                "   'phoenix.zookeeper.client.port'='" +
+                hbaseTestUtil.getZkCluster().getClientPort() + "'," + HiveTestUtil.CRLF +
+                "   'phoenix.rowkeys'='id,id2');" + HiveTestUtil.CRLF);
+
+        sb.append("INSERT INTO TABLE vectorizedTable VALUES (5, \"part2\",200,2.0,\"foo\");" +
+                HiveTestUtil.CRLF);
+        sb.append("INSERT INTO TABLE vectorizedTable VALUES (10, \"part2\",300,3.0,\"bar\");" +
+                HiveTestUtil.CRLF);
+        sb.append("INSERT INTO TABLE vectorizedTable VALUES (15, \"part3\",400,4.0,\"baz\");" +
+                HiveTestUtil.CRLF);
+
+        sb.append("SELECT ID, ID2, DB, FL, DESCRIPTION FROM vectorizedTable WHERE FL < 3.5 " +
+                "ORDER BY ID;" + HiveTestUtil.CRLF);
+
+        String fullPath = new Path(hbaseTestUtil.getDataTestDir(), testName).toString();
+        createFile(sb.toString(), fullPath);
+        runTest(testName, fullPath);
+
+        assertVectorized("SELECT ID, ID2, DB, FL, DESCRIPTION FROM vectorizedTable WHERE FL < 3.5");
+    }
+
     /**
      * Test that hive is able to access Phoenix data during MR job (creating two tables and perform join on it)
      *
@@ -41,6 +41,7 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.hbase.util.RegionSizeCalculator;
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedInputFormatInterface;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hadoop.hive.ql.plan.TableScanDesc;
 import org.apache.hadoop.hive.serde.serdeConstants;
@@ -70,11 +71,12 @@ import org.apache.phoenix.query.KeyRange;
 import org.apache.phoenix.util.PhoenixRuntime;
 
 /**
- * Custom InputFormat to feed into Hive
+ * Custom InputFormat to feed into Hive. Under vectorized execution the records are batches of
+ * rows read by {@link PhoenixVectorizedRecordReader}.
  */
 @SuppressWarnings({"deprecation", "rawtypes"})
 public class PhoenixInputFormat<T extends DBWritable> implements InputFormat<WritableComparable,
-        T> {
+        T>, VectorizedInputFormatInterface {
 
     private static final Log LOG = LogFactory.getLog(PhoenixInputFormat.class);
 
@@ -223,6 +225,13 @@ public class PhoenixInputFormat<T extends DBWritable> implements InputFormat<Wri
                                                                Reporter reporter) throws
             IOException {
         final QueryPlan queryPlan = getQueryPlan(job, ((PhoenixInputSplit) split).getQuery());
+        if (Utilities.isVectorMode(job)) {
+            @SuppressWarnings("unchecked")
+            RecordReader<WritableComparable, T> vectorizedRecordReader = (RecordReader)
+                    new PhoenixVectorizedRecordReader(job, queryPlan, split);
+            return vectorizedRecordReader;
+        }
+
         @SuppressWarnings("unchecked")
         final Class<T> inputClass = (Class<T>) job.getClass(PhoenixConfigurationUtil.INPUT_CLASS,
                 PhoenixResultWritable.class);
@@ -33,6 +33,7 @@ import org.apache.hadoop.mapred.RecordReader;
 import org.apache.hadoop.mapreduce.lib.db.DBWritable;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.RowProjector;
 import org.apache.phoenix.compile.StatementContext;
 import org.apache.phoenix.coprocessor.BaseScannerRegionObserver;
 import org.apache.phoenix.hive.PhoenixRowKey;
@@ -68,6 +69,7 @@ public class PhoenixRecordReader<T extends DBWritable> implements
     private Class<T> inputClass;
     private ResultIterator resultIterator = null;
     private PhoenixResultSet resultSet;
+    private RowProjector rowProjector;
     private long readCount;
 
 
@@ -135,8 +137,8 @@ public class PhoenixRecordReader<T extends DBWritable> implements
             this.resultIterator = iterator;
             // Clone the row projector as it's not thread safe and would be used
             // simultaneously by multiple threads otherwise.
-            this.resultSet = new PhoenixResultSet(this.resultIterator, queryPlan.getProjector()
-                    .cloneIfNecessary(),
+            this.rowProjector = queryPlan.getProjector().cloneIfNecessary();
+            this.resultSet = new PhoenixResultSet(this.resultIterator, rowProjector,
                     queryPlan.getContext());
         } catch (SQLException e) {
             LOG.error(String.format(" Error [%s] initializing PhoenixRecordReader. ", e
@@ -145,6 +147,14 @@ public class PhoenixRecordReader<T extends DBWritable> implements
         }
     }
 
+    PhoenixResultSet getResultSet() {
+        return resultSet;
+    }
+
+    RowProjector getRowProjector() {
+        return rowProjector;
+    }
+
     @Override
     public boolean next(WritableComparable key, T value) throws IOException {
         try {
@@ -0,0 +1,327 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.hive.mapreduce;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampUtils;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.phoenix.compile.QueryPlan;
+import org.apache.phoenix.compile.RowProjector;
+import org.apache.phoenix.expression.Expression;
+import org.apache.phoenix.hive.constants.PhoenixStorageHandlerConstants;
+import org.apache.phoenix.hive.util.ColumnMappingUtils;
+import org.apache.phoenix.jdbc.PhoenixResultSet;
+import org.apache.phoenix.schema.SortOrder;
+import org.apache.phoenix.schema.tuple.Tuple;
+import org.apache.phoenix.schema.types.PDataType;
+import org.apache.phoenix.schema.types.PDataType.PDataCodec;
+import org.apache.phoenix.schema.types.PDecimal;
+import org.apache.phoenix.schema.types.PRealNumber;
+import org.apache.phoenix.schema.types.PTimestamp;
+import org.apache.phoenix.schema.types.PVarchar;
+import org.apache.phoenix.schema.types.PWholeNumber;
+import org.apache.phoenix.util.DateUtil;
+
+/**
+ * RecordReader used by Hive's vectorized execution. The columns of a batch of rows are filled
+ * directly from the serialized Phoenix values, decoded with the codecs of their PDataType, instead
+ * of going through PhoenixResultWritable and the Phoenix object inspectors for every value.
+ * Only the primitive types that have a Phoenix object inspector are supported.
+ */
+public class PhoenixVectorizedRecordReader implements RecordReader<NullWritable,
+        VectorizedRowBatch> {
+
+    private static final Log LOG = LogFactory.getLog(PhoenixVectorizedRecordReader.class);
+
+    private final PhoenixRecordReader<PhoenixResultWritable> recordReader;
+    private final VectorizedRowBatchCtx rbCtx;
+    private final ImmutableBytesWritable ptr = new ImmutableBytesWritable();
+
+    // For every column of the Phoenix query: the column of the batch it is read into, or -1
+    private int[] batchColumns;
+    private PrimitiveCategory[] categories;
+    private Expression[] expressions;
+    private PDataCodec[] codecs;
+    private long readCount;
+
+    public PhoenixVectorizedRecordReader(Configuration configuration, QueryPlan queryPlan,
+                                         InputSplit split) throws IOException {
+        recordReader = new PhoenixRecordReader<PhoenixResultWritable>(PhoenixResultWritable.class,
+                configuration, queryPlan);
+        recordReader.initialize(split);
+
+        rbCtx = new VectorizedRowBatchCtx();
+        try {
+            rbCtx.init(configuration, (FileSplit) split);
+            initColumns(configuration);
+        } catch (Exception e) {
+            recordReader.close();
+            throw new IOException(e);
+        }
+    }
+
+    private void initColumns(Configuration configuration) throws SQLException, IOException {
+        List<String> hiveColumnNames = Arrays.asList(configuration.get(serdeConstants.LIST_COLUMNS)
+                .split(PhoenixStorageHandlerConstants.COMMA));
+        List<TypeInfo> hiveColumnTypes = TypeInfoUtils.getTypeInfosFromTypeString(configuration
+                .get(serdeConstants.LIST_COLUMN_TYPES));
+        Map<String, String> columnMap = ColumnMappingUtils.getReverseColumnMapping(configuration
+                .get(PhoenixStorageHandlerConstants.PHOENIX_COLUMN_MAPPING, ""));
+
+        RowProjector rowProjector = recordReader.getRowProjector();
+        ResultSetMetaData rsmd = recordReader.getResultSet().getMetaData();
+        int columnCount = rsmd.getColumnCount();
+        batchColumns = new int[columnCount];
+        categories = new PrimitiveCategory[columnCount];
+        expressions = new Expression[columnCount];
+        codecs = new PDataCodec[columnCount];
+
+        for (int i = 0; i < columnCount; i++) {
+            String columnName = rsmd.getColumnName(i + 1);
+            String mapName = columnMap.get(columnName);
+            if (mapName != null) {
+                columnName = mapName;
+            }
+
+            batchColumns[i] = -1;
+            for (int j = 0, limit = hiveColumnNames.size(); j < limit; j++) {
+                if (hiveColumnNames.get(j).equalsIgnoreCase(columnName)) {
+                    batchColumns[i] = j;
+                    break;
+                }
+            }
+            if (batchColumns[i] == -1) {
+                continue;
+            }
+
+            TypeInfo typeInfo = hiveColumnTypes.get(batchColumns[i]);
+            if (typeInfo.getCategory() != ObjectInspector.Category.PRIMITIVE) {
+                throw new IOException("Vectorized reads of " + typeInfo.getTypeName() +
+                        " columns are not supported");
+            }
+            categories[i] = ((PrimitiveTypeInfo) typeInfo).getPrimitiveCategory();
+            expressions[i] = rowProjector.getColumnProjector(i).getExpression();
+            codecs[i] = expressions[i].getDataType().getCodec();
+        }
+    }
+
+    @Override
+    public boolean next(NullWritable key, VectorizedRowBatch value) throws IOException {
+        PhoenixResultSet resultSet = recordReader.getResultSet();
+        value.reset();
+        for (ColumnVector column : value.cols) {
+            if (column instanceof BytesColumnVector) {
+                ((BytesColumnVector) column).initBuffer();
+            }
+        }
+
+        try {
+            int row = 0;
+            int maxSize = value.getMaxSize();
+            while (row < maxSize && resultSet.next()) {
+                Tuple tuple = resultSet.getCurrentRow();
+                for (int i = 0; i < batchColumns.length; i++) {
+                    if (batchColumns[i] == -1 || value.cols[batchColumns[i]] == null) {
+                        continue;
+                    }
+
+                    ColumnVector column = value.cols[batchColumns[i]];
+                    if (!expressions[i].evaluate(tuple, ptr) || ptr.getLength() == 0) {
+                        column.noNulls = false;
+                        column.isNull[row] = true;
+                    } else {
+                        column.isNull[row] = false;
+                        setValue(column, row, i);
+                    }
+                }
+                row++;
+            }
+
+            value.size = row;
+            readCount += row;
+            setMissingColumnsToNull(value);
+            return row > 0;
+        } catch (SQLException e) {
+            LOG.error(String.format(" Error [%s] occurred while iterating over the resultset. ",
+                    e.getMessage()));
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Columns of the batch which are not selected from Phoenix are null
+    private void setMissingColumnsToNull(VectorizedRowBatch batch) {
+        boolean[] filled = new boolean[batch.cols.length];
+        for (int batchColumn : batchColumns) {
+            if (batchColumn != -1) {
+                filled[batchColumn] = true;
+            }
+        }
+
+        for (int i = 0; i < batch.cols.length; i++) {
+            if (batch.cols[i] != null && !filled[i]) {
+                batch.cols[i].noNulls = false;
+                batch.cols[i].isRepeating = true;
+                batch.cols[i].isNull[0] = true;
+            }
+        }
+    }
+
+    // Sets the value of the given row of the column from the serialized Phoenix value in ptr
+    private void setValue(ColumnVector column, int row, int columnIndex) throws IOException {
+        PDataType type = expressions[columnIndex].getDataType();
+        SortOrder sortOrder = expressions[columnIndex].getSortOrder();
+        PDataCodec codec = codecs[columnIndex];
+
+        switch (categories[columnIndex]) {
+            case BOOLEAN:
+                ((LongColumnVector) column).vector[row] =
+                        Boolean.TRUE.equals(type.toObject(ptr, sortOrder)) ? 1 : 0;
+                break;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                ((LongColumnVector) column).vector[row] = codec != null && type instanceof
+                        PWholeNumber ? codec.decodeLong(ptr, sortOrder) : ((Number) type.toObject
+                        (ptr, sortOrder)).longValue();
+                break;
+            case FLOAT:
+            case DOUBLE:
+                ((DoubleColumnVector) column).vector[row] = codec != null && type instanceof
+                        PRealNumber ? codec.decodeDouble(ptr, sortOrder) : ((Number) type
+                        .toObject(ptr, sortOrder)).doubleValue();
+                break;
+            case DATE:
+                long millis = java.util.Date.class.isAssignableFrom(type.getJavaClass()) ?
+                        DateUtil.getCodecFor(type).decodeLong(ptr, sortOrder) : ((java.util.Date)
+                        type.toObject(ptr, sortOrder)).getTime();
+                ((LongColumnVector) column).vector[row] = DateWritable.millisToDays(millis);
+                break;
+            case TIMESTAMP:
+                ((LongColumnVector) column).vector[row] = TimestampUtils.getTimeNanoSec(
+                        (Timestamp) PTimestamp.INSTANCE.toObject(ptr, type, sortOrder));
+                break;
+            case DECIMAL:
+                ((DecimalColumnVector) column).set(row, HiveDecimal.create((BigDecimal) PDecimal
+                        .INSTANCE.toObject(ptr, type, sortOrder)));
+                break;
+            case STRING:
+            case VARCHAR:
+            case CHAR:
+                if (!type.isCoercibleTo(PVarchar.INSTANCE)) {
+                    ptr.set(PVarchar.INSTANCE.toBytes(type.toObject(ptr, sortOrder).toString()));
+                    sortOrder = SortOrder.ASC;
+                }
+                setBytes((BytesColumnVector) column, row, ptr, sortOrder,
+                        categories[columnIndex] == PrimitiveCategory.CHAR);
+                break;
+            case BINARY:
+                setBytes((BytesColumnVector) column, row, ptr, sortOrder, false);
+                break;
+            default:
+                throw new IOException("Vectorized reads of " + categories[columnIndex] +
+                        " columns are not supported");
+        }
+    }
+
+    // Copies the bytes into the column, inverting them first when they are in DESC order
+    private static void setBytes(BytesColumnVector column, int row, ImmutableBytesWritable ptr,
+                                 SortOrder sortOrder, boolean trimTrailingSpaces) {
+        byte[] bytes = ptr.get();
+        int offset = ptr.getOffset();
+        int length = ptr.getLength();
+        if (sortOrder == SortOrder.DESC) {
+            bytes = SortOrder.invert(bytes, offset, length);
+            offset = 0;
+        }
+
+        if (trimTrailingSpaces) {
+            while (length > 0 && bytes[offset + length - 1] == ' ') {
+                length--;
+            }
+        }
+        column.setVal(row, bytes, offset, length);
+    }
+
+    @Override
+    public NullWritable createKey() {
+        return NullWritable.get();
+    }
+
+    @Override
+    public VectorizedRowBatch createValue() {
+        try {
+            VectorizedRowBatch batch = rbCtx.createVectorizedRowBatch();
+            // The partition columns cannot change within a split, so they are set only once
+            rbCtx.addPartitionColsToBatch(batch);
+            return batch;
+        } catch (HiveException e) {
+            throw new RuntimeException("Error creating a batch", e);
+        }
+    }
+
+    @Override
+    public long getPos() throws IOException {
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Vectorized Read Count : " + readCount);
+        }
+
+        recordReader.close();
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+        return 0;
+    }
+}
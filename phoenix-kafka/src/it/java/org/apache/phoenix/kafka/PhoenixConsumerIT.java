@@ -18,6 +18,7 @@
 package org.apache.phoenix.kafka;
 
 import static org.apache.phoenix.util.TestUtil.TEST_PROPERTIES;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -38,6 +39,7 @@ import org.apache.phoenix.flume.DefaultKeyGenerator;
 import org.apache.phoenix.flume.FlumeConstants;
 import org.apache.phoenix.flume.serializer.EventSerializers;
 import org.apache.phoenix.kafka.consumer.PhoenixConsumer;
+import org.apache.phoenix.kafka.consumer.PhoenixParallelConsumer;
 import org.apache.phoenix.util.PropertiesUtil;
 import org.junit.After;
 import org.junit.Before;
@@ -192,6 +194,53 @@ public class PhoenixConsumerIT extends BaseHBaseManagedTimeIT {
         rs.close();
     }
 
+    @Test
+    public void testPhoenixParallelConsumer() throws Exception {
+        final String topic = "topic3";
+        final String fullTableName = "SAMPLE3";
+        final String ddl = "CREATE TABLE IF NOT EXISTS SAMPLE3(uid VARCHAR NOT NULL,c1 VARCHAR,c2 VARCHAR,c3 VARCHAR CONSTRAINT pk PRIMARY KEY(uid))\n";
+        AdminUtils.createTopic(ZkUtils.apply(zkClient, false), topic, 4, 1, new Properties());
+
+        Properties consumerProperties = new Properties();
+        consumerProperties.setProperty(FlumeConstants.CONFIG_TABLE, fullTableName);
+        consumerProperties.setProperty(FlumeConstants.CONFIG_JDBC_URL, getUrl());
+        consumerProperties.setProperty(FlumeConstants.CONFIG_SERIALIZER,EventSerializers.REGEX.name());
+        consumerProperties.setProperty(FlumeConstants.CONFIG_TABLE_DDL, ddl);
+        consumerProperties.setProperty(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_REGULAR_EXPRESSION,"([^\\,]*),([^\\,]*),([^\\,]*)");
+        consumerProperties.setProperty(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_COLUMN_NAMES,"c1,c2,c3");
+        consumerProperties.setProperty(FlumeConstants.CONFIG_SERIALIZER_PREFIX + FlumeConstants.CONFIG_ROWKEY_TYPE_GENERATOR, DefaultKeyGenerator.UUID.name());
+        consumerProperties.setProperty(FlumeConstants.CONFIG_BATCHSIZE, "4");
+        consumerProperties.setProperty(KafkaConstants.BOOTSTRAP_SERVERS, "localhost:9092");
+        consumerProperties.setProperty(KafkaConstants.TOPICS, topic);
+        consumerProperties.setProperty(KafkaConstants.TIMEOUT, "100");
+        consumerProperties.setProperty(KafkaConstants.CONSUMER_THREADS, "2");
+        consumerProperties.setProperty(KafkaConstants.BATCH_TIMEOUT, "500");
+
+        PhoenixParallelConsumer parallelConsumer = new PhoenixParallelConsumer(consumerProperties);
+        parallelConsumer.start();
+        // wait for the consumers to join the group
+        Thread.sleep(10000);
+
+        Properties producerProperties = new Properties();
+        producerProperties.setProperty(KafkaConstants.BOOTSTRAP_SERVERS, "localhost:9092");
+        producerProperties.setProperty(KafkaConstants.KEY_SERIALIZER, KafkaConstants.DEFAULT_KEY_SERIALIZER);
+        producerProperties.setProperty(KafkaConstants.VALUE_SERIALIZER, KafkaConstants.DEFAULT_VALUE_SERIALIZER);
+
+        Thread kafkaProducer = new Thread(new KafkaProducerThread(producerProperties, topic));
+        kafkaProducer.start();
+        kafkaProducer.join();
+
+        // wait for the last batch to time out, then commit it on stop
+        Thread.sleep(1000);
+        parallelConsumer.stop();
+
+        // Verify every message was written once
+        ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM SAMPLE3");
+        assertTrue(rs.next());
+        assertEquals(10, rs.getInt(1));
+        rs.close();
+    }
+
     @After
     public void cleanUp() throws Exception {
         kafkaServer.shutdown();
@@ -49,4 +49,20 @@ public final class KafkaConstants {
     public static final String TIMEOUT = "poll.timeout.ms";
     
     public static final long DEFAULT_TIMEOUT = 100;
+
+    public static final String ENABLE_AUTO_COMMIT = ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG;
+
+    public static final String CLIENT_ID = ConsumerConfig.CLIENT_ID_CONFIG;
+
+    public static final String CONSUMER_THREADS = "consumer.threads";
+
+    public static final int DEFAULT_CONSUMER_THREADS = 1;
+
+    public static final String BATCH_TIMEOUT = "batch.timeout.ms";
+
+    public static final long DEFAULT_BATCH_TIMEOUT = 1000;
+
+    public static final String METRICS_INTERVAL = "metrics.interval.ms";
+
+    public static final long DEFAULT_METRICS_INTERVAL = 60000;
 }
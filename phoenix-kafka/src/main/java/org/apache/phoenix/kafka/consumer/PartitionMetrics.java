@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.kafka.consumer;
+
+/**
+ * Snapshot of the progress of a consumer on a single kafka partition.
+ */
+public class PartitionMetrics {
+    private final long upsertedRecords;
+    private final long committedOffset;
+    private final long lag;
+    private final double recordsPerSecond;
+
+    public PartitionMetrics(long upsertedRecords, long committedOffset, long lag,
+            double recordsPerSecond) {
+        this.upsertedRecords = upsertedRecords;
+        this.committedOffset = committedOffset;
+        this.lag = lag;
+        this.recordsPerSecond = recordsPerSecond;
+    }
+
+    /**
+     * @return the number of records of the partition upserted to Phoenix by this consumer
+     */
+    public long getUpsertedRecords() {
+        return upsertedRecords;
+    }
+
+    /**
+     * @return the offset committed to kafka after the last Phoenix commit, or -1 if none
+     */
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    /**
+     * @return the number of records of the partition not yet committed to Phoenix, or -1 if
+     *         unknown
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * @return the records upserted per second since the previous snapshot
+     */
+    public double getRecordsPerSecond() {
+        return recordsPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "upsertedRecords=" + upsertedRecords + ", committedOffset=" + committedOffset
+                + ", lag=" + lag + ", recordsPerSecond=" + String.format("%.1f", recordsPerSecond);
+    }
+}
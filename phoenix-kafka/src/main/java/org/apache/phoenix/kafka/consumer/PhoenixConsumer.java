@@ -21,12 +21,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.flume.Context;
 import org.apache.flume.Event;
@@ -35,9 +38,16 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.WakeupException;
 import org.apache.phoenix.flume.FlumeConstants;
 import org.apache.phoenix.flume.serializer.EventSerializer;
 import org.apache.phoenix.flume.serializer.EventSerializers;
@@ -45,6 +55,7 @@ import org.apache.phoenix.kafka.KafkaConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
@@ -52,16 +63,36 @@ import com.google.common.collect.Lists;
 public class PhoenixConsumer {
     private static final Logger logger = LoggerFactory.getLogger(PhoenixConsumer.class);
 
-    private KafkaConsumer<String, String> consumer = null;
+    private Consumer<String, String> consumer = null;
     private Properties properties = new Properties();
     private Integer batchSize;
     private long timeout;
     private EventSerializer serializer;
-    private Boolean process = true;
+    private volatile Boolean process = true;
+
+    // state of the batch being built by processBatches()
+    private long batchTimeout;
+    private long metricsInterval;
+    private final List<Event> batch = Lists.newArrayList();
+    private final Map<TopicPartition, Long> batchStartOffsets = new HashMap<TopicPartition, Long>();
+    private final Map<TopicPartition, OffsetAndMetadata> batchOffsets =
+            new HashMap<TopicPartition, OffsetAndMetadata>();
+    private final Map<TopicPartition, Long> upsertedRecords = new HashMap<TopicPartition, Long>();
+    private final Map<TopicPartition, Long> reportedRecords = new HashMap<TopicPartition, Long>();
+    private final Map<TopicPartition, Long> committedOffsets = new HashMap<TopicPartition, Long>();
+    private final Map<TopicPartition, PartitionMetrics> partitionMetrics =
+            new ConcurrentHashMap<TopicPartition, PartitionMetrics>();
     
     public PhoenixConsumer() {
 
     }
+
+    @VisibleForTesting
+    PhoenixConsumer(Consumer<String, String> consumer, EventSerializer serializer, Context context) {
+        this.consumer = consumer;
+        this.serializer = serializer;
+        configureBatches(context);
+    }
     
     public PhoenixConsumer(Configuration conf) throws IOException {
         // intialize the kafka
@@ -84,10 +115,20 @@ public class PhoenixConsumer {
      * @throws IOException 
      */
     public void intializeKafka(Configuration conf) throws IOException {
+        intializeKafka(loadProperties(conf));
+    }
+
+    /**
+     * Loads the properties of the kafka consumer file.
+     * @param conf
+     * @throws IOException
+     */
+    public static Properties loadProperties(Configuration conf) throws IOException {
     	// get the kafka consumer file
     	String file = conf.get("kafka.consumer.file");
         Preconditions.checkNotNull(file,"File path cannot be empty, please specify in the arguments");
         
+        Properties properties = new Properties();
         Path path = new Path(file);
         FileSystem fs = FileSystem.get(conf);
         try (InputStream props = fs.open(path)) {
@@ -95,8 +136,7 @@ public class PhoenixConsumer {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        
-        intializeKafka(properties);
+        return properties;
     }
     
     /**
@@ -126,7 +166,7 @@ public class PhoenixConsumer {
         properties.setProperty(KafkaConstants.VALUE_DESERIALIZER, KafkaConstants.DEFAULT_VALUE_DESERIALIZER);
         
         this.consumer = new KafkaConsumer<>(properties);
-        consumer.subscribe(Arrays.asList(topics.split(",")));
+        consumer.subscribe(Arrays.asList(topics.split(",")), new BatchRebalanceListener());
     }
   
     /**
@@ -144,14 +184,20 @@ public class PhoenixConsumer {
      * Configure the context
      */
     public void configure(Context context){
-        this.timeout = context.getLong(KafkaConstants.TIMEOUT, KafkaConstants.DEFAULT_TIMEOUT);
-        this.batchSize = context.getInteger(FlumeConstants.CONFIG_BATCHSIZE, FlumeConstants.DEFAULT_BATCH_SIZE);
+        configureBatches(context);
         final String eventSerializerType = context.getString(FlumeConstants.CONFIG_SERIALIZER);
         
         Preconditions.checkNotNull(eventSerializerType,"Event serializer cannot be empty, please specify in the configuration file");
         initializeSerializer(context,eventSerializerType);
     }
     
+    private void configureBatches(Context context) {
+        this.timeout = context.getLong(KafkaConstants.TIMEOUT, KafkaConstants.DEFAULT_TIMEOUT);
+        this.batchSize = context.getInteger(FlumeConstants.CONFIG_BATCHSIZE, FlumeConstants.DEFAULT_BATCH_SIZE);
+        this.batchTimeout = context.getLong(KafkaConstants.BATCH_TIMEOUT, KafkaConstants.DEFAULT_BATCH_TIMEOUT);
+        this.metricsInterval = context.getLong(KafkaConstants.METRICS_INTERVAL, KafkaConstants.DEFAULT_METRICS_INTERVAL);
+    }
+
     /**
      * Process the kafka messages
      */
@@ -186,6 +232,183 @@ public class PhoenixConsumer {
         }
     }
 
+    /**
+     * Process the kafka messages in batches of batchSize records, or of the records received
+     * within batch.timeout.ms. The offsets of a batch are committed to kafka only after its upserts
+     * are committed to Phoenix, and the records of a batch which failed, or whose offsets failed
+     * to commit, are consumed again. Errors of the kafka consumer are logged and polling goes on.
+     * Requires enable.auto.commit to be false, and stops on {@link #wakeup()}.
+     */
+    public void processBatches() {
+        long batchStart = System.currentTimeMillis();
+        long lastMetrics = batchStart;
+        try {
+            while (process) {
+                try {
+                    ConsumerRecords<String, String> records = consumer.poll(this.timeout);
+                    for (ConsumerRecord<String, String> record : records) {
+                        if (batch.isEmpty()) {
+                            batchStart = System.currentTimeMillis();
+                        }
+                        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+                        if (!batchStartOffsets.containsKey(partition)) {
+                            batchStartOffsets.put(partition, record.offset());
+                        }
+                        batchOffsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+                        batch.add(EventBuilder.withBody(Bytes.toBytes(record.value())));
+                    }
+
+                    long now = System.currentTimeMillis();
+                    if (batch.size() >= batchSize || (!batch.isEmpty() && now - batchStart >= batchTimeout)) {
+                        flush();
+                    }
+                    if (now - lastMetrics >= metricsInterval) {
+                        updateMetrics((now - lastMetrics) / 1000d);
+                        lastMetrics = now;
+                    }
+                } catch (WakeupException | InterruptException e) {
+                    throw e;
+                } catch (KafkaException e) {
+                    logger.error("Error {} while consuming records, polling again.", e.getMessage());
+                    backOff();
+                }
+            }
+        } catch (WakeupException e) {
+            // stopped by wakeup()
+        } finally {
+            try {
+                flush();
+            } finally {
+                consumer.close();
+                try {
+                    serializer.close();
+                } catch (SQLException e) {
+                    logger.error(" Error while closing connection {} for consumer.", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Upserts the events of the batch and commits their offsets. If the upserts or the commit of
+     * the offsets fail, the partitions of the batch are rewound to its first records.
+     */
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            serializer.upsertEvents(batch);
+            consumer.commitSync(batchOffsets);
+            for (Entry<TopicPartition, OffsetAndMetadata> entry : batchOffsets.entrySet()) {
+                TopicPartition partition = entry.getKey();
+                long count = entry.getValue().offset() - batchStartOffsets.get(partition);
+                Long upserted = upsertedRecords.get(partition);
+                upsertedRecords.put(partition, upserted == null ? count : upserted + count);
+                committedOffsets.put(partition, entry.getValue().offset());
+            }
+        } catch (WakeupException | InterruptException e) {
+            // stopping, the offsets of the batch which were not committed are consumed again
+            throw e;
+        } catch (SQLException | RuntimeException e) {
+            // CommitFailedException if the partitions were reassigned by a rebalance
+            logger.error("Error {} while processing a batch of {} records, consuming them again.",
+                    e.getMessage(), batch.size());
+            rewind();
+            backOff();
+        } finally {
+            batch.clear();
+            batchStartOffsets.clear();
+            batchOffsets.clear();
+        }
+    }
+
+    /**
+     * Seeks the partitions of the batch still assigned to this consumer back to the first records
+     * of the batch. The partitions revoked by a rebalance are consumed again by their new owner
+     * from their committed offsets.
+     */
+    private void rewind() {
+        Set<TopicPartition> assignment = consumer.assignment();
+        for (Entry<TopicPartition, Long> entry : batchStartOffsets.entrySet()) {
+            if (assignment.contains(entry.getKey())) {
+                consumer.seek(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void backOff() {
+        try {
+            Thread.sleep(batchTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Computes the lag and throughput of the assigned partitions since the previous call.
+     */
+    private void updateMetrics(double elapsedSeconds) {
+        for (TopicPartition partition : consumer.assignment()) {
+            long position = consumer.position(partition);
+            consumer.seekToEnd(partition);
+            long endOffset = consumer.position(partition);
+            consumer.seek(partition, position);
+
+            Long committed = committedOffsets.get(partition);
+            if (committed == null) {
+                OffsetAndMetadata offset = consumer.committed(partition);
+                committed = offset == null ? null : offset.offset();
+            }
+            Long upserted = upsertedRecords.get(partition);
+            Long reported = reportedRecords.get(partition);
+            long total = upserted == null ? 0 : upserted;
+            long delta = total - (reported == null ? 0 : reported);
+            reportedRecords.put(partition, total);
+
+            PartitionMetrics metrics = new PartitionMetrics(total, committed == null ? -1 : committed,
+                    committed == null ? -1 : endOffset - committed,
+                    elapsedSeconds > 0 ? delta / elapsedSeconds : 0);
+            partitionMetrics.put(partition, metrics);
+            logger.info("Partition {} : {}", partition, metrics);
+        }
+    }
+
+    /**
+     * @return the metrics of the partitions assigned to this consumer, as of the last
+     *         metrics.interval.ms
+     */
+    public Map<TopicPartition, PartitionMetrics> getPartitionMetrics() {
+        return new HashMap<TopicPartition, PartitionMetrics>(partitionMetrics);
+    }
+
+    /**
+     * Stops {@link #processBatches()} after it commits the pending batch. Can be called from any
+     * thread.
+     */
+    public void wakeup() {
+        this.process = false;
+        consumer.wakeup();
+    }
+
+    /**
+     * Commits the pending batch before its partitions are assigned to another consumer.
+     */
+    private class BatchRebalanceListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            flush();
+            for (TopicPartition partition : partitions) {
+                partitionMetrics.remove(partition);
+                committedOffsets.remove(partition);
+            }
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        }
+    }
+
     /**
      * start the serializer
      */
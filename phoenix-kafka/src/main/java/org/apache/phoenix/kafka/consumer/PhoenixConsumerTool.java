@@ -17,6 +17,8 @@
  */
 package org.apache.phoenix.kafka.consumer;
 
+import java.util.Properties;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.HelpFormatter;
@@ -29,6 +31,7 @@ import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
+import org.apache.phoenix.kafka.KafkaConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -95,7 +98,27 @@ public class PhoenixConsumerTool extends Configured implements Tool {
         
         String path = cmdLine.getOptionValue(FILE_PATH_OPT.getOpt());
         conf.set("kafka.consumer.file", path);
-        new PhoenixConsumer(conf);
+
+        Properties properties = PhoenixConsumer.loadProperties(conf);
+        int threads = Integer.parseInt(properties.getProperty(KafkaConstants.CONSUMER_THREADS,
+            String.valueOf(KafkaConstants.DEFAULT_CONSUMER_THREADS)));
+        if (threads > 1) {
+            final PhoenixParallelConsumer consumer = new PhoenixParallelConsumer(properties);
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        consumer.stop();
+                    } catch (InterruptedException e) {
+                        logger.error("Interrupted while stopping the consumers.");
+                    }
+                }
+            });
+            consumer.start();
+            consumer.awaitTermination();
+        } else {
+            new PhoenixConsumer(conf);
+        }
         
         return 1;
     }
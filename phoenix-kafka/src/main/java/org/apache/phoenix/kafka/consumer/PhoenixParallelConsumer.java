@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.kafka.consumer;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.phoenix.kafka.KafkaConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs consumer.threads {@link PhoenixConsumer}s of the same consumer group, each on its own
+ * thread with its own kafka consumer and Phoenix connection. Kafka assigns every consumer a
+ * share of the partitions of the topics, and each consumer upserts its records in batches with
+ * {@link PhoenixConsumer#processBatches()}.
+ */
+public class PhoenixParallelConsumer {
+    private static final Logger logger = LoggerFactory.getLogger(PhoenixParallelConsumer.class);
+
+    private final Properties properties;
+    private final int threads;
+    private final List<PhoenixConsumer> consumers;
+    private ExecutorService executor;
+
+    public PhoenixParallelConsumer(Properties properties) {
+        this.properties = properties;
+        this.threads = Integer.parseInt(properties.getProperty(KafkaConstants.CONSUMER_THREADS,
+            String.valueOf(KafkaConstants.DEFAULT_CONSUMER_THREADS)));
+        Preconditions.checkArgument(threads > 0, "The number of consumer threads must be positive");
+        this.consumers = Lists.newArrayListWithCapacity(threads);
+    }
+
+    /**
+     * Creates the consumers and starts processing the kafka messages.
+     */
+    public void start() {
+        logger.info("Starting {} consumers", threads);
+        executor = Executors.newFixedThreadPool(threads,
+            new ThreadFactoryBuilder().setNameFormat("phoenix-kafka-consumer-%d").build());
+        for (int i = 0; i < threads; i++) {
+            Properties consumerProperties = new Properties();
+            consumerProperties.putAll(properties);
+            // offsets are committed by the consumers after every batch
+            consumerProperties.setProperty(KafkaConstants.ENABLE_AUTO_COMMIT, "false");
+            String clientId = properties.getProperty(KafkaConstants.CLIENT_ID);
+            if (clientId != null) {
+                consumerProperties.setProperty(KafkaConstants.CLIENT_ID, clientId + "-" + i);
+            }
+
+            final PhoenixConsumer consumer = new PhoenixConsumer();
+            consumer.intializeKafka(consumerProperties);
+            consumer.configure(consumer.prepareContext());
+            consumer.start();
+            consumers.add(consumer);
+
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // processBatches() keeps polling on errors of a batch or of the kafka consumer,
+                    // and only returns on wakeup() or on an error it cannot recover from
+                    try {
+                        consumer.processBatches();
+                    } catch (RuntimeException e) {
+                        logger.error("Consumer stopped with error.", e);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Waits until all consumers stopped.
+     */
+    public void awaitTermination() throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            logger.debug("Partition metrics : {}", getPartitionMetrics());
+        }
+    }
+
+    /**
+     * Stops the consumers after they commit their pending batches.
+     */
+    public void stop() throws InterruptedException {
+        for (PhoenixConsumer consumer : consumers) {
+            consumer.wakeup();
+        }
+        awaitTermination();
+    }
+
+    /**
+     * @return the metrics of all partitions assigned to the consumers
+     */
+    public Map<TopicPartition, PartitionMetrics> getPartitionMetrics() {
+        Map<TopicPartition, PartitionMetrics> metrics = new HashMap<TopicPartition, PartitionMetrics>();
+        for (PhoenixConsumer consumer : consumers) {
+            metrics.putAll(consumer.getPartitionMetrics());
+        }
+        return metrics;
+    }
+}
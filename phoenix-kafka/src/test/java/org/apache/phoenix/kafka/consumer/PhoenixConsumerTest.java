@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.kafka.consumer;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.flume.Context;
+import org.apache.flume.Event;
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.phoenix.flume.FlumeConstants;
+import org.apache.phoenix.flume.serializer.EventSerializer;
+import org.apache.phoenix.kafka.KafkaConstants;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Matchers;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+public class PhoenixConsumerTest {
+    private static final TopicPartition PARTITION = new TopicPartition("topic", 0);
+
+    private Consumer<String, String> consumer;
+    private EventSerializer serializer;
+    private PhoenixConsumer phoenixConsumer;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        consumer = mock(Consumer.class);
+        serializer = mock(EventSerializer.class);
+        Context context = new Context(ImmutableMap.of(
+                KafkaConstants.TIMEOUT, "10",
+                FlumeConstants.CONFIG_BATCHSIZE, "2",
+                KafkaConstants.BATCH_TIMEOUT, "1",
+                KafkaConstants.METRICS_INTERVAL, String.valueOf(Long.MAX_VALUE)));
+        phoenixConsumer = new PhoenixConsumer(consumer, serializer, context);
+    }
+
+    private static ConsumerRecords<String, String> records(long... offsets) {
+        List<ConsumerRecord<String, String>> records = Lists.newArrayList();
+        for (long offset : offsets) {
+            records.add(new ConsumerRecord<String, String>(PARTITION.topic(), PARTITION.partition(), offset,
+                    null, "value" + offset));
+        }
+        return new ConsumerRecords<String, String>(
+                Collections.<TopicPartition, List<ConsumerRecord<String, String>>>singletonMap(PARTITION, records));
+    }
+
+    private static Map<TopicPartition, OffsetAndMetadata> offsets(long offset) {
+        return Collections.singletonMap(PARTITION, new OffsetAndMetadata(offset));
+    }
+
+    @Test
+    public void testCommitFailureConsumesBatchAgain() throws SQLException {
+        when(consumer.assignment()).thenReturn(Collections.singleton(PARTITION));
+        when(consumer.poll(anyLong())).thenReturn(records(0, 1), records(0, 1), records(2, 3))
+                .thenThrow(new WakeupException());
+        doThrow(new CommitFailedException("Partitions reassigned by a rebalance")).doNothing()
+                .when(consumer).commitSync(offsets(2));
+
+        phoenixConsumer.processBatches();
+
+        InOrder order = inOrder(consumer);
+        order.verify(consumer).commitSync(offsets(2));
+        order.verify(consumer).seek(PARTITION, 0);
+        order.verify(consumer).commitSync(offsets(2));
+        order.verify(consumer).commitSync(offsets(4));
+        order.verify(consumer).close();
+        verify(serializer, times(3)).upsertEvents(Matchers.<List<Event>>any());
+        verify(serializer).close();
+    }
+
+    @Test
+    public void testCommitFailureOfRevokedPartition() throws SQLException {
+        when(consumer.assignment()).thenReturn(Collections.<TopicPartition>emptySet());
+        when(consumer.poll(anyLong())).thenReturn(records(0, 1), records(2, 3)).thenThrow(new WakeupException());
+        doThrow(new CommitFailedException("Partitions reassigned by a rebalance"))
+                .when(consumer).commitSync(offsets(2));
+        doNothing().when(consumer).commitSync(offsets(4));
+
+        phoenixConsumer.processBatches();
+
+        // the new owner of the partition consumes the batch again from the committed offset
+        verify(consumer, never()).seek(Matchers.<TopicPartition>any(), anyLong());
+        verify(consumer).commitSync(offsets(4));
+        verify(serializer, times(2)).upsertEvents(Matchers.<List<Event>>any());
+        verify(consumer).close();
+    }
+
+    @Test
+    public void testUpsertFailureConsumesBatchAgain() throws SQLException {
+        when(consumer.assignment()).thenReturn(Collections.singleton(PARTITION));
+        when(consumer.poll(anyLong())).thenReturn(records(0, 1), records(0, 1)).thenThrow(new WakeupException());
+        doThrow(new SQLException("Region unavailable")).doNothing()
+                .when(serializer).upsertEvents(Matchers.<List<Event>>any());
+
+        phoenixConsumer.processBatches();
+
+        InOrder order = inOrder(consumer);
+        order.verify(consumer).seek(PARTITION, 0);
+        order.verify(consumer).commitSync(offsets(2));
+        order.verify(consumer).close();
+    }
+
+    @Test
+    public void testPollFailureKeepsPolling() throws SQLException {
+        when(consumer.poll(anyLong())).thenThrow(new KafkaException("Coordinator not available"))
+                .thenReturn(records(0, 1)).thenThrow(new WakeupException());
+
+        phoenixConsumer.processBatches();
+
+        verify(serializer).upsertEvents(Matchers.<List<Event>>any());
+        verify(consumer).commitSync(offsets(2));
+        verify(consumer).close();
+    }
+}
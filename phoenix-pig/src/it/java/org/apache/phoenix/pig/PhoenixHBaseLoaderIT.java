@@ -221,6 +221,51 @@ public class PhoenixHBaseLoaderIT extends BasePigIT {
         assertEquals(rows/2, recordsRead);
     }
 
+    /**
+     * Validates the rows when the filter is pushed into the SELECT statement, partially evaluated
+     * by the loader, and followed by a projection.
+     * @throws Exception
+     */
+    @Test
+    public void testFilterAndProjectionPushDownForTable() throws Exception {
+        final String TABLE = "TABLE_PUSH_DOWN";
+        String ddl = "CREATE TABLE " + TABLE
+                + "  (ID INTEGER NOT NULL PRIMARY KEY, NAME VARCHAR, AGE INTEGER) ";
+        conn.createStatement().execute(ddl);
+
+        final String dml = "UPSERT INTO " + TABLE + " VALUES(?,?,?)";
+        PreparedStatement stmt = conn.prepareStatement(dml);
+        int rows = 20;
+        for(int i = 0 ; i < rows; i++) {
+            stmt.setInt(1, i);
+            stmt.setString(2, "a"+i);
+            if (i % 5 == 0) {
+                stmt.setNull(3, java.sql.Types.INTEGER);
+            } else {
+                stmt.setInt(3, (i % 2 == 0) ? 25 : 30);
+            }
+            stmt.execute();
+        }
+        conn.commit();
+
+        pigServer.registerQuery(String.format(
+                "A = load 'hbase://table/%s' using "  + PhoenixHBaseLoader.class.getName() + "('%s');", TABLE,
+                zkQuorum));
+        // ID < 15 and the null checks are pushed as SQL, the regular expression is evaluated by the loader
+        pigServer.registerQuery("B = FILTER A BY ID < 15 AND AGE IS NOT NULL AND NOT (AGE == 25) AND NAME MATCHES 'a1.*';");
+        pigServer.registerQuery("C = FOREACH B GENERATE NAME;");
+
+        final Iterator<Tuple> iterator = pigServer.openIterator("C");
+        final List<String> names = Lists.newArrayList();
+        while (iterator.hasNext()) {
+            final Tuple each = iterator.next();
+            assertEquals(1, each.size());
+            names.add((String)each.get(0));
+        }
+        // 10 has no age, 12 and 14 are 25, and 15 and above fail the key filter
+        assertEquals(Lists.newArrayList("a1", "a11", "a13"), names);
+    }
+
     /**
      * @throws Exception
      */
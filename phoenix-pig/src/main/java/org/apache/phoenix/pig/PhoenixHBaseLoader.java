@@ -20,7 +20,13 @@ package org.apache.phoenix.pig;
 import static org.apache.commons.lang.StringUtils.isEmpty;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,23 +42,34 @@ import org.apache.phoenix.mapreduce.PhoenixInputFormat;
 import org.apache.phoenix.mapreduce.PhoenixRecordWritable;
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil;
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil.SchemaType;
+import org.apache.phoenix.mapreduce.util.ColumnInfoToStringEncoderDecoder;
+import org.apache.phoenix.pig.util.FilterExpressionUtil;
 import org.apache.phoenix.pig.util.PhoenixPigSchemaUtil;
 import org.apache.phoenix.pig.util.QuerySchemaParserFunction;
 import org.apache.phoenix.pig.util.TableSchemaParserFunction;
+import org.apache.phoenix.pig.util.TupleFilter;
 import org.apache.phoenix.pig.util.TypeUtil;
+import org.apache.phoenix.util.ColumnInfo;
 import org.apache.pig.Expression;
 import org.apache.pig.LoadFunc;
 import org.apache.pig.LoadMetadata;
+import org.apache.pig.LoadPushDown;
 import org.apache.pig.PigException;
 import org.apache.pig.ResourceSchema;
+import org.apache.pig.ResourceSchema.ResourceFieldSchema;
 import org.apache.pig.ResourceStatistics;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigSplit;
 import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.logicalLayer.FrontendException;
 import org.apache.pig.impl.util.ObjectSerializer;
 import org.apache.pig.impl.util.UDFContext;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 
 /**
@@ -76,13 +93,21 @@ import com.google.common.base.Preconditions;
  *       
  *        The above loads fname and lname columns from 'HIRES' table.
  * 
+ * For tables, the columns used by the script are pushed into the SELECT statement, and a FILTER
+ * directly following the LOAD is pushed into its WHERE clause. The parts of the filter that
+ * cannot be expressed in SQL are evaluated by the loader. Splits of the same region server are
+ * combined by Pig up to pig.maxCombinedSplitSize, unless pig.noSplitCombination is set.
  */
-public final class PhoenixHBaseLoader extends LoadFunc implements LoadMetadata {
+public final class PhoenixHBaseLoader extends LoadFunc implements LoadMetadata, LoadPushDown {
 
     private static final Log LOG = LogFactory.getLog(PhoenixHBaseLoader.class);
     private static final String PHOENIX_TABLE_NAME_SCHEME = "hbase://table/";
     private static final String PHOENIX_QUERY_SCHEME      = "hbase://query/";
     private static final String RESOURCE_SCHEMA_SIGNATURE = "phoenix.pig.schema";
+    private static final String PROJECTED_SCHEMA_SIGNATURE = "phoenix.pig.projected.schema";
+    private static final String PROJECTED_COLUMNS_SIGNATURE = "phoenix.pig.projected.columns";
+    private static final String FILTER_CONDITIONS_SIGNATURE = "phoenix.pig.filter.conditions";
+    private static final String TUPLE_FILTER_SIGNATURE = "phoenix.pig.tuple.filter";
    
     private Configuration config;
     private String tableName;
@@ -92,6 +117,7 @@ public final class PhoenixHBaseLoader extends LoadFunc implements LoadMetadata {
     private RecordReader<NullWritable,PhoenixRecordWritable> reader;
     private String contextSignature;
     private ResourceSchema schema;
+    private TupleFilter tupleFilter;
        
     /**
      * @param zkQuorum
@@ -108,10 +134,38 @@ public final class PhoenixHBaseLoader extends LoadFunc implements LoadMetadata {
         PhoenixConfigurationUtil.loadHBaseConfiguration(job);
 
         final Configuration configuration = job.getConfiguration();
-        //explicitly turning off combining splits. 
-        configuration.setBoolean("pig.noSplitCombination", true);
-
         this.initializePhoenixPigConfiguration(location, configuration);
+        this.applyPushDown();
+    }
+
+    /**
+     * Applies the projection and the filter pushed by Pig to the SELECT statement of the table.
+     * The cached column metadata and statement are replaced, as they may have been generated by
+     * {@link #getSchema} before the push down.
+     * @throws IOException
+     */
+    private void applyPushDown() throws IOException {
+        if (PhoenixConfigurationUtil.getSchemaType(this.config) != SchemaType.TABLE) {
+            return;
+        }
+        final String projectedColumns = getValueFromUDFContext(this.contextSignature, PROJECTED_COLUMNS_SIGNATURE);
+        final String conditions = getValueFromUDFContext(this.contextSignature, FILTER_CONDITIONS_SIGNATURE);
+        if (projectedColumns == null && conditions == null) {
+            return;
+        }
+        if (projectedColumns != null) {
+            @SuppressWarnings("unchecked")
+            final List<String> columns = (List<String>)ObjectSerializer.deserialize(projectedColumns);
+            final List<ColumnInfo> columnInfos = Lists.newArrayListWithExpectedSize(columns.size());
+            for (String column : columns) {
+                columnInfos.add(ColumnInfo.fromString(column));
+            }
+            ColumnInfoToStringEncoderDecoder.encode(this.config, columnInfos);
+        }
+        if (conditions != null) {
+            PhoenixConfigurationUtil.setInputTableConditions(this.config, conditions);
+        }
+        this.config.unset(PhoenixConfigurationUtil.SELECT_STATEMENT);
     }
 
     /**
@@ -180,6 +234,15 @@ public final class PhoenixHBaseLoader extends LoadFunc implements LoadMetadata {
             throw new IOException("Could not find schema in UDF context");
         }
        schema = (ResourceSchema)ObjectSerializer.deserialize(resourceSchemaAsStr); 
+       final String projectedSchemaAsStr = getValueFromUDFContext(this.contextSignature, PROJECTED_SCHEMA_SIGNATURE);
+       if (projectedSchemaAsStr != null) {
+           schema = (ResourceSchema)ObjectSerializer.deserialize(projectedSchemaAsStr);
+       }
+       final String tupleFilterAsStr = getValueFromUDFContext(this.contextSignature, TUPLE_FILTER_SIGNATURE);
+       if (tupleFilterAsStr != null) {
+           tupleFilter = (TupleFilter)ObjectSerializer.deserialize(tupleFilterAsStr);
+           tupleFilter.bind(schema.getFields());
+       }
     }
 
      /*
@@ -193,15 +256,17 @@ public final class PhoenixHBaseLoader extends LoadFunc implements LoadMetadata {
     @Override
     public Tuple getNext() throws IOException {
         try {
-            if(!reader.nextKeyValue()) {
-                return null; 
-             }
-            final PhoenixRecordWritable record = reader.getCurrentValue();
-            if(record == null) {
-                return null;
+            while(reader.nextKeyValue()) {
+                final PhoenixRecordWritable record = reader.getCurrentValue();
+                if(record == null) {
+                    return null;
+                }
+                final Tuple tuple = TypeUtil.transformToTuple(record, schema.getFields());
+                if(tupleFilter == null || tupleFilter.accept(tuple)) {
+                    return tuple;
+                }
             }
-            final Tuple tuple = TypeUtil.transformToTuple(record, schema.getFields());
-            return tuple;
+            return null;
        } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             int errCode = 6018;
@@ -240,15 +305,128 @@ public final class PhoenixHBaseLoader extends LoadFunc implements LoadMetadata {
         return null;
     }
 
+    /**
+     * Exposes the columns of a table as partition keys, so that Pig pushes the FILTER following
+     * the LOAD to {@link #setPartitionFilter}. Columns whose names are ambiguous across column
+     * families are left out.
+     */
     @Override
     public String[] getPartitionKeys(String location, Job job) throws IOException {
-     // not implemented
-        return null;
+        getSchema(location, job);
+        if (PhoenixConfigurationUtil.getSchemaType(this.config) != SchemaType.TABLE) {
+            return null;
+        }
+        final Set<String> keys = getFilterColumnNames().keySet();
+        return keys.isEmpty() ? null : keys.toArray(new String[keys.size()]);
     }
 
+    /**
+     * Pushes the parts of the filter that can be expressed in SQL into the WHERE clause of the
+     * SELECT statement. Pig removes the filter from the script, so the remaining parts are
+     * evaluated by {@link #getNext}.
+     */
     @Override
     public void setPartitionFilter(Expression partitionFilter) throws IOException {
-     // not implemented
+        final Map<String, String> columnNames = getFilterColumnNames();
+        final List<String> conditions = Lists.newArrayList();
+        Expression remainingFilter = null;
+        for (Expression conjunct : FilterExpressionUtil.getConjuncts(partitionFilter)) {
+            final String condition = FilterExpressionUtil.toSqlCondition(conjunct, columnNames);
+            if (condition != null) {
+                conditions.add(condition);
+            } else if (remainingFilter == null) {
+                remainingFilter = conjunct;
+            } else {
+                remainingFilter = new Expression.BinaryExpression(remainingFilter, conjunct, Expression.OpType.OP_AND);
+            }
+        }
+        if (!conditions.isEmpty()) {
+            final String whereClause = Joiner.on(" AND ").join(conditions);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Filter [%s] pushed as conditions [%s]", partitionFilter, whereClause));
+            }
+            this.storeInUDFContext(this.contextSignature, FILTER_CONDITIONS_SIGNATURE, whereClause);
+        }
+        if (remainingFilter != null) {
+            this.storeInUDFContext(this.contextSignature, TUPLE_FILTER_SIGNATURE,
+                    ObjectSerializer.serialize(TupleFilter.fromExpression(remainingFilter)));
+        }
+    }
+
+    /**
+     * @return the escaped SQL column names keyed by the unambiguous Pig field names
+     * @throws IOException
+     */
+    private Map<String, String> getFilterColumnNames() throws IOException {
+        final Map<String, String> columnNames = Maps.newLinkedHashMap();
+        final Set<String> ambiguousNames = Sets.newHashSet();
+        for (ColumnInfo columnInfo : getColumnMetadataList()) {
+            final String name = columnInfo.getDisplayName();
+            if (columnNames.put(name, columnInfo.getColumnName()) != null) {
+                ambiguousNames.add(name);
+            }
+        }
+        columnNames.keySet().removeAll(ambiguousNames);
+        return columnNames;
+    }
+
+    private List<ColumnInfo> getColumnMetadataList() throws IOException {
+        try {
+            return PhoenixConfigurationUtil.getSelectColumnMetadataList(this.config);
+        } catch (SQLException sqle) {
+            LOG.error(String.format("Error: SQLException [%s] ", sqle.getMessage()));
+            throw new IOException(sqle);
+        }
+    }
+
+    @Override
+    public List<OperatorSet> getFeatures() {
+        return Collections.singletonList(OperatorSet.PROJECTION);
+    }
+
+    /**
+     * Pushes the columns used by the script into the SELECT statement of a table. Filters
+     * evaluated by the loader may use columns the script does not, so the projection is left to
+     * Pig when there is one.
+     */
+    @Override
+    public RequiredFieldResponse pushProjection(RequiredFieldList requiredFieldList) throws FrontendException {
+        if (this.config == null || requiredFieldList == null || requiredFieldList.getFields() == null
+                || requiredFieldList.getFields().isEmpty()
+                || PhoenixConfigurationUtil.getSchemaType(this.config) != SchemaType.TABLE
+                || getValueFromUDFContext(this.contextSignature, TUPLE_FILTER_SIGNATURE) != null) {
+            return new RequiredFieldResponse(false);
+        }
+        final List<RequiredField> requiredFields = requiredFieldList.getFields();
+        final List<ColumnInfo> columnInfos;
+        try {
+            columnInfos = getColumnMetadataList();
+        } catch (IOException e) {
+            LOG.warn("Could not push projection, loading all columns", e);
+            return new RequiredFieldResponse(false);
+        }
+        final ResourceFieldSchema[] fields = schema.getFields();
+        final ArrayList<String> projectedColumns = Lists.newArrayListWithExpectedSize(requiredFields.size());
+        final ResourceFieldSchema[] projectedFields = new ResourceFieldSchema[requiredFields.size()];
+        for (int i = 0; i < requiredFields.size(); i++) {
+            final int index = requiredFields.get(i).getIndex();
+            projectedColumns.add(columnInfos.get(index).toString());
+            projectedFields[i] = fields[index];
+        }
+        final ResourceSchema projectedSchema = new ResourceSchema();
+        projectedSchema.setFields(projectedFields);
+        final String projectedColumnsAsStr;
+        final String projectedSchemaAsStr;
+        try {
+            projectedColumnsAsStr = ObjectSerializer.serialize(projectedColumns);
+            projectedSchemaAsStr = ObjectSerializer.serialize(projectedSchema);
+        } catch (IOException e) {
+            LOG.warn("Could not push projection, loading all columns", e);
+            return new RequiredFieldResponse(false);
+        }
+        this.storeInUDFContext(this.contextSignature, PROJECTED_COLUMNS_SIGNATURE, projectedColumnsAsStr);
+        this.storeInUDFContext(this.contextSignature, PROJECTED_SCHEMA_SIGNATURE, projectedSchemaAsStr);
+        return new RequiredFieldResponse(true);
     }
  
     private void storeInUDFContext(final String signature,final String key,final String value) {
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.pig.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Translates the filter {@link Expression}s Pig pushes to the loader into Phoenix SQL conditions.
+ */
+public final class FilterExpressionUtil {
+
+    private FilterExpressionUtil() {
+    }
+
+    /**
+     * Splits the given filter on its top level ANDs.
+     * @param expression
+     * @return the conjuncts of the filter
+     */
+    public static List<Expression> getConjuncts(final Expression expression) {
+        final List<Expression> conjuncts = Lists.newArrayList();
+        addConjuncts(expression, conjuncts);
+        return conjuncts;
+    }
+
+    private static void addConjuncts(final Expression expression, final List<Expression> conjuncts) {
+        if (expression.getOpType() == OpType.OP_AND) {
+            final BinaryExpression and = (BinaryExpression)expression;
+            addConjuncts(and.getLhs(), conjuncts);
+            addConjuncts(and.getRhs(), conjuncts);
+        } else {
+            conjuncts.add(expression);
+        }
+    }
+
+    /**
+     * Translates the filter to a SQL condition that evaluates exactly as Pig would. Arithmetic,
+     * regular expressions and floating point constants are not translated, as Phoenix evaluates
+     * them differently.
+     * @param expression
+     * @param columnNames the escaped SQL column names keyed by the Pig field names
+     * @return the SQL condition, or null if the filter cannot be translated
+     */
+    public static String toSqlCondition(final Expression expression, final Map<String, String> columnNames) {
+        switch (expression.getOpType()) {
+        case TERM_COL:
+            return columnNames.get(((Column)expression).getName());
+        case TERM_CONST:
+            return toSqlLiteral(((Const)expression).getValue());
+        case OP_NOT:
+            return toSqlCondition(((UnaryExpression)expression).getExpression(), columnNames, "NOT ", "");
+        case OP_NULL:
+            return toSqlCondition(((UnaryExpression)expression).getExpression(), columnNames, "", " IS NULL");
+        case OP_AND:
+            return toSqlCondition((BinaryExpression)expression, columnNames, " AND ");
+        case OP_OR:
+            return toSqlCondition((BinaryExpression)expression, columnNames, " OR ");
+        case OP_EQ:
+            return toSqlCondition((BinaryExpression)expression, columnNames, " = ");
+        case OP_NE:
+            return toSqlCondition((BinaryExpression)expression, columnNames, " != ");
+        case OP_GT:
+            return toSqlCondition((BinaryExpression)expression, columnNames, " > ");
+        case OP_GE:
+            return toSqlCondition((BinaryExpression)expression, columnNames, " >= ");
+        case OP_LT:
+            return toSqlCondition((BinaryExpression)expression, columnNames, " < ");
+        case OP_LE:
+            return toSqlCondition((BinaryExpression)expression, columnNames, " <= ");
+        default:
+            return null;
+        }
+    }
+
+    private static String toSqlCondition(final Expression operand, final Map<String, String> columnNames,
+            final String prefix, final String suffix) {
+        final String sql = toSqlCondition(operand, columnNames);
+        return sql == null ? null : "(" + prefix + sql + suffix + ")";
+    }
+
+    private static String toSqlCondition(final BinaryExpression expression, final Map<String, String> columnNames,
+            final String operator) {
+        final String lhs = toSqlCondition(expression.getLhs(), columnNames);
+        final String rhs = toSqlCondition(expression.getRhs(), columnNames);
+        if (lhs == null || rhs == null) {
+            return null;
+        }
+        return "(" + lhs + operator + rhs + ")";
+    }
+
+    private static String toSqlLiteral(final Object value) {
+        if (value instanceof String) {
+            return "'" + ((String)value).replace("\\", "\\\\").replace("'", "''") + "'";
+        }
+        if (value instanceof Integer || value instanceof Long || value instanceof BigInteger) {
+            return value.toString();
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal)value).toPlainString();
+        }
+        if (value instanceof Boolean) {
+            return ((Boolean)value) ? "TRUE" : "FALSE";
+        }
+        return null;
+    }
+}
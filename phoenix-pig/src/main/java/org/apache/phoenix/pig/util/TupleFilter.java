@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.pig.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+import org.apache.pig.ResourceSchema.ResourceFieldSchema;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+
+/**
+ * Serializable copy of a filter {@link Expression} pushed by Pig, which the loader evaluates on
+ * the loaded tuples when the filter cannot be translated to SQL. Null operands evaluate as they
+ * do in Pig: comparisons and arithmetic on null are null, and null is neither true nor false.
+ */
+public final class TupleFilter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final OpType opType;
+    private final String columnName;
+    private final Object value;
+    private final TupleFilter lhs;
+    private final TupleFilter rhs;
+    private int position = -1;
+
+    private TupleFilter(OpType opType, String columnName, Object value, TupleFilter lhs, TupleFilter rhs) {
+        this.opType = opType;
+        this.columnName = columnName;
+        this.value = value;
+        this.lhs = lhs;
+        this.rhs = rhs;
+    }
+
+    /**
+     * @param expression
+     * @return the filter evaluating the given expression
+     * @throws IOException if the expression has an unknown operator
+     */
+    public static TupleFilter fromExpression(final Expression expression) throws IOException {
+        final OpType opType = expression.getOpType();
+        switch (opType) {
+        case TERM_COL:
+            return new TupleFilter(opType, ((Column)expression).getName(), null, null, null);
+        case TERM_CONST:
+            return new TupleFilter(opType, null, ((Const)expression).getValue(), null, null);
+        case OP_NOT:
+        case OP_NULL:
+            return new TupleFilter(opType, null, null,
+                    fromExpression(((UnaryExpression)expression).getExpression()), null);
+        case OP_AND:
+        case OP_OR:
+        case OP_EQ:
+        case OP_NE:
+        case OP_GT:
+        case OP_GE:
+        case OP_LT:
+        case OP_LE:
+        case OP_MATCH:
+        case OP_PLUS:
+        case OP_MINUS:
+        case OP_TIMES:
+        case OP_DIV:
+        case OP_MOD:
+            final BinaryExpression binary = (BinaryExpression)expression;
+            return new TupleFilter(opType, null, null, fromExpression(binary.getLhs()),
+                    fromExpression(binary.getRhs()));
+        default:
+            throw new IOException("Unsupported operator " + opType + " in filter " + expression);
+        }
+    }
+
+    /**
+     * Resolves the columns of the filter to the positions of the fields of the loaded tuples.
+     * @param fields
+     * @throws IOException if a column of the filter is not loaded
+     */
+    public void bind(final ResourceFieldSchema[] fields) throws IOException {
+        if (opType == OpType.TERM_COL) {
+            for (int i = 0; i < fields.length; i++) {
+                if (columnName.equals(fields[i].getName())) {
+                    position = i;
+                    return;
+                }
+            }
+            throw new IOException("Column " + columnName + " of the filter is not loaded");
+        }
+        if (lhs != null) {
+            lhs.bind(fields);
+        }
+        if (rhs != null) {
+            rhs.bind(fields);
+        }
+    }
+
+    /**
+     * @param tuple
+     * @return true if the filter evaluates to true for the tuple
+     * @throws ExecException
+     */
+    public boolean accept(final Tuple tuple) throws ExecException {
+        return Boolean.TRUE.equals(evaluate(tuple));
+    }
+
+    private Object evaluate(final Tuple tuple) throws ExecException {
+        switch (opType) {
+        case TERM_COL:
+            return tuple.get(position);
+        case TERM_CONST:
+            return value;
+        case OP_NULL:
+            return lhs.evaluate(tuple) == null;
+        case OP_NOT: {
+            final Boolean operand = (Boolean)lhs.evaluate(tuple);
+            return operand == null ? null : !operand;
+        }
+        case OP_AND: {
+            final Boolean left = (Boolean)lhs.evaluate(tuple);
+            if (Boolean.FALSE.equals(left)) {
+                return false;
+            }
+            final Boolean right = (Boolean)rhs.evaluate(tuple);
+            if (Boolean.FALSE.equals(right)) {
+                return false;
+            }
+            return left == null || right == null ? null : true;
+        }
+        case OP_OR: {
+            final Boolean left = (Boolean)lhs.evaluate(tuple);
+            if (Boolean.TRUE.equals(left)) {
+                return true;
+            }
+            final Boolean right = (Boolean)rhs.evaluate(tuple);
+            if (Boolean.TRUE.equals(right)) {
+                return true;
+            }
+            return left == null || right == null ? null : false;
+        }
+        default:
+            break;
+        }
+        final Object left = lhs.evaluate(tuple);
+        final Object right = rhs.evaluate(tuple);
+        if (left == null || right == null) {
+            return null;
+        }
+        switch (opType) {
+        case OP_EQ:
+            return compare(left, right) == 0;
+        case OP_NE:
+            return compare(left, right) != 0;
+        case OP_GT:
+            return compare(left, right) > 0;
+        case OP_GE:
+            return compare(left, right) >= 0;
+        case OP_LT:
+            return compare(left, right) < 0;
+        case OP_LE:
+            return compare(left, right) <= 0;
+        case OP_MATCH:
+            return left.toString().matches(right.toString());
+        default:
+            return calculate((Number)left, (Number)right);
+        }
+    }
+
+    private static int compare(final Object left, final Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            final Number l = (Number)left;
+            final Number r = (Number)right;
+            if (isFloatingPoint(l) || isFloatingPoint(r)) {
+                return Double.compare(l.doubleValue(), r.doubleValue());
+            }
+            if (l instanceof BigDecimal || l instanceof BigInteger || r instanceof BigDecimal
+                    || r instanceof BigInteger) {
+                return toBigDecimal(l).compareTo(toBigDecimal(r));
+            }
+            return Long.compare(l.longValue(), r.longValue());
+        }
+        return DataType.compare(left, right);
+    }
+
+    private Number calculate(final Number left, final Number right) {
+        if (left instanceof Double || right instanceof Double) {
+            final double l = left.doubleValue();
+            final double r = right.doubleValue();
+            switch (opType) {
+            case OP_PLUS: return l + r;
+            case OP_MINUS: return l - r;
+            case OP_TIMES: return l * r;
+            case OP_DIV: return r == 0 ? null : l / r;
+            default: return r == 0 ? null : l % r;
+            }
+        }
+        if (left instanceof Float || right instanceof Float) {
+            final float l = left.floatValue();
+            final float r = right.floatValue();
+            switch (opType) {
+            case OP_PLUS: return l + r;
+            case OP_MINUS: return l - r;
+            case OP_TIMES: return l * r;
+            case OP_DIV: return r == 0 ? null : l / r;
+            default: return r == 0 ? null : l % r;
+            }
+        }
+        if (left instanceof BigDecimal || right instanceof BigDecimal) {
+            final BigDecimal l = toBigDecimal(left);
+            final BigDecimal r = toBigDecimal(right);
+            switch (opType) {
+            case OP_PLUS: return l.add(r);
+            case OP_MINUS: return l.subtract(r);
+            case OP_TIMES: return l.multiply(r);
+            case OP_DIV: return r.signum() == 0 ? null : l.divide(r, MathContext.DECIMAL128);
+            default: return r.signum() == 0 ? null : l.remainder(r);
+            }
+        }
+        if (left instanceof BigInteger || right instanceof BigInteger) {
+            final BigInteger l = toBigDecimal(left).toBigInteger();
+            final BigInteger r = toBigDecimal(right).toBigInteger();
+            switch (opType) {
+            case OP_PLUS: return l.add(r);
+            case OP_MINUS: return l.subtract(r);
+            case OP_TIMES: return l.multiply(r);
+            case OP_DIV: return r.signum() == 0 ? null : l.divide(r);
+            default: return r.signum() == 0 ? null : l.remainder(r);
+            }
+        }
+        if (left instanceof Long || right instanceof Long) {
+            final long l = left.longValue();
+            final long r = right.longValue();
+            switch (opType) {
+            case OP_PLUS: return l + r;
+            case OP_MINUS: return l - r;
+            case OP_TIMES: return l * r;
+            case OP_DIV: return r == 0 ? null : l / r;
+            default: return r == 0 ? null : l % r;
+            }
+        }
+        final int l = left.intValue();
+        final int r = right.intValue();
+        switch (opType) {
+        case OP_PLUS: return l + r;
+        case OP_MINUS: return l - r;
+        case OP_TIMES: return l * r;
+        case OP_DIV: return r == 0 ? null : l / r;
+        default: return r == 0 ? null : l % r;
+        }
+    }
+
+    private static boolean isFloatingPoint(final Number number) {
+        return number instanceof Double || number instanceof Float;
+    }
+
+    private static BigDecimal toBigDecimal(final Number number) {
+        if (number instanceof BigDecimal) {
+            return (BigDecimal)number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger)number);
+        }
+        return BigDecimal.valueOf(number.longValue());
+    }
+}
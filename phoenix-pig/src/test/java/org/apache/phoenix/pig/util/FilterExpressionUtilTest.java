@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.pig.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class FilterExpressionUtilTest {
+
+    private static final Map<String, String> COLUMN_NAMES = ImmutableMap.of("ID", "\"ID\"", "NAME", "\"0\".\"NAME\"");
+
+    @Test
+    public void testToSqlCondition() {
+        Expression expression = new BinaryExpression(
+                new BinaryExpression(new Column("ID"), new Const(10), OpType.OP_GE),
+                new UnaryExpression(new UnaryExpression(new Column("NAME"), OpType.OP_NULL), OpType.OP_NOT),
+                OpType.OP_OR);
+        assertEquals("((\"ID\" >= 10) OR (NOT (\"0\".\"NAME\" IS NULL)))",
+                FilterExpressionUtil.toSqlCondition(expression, COLUMN_NAMES));
+
+        expression = new BinaryExpression(new Column("NAME"), new Const("it's a\\b"), OpType.OP_NE);
+        assertEquals("(\"0\".\"NAME\" != 'it''s a\\\\b')", FilterExpressionUtil.toSqlCondition(expression, COLUMN_NAMES));
+    }
+
+    @Test
+    public void testToSqlConditionUnsupported() {
+        // regular expressions, arithmetic and floating point constants evaluate differently in Phoenix
+        assertNull(FilterExpressionUtil.toSqlCondition(
+                new BinaryExpression(new Column("NAME"), new Const("a.*"), OpType.OP_MATCH), COLUMN_NAMES));
+        assertNull(FilterExpressionUtil.toSqlCondition(new BinaryExpression(
+                new BinaryExpression(new Column("ID"), new Const(2), OpType.OP_DIV), new Const(1), OpType.OP_EQ),
+                COLUMN_NAMES));
+        assertNull(FilterExpressionUtil.toSqlCondition(
+                new BinaryExpression(new Column("ID"), new Const(1.1f), OpType.OP_EQ), COLUMN_NAMES));
+        assertNull(FilterExpressionUtil.toSqlCondition(
+                new BinaryExpression(new Column("AGE"), new Const(1), OpType.OP_EQ), COLUMN_NAMES));
+    }
+
+    @Test
+    public void testGetConjuncts() {
+        final Expression first = new BinaryExpression(new Column("ID"), new Const(1), OpType.OP_GT);
+        final Expression second = new BinaryExpression(new Column("ID"), new Const(5), OpType.OP_LT);
+        final Expression third = new BinaryExpression(new Column("NAME"), new Const("a"), OpType.OP_EQ);
+        final Expression or = new BinaryExpression(second, third, OpType.OP_OR);
+        final List<Expression> conjuncts = FilterExpressionUtil.getConjuncts(new BinaryExpression(
+                new BinaryExpression(first, or, OpType.OP_AND), third, OpType.OP_AND));
+        assertEquals(3, conjuncts.size());
+        assertEquals(first, conjuncts.get(0));
+        assertEquals(or, conjuncts.get(1));
+        assertEquals(third, conjuncts.get(2));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.pig.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+import org.apache.pig.ResourceSchema.ResourceFieldSchema;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.util.ObjectSerializer;
+import org.junit.Test;
+
+public class TupleFilterTest {
+
+    private static final ResourceFieldSchema[] FIELDS = {
+        new ResourceFieldSchema().setName("ID").setType(DataType.INTEGER),
+        new ResourceFieldSchema().setName("NAME").setType(DataType.CHARARRAY),
+        new ResourceFieldSchema().setName("SCORE").setType(DataType.DOUBLE) };
+
+    @Test
+    public void testAccept() throws Exception {
+        final TupleFilter filter = bind(new BinaryExpression(
+                new BinaryExpression(new Column("NAME"), new Const("a1.*"), OpType.OP_MATCH),
+                new BinaryExpression(
+                        new BinaryExpression(new Column("ID"), new Const(2), OpType.OP_MOD),
+                        new Const(1), OpType.OP_EQ),
+                OpType.OP_AND));
+        assertTrue(filter.accept(tuple(11, "a11", 1.0)));
+        assertFalse(filter.accept(tuple(12, "a12", 1.0)));
+        assertFalse(filter.accept(tuple(21, "a21", 1.0)));
+    }
+
+    @Test
+    public void testAcceptNulls() throws Exception {
+        final Expression greater = new BinaryExpression(new Column("SCORE"), new Const(0.5), OpType.OP_GT);
+        // comparisons with null are neither true nor false
+        assertFalse(bind(greater).accept(tuple(1, "a", null)));
+        assertFalse(bind(new UnaryExpression(greater, OpType.OP_NOT)).accept(tuple(1, "a", null)));
+        assertTrue(bind(new UnaryExpression(new Column("SCORE"), OpType.OP_NULL)).accept(tuple(1, "a", null)));
+        assertTrue(bind(new BinaryExpression(greater, new BinaryExpression(new Column("ID"), new Const(1),
+                OpType.OP_EQ), OpType.OP_OR)).accept(tuple(1, "a", null)));
+        // division by zero is null, as in Pig
+        assertFalse(bind(new UnaryExpression(new BinaryExpression(new BinaryExpression(new Column("ID"),
+                new Const(0), OpType.OP_DIV), new Const(1), OpType.OP_EQ), OpType.OP_NOT)).accept(tuple(1, "a", 1.0)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testBindMissingColumn() throws Exception {
+        bind(new UnaryExpression(new Column("AGE"), OpType.OP_NULL));
+    }
+
+    private static TupleFilter bind(final Expression expression) throws IOException {
+        // filters are serialized to the backend through the UDF context
+        final TupleFilter filter = (TupleFilter)ObjectSerializer.deserialize(
+                ObjectSerializer.serialize(TupleFilter.fromExpression(expression)));
+        filter.bind(FIELDS);
+        return filter;
+    }
+
+    private static Tuple tuple(final Object... values) throws IOException {
+        final Tuple tuple = TupleFactory.getInstance().newTuple(values.length);
+        for (int i = 0; i < values.length; i++) {
+            tuple.set(i, values[i]);
+        }
+        return tuple;
+    }
+}
@@ -233,6 +233,31 @@ class PhoenixSparkIT extends AbstractPhoenixSparkIT {
     }
   }
 
+  test("Can save to phoenix table by region and as HFiles") {
+    val dataSet = (1L to 100L).map(i => (i, "COL1_" + i, i.toInt))
+
+    sc.parallelize(dataSet, 7).saveToPhoenix("REGION_AWARE_OUTPUT_TABLE", Seq("ID", "COL1", "COL2"),
+      hbaseConfiguration, regionAware = true)
+    sc.parallelize(dataSet, 7).saveToPhoenix("HFILE_OUTPUT_TABLE", Seq("ID", "COL1", "COL2"),
+      hbaseConfiguration, hfileOutputPath = Some("/tmp/phoenix-spark-hfile-output"))
+
+    // Both the tables and their indexes hold every row
+    for ((table, index) <- Seq(("REGION_AWARE_OUTPUT_TABLE", "REGION_AWARE_OUTPUT_INDEX"),
+                               ("HFILE_OUTPUT_TABLE", "HFILE_OUTPUT_INDEX"))) {
+      val stmt = conn.createStatement()
+      val rs = stmt.executeQuery(s"SELECT /*+ NO_INDEX */ ID, COL1, COL2 FROM $table ORDER BY ID")
+      val results = ListBuffer[(Long, String, Int)]()
+      while (rs.next()) {
+        results.append((rs.getLong(1), rs.getString(2), rs.getInt(3)))
+      }
+      results shouldEqual dataSet
+
+      val indexRs = stmt.executeQuery(s"SELECT COUNT(*) FROM $index")
+      indexRs.next()
+      indexRs.getLong(1) shouldEqual dataSet.size
+    }
+  }
+
   test("Can save Java and Joda dates to Phoenix (no config)") {
     val dt = new DateTime()
     val date = new Date()
@@ -461,6 +486,26 @@ class PhoenixSparkIT extends AbstractPhoenixSparkIT {
     res9.count() shouldEqual 2
   }
 
+  test("Ensure pushed down filters keep their precedence and match LIKE wildcards literally") {
+    val sqlContext = new SQLContext(sc)
+    val df = sqlContext.load("org.apache.phoenix.spark", Map("table" -> "TABLE1",
+      "zkUrl" -> quorumAddress))
+
+    // Wildcards in the value are matched literally
+    df.filter(df("COL1").startsWith("test_row")).count() shouldEqual 2
+    df.filter(df("COL1").startsWith("test%")).count() shouldEqual 0
+    df.filter(df("COL1").contains("_row_")).count() shouldEqual 2
+
+    // OR nested in AND
+    val res1 = df.filter(df("ID") === 2L && (df("COL1") === "test_row_1" || df("COL1") === "test_row_2"))
+    res1.count() shouldEqual 1
+    res1.first.getLong(0) shouldEqual 2L
+
+    // Filters Phoenix can't evaluate are left to Spark
+    df.filter(df("COL1") <=> "test_row_1").count() shouldEqual 1
+    df.filter(df("COL1") === "test_row_1" || df("COL1") <=> "test_row_2").count() shouldEqual 2
+  }
+
   test("Can load decimal types with accurate precision and scale (PHOENIX-2288)") {
     val sqlContext = new SQLContext(sc)
     val df = sqlContext.load("org.apache.phoenix.spark", Map("table" -> "TEST_DECIMAL", "zkUrl" -> quorumAddress))
@@ -26,10 +26,12 @@ import scala.collection.JavaConversions._
 class DataFrameFunctions(data: DataFrame) extends Serializable {
   def saveToPhoenix(parameters: Map[String, String]): Unit = {
   		saveToPhoenix(parameters("table"), zkUrl = parameters.get("zkUrl"), tenantId = parameters.get("TenantId"), 
-  		skipNormalizingIdentifier=parameters.contains("skipNormalizingIdentifier"))
+  		skipNormalizingIdentifier=parameters.contains("skipNormalizingIdentifier"),
+  		regionAware = parameters.contains("regionAware"), hfileOutputPath = parameters.get("hfileOutputPath"))
    }
   def saveToPhoenix(tableName: String, conf: Configuration = new Configuration,
-                    zkUrl: Option[String] = None, tenantId: Option[String] = None, skipNormalizingIdentifier: Boolean = false): Unit = {
+                    zkUrl: Option[String] = None, tenantId: Option[String] = None, skipNormalizingIdentifier: Boolean = false,
+                    regionAware: Boolean = false, hfileOutputPath: Option[String] = None): Unit = {
 
     // Retrieve the schema field names and normalize to Phoenix, need to do this outside of mapPartitions
     val fieldArray = getFieldArray(skipNormalizingIdentifier, data)
@@ -41,6 +43,17 @@ class DataFrameFunctions(data: DataFrame) extends Serializable {
     // Retrieve the zookeeper URL
     val zkUrlFinal = ConfigurationUtil.getZookeeperURL(outConfig)
 
+    // Write the rows of each region from a single task, either as HFiles or through upserts
+    hfileOutputPath match {
+      case Some(path) =>
+        return PhoenixRegionAwareWriter.saveAsHFiles(data.rdd.map(_.toSeq), tableName, fieldArray,
+          outConfig, zkUrlFinal, tenantId, path)
+      case None if regionAware =>
+        return PhoenixRegionAwareWriter.saveByRegion(data.rdd.map(_.toSeq), tableName, fieldArray,
+          outConfig, zkUrlFinal, tenantId)
+      case _ =>
+    }
+
     // Map the row objects into PhoenixRecordWritable
     val phxRDD = data.rdd.mapPartitions{ rows =>
  
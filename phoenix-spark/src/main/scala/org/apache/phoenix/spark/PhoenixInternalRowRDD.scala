@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.spark
+
+import java.sql.DriverManager
+
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.io.NullWritable
+import org.apache.phoenix.jdbc.PhoenixDriver
+import org.apache.phoenix.mapreduce.PhoenixInputFormat
+import org.apache.spark._
+import org.apache.spark.annotation.DeveloperApi
+import org.apache.spark.rdd.RDD
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.types.StructType
+
+/**
+  * Reads the given columns of a table as Spark internal rows of the given schema. There is one
+  * partition per split of PhoenixInputFormat, which has one split per guidepost of the table
+  * unless phoenix.mapreduce.split.by.stats is disabled.
+  *
+  * The rows are reused, as they are by the other scans of Spark SQL.
+  */
+class PhoenixInternalRowRDD(sc: SparkContext, table: String, columns: Seq[String],
+                            schema: StructType,
+                            predicate: Option[String] = None,
+                            zkUrl: Option[String] = None,
+                            @transient conf: Configuration,
+                            tenantId: Option[String] = None
+                           )
+  extends RDD[InternalRow](sc, Nil) {
+
+  // Make sure to register the Phoenix driver
+  DriverManager.registerDriver(new PhoenixDriver)
+
+  @transient lazy val phoenixConf = {
+    val config = PhoenixRDD.getPhoenixConfiguration(conf, classOf[PhoenixInternalRowWritable],
+      table, columns, predicate, zkUrl, tenantId)
+    config.set(PhoenixInternalRowWritable.SCHEMA_CONFKEY, schema.json)
+    config
+  }
+
+  val phoenixRDD = sc.newAPIHadoopRDD(phoenixConf,
+    classOf[PhoenixInputFormat[PhoenixInternalRowWritable]],
+    classOf[NullWritable],
+    classOf[PhoenixInternalRowWritable])
+
+  override protected def getPartitions: Array[Partition] = {
+    phoenixRDD.partitions
+  }
+
+  override protected def getPreferredLocations(split: Partition): Seq[String] = {
+    phoenixRDD.preferredLocations(split)
+  }
+
+  @DeveloperApi
+  override def compute(split: Partition, context: TaskContext): Iterator[InternalRow] = {
+    phoenixRDD.compute(split, context).map(r => r._2.getRow)
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.spark
+
+import java.sql.{PreparedStatement, ResultSet}
+
+import org.apache.hadoop.conf.{Configurable, Configuration}
+import org.apache.hadoop.mapreduce.lib.db.DBWritable
+import org.apache.spark.sql.catalyst.expressions.{MutableRow, SpecificMutableRow}
+import org.apache.spark.sql.catalyst.util.{DateTimeUtils, GenericArrayData}
+import org.apache.spark.sql.types._
+import org.apache.spark.unsafe.types.UTF8String
+
+/**
+  * Reads the columns of a Phoenix result set straight into a Spark internal row, using the
+  * typed getters of the result set. Unlike PhoenixRecordWritable, the values are neither
+  * boxed into a map per record nor converted again from external Row types by Spark.
+  *
+  * The row is reused for every record, and must be copied by consumers which keep it.
+  */
+class PhoenixInternalRowWritable extends DBWritable with Configurable {
+  private var conf: Configuration = _
+  private var row: MutableRow = _
+  private var setters: Array[(ResultSet, Int) => Unit] = _
+
+  def getRow: MutableRow = row
+
+  override def setConf(conf: Configuration): Unit = {
+    this.conf = conf
+    val schema = DataType.fromJson(conf.get(PhoenixInternalRowWritable.SCHEMA_CONFKEY))
+      .asInstanceOf[StructType]
+    row = new SpecificMutableRow(schema.fields.map(_.dataType))
+    setters = schema.fields.zipWithIndex.map { case (field, pos) => makeSetter(field.dataType, pos) }
+  }
+
+  override def getConf: Configuration = conf
+
+  override def readFields(resultSet: ResultSet): Unit = {
+    var i = 0
+    while (i < setters.length) {
+      setters(i)(resultSet, i + 1)
+      i += 1
+    }
+  }
+
+  override def write(statement: PreparedStatement): Unit = {
+    throw new UnsupportedOperationException("PhoenixInternalRowWritable is read only")
+  }
+
+  // Sets a column of the row from the value of the result set at the given index
+  private def makeSetter(dataType: DataType, pos: Int): (ResultSet, Int) => Unit = dataType match {
+    case LongType => (rs, i) => {
+      val v = rs.getLong(i)
+      if (rs.wasNull) row.setNullAt(pos) else row.setLong(pos, v)
+    }
+    case IntegerType => (rs, i) => {
+      val v = rs.getInt(i)
+      if (rs.wasNull) row.setNullAt(pos) else row.setInt(pos, v)
+    }
+    case ShortType => (rs, i) => {
+      val v = rs.getShort(i)
+      if (rs.wasNull) row.setNullAt(pos) else row.setShort(pos, v)
+    }
+    case ByteType => (rs, i) => {
+      val v = rs.getByte(i)
+      if (rs.wasNull) row.setNullAt(pos) else row.setByte(pos, v)
+    }
+    case FloatType => (rs, i) => {
+      val v = rs.getFloat(i)
+      if (rs.wasNull) row.setNullAt(pos) else row.setFloat(pos, v)
+    }
+    case DoubleType => (rs, i) => {
+      val v = rs.getDouble(i)
+      if (rs.wasNull) row.setNullAt(pos) else row.setDouble(pos, v)
+    }
+    case BooleanType => (rs, i) => {
+      val v = rs.getBoolean(i)
+      if (rs.wasNull) row.setNullAt(pos) else row.setBoolean(pos, v)
+    }
+    case StringType => (rs, i) => {
+      val v = rs.getString(i)
+      if (v == null) row.setNullAt(pos) else row.update(pos, UTF8String.fromString(v))
+    }
+    case t: DecimalType => (rs, i) => {
+      val v = rs.getBigDecimal(i)
+      if (v == null) row.setNullAt(pos) else row.update(pos, Decimal(v, t.precision, t.scale))
+    }
+    // DATE and TIME columns read as TIMESTAMP are coerced by the result set
+    case TimestampType => (rs, i) => {
+      val v = rs.getTimestamp(i)
+      if (v == null) row.setNullAt(pos) else row.setLong(pos, DateTimeUtils.fromJavaTimestamp(v))
+    }
+    case DateType => (rs, i) => {
+      val v = rs.getDate(i)
+      if (v == null) row.setNullAt(pos) else row.setInt(pos, DateTimeUtils.fromJavaDate(v))
+    }
+    case BinaryType => (rs, i) => {
+      val v = rs.getBytes(i)
+      if (v == null) row.setNullAt(pos) else row.update(pos, v)
+    }
+    case ArrayType(elementType, _) =>
+      val convert = makeElementConverter(elementType)
+      (rs, i) => {
+        val v = rs.getArray(i)
+        if (v == null) {
+          row.setNullAt(pos)
+        } else {
+          val array = v.getArray
+          val elements = new Array[Any](java.lang.reflect.Array.getLength(array))
+          var j = 0
+          while (j < elements.length) {
+            val element = java.lang.reflect.Array.get(array, j)
+            elements(j) = if (element == null) null else convert(element)
+            j += 1
+          }
+          row.update(pos, new GenericArrayData(elements))
+        }
+      }
+    case _ => throw new UnsupportedOperationException(s"Unsupported type $dataType")
+  }
+
+  // Converts a non null array element to its internal representation
+  private def makeElementConverter(dataType: DataType): Any => Any = dataType match {
+    case LongType => v => v.asInstanceOf[Number].longValue
+    case IntegerType => v => v.asInstanceOf[Number].intValue
+    case ShortType => v => v.asInstanceOf[Number].shortValue
+    case ByteType => v => v.asInstanceOf[Number].byteValue
+    case FloatType => v => v.asInstanceOf[Number].floatValue
+    case DoubleType => v => v.asInstanceOf[Number].doubleValue
+    case StringType => v => UTF8String.fromString(v.toString)
+    case t: DecimalType => v =>
+      Decimal(v.asInstanceOf[java.math.BigDecimal], t.precision, t.scale)
+    case TimestampType => {
+      case ts: java.sql.Timestamp => DateTimeUtils.fromJavaTimestamp(ts)
+      case d: java.util.Date => d.getTime * 1000L
+    }
+    case _ => v => v
+  }
+}
+
+object PhoenixInternalRowWritable {
+  // JSON of the Spark schema of the selected columns, in the order they are selected
+  val SCHEMA_CONFKEY = "phoenix.spark.internalrow.schema"
+}
@@ -18,6 +18,7 @@ import java.sql.DriverManager
 import org.apache.hadoop.conf.Configuration
 import org.apache.hadoop.hbase.{HBaseConfiguration, HConstants}
 import org.apache.hadoop.io.NullWritable
+import org.apache.hadoop.mapreduce.lib.db.DBWritable
 import org.apache.phoenix.jdbc.PhoenixDriver
 import org.apache.phoenix.mapreduce.PhoenixInputFormat
 import org.apache.phoenix.mapreduce.util.PhoenixConfigurationUtil
@@ -76,40 +77,8 @@ class PhoenixRDD(sc: SparkContext, table: String, columns: Seq[String],
   }
 
   def getPhoenixConfiguration: Configuration = {
-
-    // This is just simply not serializable, so don't try, but clone it because
-    // PhoenixConfigurationUtil mutates it.
-    val config = HBaseConfiguration.create(conf)
-
-    PhoenixConfigurationUtil.setInputClass(config, classOf[PhoenixRecordWritable])
-    PhoenixConfigurationUtil.setInputTableName(config, table)
-
-    if(!columns.isEmpty) {
-      PhoenixConfigurationUtil.setSelectColumnNames(config, columns.toArray)
-    }
-
-    if(predicate.isDefined) {
-      PhoenixConfigurationUtil.setInputTableConditions(config, predicate.get)
-    }
-
-    // Override the Zookeeper URL if present. Throw exception if no address given.
-    zkUrl match {
-      case Some(url) => ConfigurationUtil.setZookeeperURL(config, url)
-      case _ => {
-        if(ConfigurationUtil.getZookeeperURL(config).isEmpty) {
-          throw new UnsupportedOperationException(
-            s"One of zkUrl or '${HConstants.ZOOKEEPER_QUORUM}' config property must be provided"
-          )
-        }
-      }
-    }
-
-    tenantId match {
-      case Some(tid) => ConfigurationUtil.setTenantId(config, tid)
-      case _ =>
-    }
-
-    config
+    PhoenixRDD.getPhoenixConfiguration(conf, classOf[PhoenixRecordWritable], table, columns,
+      predicate, zkUrl, tenantId)
   }
 
   // Convert our PhoenixRDD to a DataFrame
@@ -190,3 +159,44 @@ class PhoenixRDD(sc: SparkContext, table: String, columns: Seq[String],
     case t if t.isInstanceOf[PTimeArray] || t.isInstanceOf[PUnsignedTimeArray] => ArrayType(TimestampType, containsNull = true)
   }
 }
+
+object PhoenixRDD {
+
+  def getPhoenixConfiguration(conf: Configuration, inputClass: Class[_ <: DBWritable],
+                              table: String, columns: Seq[String], predicate: Option[String],
+                              zkUrl: Option[String], tenantId: Option[String]): Configuration = {
+    // This is just simply not serializable, so don't try, but clone it because
+    // PhoenixConfigurationUtil mutates it.
+    val config = HBaseConfiguration.create(conf)
+
+    PhoenixConfigurationUtil.setInputClass(config, inputClass)
+    PhoenixConfigurationUtil.setInputTableName(config, table)
+
+    if(!columns.isEmpty) {
+      PhoenixConfigurationUtil.setSelectColumnNames(config, columns.toArray)
+    }
+
+    if(predicate.isDefined) {
+      PhoenixConfigurationUtil.setInputTableConditions(config, predicate.get)
+    }
+
+    // Override the Zookeeper URL if present. Throw exception if no address given.
+    zkUrl match {
+      case Some(url) => ConfigurationUtil.setZookeeperURL(config, url)
+      case _ => {
+        if(ConfigurationUtil.getZookeeperURL(config).isEmpty) {
+          throw new UnsupportedOperationException(
+            s"One of zkUrl or '${HConstants.ZOOKEEPER_QUORUM}' config property must be provided"
+          )
+        }
+      }
+    }
+
+    tenantId match {
+      case Some(tid) => ConfigurationUtil.setTenantId(config, tid)
+      case _ =>
+    }
+
+    config
+  }
+}
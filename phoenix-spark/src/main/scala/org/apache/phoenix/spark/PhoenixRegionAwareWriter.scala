@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.phoenix.spark
+
+import java.sql.{Connection, PreparedStatement}
+import java.util.UUID
+
+import org.apache.hadoop.conf.Configuration
+import org.apache.hadoop.fs.Path
+import org.apache.hadoop.hbase.KeyValue
+import org.apache.hadoop.hbase.client.HTable
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles
+import org.apache.hadoop.hbase.util.Bytes
+import org.apache.hadoop.io.NullWritable
+import org.apache.hadoop.mapreduce.Job
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat
+import org.apache.phoenix.jdbc.PhoenixConnection
+import org.apache.phoenix.mapreduce.bulkload.{TableRowkeyPair, TargetTableRef}
+import org.apache.phoenix.mapreduce.util.{ConnectionUtil, PhoenixConfigurationUtil}
+import org.apache.phoenix.mapreduce.{CsvBulkImportUtil, MultiHfileOutputFormat, PhoenixOutputFormat}
+import org.apache.phoenix.util.{ColumnInfo, PhoenixRuntime}
+import org.apache.spark.{Partitioner, TaskContext}
+import org.apache.spark.rdd.RDD
+import org.slf4j.LoggerFactory
+
+import scala.collection.JavaConversions._
+
+/**
+  * Writes rows in the order of the row keys of the tables, with one task per region, so that
+  * each task writes to a single region instead of every task writing to every region server.
+  *
+  * The rows are either upserted through PhoenixOutputFormat after being sorted by the row key
+  * of the data table, or converted to the KeyValues of the data and index tables, like the
+  * MapReduce bulk loader does, which are written to HFiles and bulk loaded.
+  */
+object PhoenixRegionAwareWriter {
+  private val LOG = LoggerFactory.getLogger(PhoenixRegionAwareWriter.getClass)
+
+  /**
+    * Upserts the rows after sorting them by row key, in one task per region of the data table.
+    * Index rows are still maintained by the region servers.
+    */
+  def saveByRegion(rows: RDD[Seq[Any]], tableName: String, cols: Seq[String], outConfig: Configuration,
+                   zkUrl: Option[String], tenantId: Option[String]): Unit = {
+    val physicalTableName = withConnection(outConfig) { conn =>
+      PhoenixRuntime.getTable(conn, tableName).getPhysicalName.getString
+    }
+    val partitioner = new RegionPartitioner(Array(getRegionStartKeys(outConfig, physicalTableName)), keysAreKeyValues = false)
+
+    val keyedRows = rows.mapPartitions { rows =>
+      val upserter = new RowUpserter(tableName, cols, zkUrl, tenantId)
+      rows.map { row =>
+        val rowKey = upserter.upsert(row).next().getSecond.head.getRow
+        upserter.rollback()
+        ((0, rowKey), row)
+      }
+    }
+
+    val phxRDD = keyedRows
+      .repartitionAndSortWithinPartitions(partitioner)(RegionPartitioner.ROW_KEY_ORDERING)
+      .mapPartitions { rows =>
+        @transient val partitionConfig = ConfigurationUtil.getOutputConfiguration(tableName, cols, zkUrl, tenantId)
+        @transient val columns = PhoenixConfigurationUtil.getUpsertColumnMetadataList(partitionConfig).toList
+        rows.map { case (_, row) =>
+          val rec = new PhoenixRecordWritable(columns)
+          row.foreach { e => rec.add(e) }
+          (null, rec)
+        }
+      }
+
+    phxRDD.saveAsNewAPIHadoopFile(
+      "",
+      classOf[NullWritable],
+      classOf[PhoenixRecordWritable],
+      classOf[PhoenixOutputFormat[PhoenixRecordWritable]],
+      outConfig
+    )
+  }
+
+  /**
+    * Writes the KeyValues of the rows for the data table and its indexes as HFiles under the
+    * given path, in one task per region of each table, and bulk loads them.
+    */
+  def saveAsHFiles(rows: RDD[Seq[Any]], tableName: String, cols: Seq[String], outConfig: Configuration,
+                   zkUrl: Option[String], tenantId: Option[String], outputPath: String): Unit = {
+    val tablesToBeLoaded = withConnection(outConfig) { conn =>
+      val table = PhoenixRuntime.getTable(conn, tableName)
+      new TargetTableRef(tableName, table.getPhysicalName.getString) +:
+        table.getIndexes.map(index => new TargetTableRef(index.getName.getString, index.getPhysicalName.getString))
+    }
+    // Local indexes are written to the physical table of the data table
+    val physicalTableNames = tablesToBeLoaded.map(_.getPhysicalName).distinct.toArray
+    val partitioner = new RegionPartitioner(physicalTableNames.map(getRegionStartKeys(outConfig, _)), keysAreKeyValues = true)
+
+    val job = Job.getInstance(outConfig)
+    MultiHfileOutputFormat.configureIncrementalLoad(job, tablesToBeLoaded)
+    val hfilePath = new Path(outputPath, UUID.randomUUID().toString)
+    FileOutputFormat.setOutputPath(job, hfilePath)
+
+    val keyValues = rows.mapPartitions { rows =>
+      val upserter = new RowUpserter(tableName, cols, zkUrl, tenantId, includeIndexes = true)
+      val physicalTableNameBytes = physicalTableNames.map(Bytes.toBytes)
+      rows.flatMap { row =>
+        val keyValues = upserter.upsert(row).flatMap { pair =>
+          val tableIndex = physicalTableNameBytes.indexWhere(Bytes.equals(_, pair.getFirst))
+          if (tableIndex < 0) Nil else pair.getSecond.map(kv => ((tableIndex, Bytes.copy(kv.getBuffer, kv.getOffset, kv.getLength)), ()))
+        }.toList
+        upserter.rollback()
+        keyValues
+      }
+    }
+
+    keyValues
+      .repartitionAndSortWithinPartitions(partitioner)(RegionPartitioner.KEY_VALUE_ORDERING)
+      .mapPartitions { keyValues =>
+        var previous: (Int, Array[Byte]) = null
+        keyValues.flatMap { case (key @ (tableIndex, bytes), _) =>
+          // Same cell upserted more than once, only the first one is kept as in the reducer
+          if (previous != null && RegionPartitioner.KEY_VALUE_ORDERING.compare(previous, key) == 0) {
+            None
+          } else {
+            previous = key
+            val kv = new KeyValue(bytes)
+            Some((new TableRowkeyPair(physicalTableNames(tableIndex), new ImmutableBytesWritable(kv.getRow)), kv))
+          }
+        }
+      }
+      .saveAsNewAPIHadoopFile(
+        hfilePath.toString,
+        classOf[TableRowkeyPair],
+        classOf[KeyValue],
+        classOf[MultiHfileOutputFormat],
+        job.getConfiguration
+      )
+
+    for (physicalTableName <- physicalTableNames) {
+      val htable = new HTable(outConfig, physicalTableName)
+      try {
+        val tableOutputPath = CsvBulkImportUtil.getOutputPath(hfilePath, physicalTableName)
+        LOG.info(s"Loading HFiles for $physicalTableName from $tableOutputPath")
+        new LoadIncrementalHFiles(outConfig).doBulkLoad(tableOutputPath, htable)
+      } finally {
+        htable.close()
+      }
+    }
+    hfilePath.getFileSystem(outConfig).delete(hfilePath, true)
+  }
+
+  private def withConnection[T](conf: Configuration)(f: Connection => T): T = {
+    val conn = ConnectionUtil.getOutputConnection(conf)
+    try {
+      f(conn)
+    } finally {
+      conn.close()
+    }
+  }
+
+  private def getRegionStartKeys(conf: Configuration, physicalTableName: String): Array[Array[Byte]] = {
+    withConnection(conf) { conn =>
+      conn.unwrap(classOf[PhoenixConnection]).getQueryServices
+        .getAllTableRegions(Bytes.toBytes(physicalTableName))
+        .map(_.getRegionInfo.getStartKey).toArray
+    }
+  }
+
+  /**
+    * Upserts rows one at a time on a connection which doesn't commit, to get the KeyValues
+    * they would be written as. The connection is closed when the task completes.
+    */
+  private class RowUpserter(tableName: String, cols: Seq[String], zkUrl: Option[String],
+                            tenantId: Option[String], includeIndexes: Boolean = false) {
+    private val config = ConfigurationUtil.getOutputConfiguration(tableName, cols, zkUrl, tenantId)
+    private val columns: List[ColumnInfo] = PhoenixConfigurationUtil.getUpsertColumnMetadataList(config).toList
+    private val conn = ConnectionUtil.getOutputConnection(config)
+    conn.setAutoCommit(false)
+    private val statement: PreparedStatement = conn.prepareStatement(PhoenixConfigurationUtil.getUpsertStatement(config))
+    TaskContext.get.addTaskCompletionListener { _ =>
+      statement.close()
+      conn.close()
+    }
+
+    def upsert(row: Seq[Any]): Iterator[org.apache.hadoop.hbase.util.Pair[Array[Byte], java.util.List[KeyValue]]] = {
+      val rec = new PhoenixRecordWritable(columns)
+      row.foreach { e => rec.add(e) }
+      rec.write(statement)
+      statement.execute()
+      PhoenixRuntime.getUncommittedDataIterator(conn, includeIndexes)
+    }
+
+    def rollback(): Unit = conn.rollback()
+  }
+}
+
+/**
+  * Partitions the keys of the rows of tables by region. The keys are made of the index of the
+  * table and either the row key or the bytes of a KeyValue. Partition numbers are assigned to the
+  * regions of the first table first, then to the regions of the second table, and so on.
+  *
+  * @param startKeys the sorted start keys of the regions of each table
+  * @param keysAreKeyValues whether the keys hold the bytes of KeyValues instead of row keys
+  */
+class RegionPartitioner(startKeys: Array[Array[Array[Byte]]], keysAreKeyValues: Boolean) extends Partitioner {
+  private val offsets = startKeys.scanLeft(0)(_ + _.length)
+
+  override def numPartitions: Int = offsets.last
+
+  override def getPartition(key: Any): Int = key match {
+    case (tableIndex: Int, bytes: Array[Byte]) =>
+      if (keysAreKeyValues) {
+        // The row follows the key length, value length and row length of the KeyValue
+        val rowLength = Bytes.toShort(bytes, KeyValue.KEYVALUE_INFRASTRUCTURE_SIZE)
+        val rowOffset = KeyValue.KEYVALUE_INFRASTRUCTURE_SIZE + Bytes.SIZEOF_SHORT
+        offsets(tableIndex) + regionOf(startKeys(tableIndex), bytes, rowOffset, rowLength)
+      } else {
+        offsets(tableIndex) + regionOf(startKeys(tableIndex), bytes, 0, bytes.length)
+      }
+  }
+
+  // Index of the last region whose start key is less than or equal to the row
+  private def regionOf(keys: Array[Array[Byte]], row: Array[Byte], offset: Int, length: Int): Int = {
+    var low = 1
+    var high = keys.length - 1
+    var region = 0
+    while (low <= high) {
+      val mid = (low + high) >>> 1
+      if (Bytes.compareTo(keys(mid), 0, keys(mid).length, row, offset, length) <= 0) {
+        region = mid
+        low = mid + 1
+      } else {
+        high = mid - 1
+      }
+    }
+    region
+  }
+}
+
+object RegionPartitioner {
+  // Sorts by table, then by row key
+  val ROW_KEY_ORDERING: Ordering[(Int, Array[Byte])] = new Ordering[(Int, Array[Byte])] {
+    override def compare(x: (Int, Array[Byte]), y: (Int, Array[Byte])): Int = {
+      if (x._1 != y._1) Integer.compare(x._1, y._1) else Bytes.compareTo(x._2, y._2)
+    }
+  }
+
+  // Sorts by table, then in the order the KeyValues are written to HFiles
+  val KEY_VALUE_ORDERING: Ordering[(Int, Array[Byte])] = new Ordering[(Int, Array[Byte])] {
+    override def compare(x: (Int, Array[Byte]), y: (Int, Array[Byte])): Int = {
+      if (x._1 != y._1) {
+        Integer.compare(x._1, y._1)
+      } else {
+        KeyValue.COMPARATOR.compareFlatKey(
+          x._2, KeyValue.KEYVALUE_INFRASTRUCTURE_SIZE, Bytes.toInt(x._2, 0),
+          y._2, KeyValue.KEYVALUE_INFRASTRUCTURE_SIZE, Bytes.toInt(y._2, 0))
+      }
+    }
+  }
+}
@@ -22,33 +22,44 @@ import org.apache.spark.rdd.RDD
 import org.apache.spark.sql.types.StructType
 import org.apache.spark.sql.{Row, SQLContext}
 import org.apache.spark.sql.sources._
-import org.apache.phoenix.util.StringUtil.escapeStringConstant
+import org.apache.phoenix.util.StringUtil.{escapeLike, escapeStringConstant}
 import org.apache.phoenix.util.SchemaUtil
 
 case class PhoenixRelation(tableName: String, zkUrl: String, dateAsTimestamp: Boolean = false)(@transient val sqlContext: SQLContext)
     extends BaseRelation with PrunedFilteredScan {
 
+  // buildScan() returns Spark internal rows, which don't need to be converted from Rows
+  override val needConversion: Boolean = false
+
   /*
     This is the buildScan() implementing Spark's PrunedFilteredScan.
     Spark SQL queries with columns or predicates specified will be pushed down
-    to us here, and we can pass that on to Phoenix. According to the docs, this
-    is an optimization, and the filtering/pruning will be re-evaluated again,
-    but this prevents having to load the whole table into Spark first.
+    to us here, and we can pass that on to Phoenix. Filters we can't express in
+    Phoenix are reported by unhandledFilters() and evaluated again by Spark,
+    the others are only evaluated by Phoenix.
   */
   override def buildScan(requiredColumns: Array[String], filters: Array[Filter]): RDD[Row] = {
-    new PhoenixRDD(
+    val requiredSchema = StructType(requiredColumns.map(schema(_)))
+    // Nothing needs to be read for a count, but at least one column has to be selected
+    val columns = if (requiredColumns.isEmpty) Seq(schema.head.name) else requiredColumns.toSeq
+    val predicate = buildFilter(filters)
+    new PhoenixInternalRowRDD(
       sqlContext.sparkContext,
       tableName,
-      requiredColumns,
-      Some(buildFilter(filters)),
+      columns,
+      requiredSchema,
+      if (predicate.isEmpty) None else Some(predicate),
       Some(zkUrl),
-      new Configuration(),
-      dateAsTimestamp
-    ).toDataFrame(sqlContext).rdd
+      new Configuration()
+    ).asInstanceOf[RDD[Row]]
+  }
+
+  override def unhandledFilters(filters: Array[Filter]): Array[Filter] = {
+    filters.filter(compileFilter(_).isEmpty)
   }
 
   // Required by BaseRelation, this will return the full schema for a table
-  override def schema: StructType = {
+  override lazy val schema: StructType = {
     new PhoenixRDD(
       sqlContext.sparkContext,
       tableName,
@@ -61,60 +72,70 @@ case class PhoenixRelation(tableName: String, zkUrl: String, dateAsTimestamp: Bo
   }
 
   // Attempt to create Phoenix-accepted WHERE clauses from Spark filters,
-  // mostly inspired from Spark SQL JDBCRDD and the couchbase-spark-connector
+  // mostly inspired from Spark SQL JDBCRDD and the couchbase-spark-connector.
+  // Filters which can't be compiled are left to Spark.
   private def buildFilter(filters: Array[Filter]): String = {
-    if (filters.isEmpty) {
-      return ""
-    }
-
-    val filter = new StringBuilder("")
-    var i = 0
-
-    filters.foreach(f => {
-      // Assume conjunction for multiple filters, unless otherwise specified
-      if (i > 0) {
-        filter.append(" AND")
-      }
+    // Assume conjunction for multiple filters
+    filters.flatMap(compileFilter(_)).mkString(" AND ")
+  }
 
-      f match {
-        // Spark 1.3.1+ supported filters
-        case And(leftFilter, rightFilter) => filter.append(buildFilter(Array(leftFilter, rightFilter)))
-        case Or(leftFilter, rightFilter) => filter.append(buildFilter(Array(leftFilter)) + " OR " + buildFilter(Array(rightFilter)))
-        case Not(aFilter) => filter.append(" NOT " + buildFilter(Array(aFilter)))
-        case EqualTo(attr, value) => filter.append(s" ${escapeKey(attr)} = ${compileValue(value)}")
-        case GreaterThan(attr, value) => filter.append(s" ${escapeKey(attr)} > ${compileValue(value)}")
-        case GreaterThanOrEqual(attr, value) => filter.append(s" ${escapeKey(attr)} >= ${compileValue(value)}")
-        case LessThan(attr, value) => filter.append(s" ${escapeKey(attr)} < ${compileValue(value)}")
-        case LessThanOrEqual(attr, value) => filter.append(s" ${escapeKey(attr)} <= ${compileValue(value)}")
-        case IsNull(attr) => filter.append(s" ${escapeKey(attr)} IS NULL")
-        case IsNotNull(attr) => filter.append(s" ${escapeKey(attr)} IS NOT NULL")
-        case In(attr, values) => filter.append(s" ${escapeKey(attr)} IN ${values.map(compileValue).mkString("(", ",", ")")}")
-        case StringStartsWith(attr, value) => filter.append(s" ${escapeKey(attr)} LIKE ${compileValue(value + "%")}")
-        case StringEndsWith(attr, value) => filter.append(s" ${escapeKey(attr)} LIKE ${compileValue("%" + value)}")
-        case StringContains(attr, value) => filter.append(s" ${escapeKey(attr)} LIKE ${compileValue("%" + value + "%")}")
+  private def compileFilter(f: Filter): Option[String] = f match {
+    // Spark 1.3.1+ supported filters
+    case And(leftFilter, rightFilter) =>
+      for (left <- compileFilter(leftFilter); right <- compileFilter(rightFilter)) yield s"($left AND $right)"
+    case Or(leftFilter, rightFilter) =>
+      for (left <- compileFilter(leftFilter); right <- compileFilter(rightFilter)) yield s"($left OR $right)"
+    case Not(aFilter) => compileFilter(aFilter).map(p => s"(NOT $p)")
+    case EqualTo(attr, value) => compileValue(value).map(v => s"${escapeKey(attr)} = $v")
+    case GreaterThan(attr, value) => compileValue(value).map(v => s"${escapeKey(attr)} > $v")
+    case GreaterThanOrEqual(attr, value) => compileValue(value).map(v => s"${escapeKey(attr)} >= $v")
+    case LessThan(attr, value) => compileValue(value).map(v => s"${escapeKey(attr)} < $v")
+    case LessThanOrEqual(attr, value) => compileValue(value).map(v => s"${escapeKey(attr)} <= $v")
+    case IsNull(attr) => Some(s"${escapeKey(attr)} IS NULL")
+    case IsNotNull(attr) => Some(s"${escapeKey(attr)} IS NOT NULL")
+    case In(attr, values) if values.nonEmpty =>
+      val compiledValues = values.map(compileValue)
+      if (compiledValues.forall(_.isDefined)) {
+        Some(s"${escapeKey(attr)} IN ${compiledValues.map(_.get).mkString("(", ",", ")")}")
+      } else {
+        None
       }
-
-      i = i + 1
-    })
-
-    filter.toString()
+    case StringStartsWith(attr, value) => compileLike(value, "", "%").map(v => s"${escapeKey(attr)} LIKE $v")
+    case StringEndsWith(attr, value) => compileLike(value, "%", "").map(v => s"${escapeKey(attr)} LIKE $v")
+    case StringContains(attr, value) => compileLike(value, "%", "%").map(v => s"${escapeKey(attr)} LIKE $v")
+    case _ => None
   }
 
   // Helper function to escape column key to work with SQL queries
   private def escapeKey(key: String): String = SchemaUtil.getEscapedArgument(key)
 
-  // Helper function to escape string values in SQL queries
-  private def compileValue(value: Any): Any = value match {
-    case stringValue: String => s"'${escapeStringConstant(stringValue)}'"
+  // Helper function to create a LIKE pattern matching the value literally
+  private def compileLike(value: String, prefix: String, suffix: String): Option[String] = {
+    if (value.contains("\\")) {
+      None
+    } else {
+      Some(s"'${escapeStringConstant(prefix + escapeLike(value) + suffix)}'")
+    }
+  }
+
+  // Helper function to escape values in SQL queries, if they can be written as SQL literals
+  private def compileValue(value: Any): Option[String] = value match {
+    case null => None
+    case stringValue: String => Some(s"'${escapeStringConstant(stringValue)}'")
 
     // Borrowed from 'elasticsearch-hadoop', support these internal UTF types across Spark versions
     // Spark 1.4
-    case utf if (isClass(utf, "org.apache.spark.sql.types.UTF8String")) => s"'${escapeStringConstant(utf.toString)}'"
+    case utf if (isClass(utf, "org.apache.spark.sql.types.UTF8String")) => Some(s"'${escapeStringConstant(utf.toString)}'")
     // Spark 1.5
-    case utf if (isClass(utf, "org.apache.spark.unsafe.types.UTF8String")) => s"'${escapeStringConstant(utf.toString)}'"
+    case utf if (isClass(utf, "org.apache.spark.unsafe.types.UTF8String")) => Some(s"'${escapeStringConstant(utf.toString)}'")
+
+    case decimalValue: java.math.BigDecimal => Some(decimalValue.toPlainString)
+    case doubleValue: Double if (doubleValue.isNaN || doubleValue.isInfinite) => None
+    case floatValue: Float if (floatValue.isNaN || floatValue.isInfinite) => None
+    case _: Byte | _: Short | _: Int | _: Long | _: Float | _: Double | _: Boolean => Some(value.toString)
 
-    // Pass through anything else
-    case _ => value
+    // Anything else, such as dates, is filtered by Spark
+    case _ => None
   }
 
   private def isClass(obj: Any, className: String) = {
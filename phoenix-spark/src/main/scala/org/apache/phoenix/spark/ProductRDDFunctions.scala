@@ -24,7 +24,8 @@ import scala.collection.JavaConversions._
 class ProductRDDFunctions[A <: Product](data: RDD[A]) extends Serializable {
 
   def saveToPhoenix(tableName: String, cols: Seq[String],
-                    conf: Configuration = new Configuration, zkUrl: Option[String] = None, tenantId: Option[String] = None)
+                    conf: Configuration = new Configuration, zkUrl: Option[String] = None, tenantId: Option[String] = None,
+                    regionAware: Boolean = false, hfileOutputPath: Option[String] = None)
                     : Unit = {
 
     // Create a configuration object to use for saving
@@ -33,6 +34,17 @@ class ProductRDDFunctions[A <: Product](data: RDD[A]) extends Serializable {
     // Retrieve the zookeeper URL
     val zkUrlFinal = ConfigurationUtil.getZookeeperURL(outConfig)
 
+    // Write the rows of each region from a single task, either as HFiles or through upserts
+    hfileOutputPath match {
+      case Some(path) =>
+        return PhoenixRegionAwareWriter.saveAsHFiles(data.map(_.productIterator.toSeq), tableName, cols,
+          outConfig, zkUrlFinal, tenantId, path)
+      case None if regionAware =>
+        return PhoenixRegionAwareWriter.saveByRegion(data.map(_.productIterator.toSeq), tableName, cols,
+          outConfig, zkUrlFinal, tenantId)
+      case _ =>
+    }
+
     // Map the row objects into PhoenixRecordWritable
     val phxRDD = data.mapPartitions{ rows =>
 